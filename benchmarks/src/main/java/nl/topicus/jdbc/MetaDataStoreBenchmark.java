@@ -0,0 +1,80 @@
+package nl.topicus.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.benchmark.BenchmarkObjects;
+
+/**
+ * Measures the lookup of table meta data in a {@link MetaDataStore}. The
+ * cached lookups are done for each DML statement that is executed, the loads
+ * only when a table is not yet in the store or its entry has expired.
+ *
+ * @author loite
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetaDataStoreBenchmark
+{
+	private CloudSpannerConnection connection;
+
+	private MetaDataStore store;
+
+	@Setup
+	public void setup() throws SQLException
+	{
+		connection = BenchmarkObjects.createConnection(0);
+		store = new MetaDataStore();
+		store.preload(connection, 0L);
+	}
+
+	@Benchmark
+	public TableKeyMetaData cachedLookup() throws SQLException
+	{
+		return store.getTable(connection, "FOO", 0L);
+	}
+
+	@Benchmark
+	public TableKeyMetaData cachedLookupMixedCase() throws SQLException
+	{
+		return store.getTable(connection, "Foo", 0L);
+	}
+
+	@Benchmark
+	public TableKeyMetaData cachedLookupWithTTL() throws SQLException
+	{
+		return store.getTable(connection, "FOO", 60000L);
+	}
+
+	@Benchmark
+	public TableKeyMetaData load() throws SQLException
+	{
+		return new MetaDataStore().getTable(connection, "FOO", 0L);
+	}
+
+	@Benchmark
+	public MetaDataStore preload() throws SQLException
+	{
+		MetaDataStore res = new MetaDataStore();
+		res.preload(connection, 0L);
+		return res;
+	}
+
+}
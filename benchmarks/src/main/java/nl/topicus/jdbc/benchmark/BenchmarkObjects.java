@@ -0,0 +1,167 @@
+package nl.topicus.jdbc.benchmark;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.MockSettings;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.CloudSpannerDatabaseMetaData;
+import nl.topicus.jdbc.MetaDataStore.ColumnMetaData;
+import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
+import nl.topicus.jdbc.statement.ParsedStatementCache;
+import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
+
+/**
+ * Creates the stubbed connection and the synthetic result sets that are used
+ * by the benchmarks. All mocks are created as stub-only mocks, which means
+ * that Mockito does not record the invocations on the mocks. Recording the
+ * invocations would make the memory usage of a benchmark grow with each
+ * invocation and would distort the results.
+ *
+ * <p>
+ * The stubbed database contains one table:
+ * <code>FOO (ID INT64, COL1 STRING(50), COL2 STRING(100)) PRIMARY KEY (ID)</code>
+ * with one secondary index.
+ * </p>
+ *
+ * @author loite
+ *
+ */
+public class BenchmarkObjects
+{
+	public static final Type ROW_TYPE = Type.struct(StructField.of("ID", Type.int64()),
+			StructField.of("NAME", Type.string()), StructField.of("AMOUNT", Type.float64()),
+			StructField.of("ACTIVE", Type.bool()), StructField.of("DATA", Type.bytes()),
+			StructField.of("CREATED", Type.timestamp()), StructField.of("BIRTHDAY", Type.date()));
+
+	private BenchmarkObjects()
+	{
+	}
+
+	private static MockSettings stubOnly()
+	{
+		return Mockito.withSettings().stubOnly();
+	}
+
+	/**
+	 * Creates a connection that is not in autocommit mode. All queries on the
+	 * transaction of the connection return a new result set with the given
+	 * number of rows of type {@link #ROW_TYPE}.
+	 */
+	public static CloudSpannerConnection createConnection(final int queryRows) throws SQLException
+	{
+		CloudSpannerConnection connection = Mockito.mock(CloudSpannerConnection.class, stubOnly());
+		Mockito.when(connection.getAutoCommit()).thenReturn(false);
+		Mockito.when(connection.isReadOnly()).thenReturn(false);
+		Mockito.when(connection.getParsedStatementCache()).thenReturn(new ParsedStatementCache());
+		CloudSpannerDatabaseMetaData metadata = createMetaData();
+		Mockito.when(connection.getMetaData()).thenReturn(metadata);
+
+		CloudSpannerTransaction transaction = Mockito.mock(CloudSpannerTransaction.class, stubOnly());
+		Mockito.when(transaction.executeQuery(ArgumentMatchers.any()))
+				.thenAnswer(invocation -> createResultSet(queryRows));
+		Mockito.when(connection.getTransaction()).thenReturn(transaction);
+
+		TableKeyMetaData foo = Mockito.mock(TableKeyMetaData.class, stubOnly());
+		Mockito.when(foo.getKeyColumns()).thenReturn(Arrays.asList("ID"));
+		List<ColumnMetaData> columns = Arrays.asList(createColumn("ID", Types.BIGINT, 8),
+				createColumn("COL1", Types.NVARCHAR, 50), createColumn("COL2", Types.NVARCHAR, 100));
+		Mockito.when(foo.getColumns()).thenReturn(columns);
+		Mockito.when(foo.getIndexCount()).thenReturn(1);
+		Mockito.when(connection.getTable(ArgumentMatchers.matches("(?i)FOO"))).thenReturn(foo);
+
+		return connection;
+	}
+
+	private static ColumnMetaData createColumn(String name, int dataType, int columnSize)
+	{
+		ColumnMetaData column = Mockito.mock(ColumnMetaData.class, stubOnly());
+		Mockito.when(column.getName()).thenReturn(name);
+		Mockito.when(column.getDataType()).thenReturn(dataType);
+		Mockito.when(column.getColumnSize()).thenReturn(columnSize);
+		return column;
+	}
+
+	/**
+	 * Creates database meta data that returns the meta data of table FOO.
+	 * The meta data result sets are real {@link CloudSpannerResultSet}s on
+	 * top of in-memory Cloud Spanner result sets.
+	 */
+	public static CloudSpannerDatabaseMetaData createMetaData() throws SQLException
+	{
+		CloudSpannerDatabaseMetaData metadata = Mockito.mock(CloudSpannerDatabaseMetaData.class, stubOnly());
+		Mockito.when(metadata.getPrimaryKeys(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+				.thenAnswer(invocation -> createMetaDataResultSet(
+						Struct.newBuilder().set("TABLE_NAME").to("FOO").set("COLUMN_NAME").to("ID").build()));
+		Mockito.when(metadata.getColumns(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+				ArgumentMatchers.any()))
+				.thenAnswer(invocation -> createMetaDataResultSet(
+						createColumnRow("ID", Types.BIGINT, 8, ResultSetMetaData.columnNoNulls),
+						createColumnRow("COL1", Types.NVARCHAR, 50, ResultSetMetaData.columnNoNulls),
+						createColumnRow("COL2", Types.NVARCHAR, 100, ResultSetMetaData.columnNullable)));
+		Mockito.when(metadata.getIndexInfo(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+				ArgumentMatchers.anyBoolean(), ArgumentMatchers.anyBoolean()))
+				.thenAnswer(invocation -> createMetaDataResultSet(
+						Struct.newBuilder().set("TABLE_NAME").to("FOO").set("INDEX_NAME").to("IDX_FOO_COL1").build()));
+		Mockito.when(metadata.getTables(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+				ArgumentMatchers.any()))
+				.thenAnswer(invocation -> createMetaDataResultSet(
+						Struct.newBuilder().set("TABLE_NAME").to("FOO").build()));
+		return metadata;
+	}
+
+	private static Struct createColumnRow(String name, int dataType, int columnSize, int nullable)
+	{
+		return Struct.newBuilder().set("TABLE_NAME").to("FOO").set("COLUMN_NAME").to(name).set("DATA_TYPE")
+				.to(dataType).set("COLUMN_SIZE").to(columnSize).set("NULLABLE").to(nullable).build();
+	}
+
+	private static ResultSet createMetaDataResultSet(Struct... rows)
+	{
+		return new CloudSpannerResultSet(null, ResultSets.forRows(rows[0].getType(), Arrays.asList(rows)));
+	}
+
+	/**
+	 * Creates the rows of an in-memory result set of type {@link #ROW_TYPE}
+	 */
+	public static List<Struct> createRows(int count)
+	{
+		List<Struct> rows = new ArrayList<>(count);
+		for (int row = 0; row < count; row++)
+		{
+			rows.add(Struct.newBuilder().set("ID").to(row).set("NAME").to("Name of row " + row).set("AMOUNT")
+					.to(row * 1.5d).set("ACTIVE").to(row % 2 == 0).set("DATA")
+					.to(ByteArray.copyFrom("Data of row " + row)).set("CREATED")
+					.to(Timestamp.ofTimeSecondsAndNanos(1500000000L + row, 0)).set("BIRTHDAY")
+					.to(Date.fromYearMonthDay(2000 + row % 20, 1 + row % 12, 1 + row % 28)).build());
+		}
+		return rows;
+	}
+
+	/**
+	 * Creates an in-memory Cloud Spanner result set of type
+	 * {@link #ROW_TYPE} with the given number of rows
+	 */
+	public static com.google.cloud.spanner.ResultSet createResultSet(int count)
+	{
+		return ResultSets.forRows(ROW_TYPE, createRows(count));
+	}
+
+}
@@ -0,0 +1,155 @@
+package nl.topicus.jdbc.resultset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Struct;
+
+import nl.topicus.jdbc.benchmark.BenchmarkObjects;
+
+/**
+ * Measures reading all rows of a {@link CloudSpannerResultSet} on top of an
+ * in-memory Cloud Spanner result set. The <code>iterate</code> benchmark only
+ * moves through the rows and is the baseline for the other benchmarks.
+ *
+ * @author loite
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark
+{
+	private static final int COLUMN_COUNT = BenchmarkObjects.ROW_TYPE.getStructFields().size();
+
+	@Param({ "1000" })
+	private int rowCount;
+
+	private List<Struct> rows;
+
+	@Setup
+	public void setup()
+	{
+		rows = BenchmarkObjects.createRows(rowCount);
+	}
+
+	private CloudSpannerResultSet createResultSet()
+	{
+		return new CloudSpannerResultSet(null, ResultSets.forRows(BenchmarkObjects.ROW_TYPE, rows));
+	}
+
+	@Benchmark
+	public int iterate() throws SQLException
+	{
+		int count = 0;
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+				count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public void getByIndex(Blackhole blackhole) throws SQLException
+	{
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+			{
+				blackhole.consume(rs.getLong(1));
+				blackhole.consume(rs.getString(2));
+				blackhole.consume(rs.getDouble(3));
+				blackhole.consume(rs.getBoolean(4));
+				blackhole.consume(rs.getBytes(5));
+				blackhole.consume(rs.getTimestamp(6));
+				blackhole.consume(rs.getDate(7));
+			}
+		}
+	}
+
+	@Benchmark
+	public void getByLabel(Blackhole blackhole) throws SQLException
+	{
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+			{
+				blackhole.consume(rs.getLong("ID"));
+				blackhole.consume(rs.getString("NAME"));
+				blackhole.consume(rs.getDouble("AMOUNT"));
+				blackhole.consume(rs.getBoolean("ACTIVE"));
+				blackhole.consume(rs.getBytes("DATA"));
+				blackhole.consume(rs.getTimestamp("CREATED"));
+				blackhole.consume(rs.getDate("BIRTHDAY"));
+			}
+		}
+	}
+
+	@Benchmark
+	public void getObject(Blackhole blackhole) throws SQLException
+	{
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+			{
+				for (int column = 1; column <= COLUMN_COUNT; column++)
+					blackhole.consume(rs.getObject(column));
+			}
+		}
+	}
+
+	@Benchmark
+	public void getBigDecimal(Blackhole blackhole) throws SQLException
+	{
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+			{
+				blackhole.consume(rs.getBigDecimal(1));
+				blackhole.consume(rs.getBigDecimal(3));
+			}
+		}
+	}
+
+	@Benchmark
+	public long getBinaryStream() throws SQLException, IOException
+	{
+		long total = 0L;
+		byte[] buffer = new byte[64];
+		try (CloudSpannerResultSet rs = createResultSet())
+		{
+			while (rs.next())
+			{
+				try (InputStream is = rs.getBinaryStream(5))
+				{
+					int read;
+					while ((read = is.read(buffer)) > -1)
+						total += read;
+				}
+			}
+		}
+		return total;
+	}
+
+}
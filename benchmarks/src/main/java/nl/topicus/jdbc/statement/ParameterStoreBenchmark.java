@@ -0,0 +1,67 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures setting, reading and clearing the parameters of a
+ * {@link ParameterStore}, which is done for each execution of a prepared
+ * statement. A parameter count above 10 forces the store to grow its arrays.
+ *
+ * @author loite
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterStoreBenchmark
+{
+	@Param({ "3", "20" })
+	private int parameterCount;
+
+	private final ParameterStore store = new ParameterStore();
+
+	@Benchmark
+	public void setAndClear(Blackhole blackhole)
+	{
+		for (int index = 1; index <= parameterCount; index++)
+			store.setParameter(index, Long.valueOf(index), Types.BIGINT, null);
+		for (int index = 1; index <= parameterCount; index++)
+			blackhole.consume(store.getParameter(index));
+		store.clearParameters();
+	}
+
+	@Benchmark
+	public void setWithColumnAndClear(Blackhole blackhole)
+	{
+		store.setTable("FOO");
+		for (int index = 1; index <= parameterCount; index++)
+		{
+			store.setParameter(index, "Value " + index);
+			store.setColumn(index, "COL" + index);
+			store.setType(index, Types.NVARCHAR);
+		}
+		for (int index = 1; index <= parameterCount; index++)
+		{
+			blackhole.consume(store.getParameter(index));
+			blackhole.consume(store.getType(index));
+		}
+		store.clearParameters();
+	}
+
+}
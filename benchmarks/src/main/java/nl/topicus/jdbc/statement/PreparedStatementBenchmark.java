@@ -0,0 +1,121 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.benchmark.BenchmarkObjects;
+
+/**
+ * Measures the client side cost of parsing a SQL statement, binding the
+ * parameters and creating the Cloud Spanner statement or mutation for it.
+ * The <code>new*</code> benchmarks create a new prepared statement for each
+ * invocation, which means that the statement is looked up in the parsed
+ * statement cache of the connection. The <code>reused*</code> benchmarks bind
+ * new parameter values to the same prepared statement.
+ *
+ * @author loite
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedStatementBenchmark
+{
+	private static final String SELECT = "SELECT * FROM FOO WHERE ID=? AND COL1=?";
+
+	private static final String INSERT = "INSERT INTO FOO (ID, COL1, COL2) VALUES (?, ?, ?)";
+
+	private static final String UPDATE = "UPDATE FOO SET COL1=?, COL2=? WHERE ID=?";
+
+	private static final String DELETE = "DELETE FROM FOO WHERE ID=?";
+
+	private CloudSpannerConnection connection;
+
+	private CloudSpannerPreparedStatement reusedInsert;
+
+	private CloudSpannerPreparedStatement reusedUpdate;
+
+	private long id;
+
+	@Setup
+	public void setup() throws SQLException
+	{
+		connection = BenchmarkObjects.createConnection(0);
+		reusedInsert = new CloudSpannerPreparedStatement(INSERT, connection, null);
+		reusedUpdate = new CloudSpannerPreparedStatement(UPDATE, connection, null);
+	}
+
+	@Benchmark
+	public ResultSet newSelect() throws SQLException
+	{
+		CloudSpannerPreparedStatement ps = new CloudSpannerPreparedStatement(SELECT, connection, null);
+		ps.setLong(1, ++id);
+		ps.setString(2, "test");
+		return ps.executeQuery();
+	}
+
+	@Benchmark
+	public int newInsert() throws SQLException
+	{
+		return bindInsert(new CloudSpannerPreparedStatement(INSERT, connection, null)).executeUpdate();
+	}
+
+	@Benchmark
+	public int reusedInsert() throws SQLException
+	{
+		return bindInsert(reusedInsert).executeUpdate();
+	}
+
+	private CloudSpannerPreparedStatement bindInsert(CloudSpannerPreparedStatement ps) throws SQLException
+	{
+		ps.setLong(1, ++id);
+		ps.setString(2, "Value one");
+		ps.setString(3, "Value two");
+		return ps;
+	}
+
+	@Benchmark
+	public int newUpdate() throws SQLException
+	{
+		return bindUpdate(new CloudSpannerPreparedStatement(UPDATE, connection, null)).executeUpdate();
+	}
+
+	@Benchmark
+	public int reusedUpdate() throws SQLException
+	{
+		return bindUpdate(reusedUpdate).executeUpdate();
+	}
+
+	private CloudSpannerPreparedStatement bindUpdate(CloudSpannerPreparedStatement ps) throws SQLException
+	{
+		ps.setString(1, "Value one");
+		ps.setString(2, "Value two");
+		ps.setLong(3, ++id);
+		return ps;
+	}
+
+	@Benchmark
+	public int newDelete() throws SQLException
+	{
+		CloudSpannerPreparedStatement ps = new CloudSpannerPreparedStatement(DELETE, connection, null);
+		ps.setLong(1, ++id);
+		return ps.executeUpdate();
+	}
+
+}
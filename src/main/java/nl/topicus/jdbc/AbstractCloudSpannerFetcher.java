@@ -23,6 +23,8 @@ public abstract class AbstractCloudSpannerFetcher extends AbstractCloudSpannerWr
 
 	public void setFetchSize(int rows) throws SQLException
 	{
+		if (rows < 0)
+			throw new SQLException("Fetch size must be >= 0");
 		this.fetchSize = rows;
 	}
 
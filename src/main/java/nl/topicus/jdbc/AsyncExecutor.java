@@ -0,0 +1,235 @@
+package nl.topicus.jdbc;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.topicus.jdbc.util.VirtualThreads;
+
+/**
+ * Executor that runs the asynchronous operations of all connections of the
+ * driver, see {@link ICloudSpannerAsyncConnection}. The Cloud Spanner client
+ * library only offers blocking calls, so each operation occupies a thread of
+ * this executor while it is waiting for Cloud Spanner. The number of
+ * platform threads is bounded by {@link #getMaxThreads()}, additional
+ * operations wait in a queue until a thread is available, except for groups
+ * of operations that must run at the same time, see
+ * {@link #executeConcurrently(List)}. On JVMs that
+ * support virtual threads, the executor can be instructed to run each
+ * operation on its own virtual thread by calling
+ * {@link #setUseVirtualThreads(boolean)}.
+ *
+ * @author loite
+ *
+ */
+public class AsyncExecutor
+{
+	public static final int DEFAULT_MAX_THREADS = 64;
+
+	private static final long KEEP_ALIVE_SECONDS = 60L;
+
+	private static final AsyncExecutor DEFAULT_EXECUTOR = new AsyncExecutor(DEFAULT_MAX_THREADS, false);
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private int maxThreads;
+
+	/**
+	 * The number of threads that the pool has been extended with for
+	 * operations that must run at the same time
+	 */
+	private int reservedThreads;
+
+	private boolean useVirtualThreads;
+
+	private ExecutorService executor;
+
+	AsyncExecutor(int maxThreads, boolean useVirtualThreads)
+	{
+		setMaxThreads(maxThreads);
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	/**
+	 *
+	 * @return The executor that is used by all connections of the driver
+	 */
+	public static AsyncExecutor getDefault()
+	{
+		return DEFAULT_EXECUTOR;
+	}
+
+	private synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = createExecutor();
+		}
+		return executor;
+	}
+
+	private ExecutorService createExecutor()
+	{
+		if (useVirtualThreads)
+		{
+			ExecutorService res = VirtualThreads.newVirtualThreadPerTaskExecutor();
+			// Fall back to platform threads if virtual threads are not
+			// supported
+			if (res != null)
+				return res;
+		}
+		ThreadPoolExecutor res = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "CloudSpanner-Async-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		res.allowCoreThreadTimeOut(true);
+		return res;
+	}
+
+	/**
+	 * Runs the given operation on a thread of this executor
+	 *
+	 * @param operation
+	 *            The operation to run
+	 */
+	synchronized void execute(Runnable operation)
+	{
+		getExecutor().execute(operation);
+	}
+
+	/**
+	 * Runs the given operations on threads of this executor, all at the same
+	 * time. The operations do not wait in the queue, as they may depend on
+	 * each other, for example because they exchange data through a bounded
+	 * buffer. The pool is extended with a thread for each operation while the
+	 * operation is running.
+	 *
+	 * @param operations
+	 *            The operations to run
+	 */
+	public synchronized void executeConcurrently(List<Runnable> operations)
+	{
+		ExecutorService service = getExecutor();
+		if (!(service instanceof ThreadPoolExecutor))
+		{
+			for (Runnable operation : operations)
+				service.execute(operation);
+			return;
+		}
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) service;
+		reservedThreads += operations.size();
+		resize(pool);
+		for (Runnable operation : operations)
+		{
+			pool.execute(() -> {
+				try
+				{
+					operation.run();
+				}
+				finally
+				{
+					release(pool);
+				}
+			});
+		}
+	}
+
+	private synchronized void release(ThreadPoolExecutor pool)
+	{
+		// The executor may have been replaced in the meantime
+		if (pool == executor)
+		{
+			reservedThreads--;
+			resize(pool);
+		}
+	}
+
+	private void resize(ThreadPoolExecutor pool)
+	{
+		int size = maxThreads + reservedThreads;
+		if (size > pool.getMaximumPoolSize())
+		{
+			pool.setMaximumPoolSize(size);
+			pool.setCorePoolSize(size);
+		}
+		else
+		{
+			pool.setCorePoolSize(size);
+			pool.setMaximumPoolSize(size);
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of threads in the pool, both active and idle. Returns
+	 *         -1 if the executor uses virtual threads, or if no operation has
+	 *         been started yet.
+	 */
+	public synchronized int getPoolSize()
+	{
+		if (executor instanceof ThreadPoolExecutor)
+			return ((ThreadPoolExecutor) executor).getPoolSize();
+		return -1;
+	}
+
+	public synchronized int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	/**
+	 * Sets the maximum number of platform threads that run asynchronous
+	 * operations. This setting is ignored when virtual threads are used.
+	 *
+	 * @param maxThreads
+	 *            The maximum number of threads
+	 */
+	public synchronized void setMaxThreads(int maxThreads)
+	{
+		if (maxThreads <= 0)
+			throw new IllegalArgumentException("maxThreads must be positive");
+		this.maxThreads = maxThreads;
+		if (executor instanceof ThreadPoolExecutor)
+			resize((ThreadPoolExecutor) executor);
+	}
+
+	public synchronized boolean isUseVirtualThreads()
+	{
+		return useVirtualThreads;
+	}
+
+	/**
+	 * Instructs the executor to run asynchronous operations on virtual threads
+	 * instead of platform threads. This setting is ignored on JVMs that do not
+	 * support virtual threads. Operations that are already running are not
+	 * affected.
+	 *
+	 * @param useVirtualThreads
+	 *            <code>true</code> if virtual threads should be used
+	 */
+	public synchronized void setUseVirtualThreads(boolean useVirtualThreads)
+	{
+		if (this.useVirtualThreads != useVirtualThreads)
+		{
+			this.useVirtualThreads = useVirtualThreads;
+			if (executor != null)
+			{
+				executor.shutdown();
+				executor = null;
+				reservedThreads = 0;
+			}
+		}
+	}
+
+}
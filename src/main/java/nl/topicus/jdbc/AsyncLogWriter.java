@@ -0,0 +1,215 @@
+package nl.topicus.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.DriverManager;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import nl.topicus.jdbc.util.MpscRingBuffer;
+
+/**
+ * Writes the messages of all {@link Logger}s of the driver on one background
+ * thread. Loggers hand their messages to a lock-free ring buffer and return
+ * immediately, the background thread formats the messages and writes them to
+ * {@link DriverManager#getLogWriter()} and, if enabled, to
+ * java.util.logging. Messages are dropped when the buffer is full instead of
+ * blocking the connections, and the number of dropped messages is reported
+ * in the log. The background thread parks while the buffer is empty, and is
+ * unparked by the first message that is written while it is parked.
+ *
+ * @author loite
+ *
+ */
+final class AsyncLogWriter implements Runnable
+{
+	static final int CAPACITY = 8192;
+
+	static final class Entry
+	{
+		private final long millis;
+
+		private final int level;
+
+		private final String prefix;
+
+		private final String message;
+
+		private final Throwable throwable;
+
+		private final boolean toWriter;
+
+		private final boolean toJavaUtilLogging;
+
+		Entry(long millis, int level, String prefix, String message, Throwable throwable, boolean toWriter,
+				boolean toJavaUtilLogging)
+		{
+			this.millis = millis;
+			this.level = level;
+			this.prefix = prefix;
+			this.message = message;
+			this.throwable = throwable;
+			this.toWriter = toWriter;
+			this.toJavaUtilLogging = toJavaUtilLogging;
+		}
+	}
+
+	private final MpscRingBuffer<Entry> buffer = new MpscRingBuffer<>(CAPACITY);
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * The number of entries that have been written completely. Only written
+	 * by the background thread.
+	 */
+	private volatile long written;
+
+	private volatile Thread thread;
+
+	/**
+	 * Set by the background thread before it checks the buffer for the last
+	 * time and parks, so that writers know they must unpark it
+	 */
+	private volatile boolean sleeping;
+
+	// Only used by the background thread. For brevity we only log the time,
+	// not date or timezone (the main reason for the timestamp is to see
+	// delays etc. between log lines, not to pin down an instant in time)
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS ");
+
+	private final FieldPosition dummyPosition = new FieldPosition(0);
+
+	private final StringBuffer line = new StringBuffer();
+
+	void write(Entry entry)
+	{
+		ensureStarted();
+		if (!buffer.offer(entry))
+			dropped.incrementAndGet();
+		else if (sleeping)
+			LockSupport.unpark(thread);
+	}
+
+	private void ensureStarted()
+	{
+		if (thread == null)
+		{
+			synchronized (this)
+			{
+				if (thread == null)
+				{
+					Thread res = new Thread(this, "CloudSpanner-Logger");
+					res.setDaemon(true);
+					res.start();
+					thread = res;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until all messages that were logged before this method was
+	 * called have been written
+	 */
+	void flush()
+	{
+		Thread current = thread;
+		if (current == null)
+			return;
+		long target = buffer.getOfferedCount();
+		while (written < target && current.isAlive())
+		{
+			LockSupport.unpark(current);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+		}
+	}
+
+	long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	@Override
+	public void run()
+	{
+		long reportedDropped = 0L;
+		while (true)
+		{
+			PrintWriter writer = DriverManager.getLogWriter();
+			long count = 0L;
+			Entry entry;
+			while ((entry = buffer.poll()) != null)
+			{
+				try
+				{
+					write(entry, writer);
+				}
+				catch (RuntimeException e)
+				{
+					// Logging must never stop the background thread
+				}
+				count++;
+			}
+			long droppedNow = dropped.get();
+			if (droppedNow > reportedDropped && writer != null)
+			{
+				writer.println(
+						droppedNow - reportedDropped + " log messages were dropped because the log buffer was full");
+				reportedDropped = droppedNow;
+			}
+			if (writer != null && count > 0L)
+				writer.flush();
+			written += count;
+			if (count == 0L)
+				sleep();
+		}
+	}
+
+	/**
+	 * Parks the background thread until a message is written. The buffer is
+	 * checked again after setting {@link #sleeping}, as a writer that offered
+	 * a message before it could see the flag will not unpark the thread.
+	 */
+	private void sleep()
+	{
+		sleeping = true;
+		try
+		{
+			if (buffer.getOfferedCount() == buffer.getPolledCount())
+				LockSupport.park(this);
+		}
+		finally
+		{
+			sleeping = false;
+		}
+	}
+
+	private void write(Entry entry, PrintWriter writer)
+	{
+		if (entry.toWriter && writer != null)
+		{
+			line.setLength(0);
+			dateFormat.format(new Date(entry.millis), line, dummyPosition);
+			line.append(entry.prefix);
+			line.append(entry.message);
+			writer.println(line.toString());
+			if (entry.throwable != null)
+				entry.throwable.printStackTrace(writer);
+		}
+		if (entry.toJavaUtilLogging)
+		{
+			LogRecord record = new LogRecord(entry.level >= CloudSpannerDriver.DEBUG ? Level.FINE : Level.INFO,
+					entry.prefix + entry.message);
+			record.setMillis(entry.millis);
+			record.setThrown(entry.throwable);
+			record.setLoggerName(Logger.PARENT_LOGGER_NAME);
+			Logger.getParentLogger().log(record);
+		}
+	}
+
+}
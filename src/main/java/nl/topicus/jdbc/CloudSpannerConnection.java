@@ -11,11 +11,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -23,23 +29,22 @@ import org.json.JSONTokener;
 
 import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.auth.oauth2.ServiceAccountCredentials;
-import com.google.auth.oauth2.UserCredentials;
 import com.google.cloud.Timestamp;
-import com.google.cloud.spanner.DatabaseAdminClient;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.DatabaseId;
-import com.google.cloud.spanner.Operation;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ReadOnlyTransaction;
 import com.google.cloud.spanner.Spanner;
 import com.google.cloud.spanner.SpannerException;
-import com.google.cloud.spanner.SpannerOptions;
-import com.google.cloud.spanner.SpannerOptions.Builder;
-import com.google.spanner.admin.database.v1.UpdateDatabaseDdlMetadata;
+import com.google.cloud.spanner.TimestampBound;
 
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 import nl.topicus.jdbc.statement.CloudSpannerPreparedStatement;
 import nl.topicus.jdbc.statement.CloudSpannerStatement;
+import nl.topicus.jdbc.statement.ParsedStatementCache;
 import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
+import nl.topicus.jdbc.transaction.KeepAlivePolicy;
 
 /**
  * JDBC Driver for Google Cloud Spanner.
@@ -47,8 +52,12 @@ import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
  * @author loite
  *
  */
-public class CloudSpannerConnection extends AbstractCloudSpannerConnection
+public class CloudSpannerConnection extends AbstractCloudSpannerConnection implements ICloudSpannerAsyncConnection
 {
+	public static final int DEFAULT_PARTITIONED_QUERY_MIN_ROW_COUNT = 10000;
+
+	public static final int DEFAULT_ASYNC_QUERY_MAX_ROWS = 100000;
+
 	public static class CloudSpannerDatabaseSpecification
 	{
 		public final String project;
@@ -74,13 +83,15 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 
 	private final CloudSpannerDatabaseSpecification database;
 
+	private final SpannerPool.Key spannerKey;
+
 	private Spanner spanner;
 
 	private String clientId;
 
 	private DatabaseClient dbClient;
 
-	private DatabaseAdminClient adminClient;
+	private CloudSpannerDatabaseAdmin databaseAdmin;
 
 	private boolean autoCommit = true;
 
@@ -94,27 +105,75 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 
 	private final boolean allowExtendedMode;
 
+	private int extendedModeParallelism = 1;
+
+	private int partitionedQueryParallelism = 1;
+
+	private int partitionedQueryMinRowCount = DEFAULT_PARTITIONED_QUERY_MIN_ROW_COUNT;
+
+	private int asyncQueryMaxRows = DEFAULT_ASYNC_QUERY_MAX_ROWS;
+
+	private boolean coalesceMutations;
+
 	private String simulateProductName;
 
 	private CloudSpannerTransaction transaction;
 
+	private KeepAlivePolicy keepAlivePolicy = KeepAlivePolicy.DEFAULT;
+
 	private Timestamp lastCommitTimestamp;
 
+	private TimestampBound readTimestampBound = TimestampBound.strong();
+
+	private Object metaDataStoreKey;
+
 	private MetaDataStore metaDataStore;
 
+	private long metaDataCacheTTL = MetaDataStore.DEFAULT_TTL;
+
+	private final ParsedStatementCache parsedStatementCache = new ParsedStatementCache();
+
+	private final CloudSpannerMetrics metrics = CloudSpannerMetrics.createConnectionMetrics();
+
 	private static int nextConnectionID = 1;
 
 	private final Logger logger;
 
+	/**
+	 * The shared timer of the driver, acquired by the first statement of this
+	 * connection that needs a query timeout
+	 */
+	private Timer cancelTimer;
+
+	/**
+	 * The last asynchronous operation that must finish before the next
+	 * operation may start, that is the last write, commit or operation of a
+	 * transaction
+	 */
+	private CompletableFuture<?> lastSerialAsyncOperation = CompletableFuture.completedFuture(null);
+
+	/**
+	 * The asynchronous queries in autocommit mode that were submitted after
+	 * {@link #lastSerialAsyncOperation}, and that must finish before the next
+	 * serial operation may start
+	 */
+	private List<CompletableFuture<?>> concurrentAsyncOperations = new ArrayList<>();
+
+	@FunctionalInterface
+	private interface AsyncOperation<T>
+	{
+		T call() throws SQLException;
+	}
+
 	private Map<String, Class<?>> typeMap = new HashMap<>();
 
 	CloudSpannerConnection(CloudSpannerDriver driver, String url, CloudSpannerDatabaseSpecification database,
-			String credentialsPath, String oauthToken, boolean allowExtendedMode, Properties suppliedProperties)
-			throws SQLException
+			SpannerPool.Key spannerKey, boolean allowExtendedMode, Properties suppliedProperties) throws SQLException
 	{
 		this.driver = driver;
 		this.database = database;
 		this.url = url;
+		this.spannerKey = spannerKey;
 		this.allowExtendedMode = allowExtendedMode;
 		this.suppliedProperties = suppliedProperties;
 
@@ -125,44 +184,26 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 			logger.setLogLevel(logLevel);
 		}
 
+		boolean acquired = false;
 		try
 		{
-			Builder builder = SpannerOptions.newBuilder();
-			if (database.project != null)
-				builder.setProjectId(database.project);
-			GoogleCredentials credentials = null;
-			if (credentialsPath != null)
-			{
-				credentials = getCredentialsFromFile(credentialsPath);
-				builder.setCredentials(credentials);
-			}
-			else if (oauthToken != null)
-			{
-				credentials = getCredentialsFromOAuthToken(oauthToken);
-				builder.setCredentials(credentials);
-			}
-			if (credentials != null)
-			{
-				if (credentials instanceof UserCredentials)
-				{
-					clientId = ((UserCredentials) credentials).getClientId();
-				}
-				if (credentials instanceof ServiceAccountCredentials)
-				{
-					clientId = ((ServiceAccountCredentials) credentials).getClientId();
-				}
-			}
-
-			SpannerOptions options = builder.build();
-			spanner = options.getService();
-			dbClient = spanner
-					.getDatabaseClient(DatabaseId.of(options.getProjectId(), database.instance, database.database));
-			adminClient = spanner.getDatabaseAdminClient();
+			SpannerPool.Reference reference = driver.getSpannerPool().acquire(spannerKey);
+			acquired = true;
+			spanner = reference.getSpanner();
+			clientId = reference.getClientId();
+			DatabaseId databaseId = DatabaseId.of(spanner.getOptions().getProjectId(), database.instance,
+					database.database);
+			dbClient = spanner.getDatabaseClient(databaseId);
+			databaseAdmin = reference.getDatabaseAdmin(databaseId);
 			transaction = new CloudSpannerTransaction(dbClient, this);
-			metaDataStore = new MetaDataStore(this);
+			metaDataStoreKey = databaseAdmin.getMetaDataStoreKey();
+			metaDataStore = driver.acquireMetaDataStore(metaDataStoreKey);
+			logger.debug(() -> "Opened connection to " + databaseId + " using client " + clientId);
 		}
 		catch (Exception e)
 		{
+			if (acquired)
+				driver.getSpannerPool().release(spannerKey);
 			throw new SQLException("Error when opening Google Cloud Spanner connection: " + e.getMessage(), e);
 		}
 	}
@@ -218,25 +259,64 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 		return spanner;
 	}
 
+	SpannerPool.Key getSpannerKey()
+	{
+		return spannerKey;
+	}
+
+	Object getMetaDataStoreKey()
+	{
+		return metaDataStoreKey;
+	}
+
 	@Override
 	public void setSimulateProductName(String productName)
 	{
 		this.simulateProductName = productName;
 	}
 
+	/**
+	 *
+	 * @return The policy that determines when idle read/write transactions
+	 *         on this connection are kept alive or rolled back
+	 */
+	public KeepAlivePolicy getKeepAlivePolicy()
+	{
+		return keepAlivePolicy;
+	}
+
+	/**
+	 * Sets the keep-alive policy for read/write transactions on this
+	 * connection. The new policy is used for transactions that are started
+	 * after this method has been called.
+	 *
+	 * @param keepAlivePolicy
+	 *            The policy to use
+	 */
+	public void setKeepAlivePolicy(KeepAlivePolicy keepAlivePolicy)
+	{
+		if (keepAlivePolicy == null)
+			throw new IllegalArgumentException("keepAlivePolicy may not be null");
+		this.keepAlivePolicy = keepAlivePolicy;
+	}
+
 	public Void executeDDL(String sql) throws SQLException
 	{
 		try
 		{
-			Operation<Void, UpdateDatabaseDdlMetadata> operation = adminClient.updateDatabaseDdl(database.instance,
-					database.database, Arrays.asList(sql), null);
-			operation = operation.waitFor();
-			return operation.getResult();
+			databaseAdmin.executeDdl(sql);
+			return null;
 		}
 		catch (SpannerException e)
 		{
 			throw new SQLException("Could not execute DDL statement " + sql + ": " + e.getLocalizedMessage(), e);
 		}
+		finally
+		{
+			// The statement might have changed the tables and indices of the
+			// database, also when the operation failed halfway
+			metaDataStore.clear(sql);
+		}
 	}
 
 	@Override
@@ -303,6 +383,48 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 		transaction.rollback();
 	}
 
+	@Override
+	public TimestampBound getReadTimestampBound() throws SQLException
+	{
+		checkClosed();
+		return readTimestampBound;
+	}
+
+	@Override
+	public void setReadTimestampBound(TimestampBound bound) throws SQLException
+	{
+		checkClosed();
+		if (bound == null)
+			throw new IllegalArgumentException("bound may not be null");
+		this.readTimestampBound = bound;
+	}
+
+	/**
+	 * Determines a timestamp that satisfies the given timestamp bound, so that
+	 * a number of separate reads can all read the data at that timestamp.
+	 * 
+	 * @param bound
+	 *            The timestamp bound that the timestamp must satisfy
+	 * @return The read timestamp
+	 * @throws SQLException
+	 *             if the connection is closed
+	 */
+	public Timestamp getReadTimestamp(TimestampBound bound) throws SQLException
+	{
+		checkClosed();
+		try (ReadOnlyTransaction snapshot = dbClient.singleUseReadOnlyTransaction(bound);
+				com.google.cloud.spanner.ResultSet rs = snapshot
+						.executeQuery(com.google.cloud.spanner.Statement.of("SELECT 1")))
+		{
+			// The read timestamp is only known after the query has returned
+			while (rs.next())
+			{
+				// Only the read timestamp is needed
+			}
+			return snapshot.getReadTimestamp();
+		}
+	}
+
 	public CloudSpannerTransaction getTransaction()
 	{
 		return transaction;
@@ -311,9 +433,13 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 	@Override
 	public void close() throws SQLException
 	{
+		if (closed)
+			return;
 		transaction.rollback();
 		closed = true;
+		releaseTimer();
 		driver.closeConnection(this);
+		logger.debug("Connection closed");
 	}
 
 	@Override
@@ -326,7 +452,7 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 	public CloudSpannerDatabaseMetaData getMetaData() throws SQLException
 	{
 		checkClosed();
-		return new CloudSpannerDatabaseMetaData(this);
+		return databaseAdmin.createMetaData(this);
 	}
 
 	@Override
@@ -452,7 +578,70 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 
 	public TableKeyMetaData getTable(String name) throws SQLException
 	{
-		return metaDataStore.getTable(name);
+		return metaDataStore.getTable(this, name, metaDataCacheTTL);
+	}
+
+	/**
+	 *
+	 * @return The generation of the meta data of the tables of the database,
+	 *         see {@link MetaDataStore#getGeneration()}
+	 */
+	public long getMetaDataGeneration()
+	{
+		return metaDataStore.getGeneration();
+	}
+
+	/**
+	 * Loads the meta data of all tables of the database into the meta data
+	 * store that is shared by all connections to the database.
+	 * 
+	 * @throws SQLException
+	 *             If a database error occurs while loading the meta data
+	 */
+	public void preloadMetaData() throws SQLException
+	{
+		checkClosed();
+		metaDataStore.preload(this, metaDataCacheTTL);
+	}
+
+	/**
+	 * 
+	 * @return The time in milliseconds that the meta data of a table is cached
+	 *         before it is loaded again. 0 means that the meta data is cached
+	 *         until a DDL statement is executed.
+	 */
+	public long getMetaDataCacheTTL()
+	{
+		return metaDataCacheTTL;
+	}
+
+	public void setMetaDataCacheTTL(long metaDataCacheTTL)
+	{
+		if (metaDataCacheTTL < 0)
+			throw new IllegalArgumentException("metaDataCacheTTL may not be negative");
+		this.metaDataCacheTTL = metaDataCacheTTL;
+	}
+
+	/**
+	 * 
+	 * @return The cache of parsed sql statements of this connection. The
+	 *         cache can be used to monitor the number of hits, misses and
+	 *         evictions.
+	 */
+	public ParsedStatementCache getParsedStatementCache()
+	{
+		return parsedStatementCache;
+	}
+
+	/**
+	 * 
+	 * @return The metrics of this connection, such as the latency of queries
+	 *         and commits. The metrics are also recorded in the registry of
+	 *         the driver, see {@link CloudSpannerMetrics#getDriverRegistry()}.
+	 */
+	public CloudSpannerMetrics getMetrics()
+	{
+		return metrics;
 	}
 
 	@Override
@@ -467,6 +656,106 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 		return allowExtendedMode;
 	}
 
+	/**
+	 * 
+	 * @return The maximum number of partitions that a bulk operation in
+	 *         extended mode is executed in parallel in. A value of 1 means that
+	 *         bulk operations are executed sequentially.
+	 */
+	public int getExtendedModeParallelism()
+	{
+		return extendedModeParallelism;
+	}
+
+	public void setExtendedModeParallelism(int extendedModeParallelism)
+	{
+		if (extendedModeParallelism < 1)
+			throw new IllegalArgumentException("extendedModeParallelism must be at least 1");
+		this.extendedModeParallelism = extendedModeParallelism;
+	}
+
+	/**
+	 * 
+	 * @return The maximum number of partitions that a SELECT statement outside
+	 *         a read/write transaction is executed in parallel in. A value of
+	 *         1 means that queries are not partitioned.
+	 */
+	public int getPartitionedQueryParallelism()
+	{
+		return partitionedQueryParallelism;
+	}
+
+	public void setPartitionedQueryParallelism(int partitionedQueryParallelism)
+	{
+		if (partitionedQueryParallelism < 1)
+			throw new IllegalArgumentException("partitionedQueryParallelism must be at least 1");
+		this.partitionedQueryParallelism = partitionedQueryParallelism;
+	}
+
+	/**
+	 * 
+	 * @return The minimum number of rows that a SELECT statement must return
+	 *         before it is partitioned because of
+	 *         {@link #getPartitionedQueryParallelism()}. Statements with a
+	 *         parallelism hint are partitioned regardless of their number of
+	 *         rows.
+	 */
+	public int getPartitionedQueryMinRowCount()
+	{
+		return partitionedQueryMinRowCount;
+	}
+
+	public void setPartitionedQueryMinRowCount(int partitionedQueryMinRowCount)
+	{
+		if (partitionedQueryMinRowCount < 0)
+			throw new IllegalArgumentException("partitionedQueryMinRowCount may not be negative");
+		this.partitionedQueryMinRowCount = partitionedQueryMinRowCount;
+	}
+
+	/**
+	 * 
+	 * @return The maximum number of rows that a query that is executed by
+	 *         {@link #executeQueryAsync(String, Object...)} may return, as its
+	 *         result is read into memory. 0 means that the number of rows is
+	 *         not limited.
+	 */
+	public int getAsyncQueryMaxRows()
+	{
+		return asyncQueryMaxRows;
+	}
+
+	public void setAsyncQueryMaxRows(int asyncQueryMaxRows)
+	{
+		if (asyncQueryMaxRows < 0)
+			throw new IllegalArgumentException("asyncQueryMaxRows may not be negative");
+		this.asyncQueryMaxRows = asyncQueryMaxRows;
+	}
+
+	/**
+	 * 
+	 * @return <code>true</code> if the mutations of a read/write transaction
+	 *         that write the same row are coalesced before the transaction is
+	 *         committed
+	 */
+	public boolean isCoalesceMutations()
+	{
+		return coalesceMutations;
+	}
+
+	/**
+	 * Instructs the connection to coalesce the mutations of the read/write
+	 * transactions that are started after this call. Successive writes of the
+	 * same row are then merged into one mutation, and a write of a row that
+	 * is followed by a delete of the row is not sent to Cloud Spanner.
+	 * 
+	 * @param coalesceMutations
+	 *            <code>true</code> if mutations should be coalesced
+	 */
+	public void setCoalesceMutations(boolean coalesceMutations)
+	{
+		this.coalesceMutations = coalesceMutations;
+	}
+
 	/**
 	 * 
 	 * @return The commit timestamp of the last transaction that committed
@@ -498,6 +787,181 @@ public class CloudSpannerConnection extends AbstractCloudSpannerConnection
 		return logger;
 	}
 
+	private synchronized Timer getTimer()
+	{
+		if (cancelTimer == null)
+			cancelTimer = CloudSpannerDriver.getSharedTimer().getTimer();
+		return cancelTimer;
+	}
+
+	private synchronized void releaseTimer()
+	{
+		if (cancelTimer != null)
+		{
+			cancelTimer = null;
+			CloudSpannerDriver.getSharedTimer().releaseTimer();
+		}
+	}
+
+	/**
+	 * Schedules a task on the shared timer of the driver. This is used by
+	 * statements to cancel queries that exceed their query timeout.
+	 *
+	 * @param timerTask
+	 *            The task to schedule
+	 * @param milliSeconds
+	 *            The delay before the task is run
+	 */
+	public synchronized void addTimerTask(TimerTask timerTask, long milliSeconds)
+	{
+		getTimer().schedule(timerTask, milliSeconds);
+	}
+
+	/**
+	 * Removes all cancelled tasks from the timer of this connection
+	 */
+	public synchronized void purgeTimerTasks()
+	{
+		if (cancelTimer != null)
+			cancelTimer.purge();
+	}
+
+	@Override
+	public CompletableFuture<java.sql.ResultSet> executeQueryAsync(String sql, Object... parameters)
+	{
+		int maxRows = asyncQueryMaxRows;
+		return submitAsync(false, () -> {
+			try (CloudSpannerPreparedStatement ps = prepareStatement(sql, parameters))
+			{
+				return ps.executeQueryAndReadAll(maxRows);
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Integer> executeUpdateAsync(String sql, Object... parameters)
+	{
+		return submitAsync(true, () -> {
+			try (CloudSpannerPreparedStatement ps = prepareStatement(sql, parameters))
+			{
+				return ps.executeUpdate();
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<int[]> executeBatchAsync(String sql, List<Object[]> parameters)
+	{
+		return submitAsync(true, () -> {
+			try (CloudSpannerPreparedStatement ps = prepareStatement(sql))
+			{
+				for (Object[] values : parameters)
+				{
+					setParameters(ps, values);
+					ps.addBatch();
+				}
+				return ps.executeBatch();
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Timestamp> commitAsync()
+	{
+		return submitAsync(true, () -> {
+			commit();
+			return lastCommitTimestamp;
+		});
+	}
+
+	private CloudSpannerPreparedStatement prepareStatement(String sql, Object[] parameters) throws SQLException
+	{
+		CloudSpannerPreparedStatement res = prepareStatement(sql);
+		setParameters(res, parameters);
+		return res;
+	}
+
+	private static void setParameters(CloudSpannerPreparedStatement statement, Object[] parameters)
+			throws SQLException
+	{
+		if (parameters != null)
+		{
+			for (int i = 0; i < parameters.length; i++)
+				statement.setObject(i + 1, parameters[i]);
+		}
+	}
+
+	/**
+	 * Runs an operation on the {@link AsyncExecutor} of the driver. Writes,
+	 * commits and all operations that are submitted while a transaction is
+	 * active are serial: they start when all operations that were submitted
+	 * before them have finished. Writes must also be serial in autocommit
+	 * mode, as bulk operations temporarily switch off autocommit on the
+	 * connection. Queries in autocommit mode only wait for the last serial
+	 * operation, and run concurrently with each other.
+	 */
+	private <T> CompletableFuture<T> submitAsync(boolean serial, AsyncOperation<T> operation)
+	{
+		CompletableFuture<T> res = new CompletableFuture<>();
+		if (closed)
+		{
+			res.completeExceptionally(new SQLException(CONNECTION_CLOSED));
+			return res;
+		}
+		Runnable task = () -> {
+			try
+			{
+				res.complete(operation.call());
+			}
+			catch (SQLException e)
+			{
+				res.completeExceptionally(e);
+			}
+			catch (SpannerException e)
+			{
+				res.completeExceptionally(e.getErrorCode() == ErrorCode.DEADLINE_EXCEEDED
+						? new SQLTimeoutException(e.getMessage(), e) : new SQLException(e.getMessage(), e));
+			}
+			catch (RuntimeException e)
+			{
+				res.completeExceptionally(new SQLException(e.getMessage(), e));
+			}
+		};
+		CompletableFuture<?> previous;
+		synchronized (this)
+		{
+			if (serial || !autoCommit)
+			{
+				concurrentAsyncOperations.add(lastSerialAsyncOperation);
+				previous = CompletableFuture.allOf(
+						concurrentAsyncOperations.toArray(new CompletableFuture<?>[concurrentAsyncOperations.size()]));
+				concurrentAsyncOperations = new ArrayList<>();
+				lastSerialAsyncOperation = res;
+			}
+			else
+			{
+				previous = lastSerialAsyncOperation;
+				concurrentAsyncOperations.removeIf(CompletableFuture::isDone);
+				concurrentAsyncOperations.add(res);
+			}
+		}
+		previous.whenComplete((result, exception) -> executeAsync(task, res));
+		return res;
+	}
+
+	private static void executeAsync(Runnable task, CompletableFuture<?> result)
+	{
+		try
+		{
+			AsyncExecutor.getDefault().execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			result.completeExceptionally(
+					new SQLException("Could not start asynchronous operation: " + e.getMessage(), e));
+		}
+	}
+
 	@Override
 	public Map<String, Class<?>> getTypeMap() throws SQLException
 	{
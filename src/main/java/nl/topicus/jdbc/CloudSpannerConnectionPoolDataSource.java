@@ -105,7 +105,7 @@ public class CloudSpannerConnectionPoolDataSource extends CloudSpannerDataSource
 	@Override
 	public java.util.logging.Logger getParentLogger() throws java.sql.SQLFeatureNotSupportedException
 	{
-		throw new SQLFeatureNotSupportedException("Method getParentLogger() is not supported");
+		return Logger.getParentLogger();
 	}
 
 }
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import javax.sql.DataSource;
 
 import nl.topicus.jdbc.metadata.AbstractCloudSpannerWrapper;
+import nl.topicus.jdbc.transaction.KeepAlivePolicy;
 
 /**
  * A basic DataSource implementation for getting a Connection to a Google Cloud
@@ -37,6 +38,36 @@ public class CloudSpannerDataSource extends AbstractCloudSpannerWrapper implemen
 
 	private boolean allowExtendedMode;
 
+	private long keepAliveInterval = KeepAlivePolicy.DEFAULT_KEEP_ALIVE_INTERVAL;
+
+	private long maxIdleTime = KeepAlivePolicy.DEFAULT_MAX_IDLE_TIME;
+
+	private int numChannels;
+
+	private int minSessions;
+
+	private int maxSessions;
+
+	private long metaDataCacheTTL = MetaDataStore.DEFAULT_TTL;
+
+	private boolean preloadMetaData;
+
+	private int extendedModeParallelism = 1;
+
+	private boolean inMemoryDatabase;
+
+	private long inMemoryLatency;
+
+	private String readTimestampBound;
+
+	private int partitionedQueryParallelism = 1;
+
+	private int partitionedQueryMinRowCount = CloudSpannerConnection.DEFAULT_PARTITIONED_QUERY_MIN_ROW_COUNT;
+
+	private int asyncQueryMaxRows = CloudSpannerConnection.DEFAULT_ASYNC_QUERY_MAX_ROWS;
+
+	private boolean coalesceMutations;
+
 	private PrintWriter logger;
 
 	private int loginTimeout = 0;
@@ -68,7 +99,7 @@ public class CloudSpannerDataSource extends AbstractCloudSpannerWrapper implemen
 	@Override
 	public Logger getParentLogger() throws SQLFeatureNotSupportedException
 	{
-		throw new SQLFeatureNotSupportedException("java.util.logging is not used");
+		return nl.topicus.jdbc.Logger.getParentLogger();
 	}
 
 	@Override
@@ -106,6 +137,32 @@ public class CloudSpannerDataSource extends AbstractCloudSpannerWrapper implemen
 				getSimulateProductName());
 		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.ALLOW_EXTENDED_MODE),
 				isAllowExtendedMode());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.KEEP_ALIVE_INTERVAL),
+				getKeepAliveInterval());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.MAX_IDLE_TIME), getMaxIdleTime());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.NUM_CHANNELS), getNumChannels());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.MIN_SESSIONS), getMinSessions());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.MAX_SESSIONS), getMaxSessions());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.META_DATA_CACHE_TTL),
+				getMetaDataCacheTTL());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.PRELOAD_META_DATA),
+				isPreloadMetaData());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.EXTENDED_MODE_PARALLELISM),
+				getExtendedModeParallelism());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.IN_MEMORY_DATABASE),
+				isInMemoryDatabase());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.IN_MEMORY_LATENCY),
+				getInMemoryLatency());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.READ_TIMESTAMP_BOUND),
+				getReadTimestampBound());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.PARTITIONED_QUERY_PARALLELISM),
+				getPartitionedQueryParallelism());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.PARTITIONED_QUERY_MIN_ROW_COUNT),
+				getPartitionedQueryMinRowCount());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.COALESCE_MUTATIONS),
+				isCoalesceMutations());
+		setProperty(info, stripEqualsSign(CloudSpannerDriver.ConnectionProperties.ASYNC_QUERY_MAX_ROWS),
+				getAsyncQueryMaxRows());
 
 		return info;
 	}
@@ -193,4 +250,154 @@ public class CloudSpannerDataSource extends AbstractCloudSpannerWrapper implemen
 		this.allowExtendedMode = allowExtendedMode;
 	}
 
+	public long getKeepAliveInterval()
+	{
+		return keepAliveInterval;
+	}
+
+	public void setKeepAliveInterval(long keepAliveInterval)
+	{
+		this.keepAliveInterval = keepAliveInterval;
+	}
+
+	public long getMaxIdleTime()
+	{
+		return maxIdleTime;
+	}
+
+	public void setMaxIdleTime(long maxIdleTime)
+	{
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public int getNumChannels()
+	{
+		return numChannels;
+	}
+
+	public void setNumChannels(int numChannels)
+	{
+		this.numChannels = numChannels;
+	}
+
+	public int getMinSessions()
+	{
+		return minSessions;
+	}
+
+	public void setMinSessions(int minSessions)
+	{
+		this.minSessions = minSessions;
+	}
+
+	public int getMaxSessions()
+	{
+		return maxSessions;
+	}
+
+	public void setMaxSessions(int maxSessions)
+	{
+		this.maxSessions = maxSessions;
+	}
+
+	public long getMetaDataCacheTTL()
+	{
+		return metaDataCacheTTL;
+	}
+
+	public void setMetaDataCacheTTL(long metaDataCacheTTL)
+	{
+		this.metaDataCacheTTL = metaDataCacheTTL;
+	}
+
+	public boolean isPreloadMetaData()
+	{
+		return preloadMetaData;
+	}
+
+	public void setPreloadMetaData(boolean preloadMetaData)
+	{
+		this.preloadMetaData = preloadMetaData;
+	}
+
+	public int getExtendedModeParallelism()
+	{
+		return extendedModeParallelism;
+	}
+
+	public void setExtendedModeParallelism(int extendedModeParallelism)
+	{
+		this.extendedModeParallelism = extendedModeParallelism;
+	}
+
+	public boolean isInMemoryDatabase()
+	{
+		return inMemoryDatabase;
+	}
+
+	public void setInMemoryDatabase(boolean inMemoryDatabase)
+	{
+		this.inMemoryDatabase = inMemoryDatabase;
+	}
+
+	public long getInMemoryLatency()
+	{
+		return inMemoryLatency;
+	}
+
+	public void setInMemoryLatency(long inMemoryLatency)
+	{
+		this.inMemoryLatency = inMemoryLatency;
+	}
+
+	public String getReadTimestampBound()
+	{
+		return readTimestampBound;
+	}
+
+	public void setReadTimestampBound(String readTimestampBound)
+	{
+		this.readTimestampBound = readTimestampBound;
+	}
+
+	public int getPartitionedQueryParallelism()
+	{
+		return partitionedQueryParallelism;
+	}
+
+	public void setPartitionedQueryParallelism(int partitionedQueryParallelism)
+	{
+		this.partitionedQueryParallelism = partitionedQueryParallelism;
+	}
+
+	public int getPartitionedQueryMinRowCount()
+	{
+		return partitionedQueryMinRowCount;
+	}
+
+	public void setPartitionedQueryMinRowCount(int partitionedQueryMinRowCount)
+	{
+		this.partitionedQueryMinRowCount = partitionedQueryMinRowCount;
+	}
+
+	public boolean isCoalesceMutations()
+	{
+		return coalesceMutations;
+	}
+
+	public void setCoalesceMutations(boolean coalesceMutations)
+	{
+		this.coalesceMutations = coalesceMutations;
+	}
+
+	public int getAsyncQueryMaxRows()
+	{
+		return asyncQueryMaxRows;
+	}
+
+	public void setAsyncQueryMaxRows(int asyncQueryMaxRows)
+	{
+		this.asyncQueryMaxRows = asyncQueryMaxRows;
+	}
+
 }
@@ -0,0 +1,42 @@
+package nl.topicus.jdbc;
+
+import com.google.cloud.spanner.SpannerException;
+
+/**
+ * The administrative operations of a database that a
+ * {@link CloudSpannerConnection} needs: executing DDL statements and creating
+ * the {@link java.sql.DatabaseMetaData} of the connection. The operations are
+ * implemented by the Cloud Spanner database admin client and by the in-memory
+ * database, so a connection does not need to know which one it uses.
+ *
+ * @author loite
+ *
+ */
+public interface CloudSpannerDatabaseAdmin
+{
+	/**
+	 * Executes a DDL statement and waits until it has finished
+	 *
+	 * @param sql
+	 *            The DDL statement to execute
+	 * @throws SpannerException
+	 *             If the statement could not be executed
+	 */
+	void executeDdl(String sql);
+
+	/**
+	 *
+	 * @param connection
+	 *            The connection to create the metadata for
+	 * @return The database metadata of the given connection
+	 */
+	CloudSpannerDatabaseMetaData createMetaData(CloudSpannerConnection connection);
+
+	/**
+	 *
+	 * @return The key of the {@link MetaDataStore} that is shared by all
+	 *         connections to this database
+	 */
+	Object getMetaDataStoreKey();
+
+}
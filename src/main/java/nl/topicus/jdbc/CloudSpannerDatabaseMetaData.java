@@ -20,7 +20,7 @@ public class CloudSpannerDatabaseMetaData extends AbstractCloudSpannerDatabaseMe
 
 	private CloudSpannerConnection connection;
 
-	CloudSpannerDatabaseMetaData(CloudSpannerConnection connection)
+	protected CloudSpannerDatabaseMetaData(CloudSpannerConnection connection)
 	{
 		this.connection = connection;
 	}
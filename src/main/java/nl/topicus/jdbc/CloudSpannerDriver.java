@@ -6,15 +6,16 @@ import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
-import com.google.cloud.spanner.Spanner;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.TimestampBound;
 
 import nl.topicus.jdbc.CloudSpannerConnection.CloudSpannerDatabaseSpecification;
+import nl.topicus.jdbc.transaction.KeepAlivePolicy;
 import nl.topicus.jdbc.util.SharedTimer;
 
 public class CloudSpannerDriver implements Driver
@@ -60,6 +61,36 @@ public class CloudSpannerDriver implements Driver
 
 		static final String ALLOW_EXTENDED_MODE = "AllowExtendedMode=";
 
+		static final String KEEP_ALIVE_INTERVAL = "KeepAliveInterval=";
+
+		static final String MAX_IDLE_TIME = "MaxIdleTime=";
+
+		static final String NUM_CHANNELS = "NumChannels=";
+
+		static final String MIN_SESSIONS = "MinSessions=";
+
+		static final String MAX_SESSIONS = "MaxSessions=";
+
+		static final String META_DATA_CACHE_TTL = "MetaDataCacheTTL=";
+
+		static final String PRELOAD_META_DATA = "PreloadMetaData=";
+
+		static final String EXTENDED_MODE_PARALLELISM = "ExtendedModeParallelism=";
+
+		static final String IN_MEMORY_DATABASE = "InMemoryDatabase=";
+
+		static final String IN_MEMORY_LATENCY = "InMemoryLatency=";
+
+		static final String READ_TIMESTAMP_BOUND = "ReadTimestampBound=";
+
+		static final String PARTITIONED_QUERY_PARALLELISM = "PartitionedQueryParallelism=";
+
+		static final String PARTITIONED_QUERY_MIN_ROW_COUNT = "PartitionedQueryMinRowCount=";
+
+		static final String COALESCE_MUTATIONS = "CoalesceMutations=";
+
+		static final String ASYNC_QUERY_MAX_ROWS = "AsyncQueryMaxRows=";
+
 		String project = null;
 		String instance = null;
 		String database = null;
@@ -67,6 +98,21 @@ public class CloudSpannerDriver implements Driver
 		String oauthToken = null;
 		String productName = null;
 		boolean allowExtendedMode = false;
+		long keepAliveInterval = KeepAlivePolicy.DEFAULT_KEEP_ALIVE_INTERVAL;
+		long maxIdleTime = KeepAlivePolicy.DEFAULT_MAX_IDLE_TIME;
+		int numChannels = 0;
+		int minSessions = 0;
+		int maxSessions = 0;
+		long metaDataCacheTTL = MetaDataStore.DEFAULT_TTL;
+		boolean preloadMetaData = false;
+		int extendedModeParallelism = 1;
+		boolean inMemoryDatabase = false;
+		long inMemoryLatency = 0L;
+		String readTimestampBound = null;
+		int partitionedQueryParallelism = 1;
+		int partitionedQueryMinRowCount = CloudSpannerConnection.DEFAULT_PARTITIONED_QUERY_MIN_ROW_COUNT;
+		boolean coalesceMutations = false;
+		int asyncQueryMaxRows = CloudSpannerConnection.DEFAULT_ASYNC_QUERY_MAX_ROWS;
 
 		static ConnectionProperties parse(String url) throws SQLException
 		{
@@ -104,6 +150,46 @@ public class CloudSpannerDriver implements Driver
 									+ conPart.substring(ALLOW_EXTENDED_MODE.length()), e);
 						}
 					}
+					else if (conPartLower.startsWith(KEEP_ALIVE_INTERVAL.toLowerCase()))
+						res.keepAliveInterval = parseMillis(KEEP_ALIVE_INTERVAL,
+								conPart.substring(KEEP_ALIVE_INTERVAL.length()));
+					else if (conPartLower.startsWith(MAX_IDLE_TIME.toLowerCase()))
+						res.maxIdleTime = parseMillis(MAX_IDLE_TIME, conPart.substring(MAX_IDLE_TIME.length()));
+					else if (conPartLower.startsWith(NUM_CHANNELS.toLowerCase()))
+						res.numChannels = parseCount(NUM_CHANNELS, conPart.substring(NUM_CHANNELS.length()));
+					else if (conPartLower.startsWith(MIN_SESSIONS.toLowerCase()))
+						res.minSessions = parseCount(MIN_SESSIONS, conPart.substring(MIN_SESSIONS.length()));
+					else if (conPartLower.startsWith(MAX_SESSIONS.toLowerCase()))
+						res.maxSessions = parseCount(MAX_SESSIONS, conPart.substring(MAX_SESSIONS.length()));
+					else if (conPartLower.startsWith(META_DATA_CACHE_TTL.toLowerCase()))
+						res.metaDataCacheTTL = parseMillis(META_DATA_CACHE_TTL,
+								conPart.substring(META_DATA_CACHE_TTL.length()));
+					else if (conPartLower.startsWith(PRELOAD_META_DATA.toLowerCase()))
+						res.preloadMetaData = Boolean.valueOf(conPart.substring(PRELOAD_META_DATA.length()));
+					else if (conPartLower.startsWith(EXTENDED_MODE_PARALLELISM.toLowerCase()))
+						res.extendedModeParallelism = parseParallelism(EXTENDED_MODE_PARALLELISM,
+								conPart.substring(EXTENDED_MODE_PARALLELISM.length()));
+					else if (conPartLower.startsWith(IN_MEMORY_DATABASE.toLowerCase()))
+						res.inMemoryDatabase = Boolean.valueOf(conPart.substring(IN_MEMORY_DATABASE.length()));
+					else if (conPartLower.startsWith(IN_MEMORY_LATENCY.toLowerCase()))
+						res.inMemoryLatency = parseMillis(IN_MEMORY_LATENCY,
+								conPart.substring(IN_MEMORY_LATENCY.length()));
+					else if (conPartLower.startsWith(READ_TIMESTAMP_BOUND.toLowerCase()))
+					{
+						res.readTimestampBound = conPart.substring(READ_TIMESTAMP_BOUND.length());
+						parseReadTimestampBound(res.readTimestampBound);
+					}
+					else if (conPartLower.startsWith(PARTITIONED_QUERY_PARALLELISM.toLowerCase()))
+						res.partitionedQueryParallelism = parseParallelism(PARTITIONED_QUERY_PARALLELISM,
+								conPart.substring(PARTITIONED_QUERY_PARALLELISM.length()));
+					else if (conPartLower.startsWith(PARTITIONED_QUERY_MIN_ROW_COUNT.toLowerCase()))
+						res.partitionedQueryMinRowCount = parseCount(PARTITIONED_QUERY_MIN_ROW_COUNT,
+								conPart.substring(PARTITIONED_QUERY_MIN_ROW_COUNT.length()));
+					else if (conPartLower.startsWith(COALESCE_MUTATIONS.toLowerCase()))
+						res.coalesceMutations = Boolean.valueOf(conPart.substring(COALESCE_MUTATIONS.length()));
+					else if (conPartLower.startsWith(ASYNC_QUERY_MAX_ROWS.toLowerCase()))
+						res.asyncQueryMaxRows = parseCount(ASYNC_QUERY_MAX_ROWS,
+								conPart.substring(ASYNC_QUERY_MAX_ROWS.length()));
 					else
 						throw new SQLException("Unknown URL parameter " + conPart);
 				}
@@ -111,6 +197,91 @@ public class CloudSpannerDriver implements Driver
 			return res;
 		}
 
+		private static long parseMillis(String urlPart, String value) throws SQLException
+		{
+			try
+			{
+				long res = Long.parseLong(value);
+				if (res < 0)
+					throw new SQLException("Invalid value for " + urlPart + value + ": value may not be negative");
+				return res;
+			}
+			catch (NumberFormatException e)
+			{
+				throw new SQLException("Invalid value for " + urlPart + value, e);
+			}
+		}
+
+		/**
+		 * Parses the value of the ReadTimestampBound property. Valid values
+		 * are Strong, ExactStaleness:milliseconds, MaxStaleness:milliseconds,
+		 * ReadTimestamp:timestamp and MinReadTimestamp:timestamp, where
+		 * timestamp is in RFC 3339 format, for example
+		 * 2018-01-01T10:00:00.000Z.
+		 *
+		 * @param value
+		 *            The value to parse. <code>null</code> is interpreted as
+		 *            Strong.
+		 * @return The timestamp bound
+		 * @throws SQLException
+		 *             if the value is invalid
+		 */
+		static TimestampBound parseReadTimestampBound(String value) throws SQLException
+		{
+			if (value == null || value.equalsIgnoreCase("Strong"))
+				return TimestampBound.strong();
+			int separator = value.indexOf(':');
+			if (separator > 0)
+			{
+				String mode = value.substring(0, separator);
+				String argument = value.substring(separator + 1);
+				try
+				{
+					if (mode.equalsIgnoreCase("ExactStaleness"))
+						return TimestampBound.ofExactStaleness(parseMillis(READ_TIMESTAMP_BOUND, argument),
+								TimeUnit.MILLISECONDS);
+					if (mode.equalsIgnoreCase("MaxStaleness"))
+						return TimestampBound.ofMaxStaleness(parseMillis(READ_TIMESTAMP_BOUND, argument),
+								TimeUnit.MILLISECONDS);
+					if (mode.equalsIgnoreCase("ReadTimestamp"))
+						return TimestampBound.ofReadTimestamp(Timestamp.parseTimestamp(argument));
+					if (mode.equalsIgnoreCase("MinReadTimestamp"))
+						return TimestampBound.ofMinReadTimestamp(Timestamp.parseTimestamp(argument));
+				}
+				catch (RuntimeException e)
+				{
+					// Invalid timestamps throw a DateTimeParseException,
+					// negative staleness an IllegalArgumentException
+					throw new SQLException("Invalid value for " + READ_TIMESTAMP_BOUND + value, e);
+				}
+			}
+			throw new SQLException("Invalid value for " + READ_TIMESTAMP_BOUND + value
+					+ ": expected Strong, ExactStaleness:<ms>, MaxStaleness:<ms>, ReadTimestamp:<timestamp> or MinReadTimestamp:<timestamp>");
+		}
+
+		private static int parseCount(String urlPart, String value) throws SQLException
+		{
+			try
+			{
+				int res = Integer.parseInt(value);
+				if (res < 0)
+					throw new SQLException("Invalid value for " + urlPart + value + ": value may not be negative");
+				return res;
+			}
+			catch (NumberFormatException e)
+			{
+				throw new SQLException("Invalid value for " + urlPart + value, e);
+			}
+		}
+
+		private static int parseParallelism(String urlPart, String value) throws SQLException
+		{
+			int res = parseCount(urlPart, value);
+			if (res == 0)
+				throw new SQLException("Invalid value for " + urlPart + value + ": value must be at least 1");
+			return res;
+		}
+
 		void setAdditionalConnectionProperties(Properties info) throws SQLException
 		{
 			if (info != null)
@@ -147,6 +318,68 @@ public class CloudSpannerDriver implements Driver
 							"Invalid value for " + ALLOW_EXTENDED_MODE.substring(0, ALLOW_EXTENDED_MODE.length() - 1),
 							e);
 				}
+				String keepAliveIntervalValue = lowerCaseInfo
+						.getProperty(KEEP_ALIVE_INTERVAL.substring(0, KEEP_ALIVE_INTERVAL.length() - 1).toLowerCase());
+				if (keepAliveIntervalValue != null)
+					keepAliveInterval = parseMillis(KEEP_ALIVE_INTERVAL, keepAliveIntervalValue);
+				String maxIdleTimeValue = lowerCaseInfo
+						.getProperty(MAX_IDLE_TIME.substring(0, MAX_IDLE_TIME.length() - 1).toLowerCase());
+				if (maxIdleTimeValue != null)
+					maxIdleTime = parseMillis(MAX_IDLE_TIME, maxIdleTimeValue);
+				String numChannelsValue = lowerCaseInfo
+						.getProperty(NUM_CHANNELS.substring(0, NUM_CHANNELS.length() - 1).toLowerCase());
+				if (numChannelsValue != null)
+					numChannels = parseCount(NUM_CHANNELS, numChannelsValue);
+				String minSessionsValue = lowerCaseInfo
+						.getProperty(MIN_SESSIONS.substring(0, MIN_SESSIONS.length() - 1).toLowerCase());
+				if (minSessionsValue != null)
+					minSessions = parseCount(MIN_SESSIONS, minSessionsValue);
+				String maxSessionsValue = lowerCaseInfo
+						.getProperty(MAX_SESSIONS.substring(0, MAX_SESSIONS.length() - 1).toLowerCase());
+				if (maxSessionsValue != null)
+					maxSessions = parseCount(MAX_SESSIONS, maxSessionsValue);
+				String metaDataCacheTTLValue = lowerCaseInfo
+						.getProperty(META_DATA_CACHE_TTL.substring(0, META_DATA_CACHE_TTL.length() - 1).toLowerCase());
+				if (metaDataCacheTTLValue != null)
+					metaDataCacheTTL = parseMillis(META_DATA_CACHE_TTL, metaDataCacheTTLValue);
+				preloadMetaData = Boolean.valueOf(lowerCaseInfo.getProperty(
+						PRELOAD_META_DATA.substring(0, PRELOAD_META_DATA.length() - 1).toLowerCase(),
+						String.valueOf(preloadMetaData)));
+				String extendedModeParallelismValue = lowerCaseInfo.getProperty(EXTENDED_MODE_PARALLELISM
+						.substring(0, EXTENDED_MODE_PARALLELISM.length() - 1).toLowerCase());
+				if (extendedModeParallelismValue != null)
+					extendedModeParallelism = parseParallelism(EXTENDED_MODE_PARALLELISM, extendedModeParallelismValue);
+				inMemoryDatabase = Boolean.valueOf(lowerCaseInfo.getProperty(
+						IN_MEMORY_DATABASE.substring(0, IN_MEMORY_DATABASE.length() - 1).toLowerCase(),
+						String.valueOf(inMemoryDatabase)));
+				String inMemoryLatencyValue = lowerCaseInfo
+						.getProperty(IN_MEMORY_LATENCY.substring(0, IN_MEMORY_LATENCY.length() - 1).toLowerCase());
+				if (inMemoryLatencyValue != null)
+					inMemoryLatency = parseMillis(IN_MEMORY_LATENCY, inMemoryLatencyValue);
+				String readTimestampBoundValue = lowerCaseInfo.getProperty(
+						READ_TIMESTAMP_BOUND.substring(0, READ_TIMESTAMP_BOUND.length() - 1).toLowerCase());
+				if (readTimestampBoundValue != null)
+				{
+					parseReadTimestampBound(readTimestampBoundValue);
+					readTimestampBound = readTimestampBoundValue;
+				}
+				String partitionedQueryParallelismValue = lowerCaseInfo.getProperty(PARTITIONED_QUERY_PARALLELISM
+						.substring(0, PARTITIONED_QUERY_PARALLELISM.length() - 1).toLowerCase());
+				if (partitionedQueryParallelismValue != null)
+					partitionedQueryParallelism = parseParallelism(PARTITIONED_QUERY_PARALLELISM,
+							partitionedQueryParallelismValue);
+				String partitionedQueryMinRowCountValue = lowerCaseInfo.getProperty(PARTITIONED_QUERY_MIN_ROW_COUNT
+						.substring(0, PARTITIONED_QUERY_MIN_ROW_COUNT.length() - 1).toLowerCase());
+				if (partitionedQueryMinRowCountValue != null)
+					partitionedQueryMinRowCount = parseCount(PARTITIONED_QUERY_MIN_ROW_COUNT,
+							partitionedQueryMinRowCountValue);
+				coalesceMutations = Boolean.valueOf(lowerCaseInfo.getProperty(
+						COALESCE_MUTATIONS.substring(0, COALESCE_MUTATIONS.length() - 1).toLowerCase(),
+						String.valueOf(coalesceMutations)));
+				String asyncQueryMaxRowsValue = lowerCaseInfo.getProperty(
+						ASYNC_QUERY_MAX_ROWS.substring(0, ASYNC_QUERY_MAX_ROWS.length() - 1).toLowerCase());
+				if (asyncQueryMaxRowsValue != null)
+					asyncQueryMaxRows = parseCount(ASYNC_QUERY_MAX_ROWS, asyncQueryMaxRowsValue);
 				if (!logLevelSet)
 					setLogLevel(OFF);
 			}
@@ -154,7 +387,7 @@ public class CloudSpannerDriver implements Driver
 
 		DriverPropertyInfo[] getPropertyInfo()
 		{
-			DriverPropertyInfo[] res = new DriverPropertyInfo[7];
+			DriverPropertyInfo[] res = new DriverPropertyInfo[22];
 			res[0] = new DriverPropertyInfo(PROJECT_URL_PART.substring(0, PROJECT_URL_PART.length() - 1), project);
 			res[0].description = "Google Cloud Project id";
 			res[1] = new DriverPropertyInfo(INSTANCE_URL_PART.substring(0, INSTANCE_URL_PART.length() - 1), instance);
@@ -172,16 +405,74 @@ public class CloudSpannerDriver implements Driver
 			res[6] = new DriverPropertyInfo(ALLOW_EXTENDED_MODE.substring(0, ALLOW_EXTENDED_MODE.length() - 1),
 					String.valueOf(allowExtendedMode));
 			res[6].description = "Allow the driver to enter 'extended' mode for bulk operations. A value of false (default) indicates that the driver should never enter extended mode. If this property is set to true, the driver will execute all bulk DML-operations in a separate transaction when the number of records affected is greater than what will exceed the limitations of Cloud Spanner.";
+			res[7] = new DriverPropertyInfo(KEEP_ALIVE_INTERVAL.substring(0, KEEP_ALIVE_INTERVAL.length() - 1),
+					String.valueOf(keepAliveInterval));
+			res[7].description = "The time in milliseconds that a read/write transaction that has executed one or more queries may be idle before the driver sends a keep-alive statement to prevent Cloud Spanner from aborting the transaction. 0 disables keep-alives. Default is 5000.";
+			res[8] = new DriverPropertyInfo(MAX_IDLE_TIME.substring(0, MAX_IDLE_TIME.length() - 1),
+					String.valueOf(maxIdleTime));
+			res[8].description = "The time in milliseconds that a read/write transaction may be idle before the driver rolls it back automatically. 0 (default) means that idle transactions are never rolled back automatically.";
+			res[9] = new DriverPropertyInfo(NUM_CHANNELS.substring(0, NUM_CHANNELS.length() - 1),
+					String.valueOf(numChannels));
+			res[9].description = "The number of gRPC channels to use for the connection. 0 (default) uses the default of the Cloud Spanner client library. Connections with the same project, credentials and channel and session settings share their channels.";
+			res[10] = new DriverPropertyInfo(MIN_SESSIONS.substring(0, MIN_SESSIONS.length() - 1),
+					String.valueOf(minSessions));
+			res[10].description = "The minimum number of sessions in the session pool. 0 (default) uses the default of the Cloud Spanner client library.";
+			res[11] = new DriverPropertyInfo(MAX_SESSIONS.substring(0, MAX_SESSIONS.length() - 1),
+					String.valueOf(maxSessions));
+			res[11].description = "The maximum number of sessions in the session pool. 0 (default) uses the default of the Cloud Spanner client library.";
+			res[12] = new DriverPropertyInfo(META_DATA_CACHE_TTL.substring(0, META_DATA_CACHE_TTL.length() - 1),
+					String.valueOf(metaDataCacheTTL));
+			res[12].description = "The time in milliseconds that the meta data of a table, such as its key columns, is cached by the driver. The cache is shared by all open connections to the same database. The meta data of a table is removed from the cache when a DDL statement that changes the table is executed by the driver. 0 means that the meta data is cached until such a DDL statement is executed. Default is 300000.";
+			res[13] = new DriverPropertyInfo(PRELOAD_META_DATA.substring(0, PRELOAD_META_DATA.length() - 1),
+					String.valueOf(preloadMetaData));
+			res[13].description = "Load the meta data of all tables of the database into the cache when a connection is opened. Default is false.";
+			res[14] = new DriverPropertyInfo(
+					EXTENDED_MODE_PARALLELISM.substring(0, EXTENDED_MODE_PARALLELISM.length() - 1),
+					String.valueOf(extendedModeParallelism));
+			res[14].description = "The maximum number of partitions that a bulk operation in extended mode is split into and executed in parallel. Each partition reads a range of the primary key of the source table and commits on its own connection. Default is 1, which means that bulk operations are executed sequentially.";
+			res[15] = new DriverPropertyInfo(IN_MEMORY_DATABASE.substring(0, IN_MEMORY_DATABASE.length() - 1),
+					String.valueOf(inMemoryDatabase));
+			res[15].description = "Connect to an in-memory database instead of Cloud Spanner. The in-memory database supports DDL, mutations, key reads and simple single table queries, and can be used to test the driver and applications without a network connection. The in-memory databases live as long as the JVM. Default is false.";
+			res[16] = new DriverPropertyInfo(IN_MEMORY_LATENCY.substring(0, IN_MEMORY_LATENCY.length() - 1),
+					String.valueOf(inMemoryLatency));
+			res[16].description = "The time in milliseconds that each read, query and commit on an in-memory database waits to simulate the round trip to Cloud Spanner. Default is 0.";
+			res[17] = new DriverPropertyInfo(READ_TIMESTAMP_BOUND.substring(0, READ_TIMESTAMP_BOUND.length() - 1),
+					readTimestampBound);
+			res[17].description = "The timestamp bound of reads outside read/write transactions, that is queries in autocommit mode and read-only transactions. Strong (default) reads the latest data. ExactStaleness:<ms> and MaxStaleness:<ms> allow the data to be stale by the given number of milliseconds, ReadTimestamp:<timestamp> and MinReadTimestamp:<timestamp> read the data at or after the given timestamp, for example 2018-01-01T10:00:00Z. Stale reads can be served by the nearest replica without waiting for writes. MaxStaleness and MinReadTimestamp can only be used in autocommit mode.";
+			res[18] = new DriverPropertyInfo(
+					PARTITIONED_QUERY_PARALLELISM.substring(0, PARTITIONED_QUERY_PARALLELISM.length() - 1),
+					String.valueOf(partitionedQueryParallelism));
+			res[18].description = "The maximum number of partitions that a SELECT statement on a single table is split into outside read/write transactions. The partitions read ranges of the primary key of the table from one snapshot in parallel, and their rows are merged into one result set. Can be overridden per statement with the hint /*@PARALLELISM=n*/ at the start of the statement. Default is 1, which means that queries are not partitioned.";
+			res[19] = new DriverPropertyInfo(COALESCE_MUTATIONS.substring(0, COALESCE_MUTATIONS.length() - 1),
+					String.valueOf(coalesceMutations));
+			res[19].description = "Coalesce the mutations of a read/write transaction that write the same row before they are sent to Cloud Spanner. Successive writes of a row are merged into one mutation, and a write of a row that is followed by a delete of the row is dropped. Default is false.";
+			res[20] = new DriverPropertyInfo(
+					PARTITIONED_QUERY_MIN_ROW_COUNT.substring(0, PARTITIONED_QUERY_MIN_ROW_COUNT.length() - 1),
+					String.valueOf(partitionedQueryMinRowCount));
+			res[20].description = "The minimum number of rows that a SELECT statement must return before it is partitioned because of the PartitionedQueryParallelism of the connection. Each partition reads at least this number of rows divided by the parallelism. Statements with the hint /*@PARALLELISM=n*/ are always partitioned. Default is 10000.";
+			res[21] = new DriverPropertyInfo(ASYNC_QUERY_MAX_ROWS.substring(0, ASYNC_QUERY_MAX_ROWS.length() - 1),
+					String.valueOf(asyncQueryMaxRows));
+			res[21].description = "The maximum number of rows that a query that is executed asynchronously may return. The result of an asynchronous query is read into memory, and a query that returns more rows fails instead of exhausting the heap. 0 means that the number of rows is not limited. Default is 100000.";
 
 			return res;
 		}
 	}
 
 	/**
-	 * Keep track of all connections that are opened, so that we know which
-	 * Spanner instances to close.
+	 * Keep track of all Spanner instances that are used by the open
+	 * connections, so that connections with the same settings can share them,
+	 * and so that we know which Spanner instances to close.
 	 */
-	private Map<Spanner, List<CloudSpannerConnection>> connections = new HashMap<>();
+	private final SpannerPool spannerPool = new SpannerPool();
+
+	/**
+	 * The meta data of the tables of each database that the driver is
+	 * connected to, shared by all open connections to that database. The
+	 * stores of Cloud Spanner databases are keyed by the name of the database,
+	 * the stores of in-memory databases by the database itself. A store is
+	 * removed when the last connection that uses it is closed.
+	 */
+	private final ConcurrentMap<Object, MetaDataStore> metaDataStores = new ConcurrentHashMap<>();
 
 	/**
 	 * Connects to a Google Cloud Spanner database.
@@ -210,39 +501,60 @@ public class CloudSpannerDriver implements Driver
 
 		CloudSpannerDatabaseSpecification database = new CloudSpannerDatabaseSpecification(properties.project,
 				properties.instance, properties.database);
-		CloudSpannerConnection connection = new CloudSpannerConnection(this, url, database, properties.keyFile,
-				properties.oauthToken, properties.allowExtendedMode, info);
+		SpannerPool.Key spannerKey = new SpannerPool.Key(properties.project, properties.keyFile,
+				properties.oauthToken, properties.numChannels, properties.minSessions, properties.maxSessions,
+				properties.inMemoryDatabase, properties.inMemoryLatency);
+		CloudSpannerConnection connection = new CloudSpannerConnection(this, url, database, spannerKey,
+				properties.allowExtendedMode, info);
 		connection.setSimulateProductName(properties.productName);
-		registerConnection(connection);
+		connection.setKeepAlivePolicy(new KeepAlivePolicy(properties.keepAliveInterval, properties.maxIdleTime));
+		connection.setMetaDataCacheTTL(properties.metaDataCacheTTL);
+		connection.setExtendedModeParallelism(properties.extendedModeParallelism);
+		connection.setPartitionedQueryParallelism(properties.partitionedQueryParallelism);
+		connection.setPartitionedQueryMinRowCount(properties.partitionedQueryMinRowCount);
+		connection.setCoalesceMutations(properties.coalesceMutations);
+		connection.setAsyncQueryMaxRows(properties.asyncQueryMaxRows);
+		connection.setReadTimestampBound(ConnectionProperties.parseReadTimestampBound(properties.readTimestampBound));
+		if (properties.preloadMetaData)
+		{
+			try
+			{
+				connection.preloadMetaData();
+			}
+			catch (SQLException e)
+			{
+				connection.close();
+				throw e;
+			}
+		}
 
 		return connection;
 	}
 
-	private void registerConnection(CloudSpannerConnection connection)
+	SpannerPool getSpannerPool()
 	{
-		List<CloudSpannerConnection> list = connections.get(connection.getSpanner());
-		if (list == null)
-		{
-			list = new ArrayList<>();
-			connections.put(connection.getSpanner(), list);
-		}
-		list.add(connection);
+		return spannerPool;
 	}
 
-	void closeConnection(CloudSpannerConnection connection)
+	MetaDataStore acquireMetaDataStore(Object key)
 	{
-		List<CloudSpannerConnection> list = connections.get(connection.getSpanner());
-		if (list == null)
-			throw new IllegalStateException("Connection is not registered");
-		if (!list.remove(connection))
-			throw new IllegalStateException("Connection is not registered");
+		return metaDataStores.compute(key, (k, store) -> {
+			MetaDataStore res = store == null ? new MetaDataStore() : store;
+			res.connections++;
+			return res;
+		});
+	}
 
-		if (list.isEmpty())
-		{
-			Spanner spanner = connection.getSpanner();
-			connections.remove(spanner);
-			spanner.close();
-		}
+	void releaseMetaDataStore(Object key)
+	{
+		if (key != null)
+			metaDataStores.computeIfPresent(key, (k, store) -> --store.connections == 0 ? null : store);
+	}
+
+	void closeConnection(CloudSpannerConnection connection)
+	{
+		releaseMetaDataStore(connection.getMetaDataStoreKey());
+		spannerPool.release(connection.getSpannerKey());
 	}
 
 	@Override
@@ -298,7 +610,7 @@ public class CloudSpannerDriver implements Driver
 	@Override
 	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException
 	{
-		throw new SQLFeatureNotSupportedException("java.util.logging is not used");
+		return Logger.getParentLogger();
 	}
 
 	public static String quoteIdentifier(String identifier)
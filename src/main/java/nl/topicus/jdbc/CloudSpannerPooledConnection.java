@@ -566,7 +566,7 @@ public class CloudSpannerPooledConnection implements PooledConnection
 
 	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException
 	{
-		throw new SQLFeatureNotSupportedException("Method getParentLogger() is not supported");
+		return Logger.getParentLogger();
 	}
 
 }
@@ -0,0 +1,83 @@
+package nl.topicus.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.cloud.Timestamp;
+
+/**
+ * Asynchronous extension of a Cloud Spanner JDBC connection. Get an instance
+ * by calling <code>connection.unwrap(ICloudSpannerAsyncConnection.class)</code>.
+ *
+ * The operations run on the threads of the {@link AsyncExecutor} of the
+ * driver, and the returned futures are completed on these threads. A future
+ * of an operation that fails is completed exceptionally with an
+ * {@link SQLException}. Queries that are submitted while the connection is in
+ * autocommit mode run concurrently with each other. Updates and batches,
+ * operations that are submitted while a transaction is active, and calls to
+ * {@link #commitAsync()}, run one at a time in the order in which they were
+ * submitted, after all operations that were submitted before them have
+ * finished. Do not use the synchronous methods of the connection while
+ * asynchronous updates or operations of a transaction are still running.
+ *
+ * @author loite
+ *
+ */
+public interface ICloudSpannerAsyncConnection
+{
+	/**
+	 * Executes a query and reads its complete result into memory, so that the
+	 * returned result set can be read without waiting for Cloud Spanner. The
+	 * number of rows that the query may return is limited by the
+	 * AsyncQueryMaxRows property of the connection. A query that returns more
+	 * rows fails with an {@link SQLException}. Use a limit in the query or a
+	 * synchronous statement to read large results.
+	 *
+	 * @param sql
+	 *            The query to execute, with a question mark for each parameter
+	 * @param parameters
+	 *            The values of the parameters, see
+	 *            {@link java.sql.PreparedStatement#setObject(int, Object)}
+	 * @return A future for the result of the query
+	 */
+	public CompletableFuture<ResultSet> executeQueryAsync(String sql, Object... parameters);
+
+	/**
+	 * Executes an insert, update, delete or DDL statement.
+	 *
+	 * @param sql
+	 *            The statement to execute, with a question mark for each
+	 *            parameter
+	 * @param parameters
+	 *            The values of the parameters, see
+	 *            {@link java.sql.PreparedStatement#setObject(int, Object)}
+	 * @return A future for the update count of the statement
+	 */
+	public CompletableFuture<Integer> executeUpdateAsync(String sql, Object... parameters);
+
+	/**
+	 * Executes an insert, update or delete statement once for each set of
+	 * parameters as one batch, see {@link java.sql.Statement#executeBatch()}.
+	 *
+	 * @param sql
+	 *            The statement to execute, with a question mark for each
+	 *            parameter
+	 * @param parameters
+	 *            The values of the parameters of each execution
+	 * @return A future for the update counts of the batch
+	 */
+	public CompletableFuture<int[]> executeBatchAsync(String sql, List<Object[]> parameters);
+
+	/**
+	 * Commits the current transaction after all operations that were
+	 * submitted before have finished, see {@link Connection#commit()}.
+	 *
+	 * @return A future for the commit timestamp, or <code>null</code> if
+	 *         there was no read/write transaction to commit
+	 */
+	public CompletableFuture<Timestamp> commitAsync();
+
+}
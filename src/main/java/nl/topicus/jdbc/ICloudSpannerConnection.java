@@ -1,9 +1,11 @@
 package nl.topicus.jdbc;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Properties;
 
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.TimestampBound;
 
 /**
  * Interface containing all extra methods that are provided by
@@ -28,4 +30,22 @@ public interface ICloudSpannerConnection extends Connection
 
 	public Timestamp getLastCommitTimestamp();
 
+	public TimestampBound getReadTimestampBound() throws SQLException;
+
+	/**
+	 * Sets the timestamp bound of the reads of this connection outside
+	 * read/write transactions, that is queries in autocommit mode and
+	 * read-only transactions. Stale reads can be served by the nearest replica
+	 * without waiting for pending writes. Bounds with a maximum staleness or a
+	 * minimum read timestamp can only be used in autocommit mode. The new
+	 * bound is used from the next query or read-only transaction on.
+	 *
+	 * @param bound
+	 *            The timestamp bound to use, {@link TimestampBound#strong()}
+	 *            to read the latest data (default)
+	 * @throws SQLException
+	 *             if the connection is closed
+	 */
+	public void setReadTimestampBound(TimestampBound bound) throws SQLException;
+
 }
@@ -8,27 +8,40 @@
 
 package nl.topicus.jdbc;
 
-import java.io.PrintWriter;
 import java.sql.DriverManager;
-import java.text.FieldPosition;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 /**
  * Poor man's logging infrastructure. This just deals with maintaining a per-
  * connection ID and log level, and timestamping output.
+ *
+ * Messages are written asynchronously by one background thread for all
+ * loggers of the driver, so logging does not block the calling connection.
+ * Use the {@link Supplier} variants of {@link #debug(Supplier)} and
+ * {@link #info(Supplier)} for messages that are expensive to create, as the
+ * supplier is only called if the message will actually be logged. Messages
+ * can also be forwarded to java.util.logging, see
+ * {@link #setJavaUtilLoggingEnabled(boolean)}.
  */
 public final class Logger
 {
-	// For brevity we only log the time, not date or timezone (the main reason
-	// for the timestamp is to see delays etc. between log lines, not to pin
-	// down an instant in time)
-	private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS ");
-	private final FieldPosition dummyPosition = new FieldPosition(0);
-	private final StringBuffer buffer = new StringBuffer();
+	/**
+	 * The name of the java.util.logging logger that messages are forwarded
+	 * to, and that is returned by the getParentLogger() methods of the driver
+	 */
+	public static final String PARENT_LOGGER_NAME = "nl.topicus.jdbc";
+
+	private static final java.util.logging.Logger PARENT_LOGGER = java.util.logging.Logger
+			.getLogger(PARENT_LOGGER_NAME);
+
+	private static final AsyncLogWriter WRITER = new AsyncLogWriter();
+
+	private static volatile boolean javaUtilLoggingEnabled;
+
 	private final String connectionIDString;
 
-	private int level = 0;
+	private volatile int level = 0;
 
 	public Logger()
 	{
@@ -40,6 +53,52 @@ public final class Logger
 		connectionIDString = "(" + connectionID + ") ";
 	}
 
+	/**
+	 *
+	 * @return The java.util.logging logger that messages are forwarded to if
+	 *         {@link #isJavaUtilLoggingEnabled()}
+	 */
+	public static java.util.logging.Logger getParentLogger()
+	{
+		return PARENT_LOGGER;
+	}
+
+	public static boolean isJavaUtilLoggingEnabled()
+	{
+		return javaUtilLoggingEnabled;
+	}
+
+	/**
+	 * Enables or disables forwarding messages to the java.util.logging logger
+	 * {@link #PARENT_LOGGER_NAME}. When enabled, a message is logged if either
+	 * the log level of the driver or the level of the java.util.logging logger
+	 * allows it. Debug messages are logged at level FINE and info messages at
+	 * level INFO.
+	 */
+	public static void setJavaUtilLoggingEnabled(boolean enabled)
+	{
+		javaUtilLoggingEnabled = enabled;
+	}
+
+	/**
+	 * Waits until all messages that were logged before this method was
+	 * called have been written
+	 */
+	public static void flush()
+	{
+		WRITER.flush();
+	}
+
+	/**
+	 *
+	 * @return The number of messages that were not logged because the log
+	 *         buffer was full
+	 */
+	public static long getDroppedMessageCount()
+	{
+		return WRITER.getDroppedCount();
+	}
+
 	public void setLogLevel(int level)
 	{
 		this.level = level;
@@ -52,12 +111,28 @@ public final class Logger
 
 	public boolean logDebug()
 	{
-		return level >= CloudSpannerDriver.DEBUG;
+		return isEnabled(CloudSpannerDriver.DEBUG);
 	}
 
 	public boolean logInfo()
 	{
-		return level >= CloudSpannerDriver.INFO;
+		return isEnabled(CloudSpannerDriver.INFO);
+	}
+
+	private boolean isWriterEnabled(int messageLevel)
+	{
+		return level >= messageLevel && DriverManager.getLogWriter() != null;
+	}
+
+	private static boolean isJavaUtilLoggingEnabled(int messageLevel)
+	{
+		return javaUtilLoggingEnabled
+				&& PARENT_LOGGER.isLoggable(messageLevel >= CloudSpannerDriver.DEBUG ? Level.FINE : Level.INFO);
+	}
+
+	private boolean isEnabled(int messageLevel)
+	{
+		return isWriterEnabled(messageLevel) || isJavaUtilLoggingEnabled(messageLevel);
 	}
 
 	public void debug(String str)
@@ -66,11 +141,19 @@ public final class Logger
 	}
 
 	public void debug(String str, Throwable t)
+	{
+		log(CloudSpannerDriver.DEBUG, str, t);
+	}
+
+	public void debug(Supplier<String> message)
+	{
+		debug(message, null);
+	}
+
+	public void debug(Supplier<String> message, Throwable t)
 	{
 		if (logDebug())
-		{
-			log(str, t);
-		}
+			log(CloudSpannerDriver.DEBUG, message.get(), t);
 	}
 
 	public void info(String str)
@@ -79,39 +162,37 @@ public final class Logger
 	}
 
 	public void info(String str, Throwable t)
+	{
+		log(CloudSpannerDriver.INFO, str, t);
+	}
+
+	public void info(Supplier<String> message)
+	{
+		info(message, null);
+	}
+
+	public void info(Supplier<String> message, Throwable t)
 	{
 		if (logInfo())
-		{
-			log(str, t);
-		}
+			log(CloudSpannerDriver.INFO, message.get(), t);
 	}
 
+	/**
+	 * Logs a message regardless of the log level of this logger
+	 */
 	public void log(String str, Throwable t)
 	{
-		PrintWriter writer = DriverManager.getLogWriter();
-		if (writer == null)
-		{
-			return;
-		}
+		log(CloudSpannerDriver.OFF, str, t);
+	}
 
-		synchronized (this)
+	private void log(int messageLevel, String str, Throwable t)
+	{
+		boolean toWriter = isWriterEnabled(messageLevel);
+		boolean toJavaUtilLogging = isJavaUtilLoggingEnabled(messageLevel);
+		if (toWriter || toJavaUtilLogging)
 		{
-			buffer.setLength(0);
-			dateFormat.format(new Date(), buffer, dummyPosition);
-			buffer.append(connectionIDString);
-			buffer.append(str);
-
-			// synchronize to ensure that the exception (if any) does
-			// not get split up from the corresponding log message
-			synchronized (writer)
-			{
-				writer.println(buffer.toString());
-				if (t != null)
-				{
-					t.printStackTrace(writer);
-				}
-			}
-			writer.flush();
+			WRITER.write(new AsyncLogWriter.Entry(System.currentTimeMillis(), messageLevel, connectionIDString, str,
+					t, toWriter, toJavaUtilLogging));
 		}
 	}
 }
@@ -4,33 +4,168 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Class for storing meta data needed for translating SQL statements into Cloud
- * Spanner mutations, such as key columns and their ordinal positions
- * 
+ * Spanner mutations, such as key columns and their ordinal positions, and for
+ * estimating the size of the rows of a table. One store is shared by all open
+ * connections to the same database. Entries are removed from the store when a
+ * DDL statement that changes their table is executed on one of these
+ * connections, or when they are older than the time-to-live that is used for
+ * looking them up.
+ *
  * @author loite
  *
  */
 public class MetaDataStore
 {
+	/**
+	 * Default time-to-live of the entries in the store in milliseconds
+	 */
+	public static final long DEFAULT_TTL = 300000L;
+
+	/**
+	 * The name of the index of the primary key in the meta data of the
+	 * indices of a table
+	 */
+	private static final String PRIMARY_KEY_INDEX = "PRIMARY_KEY";
+
+	/**
+	 * Matches the DDL statements that change one known table: CREATE TABLE,
+	 * ALTER TABLE, DROP TABLE and CREATE INDEX
+	 */
+	private static final Pattern DDL_TABLE = Pattern.compile(
+			"(?is)^\\s*(?:(?:CREATE|ALTER|DROP)\\s+TABLE|CREATE\\s+(?:UNIQUE\\s+)?(?:NULL_FILTERED\\s+)?INDEX\\s+`?\\w+`?\\s+ON)\\s+`?(\\w+)`?");
+
+	/**
+	 * Class for storing the name, type and size of a column.
+	 *
+	 * @author loite
+	 *
+	 */
+	public static class ColumnMetaData
+	{
+		private final String name;
+
+		private final int dataType;
+
+		private final int columnSize;
+
+		ColumnMetaData(String name, int dataType, int columnSize)
+		{
+			this.name = name;
+			this.dataType = dataType;
+			this.columnSize = columnSize;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 *
+		 * @return The data type of the column as defined in
+		 *         {@link java.sql.Types}
+		 */
+		public int getDataType()
+		{
+			return dataType;
+		}
+
+		public int getColumnSize()
+		{
+			return columnSize;
+		}
+	}
+
+	/**
+	 * Class for storing the key columns and the stored columns of a secondary
+	 * index. All names are in upper case.
+	 *
+	 * @author loite
+	 *
+	 */
+	public static class IndexMetaData
+	{
+		private final String name;
+
+		private final boolean unique;
+
+		private final List<String> keyColumns = new ArrayList<>(2);
+
+		private final List<String> storingColumns = new ArrayList<>();
+
+		IndexMetaData(String name, boolean unique)
+		{
+			this.name = name;
+			this.unique = unique;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public boolean isUnique()
+		{
+			return unique;
+		}
+
+		/**
+		 *
+		 * @return The key columns of the index in the order of the index
+		 */
+		public List<String> getKeyColumns()
+		{
+			return Collections.unmodifiableList(keyColumns);
+		}
+
+		/**
+		 *
+		 * @return The columns that are stored in the index without being part
+		 *         of the key of the index
+		 */
+		public List<String> getStoringColumns()
+		{
+			return Collections.unmodifiableList(storingColumns);
+		}
+	}
+
 	/**
 	 * Class for storing the primary key columns of a table in the correct
-	 * order.
-	 * 
+	 * order, together with the columns of the table, its secondary indices and
+	 * the number of index columns.
+	 *
 	 * @author loite
 	 *
 	 */
-	public class TableKeyMetaData
+	public static class TableKeyMetaData
 	{
 		private final String name;
 
 		private final List<String> keyColumns = new ArrayList<>(2);
 
+		private final List<ColumnMetaData> columns = new ArrayList<>();
+
+		private final Map<String, IndexMetaData> indices = new LinkedHashMap<>();
+
+		private int indexCount;
+
+		private final long loadTime = System.currentTimeMillis();
+
 		TableKeyMetaData(String name)
 		{
 			this.name = name;
@@ -41,6 +176,39 @@ public class MetaDataStore
 			return keyColumns;
 		}
 
+		/**
+		 *
+		 * @return The columns of the table in ordinal order
+		 */
+		public List<ColumnMetaData> getColumns()
+		{
+			return Collections.unmodifiableList(columns);
+		}
+
+		/**
+		 *
+		 * @return The secondary indices of the table
+		 */
+		public Collection<IndexMetaData> getIndices()
+		{
+			return Collections.unmodifiableCollection(indices.values());
+		}
+
+		/**
+		 *
+		 * @return The number of index columns of the table, including the
+		 *         columns of the primary key
+		 */
+		public int getIndexCount()
+		{
+			return indexCount;
+		}
+
+		private boolean isExpired(long ttl)
+		{
+			return ttl > 0 && System.currentTimeMillis() - loadTime >= ttl;
+		}
+
 		@Override
 		public boolean equals(Object o)
 		{
@@ -57,29 +225,59 @@ public class MetaDataStore
 		}
 	}
 
-	private final Connection connection;
+	private final ConcurrentMap<String, TableKeyMetaData> tables = new ConcurrentHashMap<>();
 
-	private final Map<String, TableKeyMetaData> tables = new HashMap<>();
+	/**
+	 * Incremented each time entries are removed from the store, so that
+	 * tables that were being loaded while a DDL statement was executed are not
+	 * added to the store
+	 */
+	private final AtomicLong generation = new AtomicLong();
 
-	MetaDataStore(Connection connection)
+	private volatile long preloadTime;
+
+	/**
+	 * The number of open connections that use this store, maintained by the
+	 * {@link CloudSpannerDriver}
+	 */
+	int connections;
+
+	MetaDataStore()
 	{
-		this.connection = connection;
 	}
 
-	public TableKeyMetaData getTable(String name) throws SQLException
+	/**
+	 *
+	 * @param connection
+	 *            The connection to use for loading the table if it is not in
+	 *            the store
+	 * @param name
+	 *            The name of the table
+	 * @param ttl
+	 *            The time-to-live in milliseconds of the entry of the table.
+	 *            If the entry in the store is older, it is reloaded. A value of
+	 *            0 or less means that entries do not expire.
+	 * @return The meta data of the table
+	 * @throws SQLException
+	 *             If a database error occurs while loading the table
+	 */
+	public TableKeyMetaData getTable(Connection connection, String name, long ttl) throws SQLException
 	{
 		if (name == null)
 			return null;
-		TableKeyMetaData res = tables.get(name.toUpperCase());
-		if (res == null)
+		String key = name.toUpperCase();
+		TableKeyMetaData res = tables.get(key);
+		if (res == null || res.isExpired(ttl))
 		{
-			res = initTable(name);
-			tables.put(name.toUpperCase(), res);
+			long currentGeneration = generation.get();
+			res = initTable(connection, name);
+			if (generation.get() == currentGeneration)
+				tables.put(key, res);
 		}
 		return res;
 	}
 
-	private TableKeyMetaData initTable(String name) throws SQLException
+	private TableKeyMetaData initTable(Connection connection, String name) throws SQLException
 	{
 		TableKeyMetaData table = new TableKeyMetaData(name);
 		try (ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, name))
@@ -89,11 +287,131 @@ public class MetaDataStore
 				table.keyColumns.add(rs.getString("COLUMN_NAME").toUpperCase());
 			}
 		}
+		try (ResultSet rs = connection.getMetaData().getColumns(null, null, name, null))
+		{
+			while (rs.next())
+			{
+				table.columns.add(createColumn(rs));
+			}
+		}
+		try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, name, false, false))
+		{
+			while (rs.next())
+				addIndexColumn(table, rs);
+		}
 		return table;
 	}
 
+	/**
+	 * Adds the index column of the current row of a result set of
+	 * {@link java.sql.DatabaseMetaData#getIndexInfo(String, String, String, boolean, boolean)}
+	 * to the given table
+	 */
+	private static void addIndexColumn(TableKeyMetaData table, ResultSet rs) throws SQLException
+	{
+		table.indexCount++;
+		String name = rs.getString("INDEX_NAME");
+		if (PRIMARY_KEY_INDEX.equalsIgnoreCase(name))
+			return;
+		IndexMetaData index = table.indices.get(name.toUpperCase());
+		if (index == null)
+		{
+			index = new IndexMetaData(name, !rs.getBoolean("NON_UNIQUE"));
+			table.indices.put(name.toUpperCase(), index);
+		}
+		String column = rs.getString("COLUMN_NAME").toUpperCase();
+		rs.getLong("ORDINAL_POSITION");
+		// Stored columns have no position in the key of the index
+		if (rs.wasNull())
+			index.storingColumns.add(column);
+		else
+			index.keyColumns.add(column);
+	}
+
+	private static ColumnMetaData createColumn(ResultSet rs) throws SQLException
+	{
+		return new ColumnMetaData(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getInt("COLUMN_SIZE"));
+	}
+
+	/**
+	 * Loads the meta data of all tables in the database into the store, using
+	 * one query for each kind of meta data instead of one query for each
+	 * table. The tables are not loaded again if they have already been loaded
+	 * within the given time-to-live.
+	 *
+	 * @param connection
+	 *            The connection to use for loading the meta data
+	 * @param ttl
+	 *            The time-to-live in milliseconds of the meta data
+	 * @throws SQLException
+	 *             If a database error occurs while loading the meta data
+	 */
+	public void preload(Connection connection, long ttl) throws SQLException
+	{
+		long lastPreload = preloadTime;
+		if (lastPreload > 0 && (ttl <= 0 || System.currentTimeMillis() - lastPreload < ttl))
+			return;
+		long currentGeneration = generation.get();
+		Map<String, TableKeyMetaData> loaded = new HashMap<>();
+		try (ResultSet rs = connection.getMetaData().getTables(null, null, null, null))
+		{
+			while (rs.next())
+			{
+				String name = rs.getString("TABLE_NAME");
+				loaded.put(name.toUpperCase(), new TableKeyMetaData(name));
+			}
+		}
+		try (ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, null))
+		{
+			while (rs.next())
+			{
+				TableKeyMetaData table = loaded.get(rs.getString("TABLE_NAME").toUpperCase());
+				if (table != null)
+					table.keyColumns.add(rs.getString("COLUMN_NAME").toUpperCase());
+			}
+		}
+		try (ResultSet rs = connection.getMetaData().getColumns(null, null, null, null))
+		{
+			while (rs.next())
+			{
+				TableKeyMetaData table = loaded.get(rs.getString("TABLE_NAME").toUpperCase());
+				if (table != null)
+					table.columns.add(createColumn(rs));
+			}
+		}
+		try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, null, false, false))
+		{
+			while (rs.next())
+			{
+				TableKeyMetaData table = loaded.get(rs.getString("TABLE_NAME").toUpperCase());
+				if (table != null)
+					addIndexColumn(table, rs);
+			}
+		}
+		if (generation.get() == currentGeneration)
+		{
+			tables.putAll(loaded);
+			preloadTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 *
+	 * @return A number that changes each time entries are removed from the
+	 *         store because the tables of the database might have changed.
+	 *         Facts that are derived from the meta data of a table, such as
+	 *         whether a WHERE-clause specifies all key columns, must be
+	 *         derived again when the generation has changed.
+	 */
+	public long getGeneration()
+	{
+		return generation.get();
+	}
+
 	void clear()
 	{
+		generation.incrementAndGet();
+		preloadTime = 0L;
 		tables.clear();
 	}
 
@@ -101,7 +419,22 @@ public class MetaDataStore
 	{
 		if (name == null)
 			return;
+		generation.incrementAndGet();
 		tables.remove(name.toUpperCase());
 	}
 
+	/**
+	 * Removes the entries that might have been changed by the given DDL
+	 * statement from the store. If the statement changes one known table, only
+	 * the entry of that table is removed, otherwise all entries are removed.
+	 */
+	void clear(String ddl)
+	{
+		Matcher matcher = DDL_TABLE.matcher(ddl);
+		if (matcher.find())
+			clearTable(matcher.group(1));
+		else
+			clear();
+	}
+
 }
@@ -0,0 +1,50 @@
+package nl.topicus.jdbc;
+
+import java.util.Arrays;
+
+import com.google.cloud.spanner.DatabaseAdminClient;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.Operation;
+import com.google.spanner.admin.database.v1.UpdateDatabaseDdlMetadata;
+
+/**
+ * {@link CloudSpannerDatabaseAdmin} of a Cloud Spanner database that uses the
+ * {@link DatabaseAdminClient} of the client library
+ *
+ * @author loite
+ *
+ */
+class SpannerDatabaseAdmin implements CloudSpannerDatabaseAdmin
+{
+	private final DatabaseAdminClient adminClient;
+
+	private final DatabaseId id;
+
+	SpannerDatabaseAdmin(DatabaseAdminClient adminClient, DatabaseId id)
+	{
+		this.adminClient = adminClient;
+		this.id = id;
+	}
+
+	@Override
+	public void executeDdl(String sql)
+	{
+		Operation<Void, UpdateDatabaseDdlMetadata> operation = adminClient.updateDatabaseDdl(
+				id.getInstanceId().getInstance(), id.getDatabase(), Arrays.asList(sql), null);
+		operation = operation.waitFor();
+		operation.getResult();
+	}
+
+	@Override
+	public CloudSpannerDatabaseMetaData createMetaData(CloudSpannerConnection connection)
+	{
+		return new CloudSpannerDatabaseMetaData(connection);
+	}
+
+	@Override
+	public Object getMetaDataStoreKey()
+	{
+		return id.getName();
+	}
+
+}
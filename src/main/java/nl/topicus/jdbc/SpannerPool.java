@@ -0,0 +1,235 @@
+package nl.topicus.jdbc;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.auth.oauth2.UserCredentials;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.SessionPoolOptions;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerOptions;
+import com.google.cloud.spanner.SpannerOptions.Builder;
+
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+
+/**
+ * Reference counted pool of {@link Spanner} instances. Connections that are
+ * opened with the same project, credentials and channel and session settings
+ * share one {@link Spanner} instance, and thereby also its gRPC channels and
+ * the session pools of its database clients. A {@link Spanner} instance is
+ * closed when the last connection using it is closed.
+ *
+ * @author loite
+ *
+ */
+class SpannerPool
+{
+	/**
+	 * The settings that identify a {@link Spanner} instance in the pool
+	 */
+	static final class Key
+	{
+		private final String project;
+
+		private final String credentialsPath;
+
+		private final String oauthToken;
+
+		private final int numChannels;
+
+		private final int minSessions;
+
+		private final int maxSessions;
+
+		private final boolean inMemory;
+
+		private final long inMemoryLatency;
+
+		/**
+		 *
+		 * @param numChannels
+		 *            The number of gRPC channels to use, or 0 for the default
+		 *            of the client library
+		 * @param minSessions
+		 *            The minimum number of sessions in the session pool, or 0
+		 *            for the default of the client library
+		 * @param maxSessions
+		 *            The maximum number of sessions in the session pool, or 0
+		 *            for the default of the client library
+		 * @param inMemory
+		 *            Use an {@link InMemorySpanner} instead of Cloud Spanner
+		 * @param inMemoryLatency
+		 *            The simulated latency in milliseconds of the
+		 *            {@link InMemorySpanner}
+		 */
+		Key(String project, String credentialsPath, String oauthToken, int numChannels, int minSessions,
+				int maxSessions, boolean inMemory, long inMemoryLatency)
+		{
+			this.project = project;
+			this.credentialsPath = credentialsPath;
+			this.oauthToken = oauthToken;
+			this.numChannels = numChannels;
+			this.minSessions = minSessions;
+			this.maxSessions = maxSessions;
+			this.inMemory = inMemory;
+			this.inMemoryLatency = inMemoryLatency;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return Objects.equals(project, other.project) && Objects.equals(credentialsPath, other.credentialsPath)
+					&& Objects.equals(oauthToken, other.oauthToken) && numChannels == other.numChannels
+					&& minSessions == other.minSessions && maxSessions == other.maxSessions && inMemory == other.inMemory
+					&& inMemoryLatency == other.inMemoryLatency;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(project, credentialsPath, oauthToken, numChannels, minSessions, maxSessions, inMemory,
+					inMemoryLatency);
+		}
+	}
+
+	/**
+	 * A {@link Spanner} instance in the pool
+	 */
+	static final class Reference
+	{
+		private final Spanner spanner;
+
+		private final String clientId;
+
+		private final Function<DatabaseId, CloudSpannerDatabaseAdmin> databaseAdmins;
+
+		private int count;
+
+		private Reference(Spanner spanner, String clientId,
+				Function<DatabaseId, CloudSpannerDatabaseAdmin> databaseAdmins)
+		{
+			this.spanner = spanner;
+			this.clientId = clientId;
+			this.databaseAdmins = databaseAdmins;
+		}
+
+		Spanner getSpanner()
+		{
+			return spanner;
+		}
+
+		String getClientId()
+		{
+			return clientId;
+		}
+
+		/**
+		 *
+		 * @return The {@link CloudSpannerDatabaseAdmin} for the given database
+		 *         of the {@link Spanner} instance
+		 */
+		CloudSpannerDatabaseAdmin getDatabaseAdmin(DatabaseId id)
+		{
+			return databaseAdmins.apply(id);
+		}
+	}
+
+	private final Map<Key, Reference> spanners = new HashMap<>();
+
+	/**
+	 * Returns the {@link Spanner} instance for the given key, and creates a
+	 * new one if there is none. Each call to this method must be matched by a
+	 * call to {@link #release(Key)}.
+	 */
+	synchronized Reference acquire(Key key) throws IOException
+	{
+		Reference res = spanners.get(key);
+		if (res == null)
+		{
+			res = create(key);
+			spanners.put(key, res);
+		}
+		res.count++;
+		return res;
+	}
+
+	/**
+	 * Releases a {@link Spanner} instance that was acquired by
+	 * {@link #acquire(Key)}, and closes it if it is no longer used.
+	 */
+	synchronized void release(Key key)
+	{
+		Reference reference = spanners.get(key);
+		if (reference == null)
+			throw new IllegalStateException("Spanner instance is not registered");
+		reference.count--;
+		if (reference.count == 0)
+		{
+			spanners.remove(key);
+			reference.spanner.close();
+		}
+	}
+
+	synchronized int getReferenceCount(Key key)
+	{
+		Reference reference = spanners.get(key);
+		return reference == null ? 0 : reference.count;
+	}
+
+	synchronized int size()
+	{
+		return spanners.size();
+	}
+
+	private static Reference create(Key key) throws IOException
+	{
+		if (key.inMemory)
+			return new Reference(new InMemorySpanner(key.project, key.inMemoryLatency), null, InMemoryDatabase::get);
+		Builder builder = SpannerOptions.newBuilder();
+		if (key.project != null)
+			builder.setProjectId(key.project);
+		GoogleCredentials credentials = null;
+		if (key.credentialsPath != null)
+		{
+			credentials = CloudSpannerConnection.getCredentialsFromFile(key.credentialsPath);
+			builder.setCredentials(credentials);
+		}
+		else if (key.oauthToken != null)
+		{
+			credentials = CloudSpannerConnection.getCredentialsFromOAuthToken(key.oauthToken);
+			builder.setCredentials(credentials);
+		}
+		String clientId = null;
+		if (credentials instanceof UserCredentials)
+		{
+			clientId = ((UserCredentials) credentials).getClientId();
+		}
+		if (credentials instanceof ServiceAccountCredentials)
+		{
+			clientId = ((ServiceAccountCredentials) credentials).getClientId();
+		}
+		if (key.numChannels > 0)
+			builder.setNumChannels(key.numChannels);
+		if (key.minSessions > 0 || key.maxSessions > 0)
+		{
+			SessionPoolOptions.Builder sessionPoolBuilder = SessionPoolOptions.newBuilder();
+			if (key.minSessions > 0)
+				sessionPoolBuilder.setMinSessions(key.minSessions);
+			if (key.maxSessions > 0)
+				sessionPoolBuilder.setMaxSessions(key.maxSessions);
+			builder.setSessionPoolOption(sessionPoolBuilder.build());
+		}
+		Spanner spanner = builder.build().getService();
+		return new Reference(spanner, clientId, id -> new SpannerDatabaseAdmin(spanner.getDatabaseAdminClient(), id));
+	}
+
+}
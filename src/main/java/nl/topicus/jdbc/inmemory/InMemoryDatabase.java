@@ -0,0 +1,393 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.cloud.spanner.Value;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.CloudSpannerDatabaseAdmin;
+import nl.topicus.jdbc.CloudSpannerDatabaseMetaData;
+
+/**
+ * A Cloud Spanner database that is kept in memory. The databases are
+ * registered by {@link DatabaseId}, so that the tables and their data remain
+ * available when all connections to a database have been closed, until the
+ * database is dropped with {@link #drop(DatabaseId)} or {@link #dropAll()}.
+ * The database is also the {@link CloudSpannerDatabaseAdmin} of the
+ * connections to it.
+ * <p>
+ * Mutations are applied atomically with the commit of a transaction. The
+ * database does not lock rows or detect conflicts between transactions: a
+ * read always sees the last committed data, and of two concurrent
+ * transactions that write the same row the last one to commit wins.
+ * </p>
+ *
+ * @author loite
+ *
+ */
+public class InMemoryDatabase implements CloudSpannerDatabaseAdmin
+{
+	private static final ConcurrentMap<DatabaseId, InMemoryDatabase> DATABASES = new ConcurrentHashMap<>();
+
+	private final DatabaseId id;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, InMemoryTable> tables = new TreeMap<>();
+
+	private final Map<String, InMemoryIndex> indices = new TreeMap<>();
+
+	private Timestamp lastCommitTimestamp = Timestamp.MIN_VALUE;
+
+	private InMemoryDatabase(DatabaseId id)
+	{
+		this.id = id;
+	}
+
+	/**
+	 *
+	 * @return The in-memory database with the given id. The database is
+	 *         created if it does not yet exist.
+	 */
+	public static InMemoryDatabase get(DatabaseId id)
+	{
+		return DATABASES.computeIfAbsent(id, InMemoryDatabase::new);
+	}
+
+	/**
+	 * Removes the in-memory database with the given id and all its data
+	 */
+	public static void drop(DatabaseId id)
+	{
+		DATABASES.remove(id);
+	}
+
+	/**
+	 * Removes all in-memory databases and their data
+	 */
+	public static void dropAll()
+	{
+		DATABASES.clear();
+	}
+
+	@Override
+	public CloudSpannerDatabaseMetaData createMetaData(CloudSpannerConnection connection)
+	{
+		return new InMemoryDatabaseMetaData(connection, this);
+	}
+
+	/**
+	 * A database that is dropped and created again gets a new
+	 * {@link nl.topicus.jdbc.MetaDataStore}
+	 */
+	@Override
+	public Object getMetaDataStoreKey()
+	{
+		return this;
+	}
+
+	public DatabaseId getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Executes a DDL statement on this database. CREATE TABLE, DROP TABLE,
+	 * CREATE INDEX and DROP INDEX statements are supported.
+	 */
+	@Override
+	public void executeDdl(String ddl)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			InMemoryDdlParser.execute(this, ddl);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	void createTable(InMemoryTable table)
+	{
+		String key = table.getName().toUpperCase();
+		if (tables.containsKey(key))
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+					"Duplicate name in schema: " + table.getName());
+		if (table.getParentTable() != null)
+			getTable(table.getParentTable());
+		tables.put(key, table);
+	}
+
+	void dropTable(String name)
+	{
+		InMemoryTable table = getTable(name);
+		for (InMemoryIndex index : indices.values())
+		{
+			if (index.getTable().equalsIgnoreCase(name))
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Cannot drop table " + name + " with indices: " + index.getName());
+		}
+		for (InMemoryTable child : tables.values())
+		{
+			if (table.getName().equalsIgnoreCase(child.getParentTable()))
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Cannot drop table " + name + " with interleaved tables: " + child.getName());
+		}
+		tables.remove(name.toUpperCase());
+	}
+
+	void createIndex(InMemoryIndex index)
+	{
+		String key = index.getName().toUpperCase();
+		if (indices.containsKey(key) || tables.containsKey(key))
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+					"Duplicate name in schema: " + index.getName());
+		InMemoryTable table = getTable(index.getTable());
+		for (String column : index.getColumns())
+			table.getColumnIndex(column);
+		for (String column : index.getStoringColumns())
+			table.getColumnIndex(column);
+		indices.put(key, index);
+	}
+
+	void dropIndex(String name)
+	{
+		if (indices.remove(name.toUpperCase()) == null)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND, "Index not found: " + name);
+	}
+
+	/**
+	 * Returns the table with the given name. The caller must hold the lock of
+	 * the database.
+	 */
+	InMemoryTable getTable(String name)
+	{
+		InMemoryTable res = tables.get(name.toUpperCase());
+		if (res == null)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND, "Table not found: " + name);
+		return res;
+	}
+
+	/**
+	 *
+	 * @return A snapshot of the tables of this database, ordered by name
+	 */
+	List<InMemoryTable> getTables()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new ArrayList<>(tables.values());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return A snapshot of the secondary indices of this database, ordered by
+	 *         name
+	 */
+	List<InMemoryIndex> getIndices()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new ArrayList<>(indices.values());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the given columns of the rows in the given key set
+	 */
+	ResultSet read(String table, KeySet keys, Iterable<String> columns)
+	{
+		lock.readLock().lock();
+		try
+		{
+			InMemoryTable source = getTable(table);
+			return createResultSet(source, columns, source.read(keys));
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the given columns of the rows in the given key set of an index.
+	 * Only the columns of the index, the columns that are stored in the index
+	 * and the primary key columns of the table can be read.
+	 */
+	ResultSet readUsingIndex(String table, String index, KeySet keys, Iterable<String> columns)
+	{
+		lock.readLock().lock();
+		try
+		{
+			InMemoryTable source = getTable(table);
+			InMemoryIndex sourceIndex = indices.get(index.toUpperCase());
+			if (sourceIndex == null || !sourceIndex.getTable().equalsIgnoreCase(source.getName()))
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND,
+						"Index not found on table " + table + ": " + index);
+			for (String column : columns)
+			{
+				if (!isIndexColumn(source, sourceIndex, column))
+					throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+							"Column " + column + " is not stored in index " + index);
+			}
+			return createResultSet(source, columns, source.readUsingIndex(sourceIndex, keys));
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	private static boolean isIndexColumn(InMemoryTable table, InMemoryIndex index, String column)
+	{
+		for (String indexColumn : index.getColumns())
+			if (indexColumn.equalsIgnoreCase(column))
+				return true;
+		for (String storingColumn : index.getStoringColumns())
+			if (storingColumn.equalsIgnoreCase(column))
+				return true;
+		for (InMemoryTable.Column keyColumn : table.getKeyColumns())
+			if (keyColumn.getName().equalsIgnoreCase(column))
+				return true;
+		return false;
+	}
+
+	private static ResultSet createResultSet(InMemoryTable source, Iterable<String> columns, List<Value[]> values)
+	{
+		List<StructField> fields = new ArrayList<>();
+		List<Integer> columnIndices = new ArrayList<>();
+		for (String column : columns)
+		{
+			int index = source.getColumnIndex(column);
+			columnIndices.add(index);
+			fields.add(
+					StructField.of(source.getColumns().get(index).getName(), source.getColumns().get(index).getType()));
+		}
+		List<Struct> rows = new ArrayList<>();
+		for (Value[] row : values)
+		{
+			Struct.Builder builder = Struct.newBuilder();
+			for (int index = 0; index < fields.size(); index++)
+				builder.add(fields.get(index).getName(), row[columnIndices.get(index)]);
+			rows.add(builder.build());
+		}
+		return ResultSets.forRows(Type.struct(fields), rows);
+	}
+
+	/**
+	 * Executes a query on this database. See {@link InMemoryQueryExecutor}
+	 * for the queries that are supported.
+	 */
+	ResultSet executeQuery(Statement statement)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new InMemoryQueryExecutor(this, statement).execute();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Applies the given mutations atomically. If one of the mutations fails,
+	 * none of the mutations are applied.
+	 *
+	 * @return The commit timestamp
+	 */
+	Timestamp commit(Iterable<Mutation> mutations)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Deque<Runnable> undoLog = new ArrayDeque<>();
+			try
+			{
+				for (Mutation mutation : mutations)
+					getTable(mutation.getTable()).apply(mutation, undoLog);
+			}
+			catch (RuntimeException e)
+			{
+				while (!undoLog.isEmpty())
+					undoLog.pop().run();
+				throw e;
+			}
+			lastCommitTimestamp = nextTimestamp();
+			return lastCommitTimestamp;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return A timestamp that is later than the last commit timestamp of
+	 *         this database
+	 */
+	private Timestamp nextTimestamp()
+	{
+		Timestamp now = Timestamp.now();
+		if (now.compareTo(lastCommitTimestamp) > 0)
+			return now;
+		long micros = lastCommitTimestamp.getSeconds() * 1000000L + lastCommitTimestamp.getNanos() / 1000 + 1;
+		return Timestamp.ofTimeMicroseconds(micros);
+	}
+
+	/**
+	 *
+	 * @return The timestamp at which a read that starts now reads the data of
+	 *         this database
+	 */
+	Timestamp getReadTimestamp()
+	{
+		lock.readLock().lock();
+		try
+		{
+			Timestamp now = Timestamp.now();
+			return now.compareTo(lastCommitTimestamp) > 0 ? now : lastCommitTimestamp;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+}
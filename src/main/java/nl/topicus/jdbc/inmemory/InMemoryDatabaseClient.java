@@ -0,0 +1,112 @@
+package nl.topicus.jdbc.inmemory;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ReadContext;
+import com.google.cloud.spanner.ReadOnlyTransaction;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.TransactionRunner;
+
+/**
+ * {@link DatabaseClient} for an {@link InMemoryDatabase}. Each call that
+ * would be a round trip to Cloud Spanner, that is each read, query and
+ * commit, waits for the latency that is configured for the client before it
+ * is executed. Timestamp bounds are ignored, all reads are strong reads.
+ *
+ * @author loite
+ *
+ */
+class InMemoryDatabaseClient implements DatabaseClient
+{
+	private final InMemoryDatabase database;
+
+	private final long latency;
+
+	InMemoryDatabaseClient(InMemoryDatabase database, long latency)
+	{
+		this.database = database;
+		this.latency = latency;
+	}
+
+	InMemoryDatabase getDatabase()
+	{
+		return database;
+	}
+
+	/**
+	 * Waits for the configured latency of the client
+	 */
+	void simulateLatency()
+	{
+		if (latency > 0L)
+		{
+			try
+			{
+				Thread.sleep(latency);
+			}
+			catch (InterruptedException e)
+			{
+				throw SpannerExceptionFactory.propagateInterrupt(e);
+			}
+		}
+	}
+
+	@Override
+	public Timestamp write(Iterable<Mutation> mutations) throws SpannerException
+	{
+		simulateLatency();
+		return database.commit(mutations);
+	}
+
+	@Override
+	public Timestamp writeAtLeastOnce(Iterable<Mutation> mutations) throws SpannerException
+	{
+		return write(mutations);
+	}
+
+	@Override
+	public ReadContext singleUse()
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public ReadContext singleUse(TimestampBound bound)
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public ReadOnlyTransaction singleUseReadOnlyTransaction()
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public ReadOnlyTransaction singleUseReadOnlyTransaction(TimestampBound bound)
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public ReadOnlyTransaction readOnlyTransaction()
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public ReadOnlyTransaction readOnlyTransaction(TimestampBound bound)
+	{
+		return new InMemoryReadContext(this);
+	}
+
+	@Override
+	public TransactionRunner readWriteTransaction()
+	{
+		return new InMemoryTransactionRunner(this);
+	}
+
+}
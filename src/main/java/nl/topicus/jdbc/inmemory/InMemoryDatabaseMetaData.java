@@ -0,0 +1,233 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.cloud.spanner.Value;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.CloudSpannerDatabaseMetaData;
+import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
+
+/**
+ * Database metadata of a connection to an {@link InMemoryDatabase}. The
+ * in-memory database has no INFORMATION_SCHEMA, the tables, columns, primary
+ * keys and indices are therefore returned directly from the schema of the
+ * database. The result sets have the same columns and ordering as those of a
+ * connection to Cloud Spanner.
+ *
+ * @author loite
+ *
+ */
+public class InMemoryDatabaseMetaData extends CloudSpannerDatabaseMetaData
+{
+	private static final String PRIMARY_KEY = "PRIMARY_KEY";
+
+	private final InMemoryDatabase database;
+
+	public InMemoryDatabaseMetaData(CloudSpannerConnection connection, InMemoryDatabase database)
+	{
+		super(connection);
+		this.database = database;
+	}
+
+	private static boolean matches(String value, String pattern)
+	{
+		return pattern == null || InMemoryValues.like(value.toUpperCase(), pattern.toUpperCase());
+	}
+
+	private static boolean matches(String catalog, String schema, String table, InMemoryTable candidate)
+	{
+		return matches("", catalog) && matches("", schema) && matches(candidate.getName(), table);
+	}
+
+	private static StructField string(String name)
+	{
+		return StructField.of(name, Type.string());
+	}
+
+	private static StructField int64(String name)
+	{
+		return StructField.of(name, Type.int64());
+	}
+
+	private ResultSet createResultSet(List<StructField> fields, List<Struct> rows)
+	{
+		return new CloudSpannerResultSet(null, ResultSets.forRows(Type.struct(fields), rows));
+	}
+
+	@Override
+	public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types)
+			throws SQLException
+	{
+		List<Struct> rows = new ArrayList<>();
+		for (InMemoryTable table : database.getTables())
+		{
+			if (matches(catalog, schemaPattern, tableNamePattern, table))
+			{
+				rows.add(Struct.newBuilder().add("TABLE_CAT", Value.string(null))
+						.add("TABLE_SCHEM", Value.string(null)).add("TABLE_NAME", Value.string(table.getName()))
+						.add("TABLE_TYPE", Value.string("TABLE")).add("REMARKS", Value.string(null))
+						.add("TYPE_CAT", Value.string(null)).add("TYPE_SCHEM", Value.string(null))
+						.add("TYPE_NAME", Value.string(null)).add("SELF_REFERENCING_COL_NAME", Value.string(null))
+						.add("REF_GENERATION", Value.string(null)).build());
+			}
+		}
+		return createResultSet(Arrays.asList(string("TABLE_CAT"), string("TABLE_SCHEM"), string("TABLE_NAME"),
+				string("TABLE_TYPE"), string("REMARKS"), string("TYPE_CAT"), string("TYPE_SCHEM"), string("TYPE_NAME"),
+				string("SELF_REFERENCING_COL_NAME"), string("REF_GENERATION")), rows);
+	}
+
+	@Override
+	public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern)
+			throws SQLException
+	{
+		List<Struct> rows = new ArrayList<>();
+		for (InMemoryTable table : database.getTables())
+		{
+			if (!matches(catalog, schemaPattern, tableNamePattern, table))
+				continue;
+			long ordinal = 0L;
+			for (InMemoryTable.Column column : table.getColumns())
+			{
+				ordinal++;
+				if (!matches(column.getName(), columnNamePattern))
+					continue;
+				rows.add(Struct.newBuilder().add("TABLE_CAT", Value.string(""))
+						.add("TABLE_SCHEM", Value.string("")).add("TABLE_NAME", Value.string(table.getName()))
+						.add("COLUMN_NAME", Value.string(column.getName()))
+						.add("DATA_TYPE", Value.int64(getSqlType(column.getType())))
+						.add("TYPE_NAME", Value.string(column.getSpannerType()))
+						.add("COLUMN_SIZE", Value.int64(column.getSize())).add("BUFFER_LENGTH", Value.int64(0L))
+						.add("DECIMAL_DIGITS", Value.int64((Long) null)).add("NUM_PREC_RADIX", Value.int64(0L))
+						.add("NULLABLE", Value.int64(column.isNullable() ? 1L : 0L))
+						.add("REMARKS", Value.string(null)).add("COLUMN_DEF", Value.string(null))
+						.add("SQL_DATA_TYPE", Value.int64(0L)).add("SQL_DATETIME_SUB", Value.int64(0L))
+						.add("CHAR_OCTET_LENGTH", Value.int64(0L)).add("ORDINAL_POSITION", Value.int64(ordinal))
+						.add("IS_NULLABLE", Value.string(column.isNullable() ? "YES" : "NO"))
+						.add("SCOPE_CATALOG", Value.string(null)).add("SCOPE_SCHEMA", Value.string(null))
+						.add("SCOPE_TABLE", Value.string(null)).add("SOURCE_DATA_TYPE", Value.int64((Long) null))
+						.add("IS_AUTOINCREMENT", Value.string("NO")).add("IS_GENERATEDCOLUMN", Value.string("NO"))
+						.build());
+			}
+		}
+		return createResultSet(Arrays.asList(string("TABLE_CAT"), string("TABLE_SCHEM"), string("TABLE_NAME"),
+				string("COLUMN_NAME"), int64("DATA_TYPE"), string("TYPE_NAME"), int64("COLUMN_SIZE"),
+				int64("BUFFER_LENGTH"), int64("DECIMAL_DIGITS"), int64("NUM_PREC_RADIX"), int64("NULLABLE"),
+				string("REMARKS"), string("COLUMN_DEF"), int64("SQL_DATA_TYPE"), int64("SQL_DATETIME_SUB"),
+				int64("CHAR_OCTET_LENGTH"), int64("ORDINAL_POSITION"), string("IS_NULLABLE"), string("SCOPE_CATALOG"),
+				string("SCOPE_SCHEMA"), string("SCOPE_TABLE"), int64("SOURCE_DATA_TYPE"), string("IS_AUTOINCREMENT"),
+				string("IS_GENERATEDCOLUMN")), rows);
+	}
+
+	private static long getSqlType(Type type)
+	{
+		switch (type.getCode())
+		{
+		case ARRAY:
+			return Types.ARRAY;
+		case BOOL:
+			return Types.BOOLEAN;
+		case BYTES:
+			return Types.BINARY;
+		case DATE:
+			return Types.DATE;
+		case FLOAT64:
+			return Types.DOUBLE;
+		case INT64:
+			return Types.BIGINT;
+		case STRING:
+			return Types.NVARCHAR;
+		case STRUCT:
+			return Types.STRUCT;
+		case TIMESTAMP:
+			return Types.TIMESTAMP;
+		default:
+			return Types.OTHER;
+		}
+	}
+
+	@Override
+	public ResultSet getPrimaryKeys(String catalog, String schema, String table) throws SQLException
+	{
+		List<Struct> rows = new ArrayList<>();
+		for (InMemoryTable candidate : database.getTables())
+		{
+			if (!matches(catalog, schema, table, candidate))
+				continue;
+			long ordinal = 0L;
+			for (InMemoryTable.Column column : candidate.getKeyColumns())
+			{
+				ordinal++;
+				rows.add(Struct.newBuilder().add("TABLE_CAT", Value.string(""))
+						.add("TABLE_SCHEM", Value.string("")).add("TABLE_NAME", Value.string(candidate.getName()))
+						.add("COLUMN_NAME", Value.string(column.getName())).add("KEY_SEQ", Value.int64(ordinal))
+						.add("PK_NAME", Value.string(PRIMARY_KEY)).build());
+			}
+		}
+		rows.sort(Comparator.comparing(row -> row.getLong("KEY_SEQ")));
+		return createResultSet(Arrays.asList(string("TABLE_CAT"), string("TABLE_SCHEM"), string("TABLE_NAME"),
+				string("COLUMN_NAME"), int64("KEY_SEQ"), string("PK_NAME")), rows);
+	}
+
+	@Override
+	public ResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate)
+			throws SQLException
+	{
+		List<Struct> rows = new ArrayList<>();
+		for (InMemoryTable candidate : database.getTables())
+		{
+			if (!matches(catalog, schema, table, candidate))
+				continue;
+			List<InMemoryTable.Column> keyColumns = candidate.getKeyColumns();
+			for (int i = 0; i < keyColumns.size(); i++)
+				rows.add(createIndexInfoRow(candidate.getName(), PRIMARY_KEY, true, (long) i + 1,
+						keyColumns.get(i).getName(), candidate.isDescending(i)));
+		}
+		for (InMemoryIndex index : database.getIndices())
+		{
+			if (!matches("", catalog) || !matches("", schema) || !matches(index.getTable(), table)
+					|| (unique && !index.isUnique()))
+				continue;
+			List<String> columns = index.getColumns();
+			for (int i = 0; i < columns.size(); i++)
+				rows.add(createIndexInfoRow(index.getTable(), index.getName(), index.isUnique(), (long) i + 1,
+						columns.get(i), index.isDescending(i)));
+			for (String column : index.getStoringColumns())
+				rows.add(createIndexInfoRow(index.getTable(), index.getName(), index.isUnique(), null, column, null));
+		}
+		rows.sort(Comparator.<Struct, Boolean> comparing(row -> !row.getBoolean("NON_UNIQUE"))
+				.thenComparing(row -> row.getString("INDEX_NAME"))
+				.thenComparing(row -> row.isNull("ORDINAL_POSITION") ? Long.MIN_VALUE
+						: row.getLong("ORDINAL_POSITION")));
+		return createResultSet(Arrays.asList(string("TABLE_CAT"), string("TABLE_SCHEM"), string("TABLE_NAME"),
+				StructField.of("NON_UNIQUE", Type.bool()), string("INDEX_QUALIFIER"), string("INDEX_NAME"),
+				int64("TYPE"), int64("ORDINAL_POSITION"), string("COLUMN_NAME"), string("ASC_OR_DESC"),
+				int64("CARDINALITY"), int64("PAGES"), string("FILTER_CONDITION")), rows);
+	}
+
+	private static Struct createIndexInfoRow(String table, String index, boolean unique, Long ordinal, String column,
+			Boolean descending)
+	{
+		String ascOrDesc = null;
+		if (descending != null)
+			ascOrDesc = descending ? "D" : "A";
+		return Struct.newBuilder().add("TABLE_CAT", Value.string("")).add("TABLE_SCHEM", Value.string(""))
+				.add("TABLE_NAME", Value.string(table)).add("NON_UNIQUE", Value.bool(!unique))
+				.add("INDEX_QUALIFIER", Value.string(null)).add("INDEX_NAME", Value.string(index))
+				.add("TYPE", Value.int64(3L)).add("ORDINAL_POSITION", Value.int64(ordinal))
+				.add("COLUMN_NAME", Value.string(column)).add("ASC_OR_DESC", Value.string(ascOrDesc))
+				.add("CARDINALITY", Value.int64(-1L)).add("PAGES", Value.int64(-1L))
+				.add("FILTER_CONDITION", Value.string(null)).build();
+	}
+
+}
@@ -0,0 +1,207 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Type;
+
+import nl.topicus.jdbc.CloudSpannerDriver;
+
+/**
+ * Parses the DDL statements that are supported by the in-memory database and
+ * applies them to an {@link InMemoryDatabase}. The supported statements are
+ * CREATE TABLE, DROP TABLE, CREATE INDEX and DROP INDEX.
+ *
+ * @author loite
+ *
+ */
+final class InMemoryDdlParser
+{
+	private static final String IDENTIFIER = "(`[^`]+`|\\w+)";
+
+	private static final Pattern CREATE_TABLE = Pattern.compile("CREATE\\s+TABLE\\s+" + IDENTIFIER
+			+ "\\s*\\((.*)\\)\\s*PRIMARY\\s+KEY\\s*\\(([^)]*)\\)\\s*(?:,\\s*INTERLEAVE\\s+IN\\s+PARENT\\s+"
+			+ IDENTIFIER + "(?:\\s+ON\\s+DELETE\\s+(?:CASCADE|NO\\s+ACTION))?)?",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final Pattern COLUMN = Pattern.compile(
+			IDENTIFIER + "\\s+(ARRAY\\s*<\\s*(\\w+)\\s*(?:\\(\\s*(\\w+)\\s*\\))?\\s*>|(\\w+)\\s*(?:\\(\\s*(\\w+)\\s*\\))?)"
+					+ "(\\s+NOT\\s+NULL)?(?:\\s+OPTIONS\\s*\\(.*\\))?",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final Pattern KEY_PART = Pattern.compile(IDENTIFIER + "(?:\\s+(ASC|DESC))?",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern DROP_TABLE = Pattern.compile("DROP\\s+TABLE\\s+" + IDENTIFIER,
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern CREATE_INDEX = Pattern.compile("CREATE\\s+(UNIQUE\\s+)?(?:NULL_FILTERED\\s+)?INDEX\\s+"
+			+ IDENTIFIER + "\\s+ON\\s+" + IDENTIFIER + "\\s*\\(([^)]*)\\)(?:\\s*STORING\\s*\\(([^)]*)\\))?"
+			+ "(?:\\s*,\\s*INTERLEAVE\\s+IN\\s+" + IDENTIFIER + ")?", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern DROP_INDEX = Pattern.compile("DROP\\s+INDEX\\s+" + IDENTIFIER,
+			Pattern.CASE_INSENSITIVE);
+
+	private InMemoryDdlParser()
+	{
+	}
+
+	static void execute(InMemoryDatabase database, String ddl)
+	{
+		String sql = ddl.trim();
+		if (sql.endsWith(";"))
+			sql = sql.substring(0, sql.length() - 1).trim();
+		Matcher matcher;
+		if ((matcher = CREATE_TABLE.matcher(sql)).matches())
+		{
+			database.createTable(createTable(matcher));
+		}
+		else if ((matcher = DROP_TABLE.matcher(sql)).matches())
+		{
+			database.dropTable(unquote(matcher.group(1)));
+		}
+		else if ((matcher = CREATE_INDEX.matcher(sql)).matches())
+		{
+			database.createIndex(createIndex(matcher));
+		}
+		else if ((matcher = DROP_INDEX.matcher(sql)).matches())
+		{
+			database.dropIndex(unquote(matcher.group(1)));
+		}
+		else
+		{
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+					"DDL statement not supported by the in-memory database: " + ddl);
+		}
+	}
+
+	private static InMemoryTable createTable(Matcher matcher)
+	{
+		String name = unquote(matcher.group(1));
+		List<InMemoryTable.Column> columns = new ArrayList<>();
+		for (String definition : split(matcher.group(2)))
+			columns.add(createColumn(definition));
+		List<String> keyColumns = new ArrayList<>();
+		List<Boolean> descending = new ArrayList<>();
+		parseKeyParts(matcher.group(3), keyColumns, descending);
+		String parent = matcher.group(4) == null ? null : unquote(matcher.group(4));
+		return new InMemoryTable(name, parent, columns, keyColumns, descending);
+	}
+
+	private static InMemoryTable.Column createColumn(String definition)
+	{
+		Matcher matcher = COLUMN.matcher(definition);
+		if (!matcher.matches())
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Invalid column definition: " + definition);
+		String name = unquote(matcher.group(1));
+		boolean array = matcher.group(3) != null;
+		String baseType = (array ? matcher.group(3) : matcher.group(5)).toUpperCase();
+		String length = array ? matcher.group(4) : matcher.group(6);
+		Type type = toType(baseType);
+		String spannerType = baseType;
+		int size = 0;
+		if (length != null)
+		{
+			spannerType = spannerType + "(" + length.toUpperCase() + ")";
+			if (!"MAX".equalsIgnoreCase(length))
+				size = Integer.parseInt(length);
+		}
+		if (array)
+		{
+			type = Type.array(type);
+			spannerType = "ARRAY<" + spannerType + ">";
+		}
+		return new InMemoryTable.Column(name, type, spannerType, size, matcher.group(7) == null);
+	}
+
+	private static Type toType(String name)
+	{
+		switch (name)
+		{
+		case "BOOL":
+			return Type.bool();
+		case "BYTES":
+			return Type.bytes();
+		case "DATE":
+			return Type.date();
+		case "FLOAT64":
+			return Type.float64();
+		case "INT64":
+			return Type.int64();
+		case "STRING":
+			return Type.string();
+		case "TIMESTAMP":
+			return Type.timestamp();
+		default:
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "Unknown type " + name);
+		}
+	}
+
+	private static InMemoryIndex createIndex(Matcher matcher)
+	{
+		List<String> columns = new ArrayList<>();
+		List<Boolean> descending = new ArrayList<>();
+		parseKeyParts(matcher.group(4), columns, descending);
+		List<String> storing = new ArrayList<>();
+		if (matcher.group(5) != null)
+		{
+			for (String column : split(matcher.group(5)))
+				storing.add(unquote(column));
+		}
+		return new InMemoryIndex(unquote(matcher.group(2)), unquote(matcher.group(3)), matcher.group(1) != null,
+				columns, descending, storing);
+	}
+
+	private static void parseKeyParts(String keyParts, List<String> columns, List<Boolean> descending)
+	{
+		for (String part : split(keyParts))
+		{
+			Matcher matcher = KEY_PART.matcher(part);
+			if (!matcher.matches())
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+						"Invalid key part: " + part);
+			columns.add(unquote(matcher.group(1)));
+			descending.add("DESC".equalsIgnoreCase(matcher.group(2)));
+		}
+	}
+
+	/**
+	 * Splits a comma separated list, ignoring commas between parentheses and
+	 * angle brackets
+	 */
+	private static List<String> split(String list)
+	{
+		if (list.trim().isEmpty())
+			return Collections.emptyList();
+		List<String> res = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for (int index = 0; index < list.length(); index++)
+		{
+			char c = list.charAt(index);
+			if (c == '(' || c == '<')
+				depth++;
+			else if (c == ')' || c == '>')
+				depth--;
+			else if (c == ',' && depth == 0)
+			{
+				res.add(list.substring(start, index).trim());
+				start = index + 1;
+			}
+		}
+		res.add(list.substring(start).trim());
+		return res;
+	}
+
+	private static String unquote(String identifier)
+	{
+		return CloudSpannerDriver.unquoteIdentifier(identifier.trim());
+	}
+
+}
@@ -0,0 +1,71 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A secondary index of an {@link InMemoryDatabase}. The in-memory database
+ * only registers the definition of an index, so that it can be returned as
+ * meta data and used for reading. Indices are not maintained, a read using an
+ * index scans the rows of the table.
+ *
+ * @author loite
+ *
+ */
+class InMemoryIndex
+{
+	private final String name;
+
+	private final String table;
+
+	private final boolean unique;
+
+	private final List<String> columns;
+
+	private final List<Boolean> descending;
+
+	private final List<String> storingColumns;
+
+	InMemoryIndex(String name, String table, boolean unique, List<String> columns, List<Boolean> descending,
+			List<String> storingColumns)
+	{
+		this.name = name;
+		this.table = table;
+		this.unique = unique;
+		this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+		this.descending = Collections.unmodifiableList(new ArrayList<>(descending));
+		this.storingColumns = Collections.unmodifiableList(new ArrayList<>(storingColumns));
+	}
+
+	String getName()
+	{
+		return name;
+	}
+
+	String getTable()
+	{
+		return table;
+	}
+
+	boolean isUnique()
+	{
+		return unique;
+	}
+
+	List<String> getColumns()
+	{
+		return columns;
+	}
+
+	boolean isDescending(int column)
+	{
+		return descending.get(column);
+	}
+
+	List<String> getStoringColumns()
+	{
+		return storingColumns;
+	}
+
+}
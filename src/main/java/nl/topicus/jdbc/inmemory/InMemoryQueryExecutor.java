@@ -0,0 +1,772 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.Code;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.cloud.spanner.Value;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import nl.topicus.jdbc.CloudSpannerDriver;
+
+/**
+ * Executes a query on an {@link InMemoryDatabase}. The executor supports
+ * basic queries on one table or sub query:
+ * <ul>
+ * <li>select lists with *, columns, literals, query parameters and the
+ * aggregate functions COUNT, MIN, MAX, SUM and AVG over all rows</li>
+ * <li>WHERE clauses with AND, OR, NOT, comparisons, IS NULL, IN, BETWEEN and
+ * LIKE</li>
+ * <li>DISTINCT, ORDER BY, LIMIT and OFFSET</li>
+ * </ul>
+ * Joins, GROUP BY, set operations and other functions are not supported.
+ * The caller must hold the read lock of the database.
+ *
+ * @author loite
+ *
+ */
+class InMemoryQueryExecutor
+{
+	private static final Set<String> AGGREGATE_FUNCTIONS = new HashSet<>(
+			Arrays.asList("COUNT", "MIN", "MAX", "SUM", "AVG"));
+
+	/**
+	 * The columns and rows of a table, a sub query or the result of a query
+	 */
+	private static final class Relation
+	{
+		private final String alias;
+
+		private final List<String> names = new ArrayList<>();
+
+		private final List<Type> types = new ArrayList<>();
+
+		private final List<Value[]> rows = new ArrayList<>();
+
+		private Relation(String alias)
+		{
+			this.alias = alias;
+		}
+
+		private int indexOf(Column column)
+		{
+			if (isQualified(column) && (alias == null || !alias.equalsIgnoreCase(unquote(column.getTable().getName()))))
+				return -1;
+			String name = unquote(column.getColumnName());
+			for (int index = 0; index < names.size(); index++)
+			{
+				if (names.get(index).equalsIgnoreCase(name))
+					return index;
+			}
+			return -1;
+		}
+	}
+
+	private final InMemoryDatabase database;
+
+	private final Map<String, Value> parameters;
+
+	private final List<String> parameterNames = new ArrayList<>();
+
+	private final String sql;
+
+	InMemoryQueryExecutor(InMemoryDatabase database, Statement statement)
+	{
+		this.database = database;
+		this.parameters = statement.getParameters();
+		this.sql = replaceNamedParameters(statement.getSql());
+	}
+
+	/**
+	 * Replaces the named parameters (@name) in the sql string with JDBC
+	 * parameters (?), as the parser does not support named parameters in all
+	 * places where Cloud Spanner supports them.
+	 */
+	private String replaceNamedParameters(String sql)
+	{
+		StringBuilder res = new StringBuilder(sql.length());
+		char quote = 0;
+		for (int index = 0; index < sql.length(); index++)
+		{
+			char c = sql.charAt(index);
+			if (quote != 0)
+			{
+				if (c == '\\' && index + 1 < sql.length())
+				{
+					res.append(c);
+					c = sql.charAt(++index);
+				}
+				else if (c == quote)
+				{
+					quote = 0;
+				}
+			}
+			else if (c == '\'' || c == '"' || c == '`')
+			{
+				quote = c;
+			}
+			else if (c == '@' && index + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(index + 1)))
+			{
+				int end = index + 1;
+				while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end)))
+					end++;
+				parameterNames.add(sql.substring(index + 1, end));
+				res.append('?');
+				index = end - 1;
+				continue;
+			}
+			res.append(c);
+		}
+		return res.toString();
+	}
+
+	ResultSet execute()
+	{
+		net.sf.jsqlparser.statement.Statement statement;
+		try
+		{
+			statement = CCJSqlParserUtil.parse(sql);
+		}
+		catch (JSQLParserException e)
+		{
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Could not parse query: " + sql, e);
+		}
+		if (!(statement instanceof Select))
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "Not a query: " + sql);
+		Select select = (Select) statement;
+		if (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty())
+			throw unsupported("WITH");
+		Relation result = select(select.getSelectBody());
+		List<StructField> fields = new ArrayList<>(result.names.size());
+		for (int index = 0; index < result.names.size(); index++)
+			fields.add(StructField.of(result.names.get(index), result.types.get(index)));
+		List<Struct> rows = new ArrayList<>(result.rows.size());
+		for (Value[] row : result.rows)
+		{
+			Struct.Builder builder = Struct.newBuilder();
+			for (int index = 0; index < row.length; index++)
+				builder.add(result.names.get(index), InMemoryValues.coerce(row[index], result.types.get(index)));
+			rows.add(builder.build());
+		}
+		return ResultSets.forRows(Type.struct(fields), rows);
+	}
+
+	private Relation select(SelectBody body)
+	{
+		if (!(body instanceof PlainSelect))
+			throw unsupported("Set operations");
+		PlainSelect select = (PlainSelect) body;
+		if (select.getJoins() != null && !select.getJoins().isEmpty())
+			throw unsupported("Joins");
+		if (select.getGroupByColumnReferences() != null || select.getHaving() != null)
+			throw unsupported("GROUP BY");
+		Relation source = from(select.getFromItem());
+		List<Value[]> filtered = new ArrayList<>();
+		for (Value[] row : source.rows)
+		{
+			if (select.getWhere() == null || isTrue(evaluate(select.getWhere(), source, row)))
+				filtered.add(row);
+		}
+
+		// The expressions of the select items, or null for the columns that
+		// are selected by a *, which are taken from the source columns
+		Relation result = new Relation(null);
+		List<Expression> expressions = new ArrayList<>();
+		List<Integer> sourceColumns = new ArrayList<>();
+		boolean aggregate = false;
+		for (SelectItem item : select.getSelectItems())
+		{
+			if (item instanceof AllColumns || item instanceof AllTableColumns)
+			{
+				for (int index = 0; index < source.names.size(); index++)
+				{
+					expressions.add(null);
+					sourceColumns.add(index);
+					result.names.add(source.names.get(index));
+					result.types.add(source.types.get(index));
+				}
+			}
+			else
+			{
+				SelectExpressionItem expressionItem = (SelectExpressionItem) item;
+				Expression expression = expressionItem.getExpression();
+				expressions.add(expression);
+				sourceColumns.add(null);
+				result.names.add(getName(expressionItem, source));
+				result.types.add(typeOf(expression, source));
+				aggregate = aggregate || isAggregate(expression);
+			}
+		}
+
+		if (aggregate)
+		{
+			Value[] row = new Value[expressions.size()];
+			Value[] first = filtered.isEmpty() ? nullRow(source) : filtered.get(0);
+			for (int index = 0; index < row.length; index++)
+			{
+				Expression expression = expressions.get(index);
+				if (expression == null)
+					row[index] = first[sourceColumns.get(index)];
+				else if (isAggregate(expression))
+					row[index] = aggregate((Function) expression, source, filtered);
+				else
+					row[index] = evaluate(expression, source, first);
+			}
+			result.rows.add(row);
+			return limit(select, result);
+		}
+
+		List<Value[][]> projected = new ArrayList<>(filtered.size());
+		for (Value[] row : filtered)
+		{
+			Value[] output = new Value[expressions.size()];
+			for (int index = 0; index < output.length; index++)
+				output[index] = expressions.get(index) == null ? row[sourceColumns.get(index)]
+						: evaluate(expressions.get(index), source, row);
+			projected.add(new Value[][] { row, output });
+		}
+		if (select.getDistinct() != null)
+		{
+			Set<List<Value>> seen = new LinkedHashSet<>();
+			List<Value[][]> distinct = new ArrayList<>();
+			for (Value[][] row : projected)
+			{
+				if (seen.add(Arrays.asList(row[1])))
+					distinct.add(row);
+			}
+			projected = distinct;
+		}
+		if (select.getOrderByElements() != null)
+			sort(projected, select.getOrderByElements(), source, result);
+		for (Value[][] row : projected)
+			result.rows.add(row[1]);
+		return limit(select, result);
+	}
+
+	private Relation from(FromItem item)
+	{
+		if (item == null)
+		{
+			Relation res = new Relation(null);
+			res.rows.add(new Value[0]);
+			return res;
+		}
+		if (item instanceof Table)
+		{
+			Table table = (Table) item;
+			InMemoryTable source = database.getTable(unquote(table.getFullyQualifiedName()));
+			Relation res = new Relation(
+					table.getAlias() == null ? source.getName() : unquote(table.getAlias().getName()));
+			for (InMemoryTable.Column column : source.getColumns())
+			{
+				res.names.add(column.getName());
+				res.types.add(column.getType());
+			}
+			res.rows.addAll(source.getRows());
+			return res;
+		}
+		if (item instanceof SubSelect)
+		{
+			SubSelect subSelect = (SubSelect) item;
+			if (subSelect.getWithItemsList() != null && !subSelect.getWithItemsList().isEmpty())
+				throw unsupported("WITH");
+			Relation query = select(subSelect.getSelectBody());
+			Relation res = new Relation(subSelect.getAlias() == null ? null : unquote(subSelect.getAlias().getName()));
+			res.names.addAll(query.names);
+			res.types.addAll(query.types);
+			res.rows.addAll(query.rows);
+			return res;
+		}
+		throw unsupported("FROM " + item);
+	}
+
+	private String getName(SelectExpressionItem item, Relation source)
+	{
+		if (item.getAlias() != null)
+			return unquote(item.getAlias().getName());
+		if (item.getExpression() instanceof Column)
+		{
+			int index = source.indexOf((Column) item.getExpression());
+			if (index > -1)
+				return source.names.get(index);
+		}
+		return "";
+	}
+
+	private void sort(List<Value[][]> rows, List<OrderByElement> orderBy, Relation source, Relation result)
+	{
+		Collections.sort(rows, new Comparator<Value[][]>()
+		{
+			@Override
+			public int compare(Value[][] o1, Value[][] o2)
+			{
+				for (OrderByElement element : orderBy)
+				{
+					int res = InMemoryValues.compare(orderValue(element.getExpression(), source, result, o1),
+							orderValue(element.getExpression(), source, result, o2));
+					if (res != 0)
+						return element.isAsc() ? res : -res;
+				}
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Returns the value to order a row by. An ORDER BY expression can refer to
+	 * a column of the result by its position or by its alias, or be an
+	 * expression on the source row.
+	 */
+	private Value orderValue(Expression expression, Relation source, Relation result, Value[][] row)
+	{
+		if (expression instanceof LongValue)
+		{
+			int position = (int) ((LongValue) expression).getValue();
+			if (position < 1 || position > row[1].length)
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+						"ORDER BY position out of range: " + position);
+			return row[1][position - 1];
+		}
+		if (expression instanceof Column && !isQualified((Column) expression))
+		{
+			int index = result.indexOf((Column) expression);
+			if (index > -1)
+				return row[1][index];
+		}
+		return evaluate(expression, source, row[0]);
+	}
+
+	private Relation limit(PlainSelect select, Relation result)
+	{
+		long offset = 0L;
+		long count = Long.MAX_VALUE;
+		Limit limit = select.getLimit();
+		if (limit != null)
+		{
+			if (limit.getRowCount() != null && !limit.isLimitAll() && !limit.isLimitNull())
+				count = evaluateConstant(limit.getRowCount());
+			if (limit.getOffset() != null)
+				offset = evaluateConstant(limit.getOffset());
+		}
+		if (select.getOffset() != null)
+		{
+			if (select.getOffset().isOffsetJdbcParameter())
+				offset = getParameter(parameterNames.size()).getInt64();
+			else
+				offset = select.getOffset().getOffset();
+		}
+		if (offset == 0L && count >= result.rows.size())
+			return result;
+		Relation res = new Relation(null);
+		res.names.addAll(result.names);
+		res.types.addAll(result.types);
+		for (long index = offset; index < result.rows.size() && index - offset < count; index++)
+			res.rows.add(result.rows.get((int) index));
+		return res;
+	}
+
+	private long evaluateConstant(Expression expression)
+	{
+		Value value = evaluate(expression, new Relation(null), new Value[0]);
+		if (value.isNull() || value.getType().getCode() != Code.INT64)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Expected an INT64 value: " + expression);
+		return value.getInt64();
+	}
+
+	private static Value[] nullRow(Relation relation)
+	{
+		Value[] res = new Value[relation.types.size()];
+		for (int index = 0; index < res.length; index++)
+			res[index] = InMemoryValues.nullValue(relation.types.get(index));
+		return res;
+	}
+
+	private static boolean isAggregate(Expression expression)
+	{
+		return expression instanceof Function
+				&& AGGREGATE_FUNCTIONS.contains(((Function) expression).getName().toUpperCase());
+	}
+
+	private Value aggregate(Function function, Relation source, List<Value[]> rows)
+	{
+		String name = function.getName().toUpperCase();
+		if ("COUNT".equals(name) && function.isAllColumns())
+			return Value.int64(rows.size());
+		Expression argument = getSingleArgument(function);
+		List<Value> values = new ArrayList<>(rows.size());
+		for (Value[] row : rows)
+		{
+			Value value = evaluate(argument, source, row);
+			if (!value.isNull())
+				values.add(value);
+		}
+		if (function.isDistinct())
+			values = new ArrayList<>(new LinkedHashSet<>(values));
+		if ("COUNT".equals(name))
+			return Value.int64(values.size());
+		Type type = typeOf(function, source);
+		if (values.isEmpty())
+			return InMemoryValues.nullValue(type);
+		switch (name)
+		{
+		case "MIN":
+			return Collections.min(values, InMemoryValues::compare);
+		case "MAX":
+			return Collections.max(values, InMemoryValues::compare);
+		case "SUM":
+			if (type.getCode() == Code.INT64)
+			{
+				long sum = 0L;
+				for (Value value : values)
+					sum = Math.addExact(sum, value.getInt64());
+				return Value.int64(sum);
+			}
+			return Value.float64(sumAsDouble(values));
+		default:
+			return Value.float64(sumAsDouble(values) / values.size());
+		}
+	}
+
+	private static double sumAsDouble(List<Value> values)
+	{
+		double sum = 0d;
+		for (Value value : values)
+		{
+			if (!InMemoryValues.isNumeric(value.getType().getCode()))
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+						"Cannot compute the sum of values of type " + value.getType());
+			sum += InMemoryValues.toDouble(value);
+		}
+		return sum;
+	}
+
+	private static Expression getSingleArgument(Function function)
+	{
+		if (function.getParameters() == null || function.getParameters().getExpressions().size() != 1)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Function " + function.getName() + " expects one argument");
+		return function.getParameters().getExpressions().get(0);
+	}
+
+	private Type typeOf(Expression expression, Relation source)
+	{
+		if (expression instanceof Column)
+		{
+			int index = source.indexOf((Column) expression);
+			return index > -1 ? source.types.get(index) : evaluate(expression, source, null).getType();
+		}
+		if (expression instanceof LongValue || expression instanceof NullValue)
+			return Type.int64();
+		if (expression instanceof DoubleValue)
+			return Type.float64();
+		if (expression instanceof StringValue)
+			return Type.string();
+		if (expression instanceof SignedExpression)
+			return typeOf(((SignedExpression) expression).getExpression(), source);
+		if (expression instanceof JdbcParameter)
+			return getParameter(((JdbcParameter) expression).getIndex()).getType();
+		if (expression instanceof Parenthesis && !((Parenthesis) expression).isNot())
+			return typeOf(((Parenthesis) expression).getExpression(), source);
+		if (expression instanceof Function)
+		{
+			Function function = (Function) expression;
+			switch (function.getName().toUpperCase())
+			{
+			case "COUNT":
+				return Type.int64();
+			case "MIN":
+			case "MAX":
+			case "SUM":
+				return typeOf(getSingleArgument(function), source);
+			case "AVG":
+				return Type.float64();
+			default:
+				return Type.string();
+			}
+		}
+		return Type.bool();
+	}
+
+	private Value getParameter(Integer index)
+	{
+		if (index == null || index < 1 || index > parameterNames.size())
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Invalid parameter index: " + index);
+		String name = parameterNames.get(index - 1);
+		Value res = parameters.get(name);
+		if (res == null)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"No parameter found for binding: " + name);
+		return res;
+	}
+
+	private static boolean isTrue(Value value)
+	{
+		return !value.isNull() && value.getType().getCode() == Code.BOOL && value.getBool();
+	}
+
+	private static Value toBool(Value value)
+	{
+		if (value.getType().getCode() != Code.BOOL)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Expected a BOOL value: " + value);
+		return value;
+	}
+
+	private static Value not(Value value)
+	{
+		return toBool(value).isNull() ? value : Value.bool(!value.getBool());
+	}
+
+	private Value evaluate(Expression expression, Relation source, Value[] row)
+	{
+		Value res = evaluateExpression(expression, source, row);
+		if (expression instanceof BinaryExpression && ((BinaryExpression) expression).isNot())
+			return not(res);
+		return res;
+	}
+
+	private Value evaluateExpression(Expression expression, Relation source, Value[] row)
+	{
+		if (expression instanceof Column)
+			return evaluateColumn((Column) expression, source, row);
+		if (expression instanceof LongValue)
+			return Value.int64(((LongValue) expression).getValue());
+		if (expression instanceof DoubleValue)
+			return Value.float64(((DoubleValue) expression).getValue());
+		if (expression instanceof StringValue)
+			return Value.string(((StringValue) expression).getNotExcapedValue());
+		if (expression instanceof NullValue)
+			return Value.int64((Long) null);
+		if (expression instanceof JdbcParameter)
+			return getParameter(((JdbcParameter) expression).getIndex());
+		if (expression instanceof SignedExpression)
+			return evaluateSigned((SignedExpression) expression, source, row);
+		if (expression instanceof Parenthesis)
+		{
+			Value res = evaluate(((Parenthesis) expression).getExpression(), source, row);
+			return ((Parenthesis) expression).isNot() ? not(res) : res;
+		}
+		if (expression instanceof NotExpression)
+			return not(evaluate(((NotExpression) expression).getExpression(), source, row));
+		if (expression instanceof AndExpression)
+			return and(toBool(evaluate(((AndExpression) expression).getLeftExpression(), source, row)),
+					toBool(evaluate(((AndExpression) expression).getRightExpression(), source, row)));
+		if (expression instanceof OrExpression)
+			return not(and(not(evaluate(((OrExpression) expression).getLeftExpression(), source, row)),
+					not(evaluate(((OrExpression) expression).getRightExpression(), source, row))));
+		if (expression instanceof IsNullExpression)
+		{
+			IsNullExpression isNull = (IsNullExpression) expression;
+			return Value.bool(evaluate(isNull.getLeftExpression(), source, row).isNull() != isNull.isNot());
+		}
+		if (expression instanceof InExpression)
+			return evaluateIn((InExpression) expression, source, row);
+		if (expression instanceof Between)
+			return evaluateBetween((Between) expression, source, row);
+		if (expression instanceof LikeExpression)
+			return evaluateLike((LikeExpression) expression, source, row);
+		if (expression instanceof EqualsTo || expression instanceof NotEqualsTo || expression instanceof GreaterThan
+				|| expression instanceof GreaterThanEquals || expression instanceof MinorThan
+				|| expression instanceof MinorThanEquals)
+			return evaluateComparison((BinaryExpression) expression, source, row);
+		if (expression instanceof Function)
+			return evaluateFunction((Function) expression, source, row);
+		throw unsupported("Expression " + expression);
+	}
+
+	private static Value evaluateColumn(Column column, Relation source, Value[] row)
+	{
+		int index = source.indexOf(column);
+		if (index > -1)
+			return row == null ? InMemoryValues.nullValue(source.types.get(index)) : row[index];
+		if (!isQualified(column))
+		{
+			if ("TRUE".equalsIgnoreCase(column.getColumnName()))
+				return Value.bool(true);
+			if ("FALSE".equalsIgnoreCase(column.getColumnName()))
+				return Value.bool(false);
+		}
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+				"Unrecognized name: " + column.getFullyQualifiedName());
+	}
+
+	private Value evaluateSigned(SignedExpression expression, Relation source, Value[] row)
+	{
+		Value value = evaluate(expression.getExpression(), source, row);
+		if (expression.getSign() == '+')
+			return value;
+		if (expression.getSign() != '-')
+			throw unsupported("Operator " + expression.getSign());
+		if (value.getType().getCode() == Code.INT64)
+			return value.isNull() ? value : Value.int64(-value.getInt64());
+		if (value.getType().getCode() == Code.FLOAT64)
+			return value.isNull() ? value : Value.float64(-value.getFloat64());
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+				"Cannot negate a value of type " + value.getType());
+	}
+
+	private static Value and(Value left, Value right)
+	{
+		if ((!left.isNull() && !left.getBool()) || (!right.isNull() && !right.getBool()))
+			return Value.bool(false);
+		if (left.isNull() || right.isNull())
+			return Value.bool((Boolean) null);
+		return Value.bool(true);
+	}
+
+	private Value evaluateComparison(BinaryExpression expression, Relation source, Value[] row)
+	{
+		Value left = evaluate(expression.getLeftExpression(), source, row);
+		Value right = evaluate(expression.getRightExpression(), source, row);
+		if (left.isNull() || right.isNull())
+			return Value.bool((Boolean) null);
+		int res = InMemoryValues.compare(left, right);
+		if (expression instanceof EqualsTo)
+			return Value.bool(res == 0);
+		if (expression instanceof NotEqualsTo)
+			return Value.bool(res != 0);
+		if (expression instanceof GreaterThan)
+			return Value.bool(res > 0);
+		if (expression instanceof GreaterThanEquals)
+			return Value.bool(res >= 0);
+		if (expression instanceof MinorThan)
+			return Value.bool(res < 0);
+		return Value.bool(res <= 0);
+	}
+
+	private Value evaluateIn(InExpression expression, Relation source, Value[] row)
+	{
+		if (!(expression.getRightItemsList() instanceof ExpressionList))
+			throw unsupported("IN " + expression.getRightItemsList());
+		Value left = evaluate(expression.getLeftExpression(), source, row);
+		if (left.isNull())
+			return Value.bool((Boolean) null);
+		boolean containsNull = false;
+		for (Expression item : ((ExpressionList) expression.getRightItemsList()).getExpressions())
+		{
+			Value value = evaluate(item, source, row);
+			if (value.isNull())
+				containsNull = true;
+			else if (InMemoryValues.compare(left, value) == 0)
+				return Value.bool(!expression.isNot());
+		}
+		return containsNull ? Value.bool((Boolean) null) : Value.bool(expression.isNot());
+	}
+
+	private Value evaluateBetween(Between expression, Relation source, Value[] row)
+	{
+		Value value = evaluate(expression.getLeftExpression(), source, row);
+		Value start = evaluate(expression.getBetweenExpressionStart(), source, row);
+		Value end = evaluate(expression.getBetweenExpressionEnd(), source, row);
+		if (value.isNull() || start.isNull() || end.isNull())
+			return Value.bool((Boolean) null);
+		boolean res = InMemoryValues.compare(value, start) >= 0 && InMemoryValues.compare(value, end) <= 0;
+		return Value.bool(res != expression.isNot());
+	}
+
+	private Value evaluateLike(LikeExpression expression, Relation source, Value[] row)
+	{
+		Value value = evaluate(expression.getLeftExpression(), source, row);
+		Value pattern = evaluate(expression.getRightExpression(), source, row);
+		if (value.isNull() || pattern.isNull())
+			return Value.bool((Boolean) null);
+		if (value.getType().getCode() != Code.STRING || pattern.getType().getCode() != Code.STRING)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"LIKE expects STRING values: " + expression);
+		// NOT LIKE is handled by evaluate(...)
+		return Value.bool(InMemoryValues.like(value.getString(), pattern.getString()));
+	}
+
+	private Value evaluateFunction(Function function, Relation source, Value[] row)
+	{
+		String name = function.getName().toUpperCase();
+		if (AGGREGATE_FUNCTIONS.contains(name))
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Aggregate function " + name + " is only supported as a select item");
+		if (!"UPPER".equals(name) && !"LOWER".equals(name))
+			throw unsupported("Function " + name);
+		Value value = evaluate(getSingleArgument(function), source, row);
+		if (value.getType().getCode() != Code.STRING)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					name + " expects a STRING value");
+		if (value.isNull())
+			return value;
+		return Value.string("UPPER".equals(name) ? value.getString().toUpperCase() : value.getString().toLowerCase());
+	}
+
+	private static boolean isQualified(Column column)
+	{
+		return column.getTable() != null && column.getTable().getName() != null;
+	}
+
+	private static String unquote(String identifier)
+	{
+		if (identifier.isEmpty())
+			return identifier;
+		return CloudSpannerDriver.unquoteIdentifier(identifier);
+	}
+
+	private static SpannerException unsupported(String feature)
+	{
+		return SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+				feature + " is not supported by the in-memory database");
+	}
+
+}
@@ -0,0 +1,111 @@
+package nl.topicus.jdbc.inmemory;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Options.QueryOption;
+import com.google.cloud.spanner.Options.ReadOption;
+import com.google.cloud.spanner.ReadOnlyTransaction;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+
+/**
+ * Read context of an {@link InMemoryDatabaseClient}. Each read and query
+ * waits for the simulated latency of the client before it returns its
+ * results. Query analysis is not supported.
+ *
+ * @author loite
+ *
+ */
+class InMemoryReadContext implements ReadOnlyTransaction
+{
+	private final InMemoryDatabaseClient client;
+
+	private final Timestamp readTimestamp;
+
+	private boolean closed;
+
+	InMemoryReadContext(InMemoryDatabaseClient client)
+	{
+		this.client = client;
+		this.readTimestamp = client.getDatabase().getReadTimestamp();
+	}
+
+	InMemoryDatabaseClient getClient()
+	{
+		return client;
+	}
+
+	void checkNotClosed()
+	{
+		if (closed)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+					"This read context has been closed");
+	}
+
+	@Override
+	public ResultSet read(String table, KeySet keys, Iterable<String> columns, ReadOption... options)
+	{
+		checkNotClosed();
+		client.simulateLatency();
+		return client.getDatabase().read(table, keys, columns);
+	}
+
+	@Override
+	public ResultSet readUsingIndex(String table, String index, KeySet keys, Iterable<String> columns,
+			ReadOption... options)
+	{
+		checkNotClosed();
+		client.simulateLatency();
+		return client.getDatabase().readUsingIndex(table, index, keys, columns);
+	}
+
+	@Override
+	public Struct readRow(String table, Key key, Iterable<String> columns)
+	{
+		try (ResultSet rs = read(table, KeySet.singleKey(key), columns))
+		{
+			return rs.next() ? rs.getCurrentRowAsStruct() : null;
+		}
+	}
+
+	@Override
+	public Struct readRowUsingIndex(String table, String index, Key key, Iterable<String> columns)
+	{
+		try (ResultSet rs = readUsingIndex(table, index, KeySet.singleKey(key), columns))
+		{
+			return rs.next() ? rs.getCurrentRowAsStruct() : null;
+		}
+	}
+
+	@Override
+	public ResultSet executeQuery(Statement statement, QueryOption... options)
+	{
+		checkNotClosed();
+		client.simulateLatency();
+		return client.getDatabase().executeQuery(statement);
+	}
+
+	@Override
+	public ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode)
+	{
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+				"Query analysis is not supported by the in-memory database");
+	}
+
+	@Override
+	public Timestamp getReadTimestamp()
+	{
+		return readTimestamp;
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+	}
+
+}
@@ -0,0 +1,94 @@
+package nl.topicus.jdbc.inmemory;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.spanner.DatabaseAdminClient;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.InstanceAdminClient;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.SpannerOptions;
+
+/**
+ * {@link Spanner} implementation that uses {@link InMemoryDatabase}s instead
+ * of a Cloud Spanner instance. It can be used to test and load test the
+ * driver without a network connection, for example by setting the URL
+ * property InMemoryDatabase=true. The admin clients are not supported, DDL
+ * statements are executed by the {@link InMemoryDatabase}, which is the
+ * {@link nl.topicus.jdbc.CloudSpannerDatabaseAdmin} of the connections to
+ * it.
+ *
+ * @author loite
+ *
+ */
+public class InMemorySpanner implements Spanner
+{
+	public static final String DEFAULT_PROJECT_ID = "in-memory-project";
+
+	private final SpannerOptions options;
+
+	private final long latency;
+
+	/**
+	 *
+	 * @param projectId
+	 *            The project id to use, or <code>null</code> for
+	 *            {@link #DEFAULT_PROJECT_ID}
+	 * @param latency
+	 *            The time in milliseconds that each read, query and commit
+	 *            waits to simulate the round trip to Cloud Spanner
+	 */
+	public InMemorySpanner(String projectId, long latency)
+	{
+		if (latency < 0L)
+			throw new IllegalArgumentException("latency may not be negative");
+		this.options = SpannerOptions.newBuilder()
+				.setProjectId(projectId == null ? DEFAULT_PROJECT_ID : projectId)
+				.setCredentials(NoCredentials.getInstance()).build();
+		this.latency = latency;
+	}
+
+	@Override
+	public SpannerOptions getOptions()
+	{
+		return options;
+	}
+
+	public long getLatency()
+	{
+		return latency;
+	}
+
+	public InMemoryDatabase getDatabase(DatabaseId id)
+	{
+		return InMemoryDatabase.get(id);
+	}
+
+	@Override
+	public DatabaseClient getDatabaseClient(DatabaseId id)
+	{
+		return new InMemoryDatabaseClient(getDatabase(id), latency);
+	}
+
+	@Override
+	public DatabaseAdminClient getDatabaseAdminClient()
+	{
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+				"The database admin client is not supported by the in-memory database");
+	}
+
+	@Override
+	public InstanceAdminClient getInstanceAdminClient()
+	{
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+				"The instance admin client is not supported by the in-memory database");
+	}
+
+	@Override
+	public void close()
+	{
+		// Nothing to close, the databases remain available for new clients
+	}
+
+}
@@ -0,0 +1,442 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeyRange;
+import com.google.cloud.spanner.KeyRange.Endpoint;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Value;
+
+/**
+ * A table of an {@link InMemoryDatabase}. The rows are kept in primary key
+ * order. A row is never changed once it has been stored in the table, an
+ * update replaces the row with a new one. Callers must hold the lock of the
+ * database while accessing a table.
+ *
+ * @author loite
+ *
+ */
+class InMemoryTable
+{
+	static final class Column
+	{
+		private final String name;
+
+		private final Type type;
+
+		private final String spannerType;
+
+		private final int size;
+
+		private final boolean nullable;
+
+		Column(String name, Type type, String spannerType, int size, boolean nullable)
+		{
+			this.name = name;
+			this.type = type;
+			this.spannerType = spannerType;
+			this.size = size;
+			this.nullable = nullable;
+		}
+
+		String getName()
+		{
+			return name;
+		}
+
+		Type getType()
+		{
+			return type;
+		}
+
+		/**
+		 *
+		 * @return The type of the column as it is specified in DDL, for
+		 *         example STRING(100)
+		 */
+		String getSpannerType()
+		{
+			return spannerType;
+		}
+
+		/**
+		 *
+		 * @return The maximum length of a STRING or BYTES column, or 0 if no
+		 *         length or MAX was specified
+		 */
+		int getSize()
+		{
+			return size;
+		}
+
+		boolean isNullable()
+		{
+			return nullable;
+		}
+	}
+
+	private final String name;
+
+	private final String parentTable;
+
+	private final List<Column> columns;
+
+	private final Map<String, Integer> columnIndices = new HashMap<>();
+
+	private final int[] keyColumns;
+
+	private final boolean[] descending;
+
+	private final TreeMap<Value[], Value[]> rows;
+
+	InMemoryTable(String name, String parentTable, List<Column> columns, List<String> keyColumnNames,
+			List<Boolean> descending)
+	{
+		this.name = name;
+		this.parentTable = parentTable;
+		this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+		for (int index = 0; index < columns.size(); index++)
+		{
+			if (columnIndices.put(columns.get(index).getName().toUpperCase(), index) != null)
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Duplicate column name " + columns.get(index).getName() + " in table " + name);
+		}
+		this.keyColumns = new int[keyColumnNames.size()];
+		this.descending = new boolean[keyColumnNames.size()];
+		for (int index = 0; index < keyColumns.length; index++)
+		{
+			keyColumns[index] = getColumnIndex(keyColumnNames.get(index));
+			this.descending[index] = descending.get(index);
+		}
+		this.rows = new TreeMap<>(new Comparator<Value[]>()
+		{
+			@Override
+			public int compare(Value[] o1, Value[] o2)
+			{
+				return compareKeys(o1, o2);
+			}
+		});
+	}
+
+	String getName()
+	{
+		return name;
+	}
+
+	/**
+	 *
+	 * @return The name of the table that this table is interleaved in, or
+	 *         <code>null</code>
+	 */
+	String getParentTable()
+	{
+		return parentTable;
+	}
+
+	List<Column> getColumns()
+	{
+		return columns;
+	}
+
+	List<Column> getKeyColumns()
+	{
+		List<Column> res = new ArrayList<>(keyColumns.length);
+		for (int index : keyColumns)
+			res.add(columns.get(index));
+		return res;
+	}
+
+	boolean isDescending(int keyPart)
+	{
+		return descending[keyPart];
+	}
+
+	boolean hasColumn(String column)
+	{
+		return columnIndices.containsKey(column.toUpperCase());
+	}
+
+	int getColumnIndex(String column)
+	{
+		Integer res = columnIndices.get(column.toUpperCase());
+		if (res == null)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND,
+					"Column not found in table " + name + ": " + column);
+		return res;
+	}
+
+	Collection<Value[]> getRows()
+	{
+		return rows.values();
+	}
+
+	int getRowCount()
+	{
+		return rows.size();
+	}
+
+	/**
+	 * Compares the key parts of the given keys in primary key order. If one of
+	 * the keys has less parts than the other, only that number of parts is
+	 * compared, so that a key can also be compared with a key prefix.
+	 */
+	private int compareKeys(Value[] key1, Value[] key2)
+	{
+		int length = Math.min(key1.length, key2.length);
+		for (int index = 0; index < length; index++)
+		{
+			int res = InMemoryValues.compare(key1[index], key2[index]);
+			if (res != 0)
+				return descending[index] ? -res : res;
+		}
+		return 0;
+	}
+
+	private Value[] keyOf(Value[] row)
+	{
+		Value[] res = new Value[keyColumns.length];
+		for (int index = 0; index < keyColumns.length; index++)
+			res[index] = row[keyColumns[index]];
+		return res;
+	}
+
+	private Value[] toKey(Key key, boolean allowPrefix)
+	{
+		if (key.size() > keyColumns.length || (!allowPrefix && key.size() != keyColumns.length))
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Wrong number of key parts for table " + name + ": " + key);
+		Value[] res = new Value[key.size()];
+		int index = 0;
+		for (Object part : key.getParts())
+		{
+			res[index] = InMemoryValues.fromKeyPart(part, columns.get(keyColumns[index]).getType());
+			index++;
+		}
+		return res;
+	}
+
+	Value[] get(Key key)
+	{
+		return rows.get(toKey(key, false));
+	}
+
+	/**
+	 *
+	 * @return The rows that are included in the given key set, in primary key
+	 *         order
+	 */
+	List<Value[]> read(KeySet keySet)
+	{
+		if (keySet.isAll())
+			return new ArrayList<>(rows.values());
+		TreeMap<Value[], Value[]> res = new TreeMap<>(rows.comparator());
+		for (Key key : keySet.getKeys())
+		{
+			Value[] row = get(key);
+			if (row != null)
+				res.put(keyOf(row), row);
+		}
+		for (KeyRange range : keySet.getRanges())
+		{
+			Value[] start = toKey(range.getStart(), true);
+			Value[] end = toKey(range.getEnd(), true);
+			for (Map.Entry<Value[], Value[]> entry : rows.entrySet())
+			{
+				if (isInRange(entry.getKey(), start, range.getStartType(), end, range.geEndType()))
+					res.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new ArrayList<>(res.values());
+	}
+
+	/**
+	 * Reads the rows whose values for the columns of the given index are in
+	 * the given key set. The keys of the key set are matched against the
+	 * columns of the index, a key with less parts than the index matches all
+	 * rows with that prefix.
+	 *
+	 * @return The rows in index order
+	 */
+	List<Value[]> readUsingIndex(InMemoryIndex index, KeySet keySet)
+	{
+		int[] indexColumns = new int[index.getColumns().size()];
+		for (int part = 0; part < indexColumns.length; part++)
+			indexColumns[part] = getColumnIndex(index.getColumns().get(part));
+		List<Value[]> res = new ArrayList<>();
+		for (Value[] row : rows.values())
+		{
+			if (keySet.isAll() || isInIndexKeySet(index, indexColumns, row, keySet))
+				res.add(row);
+		}
+		res.sort(new Comparator<Value[]>()
+		{
+			@Override
+			public int compare(Value[] o1, Value[] o2)
+			{
+				int res = compareIndexKeys(index, valuesOf(o1, indexColumns), valuesOf(o2, indexColumns));
+				return res == 0 ? compareKeys(keyOf(o1), keyOf(o2)) : res;
+			}
+		});
+		return res;
+	}
+
+	private boolean isInIndexKeySet(InMemoryIndex index, int[] indexColumns, Value[] row, KeySet keySet)
+	{
+		Value[] indexKey = valuesOf(row, indexColumns);
+		for (Key key : keySet.getKeys())
+		{
+			Value[] value = toIndexKey(index, indexColumns, key);
+			if (compareIndexKeys(index, indexKey, value) == 0)
+				return true;
+		}
+		for (KeyRange range : keySet.getRanges())
+		{
+			Value[] start = toIndexKey(index, indexColumns, range.getStart());
+			Value[] end = toIndexKey(index, indexColumns, range.getEnd());
+			int startCompare = compareIndexKeys(index, indexKey, start);
+			if (startCompare < 0
+					|| (startCompare == 0 && range.getStartType() == Endpoint.OPEN && start.length > 0))
+				continue;
+			int endCompare = compareIndexKeys(index, indexKey, end);
+			if (endCompare < 0 || (endCompare == 0 && (range.geEndType() == Endpoint.CLOSED || end.length == 0)))
+				return true;
+		}
+		return false;
+	}
+
+	private Value[] toIndexKey(InMemoryIndex index, int[] indexColumns, Key key)
+	{
+		if (key.size() > indexColumns.length)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Wrong number of key parts for index " + index.getName() + ": " + key);
+		Value[] res = new Value[key.size()];
+		int part = 0;
+		for (Object value : key.getParts())
+		{
+			res[part] = InMemoryValues.fromKeyPart(value, columns.get(indexColumns[part]).getType());
+			part++;
+		}
+		return res;
+	}
+
+	/**
+	 * Compares the key parts of the given index keys in index order. As with
+	 * {@link #compareKeys(Value[], Value[])}, only the number of parts of the
+	 * shortest key is compared.
+	 */
+	private static int compareIndexKeys(InMemoryIndex index, Value[] key1, Value[] key2)
+	{
+		int length = Math.min(key1.length, key2.length);
+		for (int part = 0; part < length; part++)
+		{
+			int res = InMemoryValues.compare(key1[part], key2[part]);
+			if (res != 0)
+				return index.isDescending(part) ? -res : res;
+		}
+		return 0;
+	}
+
+	private static Value[] valuesOf(Value[] row, int[] columnIndices)
+	{
+		Value[] res = new Value[columnIndices.length];
+		for (int index = 0; index < columnIndices.length; index++)
+			res[index] = row[columnIndices[index]];
+		return res;
+	}
+
+	private boolean isInRange(Value[] key, Value[] start, Endpoint startType, Value[] end, Endpoint endType)
+	{
+		int startCompare = compareKeys(key, start);
+		if (startCompare < 0 || (startCompare == 0 && startType == Endpoint.OPEN && start.length > 0))
+			return false;
+		int endCompare = compareKeys(key, end);
+		return endCompare < 0 || (endCompare == 0 && (endType == Endpoint.CLOSED || end.length == 0));
+	}
+
+	/**
+	 * Applies a mutation to this table. For each row that is changed, an
+	 * action that restores the previous version of the row is pushed onto the
+	 * given undo log.
+	 */
+	void apply(Mutation mutation, Deque<Runnable> undoLog)
+	{
+		if (mutation.getOperation() == Mutation.Op.DELETE)
+		{
+			for (Value[] row : read(mutation.getKeySet()))
+				put(keyOf(row), null, undoLog);
+			return;
+		}
+		Value[] values = new Value[columns.size()];
+		boolean[] specified = new boolean[columns.size()];
+		Iterator<Value> valueIterator = mutation.getValues().iterator();
+		for (String column : mutation.getColumns())
+		{
+			int index = getColumnIndex(column);
+			values[index] = InMemoryValues.coerce(valueIterator.next(), columns.get(index).getType());
+			specified[index] = true;
+		}
+		for (int index : keyColumns)
+		{
+			if (!specified[index])
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Key column " + columns.get(index).getName() + " of table " + name + " must be specified");
+		}
+		Value[] key = keyOf(values);
+		Value[] existing = rows.get(key);
+		switch (mutation.getOperation())
+		{
+		case INSERT:
+			if (existing != null)
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.ALREADY_EXISTS,
+						"Row already exists in table " + name + ": " + Arrays.toString(key));
+			break;
+		case UPDATE:
+			if (existing == null)
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND,
+						"Row not found in table " + name + ": " + Arrays.toString(key));
+			break;
+		case REPLACE:
+			existing = null;
+			break;
+		default:
+			break;
+		}
+		for (int index = 0; index < values.length; index++)
+		{
+			if (!specified[index])
+				values[index] = existing == null ? InMemoryValues.nullValue(columns.get(index).getType())
+						: existing[index];
+			if (!columns.get(index).isNullable() && values[index].isNull())
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Column " + columns.get(index).getName() + " of table " + name + " may not be null");
+		}
+		put(key, values, undoLog);
+	}
+
+	private void put(Value[] key, Value[] row, Deque<Runnable> undoLog)
+	{
+		Value[] previous = row == null ? rows.remove(key) : rows.put(key, row);
+		undoLog.push(() -> {
+			if (previous == null)
+				rows.remove(key);
+			else
+				rows.put(key, previous);
+		});
+	}
+
+}
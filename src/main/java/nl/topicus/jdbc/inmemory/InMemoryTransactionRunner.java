@@ -0,0 +1,98 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TransactionContext;
+import com.google.cloud.spanner.TransactionRunner;
+
+/**
+ * Read/write transaction of an {@link InMemoryDatabaseClient}. The mutations
+ * that are buffered by the transaction are committed atomically when the
+ * callable of the transaction returns. As in Cloud Spanner, the reads of the
+ * transaction do not see its own buffered mutations.
+ *
+ * @author loite
+ *
+ */
+class InMemoryTransactionRunner implements TransactionRunner
+{
+	private static final class InMemoryTransactionContext extends InMemoryReadContext implements TransactionContext
+	{
+		private final List<Mutation> mutations = new ArrayList<>();
+
+		private InMemoryTransactionContext(InMemoryDatabaseClient client)
+		{
+			super(client);
+		}
+
+		@Override
+		public void buffer(Mutation mutation)
+		{
+			checkNotClosed();
+			mutations.add(mutation);
+		}
+
+		@Override
+		public void buffer(Iterable<Mutation> mutations)
+		{
+			checkNotClosed();
+			for (Mutation mutation : mutations)
+				this.mutations.add(mutation);
+		}
+	}
+
+	private final InMemoryDatabaseClient client;
+
+	private Timestamp commitTimestamp;
+
+	private boolean used;
+
+	InMemoryTransactionRunner(InMemoryDatabaseClient client)
+	{
+		this.client = client;
+	}
+
+	@Override
+	public <T> T run(TransactionCallable<T> callable)
+	{
+		if (used)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+					"A TransactionRunner can only be used once");
+		used = true;
+		InMemoryTransactionContext transaction = new InMemoryTransactionContext(client);
+		T res;
+		try
+		{
+			res = callable.run(transaction);
+		}
+		catch (SpannerException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNKNOWN, e.getMessage(), e);
+		}
+		finally
+		{
+			transaction.close();
+		}
+		commitTimestamp = client.write(transaction.mutations);
+		return res;
+	}
+
+	@Override
+	public Timestamp getCommitTimestamp()
+	{
+		if (commitTimestamp == null)
+			throw new IllegalStateException("run() has not yet returned normally");
+		return commitTimestamp;
+	}
+
+}
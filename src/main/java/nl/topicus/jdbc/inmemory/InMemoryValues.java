@@ -0,0 +1,214 @@
+package nl.topicus.jdbc.inmemory;
+
+import java.util.regex.Pattern;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.Code;
+import com.google.cloud.spanner.Value;
+
+/**
+ * Conversion and comparison of the {@link Value}s that are stored in and
+ * computed by the in-memory database.
+ *
+ * @author loite
+ *
+ */
+final class InMemoryValues
+{
+	private InMemoryValues()
+	{
+	}
+
+	static Value nullValue(Type type)
+	{
+		switch (type.getCode())
+		{
+		case BOOL:
+			return Value.bool((Boolean) null);
+		case BYTES:
+			return Value.bytes(null);
+		case DATE:
+			return Value.date(null);
+		case FLOAT64:
+			return Value.float64((Double) null);
+		case INT64:
+			return Value.int64((Long) null);
+		case STRING:
+			return Value.string(null);
+		case TIMESTAMP:
+			return Value.timestamp(null);
+		case ARRAY:
+			return nullArray(type.getArrayElementType());
+		default:
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+					"Type " + type + " is not supported by the in-memory database");
+		}
+	}
+
+	private static Value nullArray(Type elementType)
+	{
+		switch (elementType.getCode())
+		{
+		case BOOL:
+			return Value.boolArray((boolean[]) null);
+		case BYTES:
+			return Value.bytesArray(null);
+		case DATE:
+			return Value.dateArray(null);
+		case FLOAT64:
+			return Value.float64Array((double[]) null);
+		case INT64:
+			return Value.int64Array((long[]) null);
+		case STRING:
+			return Value.stringArray(null);
+		case TIMESTAMP:
+			return Value.timestampArray(null);
+		default:
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNIMPLEMENTED,
+					"Type ARRAY<" + elementType + "> is not supported by the in-memory database");
+		}
+	}
+
+	/**
+	 * Converts a value to the given type. Only INT64 values can be converted
+	 * to FLOAT64, all other values must already have the given type.
+	 */
+	static Value coerce(Value value, Type type)
+	{
+		if (value.getType().equals(type))
+			return value;
+		if (value.isNull())
+			return nullValue(type);
+		if (type.getCode() == Code.FLOAT64 && value.getType().getCode() == Code.INT64)
+			return Value.float64(value.getInt64());
+		throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+				"Value " + value + " of type " + value.getType() + " cannot be converted to " + type);
+	}
+
+	/**
+	 * Converts a part of a {@link com.google.cloud.spanner.Key} to a value of
+	 * the given type.
+	 */
+	static Value fromKeyPart(Object part, Type type)
+	{
+		if (part == null)
+			return nullValue(type);
+		Value res;
+		if (part instanceof Boolean)
+			res = Value.bool((Boolean) part);
+		else if (part instanceof Long)
+			res = Value.int64((Long) part);
+		else if (part instanceof Double)
+			res = Value.float64((Double) part);
+		else if (part instanceof String)
+			res = Value.string((String) part);
+		else if (part instanceof ByteArray)
+			res = Value.bytes((ByteArray) part);
+		else if (part instanceof Timestamp)
+			res = Value.timestamp((Timestamp) part);
+		else if (part instanceof Date)
+			res = Value.date((Date) part);
+		else
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Unsupported key part " + part);
+		return coerce(res, type);
+	}
+
+	/**
+	 * Compares two values. NULL values are smaller than all other values, and
+	 * INT64 and FLOAT64 values can be compared with each other.
+	 */
+	static int compare(Value v1, Value v2)
+	{
+		if (v1.isNull())
+			return v2.isNull() ? 0 : -1;
+		if (v2.isNull())
+			return 1;
+		Code code1 = v1.getType().getCode();
+		Code code2 = v2.getType().getCode();
+		if (code1 != code2)
+		{
+			if (isNumeric(code1) && isNumeric(code2))
+				return Double.compare(toDouble(v1), toDouble(v2));
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Values of type " + v1.getType() + " and " + v2.getType() + " cannot be compared");
+		}
+		switch (code1)
+		{
+		case BOOL:
+			return Boolean.compare(v1.getBool(), v2.getBool());
+		case BYTES:
+			return compareBytes(v1.getBytes().toByteArray(), v2.getBytes().toByteArray());
+		case DATE:
+			return v1.getDate().compareTo(v2.getDate());
+		case FLOAT64:
+			return Double.compare(v1.getFloat64(), v2.getFloat64());
+		case INT64:
+			return Long.compare(v1.getInt64(), v2.getInt64());
+		case STRING:
+			return v1.getString().compareTo(v2.getString());
+		case TIMESTAMP:
+			return v1.getTimestamp().compareTo(v2.getTimestamp());
+		default:
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+					"Values of type " + v1.getType() + " cannot be compared");
+		}
+	}
+
+	static boolean isNumeric(Code code)
+	{
+		return code == Code.INT64 || code == Code.FLOAT64;
+	}
+
+	static double toDouble(Value value)
+	{
+		return value.getType().getCode() == Code.INT64 ? value.getInt64() : value.getFloat64();
+	}
+
+	private static int compareBytes(byte[] b1, byte[] b2)
+	{
+		int length = Math.min(b1.length, b2.length);
+		for (int i = 0; i < length; i++)
+		{
+			int res = Integer.compare(b1[i] & 0xff, b2[i] & 0xff);
+			if (res != 0)
+				return res;
+		}
+		return Integer.compare(b1.length, b2.length);
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the value matches the given LIKE pattern,
+	 *         in which % matches any number of characters and _ matches one
+	 *         character
+	 */
+	static boolean like(String value, String pattern)
+	{
+		StringBuilder regex = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (char c : pattern.toCharArray())
+		{
+			if (c == '%' || c == '_')
+			{
+				if (literal.length() > 0)
+					regex.append(Pattern.quote(literal.toString()));
+				literal.setLength(0);
+				regex.append(c == '%' ? ".*" : ".");
+			}
+			else
+			{
+				literal.append(c);
+			}
+		}
+		if (literal.length() > 0)
+			regex.append(Pattern.quote(literal.toString()));
+		return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(value).matches();
+	}
+
+}
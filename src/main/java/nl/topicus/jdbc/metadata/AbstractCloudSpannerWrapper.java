@@ -86,7 +86,7 @@ public abstract class AbstractCloudSpannerWrapper implements Wrapper
 	@Override
 	public <T> T unwrap(Class<T> iface) throws SQLException
 	{
-		if (isWrapperFor(getClass()))
+		if (isWrapperFor(iface))
 		{
 			return iface.cast(this);
 		}
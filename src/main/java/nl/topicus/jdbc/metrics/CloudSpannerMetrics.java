@@ -0,0 +1,244 @@
+package nl.topicus.jdbc.metrics;
+
+/**
+ * The metrics that the driver records for a connection. Each value is
+ * recorded both in the registry of the connection itself and in the registry
+ * of the driver, so that the metrics are available per connection and
+ * aggregated over all connections. All latencies are recorded in
+ * nanoseconds.
+ *
+ * The registry of the driver is by default a {@link DefaultMetricsRegistry},
+ * which can be published through JMX by calling
+ * {@link DefaultMetricsRegistry#registerMBean(String)}, or replaced by an
+ * application specific implementation with
+ * {@link #setDriverRegistry(MetricsRegistry)}.
+ *
+ * @author loite
+ *
+ */
+public final class CloudSpannerMetrics
+{
+	/**
+	 * Time to parse a SQL statement that was not yet in the statement cache
+	 */
+	public static final String PARSE_TIME = "parse.time";
+
+	/**
+	 * Time to bind the parameters of a statement to a Cloud Spanner statement
+	 * or to mutations
+	 */
+	public static final String BIND_TIME = "bind.time";
+
+	/**
+	 * Time until the first results of a query were received from Cloud
+	 * Spanner
+	 */
+	public static final String QUERY_TIME = "query.time";
+
+	/**
+	 * Number of rows that have been returned by queries
+	 */
+	public static final String ROWS_RETURNED = "rows.returned";
+
+	/**
+	 * Number of mutations that have been written or buffered in a transaction
+	 */
+	public static final String MUTATIONS_BUFFERED = "mutations.buffered";
+
+	/**
+	 * Time to commit a read/write transaction
+	 */
+	public static final String COMMIT_TIME = "commit.time";
+
+	/**
+	 * Number of times that a read/write transaction was retried because it
+	 * was aborted by Cloud Spanner
+	 */
+	public static final String TRANSACTION_RETRIES = "transaction.retries";
+
+	/**
+	 * Number of keep-alive statements that have been sent for idle
+	 * read/write transactions
+	 */
+	public static final String KEEP_ALIVE_PINGS = "keepalive.pings";
+
+	/**
+	 * Number of queries that have been split into partitions that were read
+	 * in parallel
+	 */
+	public static final String PARTITIONED_QUERIES = "partitioned.queries";
+
+	/**
+	 * Number of mutations that were not sent to Cloud Spanner because they
+	 * were coalesced with another mutation of the same row in a committed
+	 * transaction
+	 */
+	public static final String MUTATIONS_COALESCED = "mutations.coalesced";
+
+	private static volatile MetricsRegistry driverRegistry = new DefaultMetricsRegistry();
+
+	private final MetricsRegistry registry;
+
+	private final Histogram[] parseTime;
+
+	private final Histogram[] bindTime;
+
+	private final Histogram[] queryTime;
+
+	private final Counter[] rowsReturned;
+
+	private final Counter[] mutationsBuffered;
+
+	private final Histogram[] commitTime;
+
+	private final Counter[] transactionRetries;
+
+	private final Counter[] keepAlivePings;
+
+	private final Counter[] partitionedQueries;
+
+	private final Counter[] mutationsCoalesced;
+
+	/**
+	 * Creates the metrics of a new connection, which are recorded in a new
+	 * {@link DefaultMetricsRegistry} and in the current registry of the
+	 * driver
+	 */
+	public static CloudSpannerMetrics createConnectionMetrics()
+	{
+		return new CloudSpannerMetrics(new DefaultMetricsRegistry(), driverRegistry);
+	}
+
+	/**
+	 *
+	 * @param registry
+	 *            The registry to record the metrics in
+	 * @param parent
+	 *            An optional second registry to record the metrics in, may be
+	 *            <code>null</code>
+	 */
+	public CloudSpannerMetrics(MetricsRegistry registry, MetricsRegistry parent)
+	{
+		this.registry = registry;
+		MetricsRegistry[] registries = parent == null ? new MetricsRegistry[] { registry }
+				: new MetricsRegistry[] { registry, parent };
+		int n = registries.length;
+		parseTime = new Histogram[n];
+		bindTime = new Histogram[n];
+		queryTime = new Histogram[n];
+		rowsReturned = new Counter[n];
+		mutationsBuffered = new Counter[n];
+		commitTime = new Histogram[n];
+		transactionRetries = new Counter[n];
+		keepAlivePings = new Counter[n];
+		partitionedQueries = new Counter[n];
+		mutationsCoalesced = new Counter[n];
+		for (int i = 0; i < n; i++)
+		{
+			parseTime[i] = registries[i].histogram(PARSE_TIME);
+			bindTime[i] = registries[i].histogram(BIND_TIME);
+			queryTime[i] = registries[i].histogram(QUERY_TIME);
+			rowsReturned[i] = registries[i].counter(ROWS_RETURNED);
+			mutationsBuffered[i] = registries[i].counter(MUTATIONS_BUFFERED);
+			commitTime[i] = registries[i].histogram(COMMIT_TIME);
+			transactionRetries[i] = registries[i].counter(TRANSACTION_RETRIES);
+			keepAlivePings[i] = registries[i].counter(KEEP_ALIVE_PINGS);
+			partitionedQueries[i] = registries[i].counter(PARTITIONED_QUERIES);
+			mutationsCoalesced[i] = registries[i].counter(MUTATIONS_COALESCED);
+		}
+	}
+
+	/**
+	 *
+	 * @return The registry that the metrics of all connections are recorded
+	 *         in
+	 */
+	public static MetricsRegistry getDriverRegistry()
+	{
+		return driverRegistry;
+	}
+
+	/**
+	 * Sets the registry that the metrics of all connections are recorded in.
+	 * Connections that are already open keep recording in the previous
+	 * registry.
+	 */
+	public static void setDriverRegistry(MetricsRegistry registry)
+	{
+		if (registry == null)
+			throw new IllegalArgumentException("registry may not be null");
+		driverRegistry = registry;
+	}
+
+	/**
+	 *
+	 * @return The registry that only contains the metrics of this connection
+	 */
+	public MetricsRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	private static void record(Histogram[] histograms, long value)
+	{
+		for (Histogram histogram : histograms)
+			histogram.record(value);
+	}
+
+	private static void add(Counter[] counters, long value)
+	{
+		for (Counter counter : counters)
+			counter.add(value);
+	}
+
+	public void recordParseTime(long nanos)
+	{
+		record(parseTime, nanos);
+	}
+
+	public void recordBindTime(long nanos)
+	{
+		record(bindTime, nanos);
+	}
+
+	public void recordQueryTime(long nanos)
+	{
+		record(queryTime, nanos);
+	}
+
+	public void recordRowsReturned(long rows)
+	{
+		add(rowsReturned, rows);
+	}
+
+	public void recordMutationsBuffered(long mutations)
+	{
+		add(mutationsBuffered, mutations);
+	}
+
+	public void recordCommitTime(long nanos)
+	{
+		record(commitTime, nanos);
+	}
+
+	public void recordTransactionRetry()
+	{
+		add(transactionRetries, 1L);
+	}
+
+	public void recordKeepAlivePing()
+	{
+		add(keepAlivePings, 1L);
+	}
+
+	public void recordPartitionedQuery()
+	{
+		add(partitionedQueries, 1L);
+	}
+
+	public void recordMutationsCoalesced(long mutations)
+	{
+		add(mutationsCoalesced, mutations);
+	}
+
+}
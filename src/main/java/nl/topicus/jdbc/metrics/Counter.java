@@ -0,0 +1,21 @@
+package nl.topicus.jdbc.metrics;
+
+/**
+ * A monotonically increasing count, for example the number of rows that have
+ * been returned by queries.
+ *
+ * @author loite
+ *
+ */
+public interface Counter
+{
+	default void increment()
+	{
+		add(1L);
+	}
+
+	void add(long value);
+
+	long getCount();
+
+}
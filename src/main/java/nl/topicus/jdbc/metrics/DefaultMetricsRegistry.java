@@ -0,0 +1,78 @@
+package nl.topicus.jdbc.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * {@link MetricsRegistry} that keeps its metrics in memory, using
+ * {@link StripedCounter}s and {@link LogLinearHistogram}s. The metrics can be
+ * read directly, or through JMX after calling {@link #registerMBean(String)}.
+ *
+ * @author loite
+ *
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry, MetricsRegistryMXBean
+{
+	private static final String OBJECT_NAME_PREFIX = "nl.topicus.jdbc:type=Metrics,name=";
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	@Override
+	public Counter counter(String name)
+	{
+		return counters.computeIfAbsent(name, key -> new StripedCounter());
+	}
+
+	@Override
+	public Histogram histogram(String name)
+	{
+		return histograms.computeIfAbsent(name, key -> new LogLinearHistogram());
+	}
+
+	@Override
+	public Map<String, Long> getCounters()
+	{
+		Map<String, Long> res = new TreeMap<>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet())
+			res.put(entry.getKey(), entry.getValue().getCount());
+		return res;
+	}
+
+	@Override
+	public Map<String, HistogramSnapshot> getHistograms()
+	{
+		Map<String, HistogramSnapshot> res = new TreeMap<>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+			res.put(entry.getKey(), entry.getValue().getSnapshot());
+		return res;
+	}
+
+	/**
+	 * Registers this registry in the platform MBean server under the name
+	 * nl.topicus.jdbc:type=Metrics,name=&lt;name&gt;
+	 *
+	 * @param name
+	 *            The name to register the registry under, for example the name
+	 *            of the application
+	 * @return The object name of the registered MBean
+	 * @throws JMException
+	 *             if the registry could not be registered, for example
+	 *             because another MBean is already registered under the same
+	 *             name
+	 */
+	public ObjectName registerMBean(String name) throws JMException
+	{
+		ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+}
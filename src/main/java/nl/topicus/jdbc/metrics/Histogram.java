@@ -0,0 +1,21 @@
+package nl.topicus.jdbc.metrics;
+
+/**
+ * The distribution of a recorded value, for example the latency of commits
+ * in nanoseconds. Implementations must be safe for concurrent use and should
+ * make {@link #record(long)} cheap, as it is called on the hot paths of the
+ * driver.
+ *
+ * @author loite
+ *
+ */
+public interface Histogram
+{
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 */
+	void record(long value);
+
+	HistogramSnapshot getSnapshot();
+
+}
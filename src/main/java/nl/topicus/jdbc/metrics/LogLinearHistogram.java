@@ -0,0 +1,130 @@
+package nl.topicus.jdbc.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Histogram} with a fixed set of buckets in the style of an HDR
+ * histogram. Each power of two is divided into 32 linear sub-buckets, which
+ * bounds the relative error of the reported percentiles to about 3% over the
+ * entire range of long values, while recording a value only takes a few
+ * arithmetic operations and atomic increments and never allocates.
+ *
+ * @author loite
+ *
+ */
+public final class LogLinearHistogram implements Histogram
+{
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+	static int bucketIndex(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift);
+		return (shift + 1) * SUB_BUCKETS + subBucket - SUB_BUCKETS;
+	}
+
+	/**
+	 *
+	 * @return The lowest value that is recorded in the given bucket
+	 */
+	static long bucketLowerBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+		return subBucket << shift;
+	}
+
+	/**
+	 *
+	 * @return The highest value that is recorded in the given bucket
+	 */
+	static long bucketUpperBound(int index)
+	{
+		if (index == BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return bucketLowerBound(index + 1) - 1L;
+	}
+
+	@Override
+	public void record(long value)
+	{
+		long recorded = Math.max(value, 0L);
+		counts.incrementAndGet(bucketIndex(recorded));
+		count.increment();
+		sum.add(recorded);
+		min.accumulate(recorded);
+		max.accumulate(recorded);
+	}
+
+	/**
+	 * Creates a snapshot of this histogram. The snapshot is not atomic with
+	 * respect to concurrent calls to {@link #record(long)}, which means that
+	 * values that are recorded while the snapshot is created may be partly
+	 * included.
+	 */
+	@Override
+	public HistogramSnapshot getSnapshot()
+	{
+		long[] snapshot = new long[BUCKETS];
+		long total = 0L;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0L)
+			return new HistogramSnapshot(0L, 0L, 0L, 0d, 0L, 0L, 0L, 0L);
+		long minValue = min.get();
+		long maxValue = max.get();
+		return new HistogramSnapshot(total, minValue, maxValue, (double) sum.sum() / count.sum(),
+				valueAtPercentile(snapshot, total, 50d, minValue, maxValue),
+				valueAtPercentile(snapshot, total, 90d, minValue, maxValue),
+				valueAtPercentile(snapshot, total, 99d, minValue, maxValue),
+				valueAtPercentile(snapshot, total, 99.9d, minValue, maxValue));
+	}
+
+	/**
+	 *
+	 * @return The middle of the bucket that contains the value at the given
+	 *         percentile, limited to the recorded minimum and maximum
+	 */
+	private static long valueAtPercentile(long[] snapshot, long total, double percentile, long minValue,
+			long maxValue)
+	{
+		long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+		long seen = 0L;
+		for (int i = 0; i < snapshot.length; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+			{
+				long lower = bucketLowerBound(i);
+				long middle = lower + (bucketUpperBound(i) - lower) / 2L;
+				return Math.min(Math.max(middle, minValue), maxValue);
+			}
+		}
+		return maxValue;
+	}
+
+}
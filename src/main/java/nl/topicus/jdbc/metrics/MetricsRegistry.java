@@ -0,0 +1,31 @@
+package nl.topicus.jdbc.metrics;
+
+/**
+ * Creates and holds the named {@link Counter}s and {@link Histogram}s that
+ * the driver records its metrics in. Applications can plug in their own
+ * implementation to forward the metrics of the driver to a metrics library
+ * by calling {@link CloudSpannerMetrics#setDriverRegistry(MetricsRegistry)}.
+ * The driver calls {@link #counter(String)} and {@link #histogram(String)}
+ * once per metric when a connection is opened and records in the returned
+ * instances after that.
+ *
+ * @author loite
+ *
+ */
+public interface MetricsRegistry
+{
+	/**
+	 *
+	 * @return The counter with the given name, which is created if it does
+	 *         not yet exist
+	 */
+	Counter counter(String name);
+
+	/**
+	 *
+	 * @return The histogram with the given name, which is created if it does
+	 *         not yet exist
+	 */
+	Histogram histogram(String name);
+
+}
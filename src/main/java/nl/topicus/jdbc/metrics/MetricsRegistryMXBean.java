@@ -0,0 +1,25 @@
+package nl.topicus.jdbc.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link DefaultMetricsRegistry}
+ *
+ * @author loite
+ *
+ */
+public interface MetricsRegistryMXBean
+{
+	/**
+	 *
+	 * @return The current values of all counters, by name
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 *
+	 * @return Snapshots of all histograms, by name
+	 */
+	Map<String, HistogramSnapshot> getHistograms();
+
+}
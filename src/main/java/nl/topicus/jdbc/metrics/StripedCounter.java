@@ -0,0 +1,35 @@
+package nl.topicus.jdbc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Counter} that spreads concurrent updates over multiple cells, so
+ * that connections that record at the same time do not contend on one
+ * memory location.
+ *
+ * @author loite
+ *
+ */
+public final class StripedCounter implements Counter
+{
+	private final LongAdder count = new LongAdder();
+
+	@Override
+	public void increment()
+	{
+		count.increment();
+	}
+
+	@Override
+	public void add(long value)
+	{
+		count.add(value);
+	}
+
+	@Override
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+}
@@ -0,0 +1,111 @@
+package nl.topicus.jdbc.resultset;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.cloud.spanner.ForwardingResultSet;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+
+/**
+ * A Cloud Spanner result set that can be cancelled from another thread, for
+ * example by {@link java.sql.Statement#cancel()} or when the query timeout of
+ * a statement has expired. Cancelling the result set closes the underlying
+ * result set, which cancels the stream from the server, and makes the current
+ * and any following call to {@link #next()} throw the exception that was given
+ * as the reason for the cancellation.
+ *
+ * @author loite
+ *
+ */
+public class CancellableResultSet extends ForwardingResultSet
+{
+	private final ResultSet delegate;
+
+	private final Runnable onFinish;
+
+	private final AtomicBoolean finished = new AtomicBoolean();
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private volatile SpannerException cancelReason;
+
+	/**
+	 *
+	 * @param delegate
+	 *            The result set to read the rows from
+	 * @param onFinish
+	 *            Called once when the result set has been read completely,
+	 *            has failed or has been closed or cancelled. May be
+	 *            <code>null</code>.
+	 */
+	public CancellableResultSet(ResultSet delegate, Runnable onFinish)
+	{
+		super(delegate);
+		this.delegate = delegate;
+		this.onFinish = onFinish;
+	}
+
+	/**
+	 * Cancels the result set. This method may be called from any thread.
+	 *
+	 * @param reason
+	 *            The exception that is thrown by {@link #next()} from now on
+	 */
+	public void cancel(SpannerException reason)
+	{
+		cancelReason = reason;
+		close();
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelReason != null;
+	}
+
+	private void checkCancelled()
+	{
+		SpannerException reason = cancelReason;
+		if (reason != null)
+			throw reason;
+	}
+
+	private void finish()
+	{
+		if (finished.compareAndSet(false, true) && onFinish != null)
+			onFinish.run();
+	}
+
+	@Override
+	public boolean next() throws SpannerException
+	{
+		checkCancelled();
+		boolean res;
+		try
+		{
+			res = super.next();
+		}
+		catch (SpannerException e)
+		{
+			finish();
+			// Closing the stream fails the call to next() that is waiting
+			// for it, report the reason of the cancellation instead
+			checkCancelled();
+			throw e;
+		}
+		if (!res)
+			finish();
+		checkCancelled();
+		return res;
+	}
+
+	@Override
+	public void close()
+	{
+		if (closed.compareAndSet(false, true))
+		{
+			finish();
+			delegate.close();
+		}
+	}
+
+}
@@ -11,18 +11,22 @@ import java.nio.charset.StandardCharsets;
 import java.sql.Array;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
-import com.google.cloud.spanner.Type;
-import com.google.cloud.spanner.Type.Code;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Type.StructField;
 
-import nl.topicus.jdbc.CloudSpannerArray;
-import nl.topicus.jdbc.CloudSpannerDataType;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 import nl.topicus.jdbc.util.CloudSpannerConversionUtil;
 
 public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
@@ -43,10 +47,58 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 
 	private Statement statement;
 
+	/**
+	 * Column label to column index, created on the first access by label
+	 */
+	private Map<String, Integer> columnIndices;
+
+	private Map<String, Integer> caseInsensitiveColumnIndices;
+
+	/**
+	 * The accessor of each column, created on the first access that depends
+	 * on the type of the column
+	 */
+	private ColumnAccessor[] accessors;
+
+	/**
+	 * The metrics to record the query time and the number of rows in, or
+	 * <code>null</code> if no metrics should be recorded
+	 */
+	private final CloudSpannerMetrics metrics;
+
+	private long rowCount;
+
+	private boolean rowCountRecorded;
+
 	public CloudSpannerResultSet(Statement statement, com.google.cloud.spanner.ResultSet resultSet)
+	{
+		this(statement, resultSet, null);
+	}
+
+	/**
+	 *
+	 * @param metrics
+	 *            If not <code>null</code>, the time of the first call to
+	 *            {@link #next()}, which is when the first results are received
+	 *            from Cloud Spanner, is recorded as the query time, and the
+	 *            number of rows is recorded when the result set has been read
+	 *            completely or is closed
+	 */
+	public CloudSpannerResultSet(Statement statement, com.google.cloud.spanner.ResultSet resultSet,
+			CloudSpannerMetrics metrics)
 	{
 		this.statement = statement;
 		this.resultSet = resultSet;
+		this.metrics = metrics;
+	}
+
+	private void recordRowCount()
+	{
+		if (metrics != null && !rowCountRecorded)
+		{
+			rowCountRecorded = true;
+			metrics.recordRowsReturned(rowCount);
+		}
 	}
 
 	@Override
@@ -80,6 +132,30 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 			throw new SQLException("Resultset is closed");
 	}
 
+	/**
+	 * Moves the underlying result set to the next row and records the metrics
+	 * of the result set
+	 */
+	private boolean nextRow()
+	{
+		boolean res;
+		if (beforeFirst && metrics != null)
+		{
+			long start = System.nanoTime();
+			res = resultSet.next();
+			metrics.recordQueryTime(System.nanoTime() - start);
+		}
+		else
+		{
+			res = resultSet.next();
+		}
+		if (res)
+			rowCount++;
+		else
+			recordRowCount();
+		return res;
+	}
+
 	@Override
 	public boolean next() throws SQLException
 	{
@@ -89,8 +165,22 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 			nextCalledForMetaData = false;
 			return nextCalledForMetaDataResult;
 		}
+		boolean res;
+		try
+		{
+			res = nextRow();
+		}
+		catch (SpannerException e)
+		{
+			// Cancelled queries and queries that exceeded the query timeout
+			// of the statement
+			if (e.getErrorCode() == ErrorCode.DEADLINE_EXCEEDED)
+				throw new SQLTimeoutException(e.getMessage(), e);
+			if (e.getErrorCode() == ErrorCode.CANCELLED)
+				throw new SQLException(e.getMessage(), e);
+			throw e;
+		}
 		beforeFirst = false;
-		boolean res = resultSet.next();
 		afterLast = !res;
 
 		return res;
@@ -99,8 +189,12 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public void close() throws SQLException
 	{
-		resultSet.close();
-		closed = true;
+		if (!closed)
+		{
+			resultSet.close();
+			closed = true;
+			recordRowCount();
+		}
 	}
 
 	@Override
@@ -127,22 +221,11 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 		return isNull(columnIndex) ? 0 : resultSet.getDouble(columnIndex - 1);
 	}
 
-	private BigDecimal toBigDecimal(double d)
-	{
-		return BigDecimal.valueOf(d);
-	}
-
-	private BigDecimal toBigDecimal(double d, int scale)
-	{
-		BigDecimal res = BigDecimal.valueOf(d);
-		res = res.setScale(scale, RoundingMode.HALF_UP);
-		return res;
-	}
-
 	@Override
 	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException
 	{
-		return isNull(columnIndex) ? null : toBigDecimal(resultSet.getDouble(columnIndex - 1), scale);
+		BigDecimal res = getBigDecimal(columnIndex);
+		return res == null ? null : res.setScale(scale, RoundingMode.HALF_UP);
 	}
 
 	@Override
@@ -173,55 +256,55 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public String getString(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : resultSet.getString(columnLabel);
+		return getString(findColumn(columnLabel));
 	}
 
 	@Override
 	public boolean getBoolean(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? false : resultSet.getBoolean(columnLabel);
+		return getBoolean(findColumn(columnLabel));
 	}
 
 	@Override
 	public long getLong(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : resultSet.getLong(columnLabel);
+		return getLong(findColumn(columnLabel));
 	}
 
 	@Override
 	public double getDouble(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : resultSet.getDouble(columnLabel);
+		return getDouble(findColumn(columnLabel));
 	}
 
 	@Override
 	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException
 	{
-		return isNull(columnLabel) ? null : toBigDecimal(resultSet.getDouble(columnLabel), scale);
+		return getBigDecimal(findColumn(columnLabel), scale);
 	}
 
 	@Override
 	public byte[] getBytes(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : resultSet.getBytes(columnLabel).toByteArray();
+		return getBytes(findColumn(columnLabel));
 	}
 
 	@Override
 	public Date getDate(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : CloudSpannerConversionUtil.toSqlDate(resultSet.getDate(columnLabel));
+		return getDate(findColumn(columnLabel));
 	}
 
 	@Override
 	public Time getTime(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : CloudSpannerConversionUtil.toSqlTime(resultSet.getTimestamp(columnLabel));
+		return getTime(findColumn(columnLabel));
 	}
 
 	@Override
 	public Timestamp getTimestamp(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : resultSet.getTimestamp(columnLabel).toSqlTimestamp();
+		return getTimestamp(findColumn(columnLabel));
 	}
 
 	@Override
@@ -230,7 +313,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 		ensureOpen();
 		if (beforeFirst)
 		{
-			nextCalledForMetaDataResult = resultSet.next();
+			nextCalledForMetaDataResult = nextRow();
 			afterLast = !nextCalledForMetaDataResult;
 			beforeFirst = false;
 			nextCalledForMetaData = true;
@@ -242,28 +325,77 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	public int findColumn(String columnLabel) throws SQLException
 	{
 		ensureOpen();
+		if (columnIndices == null)
+			createColumnIndices();
+		Integer index = columnIndices.get(columnLabel);
+		if (index == null)
+		{
+			index = caseInsensitiveColumnIndices.get(columnLabel);
+			if (index == null)
+				throw new SQLException("Column not found: " + columnLabel);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Creates the maps from column label to (1-based) column index. Labels
+	 * are first looked up in a map with the exact labels, and then in a
+	 * case-insensitive map. If more than one column has the same label, the
+	 * label refers to the first of these columns.
+	 */
+	private void createColumnIndices() throws SQLException
+	{
+		List<StructField> fields = getStructFields();
+		Map<String, Integer> exact = new HashMap<>(fields.size() * 2);
+		Map<String, Integer> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (int index = 0; index < fields.size(); index++)
+		{
+			exact.putIfAbsent(fields.get(index).getName(), index + 1);
+			caseInsensitive.putIfAbsent(fields.get(index).getName(), index + 1);
+		}
+		caseInsensitiveColumnIndices = caseInsensitive;
+		columnIndices = exact;
+	}
+
+	private List<StructField> getStructFields() throws SQLException
+	{
 		try
 		{
-			return resultSet.getColumnIndex(columnLabel) + 1;
+			return resultSet.getType().getStructFields();
 		}
-		catch (IllegalArgumentException e)
+		catch (IllegalStateException e)
 		{
-			throw new SQLException("Column not found: " + columnLabel, e);
+			throw new SQLException("The columns of the result set are not available", e);
 		}
 	}
 
-	private boolean isNull(int columnIndex) throws SQLException
+	/**
+	 * Returns the accessor for the given (1-based) column. The accessors of
+	 * all columns are resolved from the row type of the result set on the
+	 * first call.
+	 */
+	private ColumnAccessor getAccessor(int columnIndex) throws SQLException
 	{
-		ensureOpenAndInValidPosition();
-		boolean res = resultSet.isNull(columnIndex - 1);
-		wasNull = res;
-		return res;
+		if (accessors == null)
+		{
+			List<StructField> fields = getStructFields();
+			ColumnAccessor[] res = new ColumnAccessor[fields.size()];
+			for (int index = 0; index < res.length; index++)
+				res[index] = ColumnAccessor.forType(fields.get(index).getType());
+			accessors = res;
+		}
+		if (columnIndex < 1 || columnIndex > accessors.length)
+			throw new SQLException("Invalid column index: " + columnIndex);
+		ColumnAccessor accessor = accessors[columnIndex - 1];
+		if (accessor == null)
+			throw new SQLException("Unknown type: " + resultSet.getColumnType(columnIndex - 1));
+		return accessor;
 	}
 
-	private boolean isNull(String columnName) throws SQLException
+	private boolean isNull(int columnIndex) throws SQLException
 	{
 		ensureOpenAndInValidPosition();
-		boolean res = resultSet.isNull(columnName);
+		boolean res = resultSet.isNull(columnIndex - 1);
 		wasNull = res;
 		return res;
 	}
@@ -271,13 +403,13 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public BigDecimal getBigDecimal(int columnIndex) throws SQLException
 	{
-		return isNull(columnIndex) ? null : toBigDecimal(resultSet.getDouble(columnIndex - 1));
+		return isNull(columnIndex) ? null : getAccessor(columnIndex).getBigDecimal(resultSet, columnIndex - 1);
 	}
 
 	@Override
 	public BigDecimal getBigDecimal(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? null : toBigDecimal(resultSet.getDouble(columnLabel));
+		return getBigDecimal(findColumn(columnLabel));
 	}
 
 	@Override
@@ -297,7 +429,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public Date getDate(String columnLabel, Calendar cal) throws SQLException
 	{
-		return isNull(columnLabel) ? null : CloudSpannerConversionUtil.toSqlDate(resultSet.getDate(columnLabel), cal);
+		return getDate(findColumn(columnLabel), cal);
 	}
 
 	@Override
@@ -310,7 +442,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public Time getTime(String columnLabel, Calendar cal) throws SQLException
 	{
-		return isNull(columnLabel) ? null : CloudSpannerConversionUtil.toSqlTime(resultSet.getTimestamp(columnLabel));
+		return getTime(findColumn(columnLabel), cal);
 	}
 
 	@Override
@@ -322,7 +454,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException
 	{
-		return isNull(columnLabel) ? null : resultSet.getTimestamp(columnLabel).toSqlTimestamp();
+		return getTimestamp(findColumn(columnLabel), cal);
 	}
 
 	@Override
@@ -358,88 +490,49 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public byte getByte(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : (byte) resultSet.getLong(columnLabel);
+		return getByte(findColumn(columnLabel));
 	}
 
 	@Override
 	public short getShort(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : (short) resultSet.getLong(columnLabel);
+		return getShort(findColumn(columnLabel));
 	}
 
 	@Override
 	public int getInt(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : (int) resultSet.getLong(columnLabel);
+		return getInt(findColumn(columnLabel));
 	}
 
 	@Override
 	public float getFloat(String columnLabel) throws SQLException
 	{
-		return isNull(columnLabel) ? 0 : (float) resultSet.getDouble(columnLabel);
+		return getFloat(findColumn(columnLabel));
 	}
 
 	@Override
 	public Object getObject(String columnLabel) throws SQLException
 	{
-		Type type = resultSet.getColumnType(columnLabel);
-		return isNull(columnLabel) ? null : getObject(type, columnLabel);
+		return getObject(findColumn(columnLabel));
 	}
 
 	@Override
 	public Object getObject(int columnIndex) throws SQLException
 	{
-		Type type = resultSet.getColumnType(columnIndex - 1);
-		return isNull(columnIndex) ? null : getObject(type, columnIndex);
-	}
-
-	private Object getObject(Type type, String columnLabel) throws SQLException
-	{
-		return getObject(type, resultSet.getColumnIndex(columnLabel) + 1);
-	}
-
-	private Object getObject(Type type, int columnIndex) throws SQLException
-	{
-		if (type == Type.bool())
-			return getBoolean(columnIndex);
-		if (type == Type.bytes())
-			return getBytes(columnIndex);
-		if (type == Type.date())
-			return getDate(columnIndex);
-		if (type == Type.float64())
-			return getDouble(columnIndex);
-		if (type == Type.int64())
-			return getLong(columnIndex);
-		if (type == Type.string())
-			return getString(columnIndex);
-		if (type == Type.timestamp())
-			return getTimestamp(columnIndex);
-		if (type.getCode() == Code.ARRAY)
-			return getArray(columnIndex);
-		throw new SQLException("Unknown type: " + type.toString());
+		return isNull(columnIndex) ? null : getAccessor(columnIndex).getObject(resultSet, columnIndex - 1);
 	}
 
 	@Override
 	public Array getArray(String columnLabel) throws SQLException
 	{
-		Type type = resultSet.getColumnType(columnLabel);
-		if (type.getCode() != Code.ARRAY)
-			throw new SQLException("Column with label " + columnLabel + " does not contain an array");
-		return getArray(resultSet.getColumnIndex(columnLabel) + 1);
+		return getArray(findColumn(columnLabel));
 	}
 
 	@Override
 	public Array getArray(int columnIndex) throws SQLException
 	{
-		if (isNull(columnIndex))
-			return null;
-		Type type = resultSet.getColumnType(columnIndex - 1);
-		if (type.getCode() != Code.ARRAY)
-			throw new SQLException("Column with index " + columnIndex + " does not contain an array");
-		CloudSpannerDataType dataType = CloudSpannerDataType.getType(type.getArrayElementType().getCode());
-		List<? extends Object> elements = dataType.getArrayElements(resultSet, columnIndex - 1);
-
-		return CloudSpannerArray.createArray(dataType, elements);
+		return isNull(columnIndex) ? null : getAccessor(columnIndex).getArray(resultSet, columnIndex - 1);
 	}
 
 	@Override
@@ -479,8 +572,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public Reader getCharacterStream(String columnLabel) throws SQLException
 	{
-		String val = getString(columnLabel);
-		return val == null ? null : new StringReader(val);
+		return getCharacterStream(findColumn(columnLabel));
 	}
 
 	private InputStream getInputStream(String val, Charset charset)
@@ -506,27 +598,25 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public InputStream getBinaryStream(int columnIndex) throws SQLException
 	{
-		byte[] val = getBytes(columnIndex);
-		return val == null ? null : new ByteArrayInputStream(val);
+		return isNull(columnIndex) ? null : getAccessor(columnIndex).getBinaryStream(resultSet, columnIndex - 1);
 	}
 
 	@Override
 	public InputStream getAsciiStream(String columnLabel) throws SQLException
 	{
-		return getInputStream(getString(columnLabel), StandardCharsets.US_ASCII);
+		return getAsciiStream(findColumn(columnLabel));
 	}
 
 	@Override
 	public InputStream getUnicodeStream(String columnLabel) throws SQLException
 	{
-		return getInputStream(getString(columnLabel), StandardCharsets.UTF_16LE);
+		return getUnicodeStream(findColumn(columnLabel));
 	}
 
 	@Override
 	public InputStream getBinaryStream(String columnLabel) throws SQLException
 	{
-		byte[] val = getBytes(columnLabel);
-		return val == null ? null : new ByteArrayInputStream(val);
+		return getBinaryStream(findColumn(columnLabel));
 	}
 
 	@Override
@@ -538,7 +628,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public String getNString(String columnLabel) throws SQLException
 	{
-		return getString(columnLabel);
+		return getNString(findColumn(columnLabel));
 	}
 
 	@Override
@@ -550,7 +640,7 @@ public class CloudSpannerResultSet extends AbstractCloudSpannerResultSet
 	@Override
 	public Reader getNCharacterStream(String columnLabel) throws SQLException
 	{
-		return getCharacterStream(columnLabel);
+		return getNCharacterStream(findColumn(columnLabel));
 	}
 
 }
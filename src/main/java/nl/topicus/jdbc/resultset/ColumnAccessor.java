@@ -0,0 +1,252 @@
+package nl.topicus.jdbc.resultset;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Type;
+
+import nl.topicus.jdbc.CloudSpannerArray;
+import nl.topicus.jdbc.CloudSpannerDataType;
+import nl.topicus.jdbc.util.CloudSpannerConversionUtil;
+
+/**
+ * Reads the value of one column of a Cloud Spanner result set. The accessor
+ * of each column is resolved once from the type of the column, so the getters
+ * of {@link CloudSpannerResultSet} that depend on the type of the column do
+ * not need to compare the column type for each value that is read. All
+ * methods assume that the value of the column is not null.
+ *
+ * @author loite
+ *
+ */
+enum ColumnAccessor
+{
+	BOOL
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getBoolean(columnIndex);
+		}
+	},
+	BYTES
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getBytes(columnIndex).toByteArray();
+		}
+
+		@Override
+		InputStream getBinaryStream(ResultSet rs, int columnIndex)
+		{
+			return rs.getBytes(columnIndex).asInputStream();
+		}
+	},
+	DATE
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return CloudSpannerConversionUtil.toSqlDate(rs.getDate(columnIndex));
+		}
+	},
+	FLOAT64
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getDouble(columnIndex);
+		}
+
+		@Override
+		BigDecimal getBigDecimal(ResultSet rs, int columnIndex)
+		{
+			return BigDecimal.valueOf(rs.getDouble(columnIndex));
+		}
+	},
+	INT64
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getLong(columnIndex);
+		}
+
+		@Override
+		BigDecimal getBigDecimal(ResultSet rs, int columnIndex)
+		{
+			return BigDecimal.valueOf(rs.getLong(columnIndex));
+		}
+	},
+	STRING
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getString(columnIndex);
+		}
+
+		@Override
+		BigDecimal getBigDecimal(ResultSet rs, int columnIndex) throws SQLException
+		{
+			String value = rs.getString(columnIndex);
+			try
+			{
+				return new BigDecimal(value);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new SQLException("Value " + value + " of column " + (columnIndex + 1)
+						+ " cannot be converted to a decimal", e);
+			}
+		}
+	},
+	TIMESTAMP
+	{
+		@Override
+		Object getObject(ResultSet rs, int columnIndex)
+		{
+			return rs.getTimestamp(columnIndex).toSqlTimestamp();
+		}
+	},
+	ARRAY_BOOL(CloudSpannerDataType.BOOL),
+	ARRAY_BYTES(CloudSpannerDataType.BYTES),
+	ARRAY_DATE(CloudSpannerDataType.DATE),
+	ARRAY_FLOAT64(CloudSpannerDataType.FLOAT64),
+	ARRAY_INT64(CloudSpannerDataType.INT64),
+	ARRAY_STRING(CloudSpannerDataType.STRING),
+	ARRAY_TIMESTAMP(CloudSpannerDataType.TIMESTAMP);
+
+	private final CloudSpannerDataType arrayElementType;
+
+	private ColumnAccessor()
+	{
+		this(null);
+	}
+
+	private ColumnAccessor(CloudSpannerDataType arrayElementType)
+	{
+		this.arrayElementType = arrayElementType;
+	}
+
+	/**
+	 *
+	 * @param type
+	 *            The type of the column
+	 * @return The accessor for columns of the given type, or <code>null</code>
+	 *         if the type is not supported
+	 */
+	static ColumnAccessor forType(Type type)
+	{
+		switch (type.getCode())
+		{
+		case BOOL:
+			return BOOL;
+		case BYTES:
+			return BYTES;
+		case DATE:
+			return DATE;
+		case FLOAT64:
+			return FLOAT64;
+		case INT64:
+			return INT64;
+		case STRING:
+			return STRING;
+		case TIMESTAMP:
+			return TIMESTAMP;
+		case ARRAY:
+			return forArrayElementType(type.getArrayElementType());
+		default:
+			return null;
+		}
+	}
+
+	private static ColumnAccessor forArrayElementType(Type elementType)
+	{
+		switch (elementType.getCode())
+		{
+		case BOOL:
+			return ARRAY_BOOL;
+		case BYTES:
+			return ARRAY_BYTES;
+		case DATE:
+			return ARRAY_DATE;
+		case FLOAT64:
+			return ARRAY_FLOAT64;
+		case INT64:
+			return ARRAY_INT64;
+		case STRING:
+			return ARRAY_STRING;
+		case TIMESTAMP:
+			return ARRAY_TIMESTAMP;
+		default:
+			return null;
+		}
+	}
+
+	boolean isArray()
+	{
+		return arrayElementType != null;
+	}
+
+	/**
+	 *
+	 * @param rs
+	 *            The result set to read the value from
+	 * @param columnIndex
+	 *            zero based column index
+	 * @return The value of the column as the Java type that is returned by
+	 *         {@link java.sql.ResultSet#getObject(int)}
+	 */
+	Object getObject(ResultSet rs, int columnIndex) throws SQLException
+	{
+		return getArray(rs, columnIndex);
+	}
+
+	/**
+	 *
+	 * @param rs
+	 *            The result set to read the value from
+	 * @param columnIndex
+	 *            zero based column index
+	 * @return The value of the column as a {@link java.sql.Array}
+	 */
+	CloudSpannerArray getArray(ResultSet rs, int columnIndex) throws SQLException
+	{
+		if (!isArray())
+			throw new SQLException("Column with index " + (columnIndex + 1) + " does not contain an array");
+		return CloudSpannerArray.createArray(arrayElementType, arrayElementType.getArrayElements(rs, columnIndex));
+	}
+
+	/**
+	 *
+	 * @param rs
+	 *            The result set to read the value from
+	 * @param columnIndex
+	 *            zero based column index
+	 * @return The value of the column as a {@link BigDecimal}
+	 */
+	BigDecimal getBigDecimal(ResultSet rs, int columnIndex) throws SQLException
+	{
+		throw new SQLException("Column with index " + (columnIndex + 1) + " of type " + name()
+				+ " cannot be converted to a decimal");
+	}
+
+	/**
+	 *
+	 * @param rs
+	 *            The result set to read the value from
+	 * @param columnIndex
+	 *            zero based column index
+	 * @return A stream that reads the bytes of the column without copying
+	 *         them
+	 */
+	InputStream getBinaryStream(ResultSet rs, int columnIndex) throws SQLException
+	{
+		throw new SQLException("Column with index " + (columnIndex + 1) + " does not contain binary data");
+	}
+
+}
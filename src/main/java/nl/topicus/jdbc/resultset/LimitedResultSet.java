@@ -0,0 +1,66 @@
+package nl.topicus.jdbc.resultset;
+
+import com.google.cloud.spanner.ForwardingResultSet;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+
+/**
+ * A Cloud Spanner result set that returns at most a maximum number of rows
+ * from an underlying result set. The underlying result set is closed as soon
+ * as the maximum number of rows has been returned, which cancels the
+ * remaining stream from the server.
+ *
+ * @author loite
+ *
+ */
+public class LimitedResultSet extends ForwardingResultSet
+{
+	private final ResultSet delegate;
+
+	private final long maxRows;
+
+	private long rowCount;
+
+	private boolean closed;
+
+	/**
+	 *
+	 * @param delegate
+	 *            The result set to read the rows from
+	 * @param maxRows
+	 *            The maximum number of rows to return
+	 */
+	public LimitedResultSet(ResultSet delegate, long maxRows)
+	{
+		super(delegate);
+		if (maxRows < 1)
+			throw new IllegalArgumentException("Max rows must be at least 1");
+		this.delegate = delegate;
+		this.maxRows = maxRows;
+	}
+
+	@Override
+	public boolean next() throws SpannerException
+	{
+		if (rowCount >= maxRows)
+		{
+			close();
+			return false;
+		}
+		boolean res = super.next();
+		if (res)
+			rowCount++;
+		return res;
+	}
+
+	@Override
+	public void close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			delegate.close();
+		}
+	}
+
+}
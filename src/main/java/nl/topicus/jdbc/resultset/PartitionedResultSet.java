@@ -0,0 +1,579 @@
+package nl.topicus.jdbc.resultset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.spanner.v1.ResultSetStats;
+
+import nl.topicus.jdbc.AsyncExecutor;
+
+/**
+ * A Cloud Spanner result set that merges the rows of a number of partitions
+ * of a query. Each partition is executed and read on its own thread of the
+ * {@link AsyncExecutor} of the driver, and the
+ * rows are handed to the consumer through bounded buffers, so that a slow
+ * consumer makes the partitions wait instead of filling the memory. The rows
+ * are returned in the order in which they arrive, unless an order is given,
+ * in which case the partitions must return their rows in that order and the
+ * rows of the partitions are merged into one ordered result. If a partition
+ * fails, the other partitions are stopped and {@link #next()} throws the
+ * exception of the partition.
+ *
+ * @author loite
+ *
+ */
+public class PartitionedResultSet implements ResultSet
+{
+	/**
+	 * The maximum number of rows that each partition reads ahead
+	 */
+	public static final int BUFFER_SIZE_PER_PARTITION = 256;
+
+	/**
+	 * Marks the end of a partition in the buffer
+	 */
+	private static final Object END_OF_PARTITION = new Object();
+
+	private static final class PartitionException
+	{
+		private final RuntimeException exception;
+
+		private PartitionException(RuntimeException exception)
+		{
+			this.exception = exception;
+		}
+	}
+
+	private final Comparator<Struct> order;
+
+	/**
+	 * One buffer that is shared by all partitions if the rows are not
+	 * ordered, or one buffer per partition if they are
+	 */
+	private final List<BlockingQueue<Object>> buffers;
+
+	/**
+	 * The result sets of the partitions that have been opened, so that they
+	 * can be closed from the consumer thread
+	 */
+	private final List<ResultSet> resultSets = Collections.synchronizedList(new ArrayList<ResultSet>());
+
+	private volatile boolean stopped;
+
+	private boolean closed;
+
+	private boolean finished;
+
+	private int runningPartitions;
+
+	/**
+	 * The next row of each partition if the rows are ordered, or
+	 * <code>null</code> if the next row has not been taken from the buffer of
+	 * the partition yet
+	 */
+	private final Struct[] heads;
+
+	/**
+	 * Indicates whether each partition has returned all its rows if the rows
+	 * are ordered
+	 */
+	private final boolean[] exhausted;
+
+	private Struct currentRow;
+
+	/**
+	 *
+	 * @param partitions
+	 *            Each partition executes its part of the query and returns
+	 *            the result. The partitions are executed concurrently, each on
+	 *            its own thread.
+	 * @param order
+	 *            The order of the rows of each partition, or <code>null</code>
+	 *            if the rows may be returned in any order
+	 */
+	public PartitionedResultSet(List<Callable<ResultSet>> partitions, Comparator<Struct> order)
+	{
+		if (partitions.isEmpty())
+			throw new IllegalArgumentException("There must be at least one partition");
+		this.order = order;
+		int numberOfPartitions = partitions.size();
+		this.buffers = new ArrayList<>(order == null ? 1 : numberOfPartitions);
+		if (order == null)
+		{
+			buffers.add(new ArrayBlockingQueue<>(BUFFER_SIZE_PER_PARTITION * numberOfPartitions));
+		}
+		else
+		{
+			for (int i = 0; i < numberOfPartitions; i++)
+				buffers.add(new ArrayBlockingQueue<>(BUFFER_SIZE_PER_PARTITION));
+		}
+		this.heads = new Struct[numberOfPartitions];
+		this.exhausted = new boolean[numberOfPartitions];
+		this.runningPartitions = numberOfPartitions;
+		List<Runnable> readers = new ArrayList<>(numberOfPartitions);
+		for (int i = 0; i < numberOfPartitions; i++)
+		{
+			Callable<ResultSet> partition = partitions.get(i);
+			BlockingQueue<Object> buffer = buffers.get(order == null ? 0 : i);
+			readers.add(() -> read(partition, buffer));
+		}
+		// All partitions must run at the same time, as an ordered merge needs
+		// the next row of each partition
+		AsyncExecutor.getDefault().executeConcurrently(readers);
+	}
+
+	private void read(Callable<ResultSet> partition, BlockingQueue<Object> buffer)
+	{
+		if (stopped)
+			return;
+		try
+		{
+			ResultSet rs = partition.call();
+			resultSets.add(rs);
+			try
+			{
+				while (!stopped && rs.next())
+				{
+					buffer.put(rs.getCurrentRowAsStruct());
+				}
+			}
+			finally
+			{
+				rs.close();
+			}
+			buffer.put(END_OF_PARTITION);
+		}
+		catch (InterruptedException e)
+		{
+			// The result set was closed while waiting for the consumer
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e)
+		{
+			if (!stopped)
+			{
+				try
+				{
+					buffer.put(new PartitionException(e instanceof RuntimeException ? (RuntimeException) e
+							: SpannerExceptionFactory.newSpannerException(ErrorCode.UNKNOWN, e.getMessage(), e)));
+				}
+				catch (InterruptedException e1)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean next() throws SpannerException
+	{
+		if (closed)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION, "ResultSet is closed");
+		if (finished)
+			return false;
+		try
+		{
+			currentRow = order == null ? nextUnordered() : nextOrdered();
+		}
+		catch (RuntimeException e)
+		{
+			finished = true;
+			currentRow = null;
+			stop();
+			throw e;
+		}
+		if (currentRow == null)
+			finished = true;
+		return currentRow != null;
+	}
+
+	private Struct nextUnordered()
+	{
+		BlockingQueue<Object> buffer = buffers.get(0);
+		while (runningPartitions > 0)
+		{
+			Object next = take(buffer);
+			if (next == END_OF_PARTITION)
+				runningPartitions--;
+			else
+				return (Struct) next;
+		}
+		return null;
+	}
+
+	private Struct nextOrdered()
+	{
+		int smallest = -1;
+		for (int i = 0; i < heads.length; i++)
+		{
+			if (heads[i] == null && !exhausted[i])
+			{
+				Object next = take(buffers.get(i));
+				if (next == END_OF_PARTITION)
+					exhausted[i] = true;
+				else
+					heads[i] = (Struct) next;
+			}
+			// Prefer the first partition for equal rows, which keeps the
+			// order of the partitions for rows that are equal
+			if (heads[i] != null && (smallest == -1 || order.compare(heads[i], heads[smallest]) < 0))
+				smallest = i;
+		}
+		if (smallest == -1)
+			return null;
+		Struct res = heads[smallest];
+		heads[smallest] = null;
+		return res;
+	}
+
+	private static Object take(BlockingQueue<Object> buffer)
+	{
+		Object next;
+		try
+		{
+			next = buffer.take();
+		}
+		catch (InterruptedException e)
+		{
+			throw SpannerExceptionFactory.propagateInterrupt(e);
+		}
+		if (next instanceof PartitionException)
+			throw ((PartitionException) next).exception;
+		return next;
+	}
+
+	private Struct currentRow()
+	{
+		if (currentRow == null)
+			throw new IllegalStateException("next() must be called and must return true before reading a row");
+		return currentRow;
+	}
+
+	/**
+	 *
+	 * @return The number of rows that have been read ahead by the partitions
+	 *         and are waiting in the buffers
+	 */
+	public int getBufferedRowCount()
+	{
+		int res = 0;
+		for (BlockingQueue<Object> buffer : buffers)
+			res += buffer.size();
+		return res;
+	}
+
+	@Override
+	public Struct getCurrentRowAsStruct()
+	{
+		return currentRow();
+	}
+
+	/**
+	 * Stops all partitions that are still running and closes their result
+	 * sets. A partition that is waiting for room in a full buffer is released
+	 * by clearing the buffer, after which it adds at most one more row and
+	 * the end of the partition before it sees that it has been stopped.
+	 */
+	private void stop()
+	{
+		stopped = true;
+		for (BlockingQueue<Object> buffer : buffers)
+			buffer.clear();
+		synchronized (resultSets)
+		{
+			for (ResultSet rs : resultSets)
+				rs.close();
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			stop();
+		}
+	}
+
+	@Override
+	public ResultSetStats getStats()
+	{
+		// The statistics of the partitions cannot be combined
+		return null;
+	}
+
+	@Override
+	public Type getType()
+	{
+		return currentRow().getType();
+	}
+
+	@Override
+	public int getColumnCount()
+	{
+		return currentRow().getColumnCount();
+	}
+
+	@Override
+	public int getColumnIndex(String columnName)
+	{
+		return currentRow().getColumnIndex(columnName);
+	}
+
+	@Override
+	public Type getColumnType(int columnIndex)
+	{
+		return currentRow().getColumnType(columnIndex);
+	}
+
+	@Override
+	public Type getColumnType(String columnName)
+	{
+		return currentRow().getColumnType(columnName);
+	}
+
+	@Override
+	public boolean isNull(int columnIndex)
+	{
+		return currentRow().isNull(columnIndex);
+	}
+
+	@Override
+	public boolean isNull(String columnName)
+	{
+		return currentRow().isNull(columnName);
+	}
+
+	@Override
+	public boolean getBoolean(int columnIndex)
+	{
+		return currentRow().getBoolean(columnIndex);
+	}
+
+	@Override
+	public boolean getBoolean(String columnName)
+	{
+		return currentRow().getBoolean(columnName);
+	}
+
+	@Override
+	public long getLong(int columnIndex)
+	{
+		return currentRow().getLong(columnIndex);
+	}
+
+	@Override
+	public long getLong(String columnName)
+	{
+		return currentRow().getLong(columnName);
+	}
+
+	@Override
+	public double getDouble(int columnIndex)
+	{
+		return currentRow().getDouble(columnIndex);
+	}
+
+	@Override
+	public double getDouble(String columnName)
+	{
+		return currentRow().getDouble(columnName);
+	}
+
+	@Override
+	public String getString(int columnIndex)
+	{
+		return currentRow().getString(columnIndex);
+	}
+
+	@Override
+	public String getString(String columnName)
+	{
+		return currentRow().getString(columnName);
+	}
+
+	@Override
+	public ByteArray getBytes(int columnIndex)
+	{
+		return currentRow().getBytes(columnIndex);
+	}
+
+	@Override
+	public ByteArray getBytes(String columnName)
+	{
+		return currentRow().getBytes(columnName);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex)
+	{
+		return currentRow().getTimestamp(columnIndex);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnName)
+	{
+		return currentRow().getTimestamp(columnName);
+	}
+
+	@Override
+	public Date getDate(int columnIndex)
+	{
+		return currentRow().getDate(columnIndex);
+	}
+
+	@Override
+	public Date getDate(String columnName)
+	{
+		return currentRow().getDate(columnName);
+	}
+
+	@Override
+	public boolean[] getBooleanArray(int columnIndex)
+	{
+		return currentRow().getBooleanArray(columnIndex);
+	}
+
+	@Override
+	public boolean[] getBooleanArray(String columnName)
+	{
+		return currentRow().getBooleanArray(columnName);
+	}
+
+	@Override
+	public List<Boolean> getBooleanList(int columnIndex)
+	{
+		return currentRow().getBooleanList(columnIndex);
+	}
+
+	@Override
+	public List<Boolean> getBooleanList(String columnName)
+	{
+		return currentRow().getBooleanList(columnName);
+	}
+
+	@Override
+	public long[] getLongArray(int columnIndex)
+	{
+		return currentRow().getLongArray(columnIndex);
+	}
+
+	@Override
+	public long[] getLongArray(String columnName)
+	{
+		return currentRow().getLongArray(columnName);
+	}
+
+	@Override
+	public List<Long> getLongList(int columnIndex)
+	{
+		return currentRow().getLongList(columnIndex);
+	}
+
+	@Override
+	public List<Long> getLongList(String columnName)
+	{
+		return currentRow().getLongList(columnName);
+	}
+
+	@Override
+	public double[] getDoubleArray(int columnIndex)
+	{
+		return currentRow().getDoubleArray(columnIndex);
+	}
+
+	@Override
+	public double[] getDoubleArray(String columnName)
+	{
+		return currentRow().getDoubleArray(columnName);
+	}
+
+	@Override
+	public List<Double> getDoubleList(int columnIndex)
+	{
+		return currentRow().getDoubleList(columnIndex);
+	}
+
+	@Override
+	public List<Double> getDoubleList(String columnName)
+	{
+		return currentRow().getDoubleList(columnName);
+	}
+
+	@Override
+	public List<String> getStringList(int columnIndex)
+	{
+		return currentRow().getStringList(columnIndex);
+	}
+
+	@Override
+	public List<String> getStringList(String columnName)
+	{
+		return currentRow().getStringList(columnName);
+	}
+
+	@Override
+	public List<ByteArray> getBytesList(int columnIndex)
+	{
+		return currentRow().getBytesList(columnIndex);
+	}
+
+	@Override
+	public List<ByteArray> getBytesList(String columnName)
+	{
+		return currentRow().getBytesList(columnName);
+	}
+
+	@Override
+	public List<Timestamp> getTimestampList(int columnIndex)
+	{
+		return currentRow().getTimestampList(columnIndex);
+	}
+
+	@Override
+	public List<Timestamp> getTimestampList(String columnName)
+	{
+		return currentRow().getTimestampList(columnName);
+	}
+
+	@Override
+	public List<Date> getDateList(int columnIndex)
+	{
+		return currentRow().getDateList(columnIndex);
+	}
+
+	@Override
+	public List<Date> getDateList(String columnName)
+	{
+		return currentRow().getDateList(columnName);
+	}
+
+	@Override
+	public List<Struct> getStructList(int columnIndex)
+	{
+		return currentRow().getStructList(columnIndex);
+	}
+
+	@Override
+	public List<Struct> getStructList(String columnName)
+	{
+		return currentRow().getStructList(columnName);
+	}
+
+}
@@ -0,0 +1,499 @@
+package nl.topicus.jdbc.resultset;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.spanner.v1.ResultSetStats;
+
+import nl.topicus.jdbc.AsyncExecutor;
+
+/**
+ * A Cloud Spanner result set that reads ahead a number of rows from an
+ * underlying result set on a background thread. The rows are put in a bounded
+ * buffer, so that {@link #next()} only blocks on the network if the buffer is
+ * empty. When the buffer is full, the background thread waits until the
+ * consumer has read a row from the buffer, which limits the memory used by
+ * the result set to the size of the buffer. The background thread is a thread
+ * of the {@link AsyncExecutor} of the driver, and it is the only thread that
+ * reads from or closes the underlying result set, as that result set is not
+ * thread-safe.
+ *
+ * @author loite
+ *
+ */
+public class PrefetchingResultSet implements ResultSet
+{
+	/**
+	 * Marks the end of the underlying result set in the buffer
+	 */
+	private static final Object END_OF_RESULTS = new Object();
+
+	private static final class PrefetchException
+	{
+		private final RuntimeException exception;
+
+		private PrefetchException(RuntimeException exception)
+		{
+			this.exception = exception;
+		}
+	}
+
+	private final ResultSet delegate;
+
+	private final BlockingQueue<Object> buffer;
+
+	private final Object prefetchLock = new Object();
+
+	/**
+	 * The thread that is reading ahead, or <code>null</code> if it has not
+	 * started or has finished. Guarded by {@link #prefetchLock}, so that
+	 * {@link #close()} never interrupts a thread that has already returned to
+	 * the executor.
+	 */
+	private Thread prefetchThread;
+
+	private volatile boolean closed;
+
+	private boolean finished;
+
+	private Struct currentRow;
+
+	/**
+	 * The type of the rows, set by the background thread after the first call
+	 * to next() on the underlying result set, so that it is also known when
+	 * there is no current row
+	 */
+	private volatile Type type;
+
+	/**
+	 *
+	 * @param delegate
+	 *            The result set to read the rows from
+	 * @param bufferSize
+	 *            The maximum number of rows to read ahead
+	 */
+	public PrefetchingResultSet(ResultSet delegate, int bufferSize)
+	{
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("Buffer size must be at least 1");
+		this.delegate = delegate;
+		this.buffer = new ArrayBlockingQueue<>(bufferSize);
+		// The consumer waits for the background thread, so it must not wait
+		// in the queue of the executor
+		AsyncExecutor.getDefault().executeConcurrently(Collections.singletonList(this::prefetch));
+	}
+
+	private void prefetch()
+	{
+		synchronized (prefetchLock)
+		{
+			if (closed)
+			{
+				delegate.close();
+				return;
+			}
+			prefetchThread = Thread.currentThread();
+		}
+		try
+		{
+			while (!closed)
+			{
+				boolean hasNext = delegate.next();
+				if (type == null)
+					type = delegate.getType();
+				if (!hasNext)
+				{
+					buffer.put(END_OF_RESULTS);
+					break;
+				}
+				buffer.put(delegate.getCurrentRowAsStruct());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// The result set was closed while waiting for the consumer
+		}
+		catch (RuntimeException e)
+		{
+			if (!closed)
+			{
+				try
+				{
+					buffer.put(new PrefetchException(e));
+				}
+				catch (InterruptedException e1)
+				{
+					// The result set was closed while waiting for the
+					// consumer
+				}
+			}
+		}
+		finally
+		{
+			synchronized (prefetchLock)
+			{
+				prefetchThread = null;
+				// Clear an interrupt by close() before the thread is returned
+				// to the executor
+				Thread.interrupted();
+			}
+			delegate.close();
+		}
+	}
+
+	@Override
+	public boolean next() throws SpannerException
+	{
+		if (closed)
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION, "ResultSet is closed");
+		if (finished)
+			return false;
+		Object next;
+		try
+		{
+			next = buffer.take();
+		}
+		catch (InterruptedException e)
+		{
+			throw SpannerExceptionFactory.propagateInterrupt(e);
+		}
+		if (next == END_OF_RESULTS)
+		{
+			finished = true;
+			currentRow = null;
+			return false;
+		}
+		if (next instanceof PrefetchException)
+		{
+			finished = true;
+			currentRow = null;
+			throw ((PrefetchException) next).exception;
+		}
+		currentRow = (Struct) next;
+		return true;
+	}
+
+	private Struct currentRow()
+	{
+		if (currentRow == null)
+			throw new IllegalStateException("next() must be called and must return true before reading a row");
+		return currentRow;
+	}
+
+	private Type type()
+	{
+		Type res = type;
+		if (res == null)
+			throw new IllegalStateException("next() must be called before reading the type of the result set");
+		return res;
+	}
+
+	/**
+	 *
+	 * @return The number of rows that have been read ahead and are waiting in
+	 *         the buffer
+	 */
+	public int getBufferedRowCount()
+	{
+		return buffer.size();
+	}
+
+	@Override
+	public Struct getCurrentRowAsStruct()
+	{
+		return currentRow();
+	}
+
+	@Override
+	public void close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			// The background thread closes the underlying result set when it
+			// sees that this result set has been closed
+			synchronized (prefetchLock)
+			{
+				if (prefetchThread != null)
+					prefetchThread.interrupt();
+			}
+			buffer.clear();
+		}
+	}
+
+	@Override
+	public ResultSetStats getStats()
+	{
+		return delegate.getStats();
+	}
+
+	@Override
+	public Type getType()
+	{
+		return type();
+	}
+
+	@Override
+	public int getColumnCount()
+	{
+		return type().getStructFields().size();
+	}
+
+	@Override
+	public int getColumnIndex(String columnName)
+	{
+		return type().getFieldIndex(columnName);
+	}
+
+	@Override
+	public Type getColumnType(int columnIndex)
+	{
+		return type().getStructFields().get(columnIndex).getType();
+	}
+
+	@Override
+	public Type getColumnType(String columnName)
+	{
+		return getColumnType(getColumnIndex(columnName));
+	}
+
+	@Override
+	public boolean isNull(int columnIndex)
+	{
+		return currentRow().isNull(columnIndex);
+	}
+
+	@Override
+	public boolean isNull(String columnName)
+	{
+		return currentRow().isNull(columnName);
+	}
+
+	@Override
+	public boolean getBoolean(int columnIndex)
+	{
+		return currentRow().getBoolean(columnIndex);
+	}
+
+	@Override
+	public boolean getBoolean(String columnName)
+	{
+		return currentRow().getBoolean(columnName);
+	}
+
+	@Override
+	public long getLong(int columnIndex)
+	{
+		return currentRow().getLong(columnIndex);
+	}
+
+	@Override
+	public long getLong(String columnName)
+	{
+		return currentRow().getLong(columnName);
+	}
+
+	@Override
+	public double getDouble(int columnIndex)
+	{
+		return currentRow().getDouble(columnIndex);
+	}
+
+	@Override
+	public double getDouble(String columnName)
+	{
+		return currentRow().getDouble(columnName);
+	}
+
+	@Override
+	public String getString(int columnIndex)
+	{
+		return currentRow().getString(columnIndex);
+	}
+
+	@Override
+	public String getString(String columnName)
+	{
+		return currentRow().getString(columnName);
+	}
+
+	@Override
+	public ByteArray getBytes(int columnIndex)
+	{
+		return currentRow().getBytes(columnIndex);
+	}
+
+	@Override
+	public ByteArray getBytes(String columnName)
+	{
+		return currentRow().getBytes(columnName);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex)
+	{
+		return currentRow().getTimestamp(columnIndex);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnName)
+	{
+		return currentRow().getTimestamp(columnName);
+	}
+
+	@Override
+	public Date getDate(int columnIndex)
+	{
+		return currentRow().getDate(columnIndex);
+	}
+
+	@Override
+	public Date getDate(String columnName)
+	{
+		return currentRow().getDate(columnName);
+	}
+
+	@Override
+	public boolean[] getBooleanArray(int columnIndex)
+	{
+		return currentRow().getBooleanArray(columnIndex);
+	}
+
+	@Override
+	public boolean[] getBooleanArray(String columnName)
+	{
+		return currentRow().getBooleanArray(columnName);
+	}
+
+	@Override
+	public List<Boolean> getBooleanList(int columnIndex)
+	{
+		return currentRow().getBooleanList(columnIndex);
+	}
+
+	@Override
+	public List<Boolean> getBooleanList(String columnName)
+	{
+		return currentRow().getBooleanList(columnName);
+	}
+
+	@Override
+	public long[] getLongArray(int columnIndex)
+	{
+		return currentRow().getLongArray(columnIndex);
+	}
+
+	@Override
+	public long[] getLongArray(String columnName)
+	{
+		return currentRow().getLongArray(columnName);
+	}
+
+	@Override
+	public List<Long> getLongList(int columnIndex)
+	{
+		return currentRow().getLongList(columnIndex);
+	}
+
+	@Override
+	public List<Long> getLongList(String columnName)
+	{
+		return currentRow().getLongList(columnName);
+	}
+
+	@Override
+	public double[] getDoubleArray(int columnIndex)
+	{
+		return currentRow().getDoubleArray(columnIndex);
+	}
+
+	@Override
+	public double[] getDoubleArray(String columnName)
+	{
+		return currentRow().getDoubleArray(columnName);
+	}
+
+	@Override
+	public List<Double> getDoubleList(int columnIndex)
+	{
+		return currentRow().getDoubleList(columnIndex);
+	}
+
+	@Override
+	public List<Double> getDoubleList(String columnName)
+	{
+		return currentRow().getDoubleList(columnName);
+	}
+
+	@Override
+	public List<String> getStringList(int columnIndex)
+	{
+		return currentRow().getStringList(columnIndex);
+	}
+
+	@Override
+	public List<String> getStringList(String columnName)
+	{
+		return currentRow().getStringList(columnName);
+	}
+
+	@Override
+	public List<ByteArray> getBytesList(int columnIndex)
+	{
+		return currentRow().getBytesList(columnIndex);
+	}
+
+	@Override
+	public List<ByteArray> getBytesList(String columnName)
+	{
+		return currentRow().getBytesList(columnName);
+	}
+
+	@Override
+	public List<Timestamp> getTimestampList(int columnIndex)
+	{
+		return currentRow().getTimestampList(columnIndex);
+	}
+
+	@Override
+	public List<Timestamp> getTimestampList(String columnName)
+	{
+		return currentRow().getTimestampList(columnName);
+	}
+
+	@Override
+	public List<Date> getDateList(int columnIndex)
+	{
+		return currentRow().getDateList(columnIndex);
+	}
+
+	@Override
+	public List<Date> getDateList(String columnName)
+	{
+		return currentRow().getDateList(columnName);
+	}
+
+	@Override
+	public List<Struct> getStructList(int columnIndex)
+	{
+		return currentRow().getStructList(columnIndex);
+	}
+
+	@Override
+	public List<Struct> getStructList(String columnName)
+	{
+		return currentRow().getStructList(columnName);
+	}
+
+}
@@ -3,21 +3,40 @@ package nl.topicus.jdbc.statement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.List;
+import java.util.TimerTask;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.ReadContext;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.TimestampBound.Mode;
 import com.google.cloud.spanner.TransactionContext;
 import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
 
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.parser.TokenMgrError;
+import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.update.Update;
 import nl.topicus.jdbc.AbstractCloudSpannerFetcher;
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDriver;
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
+import nl.topicus.jdbc.resultset.CancellableResultSet;
+import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
+import nl.topicus.jdbc.resultset.LimitedResultSet;
+import nl.topicus.jdbc.resultset.PrefetchingResultSet;
+import nl.topicus.jdbc.statement.ParsedStatement.StatementType;
+import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
 
 /**
  * 
@@ -26,6 +45,8 @@ import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
  */
 abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher implements Statement
 {
+	static final String PARSE_ERROR = "Error while parsing sql statement ";
+
 	private DatabaseClient dbClient;
 
 	/**
@@ -36,6 +57,13 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 	 */
 	private boolean forceSingleUseReadContext;
 
+	/**
+	 * The timestamp bound of the single use read context if
+	 * {@link #forceSingleUseReadContext} is set, or <code>null</code> for a
+	 * strong read
+	 */
+	private TimestampBound forceSingleUseReadBound;
+
 	private boolean closed;
 
 	private int queryTimeout;
@@ -48,8 +76,94 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 
 	private int maxRows;
 
+	/**
+	 * The last result set that was returned by this statement. This result set
+	 * is closed when the statement is closed.
+	 */
+	private CloudSpannerResultSet currentResultSet;
+
 	private int maxFieldSize = 0;
 
+	/**
+	 * The query of this statement that is currently running, or
+	 * <code>null</code> if no query is running
+	 */
+	private volatile QueryExecution execution;
+
+	/**
+	 * The execution of a query. The execution is cancelled by
+	 * {@link AbstractCloudSpannerStatement#cancel()}, or by the shared timer
+	 * of the driver when the query timeout of the statement expires. The
+	 * execution ends when its result set has been read completely or has been
+	 * closed.
+	 */
+	private final class QueryExecution extends TimerTask
+	{
+		private final ReadContext context;
+
+		private final int timeout;
+
+		private CancellableResultSet resultSet;
+
+		private SpannerException cancelReason;
+
+		private boolean finished;
+
+		private QueryExecution(ReadContext context, int timeout)
+		{
+			this.context = context;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public void run()
+		{
+			cancelQuery(SpannerExceptionFactory.newSpannerException(ErrorCode.DEADLINE_EXCEEDED,
+					"Query timeout of " + timeout + " seconds exceeded"));
+		}
+
+		private void cancelQuery(SpannerException reason)
+		{
+			CancellableResultSet rs;
+			synchronized (this)
+			{
+				if (finished || cancelReason != null)
+					return;
+				cancelReason = reason;
+				rs = resultSet;
+			}
+			if (rs != null)
+				rs.cancel(reason);
+			else if (context instanceof CloudSpannerTransaction)
+				// The query is still waiting for the worker of the
+				// transaction
+				((CloudSpannerTransaction) context).cancelQuery(reason);
+		}
+
+		private synchronized SpannerException setResultSet(CancellableResultSet resultSet)
+		{
+			this.resultSet = resultSet;
+			return cancelReason;
+		}
+
+		private synchronized boolean isCancelReason(SpannerException e)
+		{
+			return e == cancelReason;
+		}
+
+		private void finish()
+		{
+			synchronized (this)
+			{
+				finished = true;
+			}
+			if (cancel())
+				connection.purgeTimerTasks();
+			if (execution == this)
+				execution = null;
+		}
+	}
+
 	AbstractCloudSpannerStatement(CloudSpannerConnection connection, DatabaseClient dbClient)
 	{
 		this.connection = connection;
@@ -66,10 +180,43 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 		}
 		// Remove @{FORCE_INDEX...} statements
 		sql = sql.replaceAll("(?is)\\@\\{\\s*FORCE_INDEX.*\\}", "");
+		// Remove the /*@PARALLELISM=n*/ hint of partitioned queries
+		sql = PartitionedQuery.removeParallelismHint(sql);
 
 		return sql;
 	}
 
+	/**
+	 * Parses the given sql statement, or returns the parsed version from the
+	 * statement cache of the connection if the same sql statement has been
+	 * parsed before.
+	 * 
+	 * @param sql
+	 *            The sql statement to parse
+	 * @return The parsed statement
+	 * @throws SQLException
+	 *             if the sql statement could not be parsed
+	 */
+	protected ParsedStatement parseStatement(String sql) throws SQLException
+	{
+		ParsedStatementCache cache = connection.getParsedStatementCache();
+		ParsedStatement res = cache.get(sql);
+		if (res == null)
+		{
+			try
+			{
+				long start = System.nanoTime();
+				res = cache.put(sql, new ParsedStatement(sql, CCJSqlParserUtil.parse(sanitizeSQL(sql))));
+				connection.getMetrics().recordParseTime(System.nanoTime() - start);
+			}
+			catch (JSQLParserException | TokenMgrError e)
+			{
+				throw new SQLException(PARSE_ERROR + sql + ": " + e.getLocalizedMessage(), e);
+			}
+		}
+		return res;
+	}
+
 	/**
 	 * Transform the given UPDATE-statement into an "INSERT INTO TAB1 (...)
 	 * SELECT ... FROM TAB1 WHERE ... ON DUPLICATE KEY UPDATE"
@@ -134,19 +281,180 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 	}
 
 	public void setForceSingleUseReadContext(boolean forceSingleUseReadContext)
+	{
+		setForceSingleUseReadContext(forceSingleUseReadContext, null);
+	}
+
+	/**
+	 * Forces this statement to use a single use read context with the given
+	 * timestamp bound, for example to read the partitions of a query at the
+	 * same timestamp.
+	 */
+	void setForceSingleUseReadContext(boolean forceSingleUseReadContext, TimestampBound bound)
 	{
 		this.forceSingleUseReadContext = forceSingleUseReadContext;
+		this.forceSingleUseReadBound = bound;
 	}
 
 	protected ReadContext getReadContext() throws SQLException
 	{
-		if (connection.getAutoCommit() || forceSingleUseReadContext)
+		if (forceSingleUseReadContext)
 		{
+			// Meta data queries and the source rows of bulk operations always
+			// read the latest data, partitions of queries read at the
+			// timestamp of the query
+			if (forceSingleUseReadBound != null)
+				return dbClient.singleUse(forceSingleUseReadBound);
 			return dbClient.singleUse();
 		}
+		if (connection.getAutoCommit())
+		{
+			TimestampBound bound = connection.getReadTimestampBound();
+			if (bound.getMode() == Mode.STRONG)
+				return dbClient.singleUse();
+			return dbClient.singleUse(bound);
+		}
+		if (connection.isReadOnly())
+		{
+			// Start the read-only transaction here, so an invalid timestamp
+			// bound is reported as an SQLException
+			connection.getTransaction().begin();
+		}
 		return connection.getTransaction();
 	}
 
+	/**
+	 * Executes a query on the given read context. The query can be cancelled
+	 * by {@link #cancel()} and is cancelled when the query timeout of this
+	 * statement expires, until the returned result set has been read
+	 * completely or is closed.
+	 *
+	 * @param context
+	 *            The context to execute the query on
+	 * @param statement
+	 *            The query to execute
+	 * @return The result of the query
+	 * @throws SQLException
+	 *             if the query was cancelled or timed out before its result
+	 *             was returned
+	 */
+	protected com.google.cloud.spanner.ResultSet executeQuery(ReadContext context,
+			com.google.cloud.spanner.Statement statement) throws SQLException
+	{
+		return executeRead(context, c -> c.executeQuery(statement));
+	}
+
+	/**
+	 * Executes a query or a read on the given read context, see
+	 * {@link #executeQuery(ReadContext, com.google.cloud.spanner.Statement)}.
+	 *
+	 * @param context
+	 *            The context to execute the query or read on
+	 * @param operation
+	 *            Executes the query or read on the context
+	 * @return The result of the query or read
+	 * @throws SQLException
+	 *             if the query or read was cancelled or timed out before its
+	 *             result was returned
+	 */
+	protected com.google.cloud.spanner.ResultSet executeRead(ReadContext context,
+			Function<ReadContext, com.google.cloud.spanner.ResultSet> operation) throws SQLException
+	{
+		QueryExecution previous = execution;
+		if (previous != null)
+			previous.finish();
+		QueryExecution current = new QueryExecution(context, queryTimeout);
+		execution = current;
+		if (queryTimeout > 0)
+			connection.addTimerTask(current, queryTimeout * 1000L);
+		CancellableResultSet res;
+		try
+		{
+			res = new CancellableResultSet(operation.apply(context), current::finish);
+		}
+		catch (SpannerException e)
+		{
+			current.finish();
+			if (current.isCancelReason(e))
+				throw createCancelledException(e);
+			throw e;
+		}
+		SpannerException cancelReason = current.setResultSet(res);
+		if (cancelReason != null)
+		{
+			res.close();
+			throw createCancelledException(cancelReason);
+		}
+		return res;
+	}
+
+	/**
+	 * Executes a SELECT statement as a partitioned query if partitioned
+	 * queries are enabled for the statement by the hint
+	 * <code>/*@PARALLELISM=n*&#47;</code> or for the connection, see
+	 * {@link PartitionedQuery}.
+	 *
+	 * @param sql
+	 *            The statement to execute
+	 * @param parameters
+	 *            The values of the parameters of the statement, or
+	 *            <code>null</code> if it has no parameters
+	 * @return The merged result of the partitions, or <code>null</code> if
+	 *         the statement should be executed as a normal query
+	 * @throws SQLException
+	 *             if a database error occurs while determining the partitions
+	 */
+	protected com.google.cloud.spanner.ResultSet executePartitionedQuery(String sql, ParameterStore parameters)
+			throws SQLException
+	{
+		// Partitions of queries and meta data queries are never partitioned
+		if (forceSingleUseReadContext)
+			return null;
+		int parallelism = PartitionedQuery.getParallelismHint(sql);
+		long minRowCount = 0L;
+		if (parallelism == -1)
+		{
+			parallelism = connection.getPartitionedQueryParallelism();
+			minRowCount = connection.getPartitionedQueryMinRowCount();
+		}
+		if (parallelism < 2)
+			return null;
+		ParsedStatement parsedStatement = parseStatement(sql);
+		if (parsedStatement.getType() != StatementType.SELECT)
+			return null;
+		PartitionedQuery query = PartitionedQuery.create(this, (Select) parsedStatement.getStatement(), parameters,
+				parallelism, minRowCount);
+		if (query == null)
+			return null;
+		connection.getMetrics().recordPartitionedQuery();
+		return executeRead(null, c -> query.execute());
+	}
+
+	private static SQLException createCancelledException(SpannerException reason)
+	{
+		if (reason.getErrorCode() == ErrorCode.DEADLINE_EXCEEDED)
+			return new SQLTimeoutException(reason.getMessage(), reason);
+		return new SQLException(reason.getMessage(), reason);
+	}
+
+	/**
+	 * Creates a JDBC result set for the result of a query. If a maximum number
+	 * of rows has been set on this statement, the result is limited to that
+	 * number of rows and the stream is cancelled when the limit has been
+	 * reached. If a fetch size larger than 1 has been set on this statement,
+	 * the rows are read ahead by a {@link PrefetchingResultSet} with the fetch
+	 * size as the maximum number of rows to read ahead.
+	 */
+	protected CloudSpannerResultSet createResultSet(com.google.cloud.spanner.ResultSet rs) throws SQLException
+	{
+		if (getMaxRows() > 0)
+			rs = new LimitedResultSet(rs, getMaxRows());
+		if (getFetchSize() > 1)
+			rs = new PrefetchingResultSet(rs, getFetchSize());
+		currentResultSet = new CloudSpannerResultSet(this, rs, connection.getMetrics());
+		return currentResultSet;
+	}
+
 	protected long writeMutations(Mutations mutations) throws SQLException
 	{
 		if (connection.isReadOnly())
@@ -165,24 +473,31 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 		}
 		else
 		{
-
+			CloudSpannerMetrics metrics = connection.getMetrics();
 			if (connection.getAutoCommit())
 			{
+				long start = System.nanoTime();
 				dbClient.readWriteTransaction().run(new TransactionCallable<Void>()
 				{
+					private boolean retry;
 
 					@Override
 					public Void run(TransactionContext transaction) throws Exception
 					{
+						if (retry)
+							metrics.recordTransactionRetry();
+						retry = true;
 						transaction.buffer(mutations.getMutations());
 						return null;
 					}
 				});
+				metrics.recordCommitTime(System.nanoTime() - start);
 			}
 			else
 			{
 				connection.getTransaction().buffer(mutations.getMutations());
 			}
+			metrics.recordMutationsBuffered(mutations.getMutations().size());
 		}
 		return mutations.getNumberOfResults();
 	}
@@ -196,6 +511,14 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 	@Override
 	public void close() throws SQLException
 	{
+		if (currentResultSet != null)
+		{
+			currentResultSet.close();
+			currentResultSet = null;
+		}
+		QueryExecution current = execution;
+		if (current != null)
+			current.finish();
 		closed = true;
 	}
 
@@ -226,6 +549,8 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 	@Override
 	public void setMaxRows(int max) throws SQLException
 	{
+		if (max < 0)
+			throw new SQLException("Max rows must be >= 0");
 		this.maxRows = max;
 	}
 
@@ -244,13 +569,26 @@ abstract class AbstractCloudSpannerStatement extends AbstractCloudSpannerFetcher
 	@Override
 	public void setQueryTimeout(int seconds) throws SQLException
 	{
+		if (seconds < 0)
+			throw new SQLException("Query timeout must be >= 0");
 		queryTimeout = seconds;
 	}
 
+	/**
+	 * Cancels the query that is currently running on this statement. The
+	 * stream of results from Cloud Spanner is cancelled, and the thread that
+	 * is executing the query or reading its result set receives an
+	 * {@link SQLException}. This method may be called from any thread. Updates
+	 * cannot be cancelled.
+	 */
 	@Override
 	public void cancel() throws SQLException
 	{
-		throw new SQLFeatureNotSupportedException();
+		checkClosed();
+		QueryExecution current = execution;
+		if (current != null)
+			current.cancelQuery(
+					SpannerExceptionFactory.newSpannerException(ErrorCode.CANCELLED, "Statement was cancelled"));
 	}
 
 	@Override
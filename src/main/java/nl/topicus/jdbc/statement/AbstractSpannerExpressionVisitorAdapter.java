@@ -59,17 +59,17 @@ abstract class AbstractSpannerExpressionVisitorAdapter extends ExpressionVisitor
 	public void visit(SignedExpression value)
 	{
 		Expression underlyingValue = value.getExpression();
+		// Do not modify the underlying value, as the parsed statement may be
+		// cached and visited again
 		if (underlyingValue instanceof DoubleValue)
 		{
-			DoubleValue doubleValue = (DoubleValue) underlyingValue;
-			doubleValue.setValue(value.getSign() == '-' ? -doubleValue.getValue() : doubleValue.getValue());
-			visit(doubleValue);
+			double doubleValue = ((DoubleValue) underlyingValue).getValue();
+			setValue(value.getSign() == '-' ? -doubleValue : doubleValue);
 		}
 		else if (underlyingValue instanceof LongValue)
 		{
-			LongValue longValue = (LongValue) underlyingValue;
-			longValue.setValue(value.getSign() == '-' ? -longValue.getValue() : longValue.getValue());
-			visit(longValue);
+			long longValue = ((LongValue) underlyingValue).getValue();
+			setValue(value.getSign() == '-' ? -longValue : longValue);
 		}
 		else
 		{
@@ -1,15 +1,22 @@
 package nl.topicus.jdbc.statement;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.TimestampBound;
 
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.select.Select;
+import nl.topicus.jdbc.AsyncExecutor;
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDriver;
 
@@ -46,7 +53,9 @@ public abstract class AbstractTablePartWorker implements Callable<ConversionResu
 
 	private long estimatedRecordCount = -1;
 
-	private long recordCount = 0;
+	private final AtomicLong recordCount = new AtomicLong();
+
+	private List<ConversionResult> partitionResults = Collections.emptyList();
 
 	AbstractTablePartWorker(CloudSpannerConnection connection, Select select, boolean allowExtendedMode,
 			DMLOperation operation)
@@ -71,7 +80,7 @@ public abstract class AbstractTablePartWorker implements Callable<ConversionResu
 			exception = e;
 		}
 		long endTime = System.currentTimeMillis();
-		return new ConversionResult(recordCount, 0, startTime, endTime, exception);
+		return new ConversionResult(recordCount.get(), 0, startTime, endTime, exception, null, partitionResults);
 	}
 
 	protected void genericRun() throws SQLException
@@ -81,43 +90,41 @@ public abstract class AbstractTablePartWorker implements Callable<ConversionResu
 		long batchSize = ConverterUtils.calculateActualBatchSize(columnNamesList.size(), connection, null, null,
 				unquotedTableName);
 		boolean isExtendedMode = isExtendedMode(batchSize);
+		int numberOfIndices = ConverterUtils.getNumberOfIndices(connection, null, null, unquotedTableName);
+		if (isExtendedMode && connection.getExtendedModeParallelism() > 1 && SelectPartitioner.isPartitionable(select))
+		{
+			int numberOfPartitions = (int) Math.min(connection.getExtendedModeParallelism(),
+					Math.max(getEstimatedRecordCount(select) / batchSize, 1L));
+			// The boundaries and all partitions read the same snapshot, so that
+			// the partitions together read each source row exactly once
+			TimestampBound bound = TimestampBound
+					.ofReadTimestamp(connection.getReadTimestamp(TimestampBound.strong()));
+			List<SelectPartitioner.Partition> partitions = SelectPartitioner.createPartitions(connection, select,
+					numberOfPartitions, getEstimatedRecordCount(select), bound, null);
+			if (partitions.size() > 1)
+			{
+				partitionedRun(partitions, numberOfIndices, bound);
+				return;
+			}
+		}
 
 		boolean wasAutocommit = connection.getAutoCommit();
 		if (!isExtendedMode && wasAutocommit)
 		{
 			connection.setAutoCommit(false);
 		}
-		try (Connection destination = isExtendedMode ? connection.createCopyConnection() : null)
+		try (CloudSpannerConnection destination = isExtendedMode ? connection.createCopyConnection() : null)
 		{
 			if (destination != null)
 			{
 				destination.setAutoCommit(false);
 			}
-			String sql = createSQL();
-			try (PreparedStatement statement = destination == null ? connection.prepareStatement(sql)
-					: destination.prepareStatement(sql))
+			StructMutationBuilder builder = createMutationBuilder();
+			try (CloudSpannerPreparedStatement statement = prepareSourceQuery(select.toString());
+					com.google.cloud.spanner.ResultSet rs = statement.executeSpannerQuery())
 			{
-				if (operation == DMLOperation.Update)
-				{
-					// Set force update
-					((CloudSpannerPreparedStatement) statement).setForceUpdate(true);
-				}
-				try (ResultSet rs = connection.prepareStatement(select.toString()).executeQuery())
-				{
-					ResultSetMetaData metadata = rs.getMetaData();
-					while (rs.next())
-					{
-						for (int index = 1; index <= metadata.getColumnCount(); index++)
-						{
-							Object object = rs.getObject(index);
-							statement.setObject(index, object);
-						}
-						statement.executeUpdate();
-						recordCount++;
-						if (destination != null && recordCount % batchSize == 0)
-							destination.commit();
-					}
-				}
+				copyRows(rs, builder, destination == null ? connection : destination, destination != null,
+						new MutationBatcher(numberOfIndices), recordCount, new AtomicBoolean());
 			}
 			if (destination != null)
 			{
@@ -141,18 +148,159 @@ public abstract class AbstractTablePartWorker implements Callable<ConversionResu
 
 	}
 
+	/**
+	 * Copies the rows of the result set as mutations into the transaction of
+	 * the target connection. The mutations are buffered in batches that are
+	 * sized by the actual number of bytes and mutations that they contain, so
+	 * that each batch stays within the limits of a single commit. If
+	 * <code>commitBatches</code> is <code>true</code>, the target connection
+	 * is committed after each batch.
+	 */
+	private void copyRows(com.google.cloud.spanner.ResultSet rs, StructMutationBuilder builder,
+			CloudSpannerConnection target, boolean commitBatches, MutationBatcher batcher, AtomicLong counter,
+			AtomicBoolean stopped) throws SQLException
+	{
+		while (!stopped.get() && rs.next())
+		{
+			List<Mutation> full = batcher.add(builder.createMutation(rs));
+			if (full != null)
+				flush(target, full, commitBatches, counter);
+		}
+		if (!stopped.get() && !batcher.isEmpty())
+			flush(target, batcher.drain(), commitBatches, counter);
+	}
+
+	private void flush(CloudSpannerConnection target, List<Mutation> chunk, boolean commit, AtomicLong counter)
+			throws SQLException
+	{
+		target.getTransaction().buffer(chunk);
+		if (commit)
+			target.commit();
+		counter.addAndGet(chunk.size());
+	}
+
+	/**
+	 * Executes the statement in parallel for each of the given partitions on
+	 * the {@link AsyncExecutor} of the driver. The number of partitions is
+	 * bounded by the extended mode parallelism of the connection. Each
+	 * partition is read in a separate single use read context with the given
+	 * timestamp bound and written on a separate connection that commits each
+	 * time a batch of mutations is full. If a partition fails, the partitions that are still running
+	 * are stopped, but the records that have already been committed by other
+	 * partitions are not rolled back.
+	 */
+	private void partitionedRun(List<SelectPartitioner.Partition> partitions, int numberOfIndices,
+			TimestampBound bound) throws SQLException
+	{
+		StructMutationBuilder builder = createMutationBuilder();
+		AtomicBoolean failed = new AtomicBoolean();
+		List<CompletableFuture<ConversionResult>> futures = new ArrayList<>(partitions.size());
+		List<Runnable> operations = new ArrayList<>(partitions.size());
+		for (SelectPartitioner.Partition partition : partitions)
+		{
+			CompletableFuture<ConversionResult> future = new CompletableFuture<>();
+			futures.add(future);
+			operations.add(() -> {
+				try
+				{
+					future.complete(runPartition(partition, bound, builder, numberOfIndices, failed));
+				}
+				catch (RuntimeException | Error e)
+				{
+					future.completeExceptionally(e);
+				}
+			});
+		}
+		// The partitions do not wait in the queue of the executor, as this
+		// operation may itself be running on a thread of the executor
+		AsyncExecutor.getDefault().executeConcurrently(operations);
+		try
+		{
+			List<ConversionResult> results = new ArrayList<>(partitions.size());
+			for (CompletableFuture<ConversionResult> future : futures)
+			{
+				results.add(future.get());
+			}
+			partitionResults = results;
+		}
+		catch (InterruptedException e)
+		{
+			// Stop the partitions that are still running
+			failed.set(true);
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for partitions to finish", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new SQLException(e.getCause().getMessage(), e.getCause());
+		}
+		for (ConversionResult result : partitionResults)
+		{
+			if (result.getException() != null)
+				throw new SQLException("Partition " + result.getPartition() + " failed: "
+						+ result.getException().getMessage(), result.getException());
+		}
+	}
+
+	private ConversionResult runPartition(SelectPartitioner.Partition partition, TimestampBound bound,
+			StructMutationBuilder builder, int numberOfIndices, AtomicBoolean failed)
+	{
+		long startTime = System.currentTimeMillis();
+		AtomicLong partitionCount = new AtomicLong();
+		Exception exception = null;
+		try (CloudSpannerConnection destination = connection.createCopyConnection())
+		{
+			destination.setAutoCommit(false);
+			try (com.google.cloud.spanner.ResultSet rs = partition.executeQuery(connection, bound, null))
+			{
+				copyRows(rs, builder, destination, true, new MutationBatcher(numberOfIndices), partitionCount, failed);
+			}
+			if (failed.get())
+				destination.rollback();
+			else
+				destination.commit();
+		}
+		catch (Exception e)
+		{
+			failed.set(true);
+			exception = e;
+		}
+		finally
+		{
+			recordCount.addAndGet(partitionCount.get());
+		}
+		return new ConversionResult(partitionCount.get(), 0, startTime, System.currentTimeMillis(), exception,
+				partition.toString(), Collections.emptyList());
+	}
+
 	protected abstract List<String> getColumnNames() throws SQLException;
 
 	protected abstract Table getTable();
 
-	protected abstract String createSQL() throws SQLException;
+	protected abstract StructMutationBuilder createMutationBuilder() throws SQLException;
+
+	/**
+	 * Prepares a query that reads the source rows of the operation. The rows
+	 * that are read are written back to the database, so outside a
+	 * transaction the query always reads strongly in a single use read
+	 * context, regardless of the read timestamp bound of the connection.
+	 * Inside a transaction the query reads in the transaction.
+	 */
+	private CloudSpannerPreparedStatement prepareSourceQuery(String sql) throws SQLException
+	{
+		CloudSpannerPreparedStatement res = connection.prepareStatement(sql);
+		if (connection.getAutoCommit())
+			res.setForceSingleUseReadContext(true);
+		return res;
+	}
 
 	protected long getEstimatedRecordCount(Select select) throws SQLException
 	{
 		if (estimatedRecordCount == -1)
 		{
 			String sql = "SELECT COUNT(*) AS C FROM (" + select.toString() + ") Q";
-			try (ResultSet count = connection.prepareStatement(sql).executeQuery())
+			try (CloudSpannerPreparedStatement statement = prepareSourceQuery(sql);
+					ResultSet count = statement.executeQuery())
 			{
 				if (count.next())
 					estimatedRecordCount = count.getLong(1);
@@ -187,7 +335,7 @@ public abstract class AbstractTablePartWorker implements Callable<ConversionResu
 
 	public long getRecordCount()
 	{
-		return recordCount;
+		return recordCount.get();
 	}
 
 }
@@ -1,41 +1,71 @@
 package nl.topicus.jdbc.statement;
 
+import java.sql.BatchUpdateException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.Key;
 import com.google.cloud.spanner.KeySet;
 import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
 import com.google.cloud.spanner.Mutation.WriteBuilder;
 import com.google.cloud.spanner.ReadContext;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
 
-import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.HexValue;
 import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.expression.operators.relational.ItemsList;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.parser.TokenMgrError;
 import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.delete.Delete;
 import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
 import net.sf.jsqlparser.statement.select.SelectVisitorAdapter;
 import net.sf.jsqlparser.statement.select.SubSelect;
 import net.sf.jsqlparser.statement.update.Update;
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDriver;
+import nl.topicus.jdbc.MetaDataStore.ColumnMetaData;
+import nl.topicus.jdbc.MetaDataStore.IndexMetaData;
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
 import nl.topicus.jdbc.statement.AbstractTablePartWorker.DMLOperation;
+import nl.topicus.jdbc.statement.ParsedStatement.StatementType;
 
 /**
  * 
@@ -48,8 +78,6 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 
 	private static final String INVALID_WHERE_CLAUSE_UPDATE_MESSAGE = "The UPDATE statement does not contain a valid WHERE clause. UPDATE statements must contain a WHERE clause specifying the value of the primary key of the record(s) to be deleted in the form 'ID=value' or 'ID1=value1 AND ID2=value2'";
 
-	static final String PARSE_ERROR = "Error while parsing sql statement ";
-
 	private String sql;
 
 	/**
@@ -60,6 +88,31 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 
 	private List<Mutations> batchMutations = new ArrayList<>();
 
+	/**
+	 * Precompiled mutation for the sql statement of this prepared statement,
+	 * or <code>null</code> if the statement cannot be precompiled
+	 */
+	private MutationTemplate mutationTemplate;
+
+	private boolean mutationTemplateCompiled;
+
+	/**
+	 * The generation of the meta data that the mutation template was compiled
+	 * for. The template is compiled again when a DDL statement has changed
+	 * the meta data.
+	 */
+	private long mutationTemplateGeneration;
+
+	/**
+	 * Precompiled key read for the sql statement of this prepared statement,
+	 * or <code>null</code> if the statement must be executed as a query
+	 */
+	private KeyReadTemplate keyReadTemplate;
+
+	private boolean keyReadTemplateCompiled;
+
+	private long keyReadTemplateGeneration;
+
 	public CloudSpannerPreparedStatement(String sql, CloudSpannerConnection connection, DatabaseClient dbClient)
 	{
 		super(connection, dbClient);
@@ -75,58 +128,363 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 	@Override
 	public ResultSet executeQuery() throws SQLException
 	{
-		Statement statement;
+		return createResultSet(executeSpannerQuery());
+	}
+
+	/**
+	 * Executes the query and reads all rows of the result into memory. The
+	 * returned result set can be read without waiting for Cloud Spanner and
+	 * remains valid when this statement is closed. If a maximum number of rows
+	 * has been set on this statement, only that number of rows is read.
+	 *
+	 * @param rowLimit
+	 *            The maximum number of rows that the result may contain. The
+	 *            query fails if it returns more rows, so that a large result
+	 *            cannot exhaust the memory. 0 means that the number of rows
+	 *            is not limited.
+	 * @return The complete result of the query
+	 * @throws SQLException
+	 *             if the query fails or returns more rows than the limit
+	 */
+	public CloudSpannerResultSet executeQueryAndReadAll(int rowLimit) throws SQLException
+	{
+		CloudSpannerMetrics metrics = getConnection().getMetrics();
+		List<Struct> rows = new ArrayList<>();
+		Type type;
+		int maxRows = getMaxRows();
+		try (com.google.cloud.spanner.ResultSet rs = executeSpannerQuery())
+		{
+			long start = System.nanoTime();
+			boolean hasNext = rs.next();
+			metrics.recordQueryTime(System.nanoTime() - start);
+			while (hasNext && (maxRows == 0 || rows.size() < maxRows))
+			{
+				if (rowLimit > 0 && rows.size() == rowLimit)
+					throw new SQLException("The query returned more than the maximum of " + rowLimit
+							+ " rows that can be read into memory: " + sql);
+				rows.add(rs.getCurrentRowAsStruct());
+				hasNext = rs.next();
+			}
+			type = getType(rs, rows);
+		}
+		metrics.recordRowsReturned(rows.size());
+		return new CloudSpannerResultSet(null, ResultSets.forRows(type, rows));
+	}
+
+	private static Type getType(com.google.cloud.spanner.ResultSet rs, List<Struct> rows)
+	{
+		if (!rows.isEmpty())
+			return rows.get(0).getType();
 		try
 		{
-			statement = CCJSqlParserUtil.parse(sanitizeSQL(sql));
+			return rs.getType();
 		}
-		catch (JSQLParserException | TokenMgrError e)
+		catch (IllegalStateException e)
 		{
-			throw new SQLException(PARSE_ERROR + sql + ": " + e.getLocalizedMessage(), e);
+			// The result set did not return any metadata
+			return Type.struct(Collections.<StructField> emptyList());
 		}
-		if (statement instanceof Select)
+	}
+
+	/**
+	 * Executes the query and returns the underlying Cloud Spanner result set,
+	 * so that the rows can be read without converting the values to JDBC
+	 * types. Queries that select rows by the value of their primary key or of
+	 * a secondary index are executed as a read of these keys, see
+	 * {@link KeyReadTemplate}. Other queries are executed as a partitioned
+	 * query if that is enabled, see {@link PartitionedQuery}.
+	 */
+	com.google.cloud.spanner.ResultSet executeSpannerQuery() throws SQLException
+	{
+		ParsedStatement parsedStatement = parseStatement(sql);
+		if (parsedStatement.getType() == StatementType.SELECT)
 		{
-			com.google.cloud.spanner.Statement.Builder builder = createSelectBuilder(statement);
+			long start = System.nanoTime();
+			KeyReadTemplate template = getKeyReadTemplate(parsedStatement);
+			Key key = template == null ? null : template.createKey(getParameterStore());
+			if (key != null)
+			{
+				getConnection().getMetrics().recordBindTime(System.nanoTime() - start);
+				int maxRows = getMaxRows();
+				try (ReadContext context = getReadContext())
+				{
+					return executeRead(context, c -> template.read(c, key, maxRows));
+				}
+			}
+			com.google.cloud.spanner.ResultSet partitioned = executePartitionedQuery(sql, getParameterStore());
+			if (partitioned != null)
+				return partitioned;
+			// The statement could not be partitioned, do not count the time
+			// that was spent on trying as bind time
+			start = System.nanoTime();
+			com.google.cloud.spanner.Statement statement = createSelectBuilder(parsedStatement, getMaxRows()).build();
+			getConnection().getMetrics().recordBindTime(System.nanoTime() - start);
 			try (ReadContext context = getReadContext())
 			{
-				com.google.cloud.spanner.ResultSet rs = context.executeQuery(builder.build());
-				return new CloudSpannerResultSet(this, rs);
+				return executeQuery(context, statement);
 			}
 		}
 		throw new SQLException("SQL statement not suitable for executeQuery. Expected SELECT-statement.");
 	}
 
-	private com.google.cloud.spanner.Statement.Builder createSelectBuilder(Statement statement)
+	/**
+	 * Returns the key read template for the sql statement of this prepared
+	 * statement. The template is compiled the first time it is requested, and
+	 * again when the meta data of the database has changed.
+	 */
+	private KeyReadTemplate getKeyReadTemplate(ParsedStatement parsedStatement) throws SQLException
 	{
-		String namedSql = convertPositionalParametersToNamedParameters(sql);
-		com.google.cloud.spanner.Statement.Builder builder = com.google.cloud.spanner.Statement.newBuilder(namedSql);
-		setSelectParameters(((Select) statement).getSelectBody(), builder);
+		long generation = getConnection().getMetaDataGeneration();
+		if (!keyReadTemplateCompiled || keyReadTemplateGeneration != generation)
+		{
+			keyReadTemplate = compileKeyReadTemplate((Select) parsedStatement.getStatement());
+			keyReadTemplateGeneration = generation;
+			keyReadTemplateCompiled = true;
+		}
+		return keyReadTemplate;
+	}
 
-		return builder;
+	/**
+	 * Compiles a key read template for SELECT-statements on one table that
+	 * only select columns of that table and whose WHERE-clause consists of an
+	 * equality comparison for each column of the primary key, or for each
+	 * column of a secondary index that contains all selected columns.
+	 *
+	 * @return The compiled template, or <code>null</code> if the statement
+	 *         must be executed as a query
+	 */
+	private KeyReadTemplate compileKeyReadTemplate(Select select) throws SQLException
+	{
+		if ((select.getWithItemsList() != null && !select.getWithItemsList().isEmpty())
+				|| !(select.getSelectBody() instanceof PlainSelect))
+			return null;
+		PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+		if (!isSingleTableSelect(plainSelect))
+			return null;
+		Table from = (Table) plainSelect.getFromItem();
+		Map<String, Expression> keyValues = new HashMap<>();
+		if (!addKeyValues(from, plainSelect.getWhere(), keyValues))
+			return null;
+		TableKeyMetaData table = getConnection().getTable(unquoteIdentifier(from.getName()));
+		if (table == null)
+			return null;
+		String[] columns = getSelectedColumns(from, table, plainSelect.getSelectItems());
+		if (columns == null)
+			return null;
+		if (isKey(keyValues, table.getKeyColumns()))
+			return createKeyReadTemplate(from, table, null, table.getKeyColumns(), columns, keyValues);
+		for (IndexMetaData index : table.getIndices())
+		{
+			if (isKey(keyValues, index.getKeyColumns()) && isStoredInIndex(columns, table, index))
+				return createKeyReadTemplate(from, table, index.getName(), index.getKeyColumns(), columns,
+						keyValues);
+		}
+		return null;
 	}
 
-	private String convertPositionalParametersToNamedParameters(String sql)
+	private static boolean isSingleTableSelect(PlainSelect select)
 	{
-		boolean inString = false;
-		StringBuilder res = new StringBuilder(sql);
-		int i = 0;
-		int parIndex = 1;
-		while (i < res.length())
+		if (!(select.getFromItem() instanceof Table))
+			return false;
+		Table from = (Table) select.getFromItem();
+		return from.getSchemaName() == null && from.getPivot() == null && from.getIndexHint() == null
+				&& (select.getJoins() == null || select.getJoins().isEmpty()) && select.getWhere() != null
+				&& select.getDistinct() == null
+				&& (select.getGroupByColumnReferences() == null || select.getGroupByColumnReferences().isEmpty())
+				&& select.getHaving() == null
+				&& (select.getOrderByElements() == null || select.getOrderByElements().isEmpty())
+				&& select.getLimit() == null && select.getOffset() == null && select.getFetch() == null
+				&& select.getTop() == null && select.getSkip() == null && select.getFirst() == null
+				&& select.getOracleHierarchical() == null && !select.isForUpdate()
+				&& (select.getIntoTables() == null || select.getIntoTables().isEmpty());
+	}
+
+	/**
+	 * Adds the columns and values of a WHERE-clause in the form 'ID=value' or
+	 * 'ID1=value1 AND ID2=value2' to the given map.
+	 *
+	 * @return <code>false</code> if the WHERE-clause is not in this form or
+	 *         specifies a column more than once
+	 */
+	private static boolean addKeyValues(Table from, Expression expression, Map<String, Expression> keyValues)
+	{
+		if (expression instanceof AndExpression && !((AndExpression) expression).isNot())
+		{
+			AndExpression and = (AndExpression) expression;
+			return addKeyValues(from, and.getLeftExpression(), keyValues)
+					&& addKeyValues(from, and.getRightExpression(), keyValues);
+		}
+		if (expression instanceof Parenthesis && !((Parenthesis) expression).isNot())
+		{
+			return addKeyValues(from, ((Parenthesis) expression).getExpression(), keyValues);
+		}
+		if (expression instanceof EqualsTo && !((EqualsTo) expression).isNot())
+		{
+			EqualsTo equals = (EqualsTo) expression;
+			if (!(equals.getLeftExpression() instanceof Column) || !isKeyValue(equals.getRightExpression()))
+				return false;
+			Column column = (Column) equals.getLeftExpression();
+			if (!isColumnOf(from, column))
+				return false;
+			return keyValues.put(unquoteIdentifier(column.getColumnName()).toUpperCase(),
+					equals.getRightExpression()) == null;
+		}
+		return false;
+	}
+
+	private static boolean isKeyValue(Expression expression)
+	{
+		if (expression instanceof SignedExpression)
 		{
-			char c = res.charAt(i);
-			if (c == '\'')
+			Expression value = ((SignedExpression) expression).getExpression();
+			return value instanceof LongValue || value instanceof DoubleValue;
+		}
+		return expression instanceof JdbcParameter || expression instanceof LongValue
+				|| expression instanceof DoubleValue || expression instanceof StringValue
+				|| expression instanceof DateValue || expression instanceof TimestampValue
+				|| expression instanceof HexValue;
+	}
+
+	private static boolean isColumnOf(Table from, Column column)
+	{
+		Table table = column.getTable();
+		if (table == null || table.getName() == null)
+			return true;
+		return isSameTable(from, table);
+	}
+
+	private static boolean isSameTable(Table from, Table table)
+	{
+		if (table.getSchemaName() != null)
+			return false;
+		String name = unquoteIdentifier(table.getName());
+		if (from.getAlias() != null)
+			return name.equalsIgnoreCase(unquoteIdentifier(from.getAlias().getName()));
+		return name.equalsIgnoreCase(unquoteIdentifier(from.getName()));
+	}
+
+	/**
+	 * @return The names of the selected columns, or <code>null</code> if the
+	 *         statement selects anything else than columns of the table
+	 */
+	private static String[] getSelectedColumns(Table from, TableKeyMetaData table, List<SelectItem> items)
+	{
+		List<String> res = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		for (SelectItem item : items)
+		{
+			if (item instanceof AllColumns
+					|| (item instanceof AllTableColumns && isSameTable(from, ((AllTableColumns) item).getTable())))
+			{
+				for (ColumnMetaData column : table.getColumns())
+					res.add(column.getName());
+			}
+			else if (item instanceof SelectExpressionItem && ((SelectExpressionItem) item).getAlias() == null
+					&& ((SelectExpressionItem) item).getExpression() instanceof Column)
 			{
-				inString = !inString;
+				Column column = (Column) ((SelectExpressionItem) item).getExpression();
+				if (!isColumnOf(from, column) || getColumn(table, column.getColumnName()) == null)
+					return null;
+				res.add(unquoteIdentifier(column.getColumnName()));
 			}
-			else if (c == '?' && !inString)
+			else
 			{
-				res.replace(i, i + 1, "@p" + parIndex);
-				parIndex++;
+				return null;
 			}
-			i++;
 		}
+		for (String column : res)
+		{
+			// The read API does not allow the same column to be read twice
+			if (!names.add(column.toUpperCase()))
+				return null;
+		}
+		return res.isEmpty() ? null : res.toArray(new String[res.size()]);
+	}
+
+	private static ColumnMetaData getColumn(TableKeyMetaData table, String name)
+	{
+		String unquoted = unquoteIdentifier(name);
+		for (ColumnMetaData column : table.getColumns())
+		{
+			if (column.getName().equalsIgnoreCase(unquoted))
+				return column;
+		}
+		return null;
+	}
+
+	private static boolean isKey(Map<String, Expression> keyValues, List<String> keyColumns)
+	{
+		return !keyColumns.isEmpty() && keyValues.size() == keyColumns.size()
+				&& keyValues.keySet().containsAll(keyColumns);
+	}
 
-		return res.toString();
+	/**
+	 * A secondary index contains its key columns, the columns that are stored
+	 * in the index and the primary key columns of the table
+	 */
+	private static boolean isStoredInIndex(String[] columns, TableKeyMetaData table, IndexMetaData index)
+	{
+		for (String column : columns)
+		{
+			String name = column.toUpperCase();
+			if (!index.getKeyColumns().contains(name) && !index.getStoringColumns().contains(name)
+					&& !table.getKeyColumns().contains(name))
+				return false;
+		}
+		return true;
+	}
+
+	private static KeyReadTemplate createKeyReadTemplate(Table from, TableKeyMetaData table, String index,
+			List<String> keyColumns, String[] columns, Map<String, Expression> keyValues)
+	{
+		int[] keyTypes = new int[keyColumns.size()];
+		Expression[] expressions = new Expression[keyColumns.size()];
+		for (int part = 0; part < keyColumns.size(); part++)
+		{
+			ColumnMetaData column = getColumn(table, keyColumns.get(part));
+			if (column == null)
+				return null;
+			keyTypes[part] = column.getDataType();
+			expressions[part] = keyValues.get(keyColumns.get(part));
+		}
+		return KeyReadTemplate.createKeyReadTemplate(unquoteIdentifier(from.getName()), index, columns, keyTypes,
+				expressions);
+	}
+
+	private com.google.cloud.spanner.Statement.Builder createSelectBuilder(ParsedStatement parsedStatement)
+	{
+		return createSelectBuilder(parsedStatement, 0);
+	}
+
+	/**
+	 * Creates a builder for a SELECT statement. If <code>maxRows</code> is
+	 * larger than 0 and the statement is a simple SELECT statement without a
+	 * LIMIT clause, a LIMIT clause is added to the statement so that the
+	 * server does not return more rows than needed.
+	 */
+	private com.google.cloud.spanner.Statement.Builder createSelectBuilder(ParsedStatement parsedStatement,
+			int maxRows)
+	{
+		String namedSql = parsedStatement.getNamedParameterSql();
+		if (maxRows > 0 && canAddLimit((Select) parsedStatement.getStatement()))
+		{
+			// Add the limit on a new line, as the statement could end with a
+			// single line comment
+			namedSql = namedSql + "\nLIMIT " + maxRows;
+		}
+		com.google.cloud.spanner.Statement.Builder builder = com.google.cloud.spanner.Statement.newBuilder(namedSql);
+		setSelectParameters(((Select) parsedStatement.getStatement()).getSelectBody(), builder);
+
+		return builder;
+	}
+
+	private static boolean canAddLimit(Select select)
+	{
+		if (!(select.getSelectBody() instanceof PlainSelect))
+			return false;
+		PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+		return plainSelect.getLimit() == null && plainSelect.getOffset() == null && plainSelect.getFetch() == null
+				&& plainSelect.getTop() == null;
 	}
 
 	private void setSelectParameters(SelectBody body, com.google.cloud.spanner.Statement.Builder builder)
@@ -179,11 +537,6 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 	@Override
 	public void addBatch() throws SQLException
 	{
-		if (getConnection().getAutoCommit())
-		{
-			throw new SQLFeatureNotSupportedException(
-					"Batching of statements is only allowed when not running in autocommit mode");
-		}
 		if (isDDLStatement(sql))
 		{
 			throw new SQLFeatureNotSupportedException("DDL statements may not be batched");
@@ -192,7 +545,7 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 		{
 			throw new SQLFeatureNotSupportedException("SELECT statements may not be batched");
 		}
-		Mutations mutations = createMutations(sql);
+		Mutations mutations = bindMutations();
 		batchMutations.add(mutations);
 		getParameterStore().clearParameters();
 	}
@@ -204,18 +557,145 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 		getParameterStore().clearParameters();
 	}
 
+	/**
+	 * Executes the batched statements. In autocommit mode a large batch is
+	 * committed in multiple transactions, which means that the batch is not
+	 * atomic: If one of the transactions fails, the statements in the
+	 * transactions before it have been committed. The
+	 * {@link BatchUpdateException} that is thrown then contains the update
+	 * counts of the statements that were applied. The batch is always cleared,
+	 * also when it fails.
+	 */
 	@Override
 	public int[] executeBatch() throws SQLException
 	{
 		int[] res = new int[batchMutations.size()];
-		int index = 0;
-		for (Mutations mutation : batchMutations)
+		try
 		{
-			res[index] = (int) writeMutations(mutation);
-			index++;
+			List<Mutation> buffer = new ArrayList<>();
+			int first = 0;
+			for (int index = 0; index < batchMutations.size(); index++)
+			{
+				Mutations mutations = batchMutations.get(index);
+				if (mutations.isWorker())
+				{
+					// Workers write their own mutations. Write all mutations
+					// that were added before the worker first, so that the
+					// statements of the batch are applied in order.
+					writeBatchMutations(buffer, res, first, index);
+					buffer.clear();
+					try
+					{
+						res[index] = (int) writeMutations(mutations);
+					}
+					catch (SQLException | SpannerException e)
+					{
+						throw createBatchUpdateException(e, res, index);
+					}
+					first = index + 1;
+				}
+				else
+				{
+					buffer.addAll(mutations.getMutations());
+					res[index] = (int) mutations.getNumberOfResults();
+				}
+			}
+			writeBatchMutations(buffer, res, first, batchMutations.size());
+			return res;
 		}
-		batchMutations.clear();
-		getParameterStore().clearParameters();
+		finally
+		{
+			batchMutations.clear();
+			getParameterStore().clearParameters();
+		}
+	}
+
+	/**
+	 * Writes the mutations of the statements from first (inclusive) to end
+	 * (exclusive) of the batch. If the connection is in a transaction, all
+	 * mutations are buffered in the transaction in one call. In autocommit
+	 * mode the mutations are committed in as few transactions as possible,
+	 * where each transaction stays within the maximum number of mutations and
+	 * bytes per commit as measured by a {@link MutationBatcher}, the same
+	 * limits that bulk operations use.
+	 *
+	 * @throws BatchUpdateException
+	 *             with the update counts of the statements of the batch that
+	 *             were applied before the write failed
+	 */
+	private void writeBatchMutations(List<Mutation> mutations, int[] counts, int first, int end)
+			throws SQLException
+	{
+		if (mutations.isEmpty())
+			return;
+		if (!getConnection().getAutoCommit())
+		{
+			try
+			{
+				writeMutations(new Mutations(mutations));
+			}
+			catch (SQLException | SpannerException e)
+			{
+				throw createBatchUpdateException(e, counts, first);
+			}
+			return;
+		}
+		List<List<Mutation>> chunks = createBatchChunks(mutations);
+		// The statements before applied have been committed, and consist of
+		// the first appliedMutations mutations
+		int applied = first;
+		int appliedMutations = 0;
+		int written = 0;
+		for (List<Mutation> chunk : chunks)
+		{
+			try
+			{
+				writeMutations(new Mutations(chunk));
+			}
+			catch (SQLException | SpannerException e)
+			{
+				throw createBatchUpdateException(e, counts, applied);
+			}
+			written += chunk.size();
+			while (applied < end
+					&& appliedMutations + batchMutations.get(applied).getMutations().size() <= written)
+			{
+				appliedMutations += batchMutations.get(applied).getMutations().size();
+				applied++;
+			}
+		}
+	}
+
+	private static BatchUpdateException createBatchUpdateException(Exception cause, int[] counts, int applied)
+	{
+		int[] updateCounts = Arrays.copyOf(counts, applied);
+		if (cause instanceof SQLException)
+		{
+			SQLException e = (SQLException) cause;
+			return new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), updateCounts, e);
+		}
+		return new BatchUpdateException(cause.getMessage(), updateCounts, cause);
+	}
+
+	/**
+	 * Divides the mutations of a batch into chunks that can each be committed
+	 * in one transaction. All mutations of a batch originate from the same
+	 * statement, which means that they all write to the table of the first
+	 * mutation.
+	 */
+	private List<List<Mutation>> createBatchChunks(List<Mutation> mutations) throws SQLException
+	{
+		int numberOfIndices = ConverterUtils.getNumberOfIndices(getConnection(), null, null,
+				mutations.get(0).getTable());
+		MutationBatcher batcher = new MutationBatcher(numberOfIndices);
+		List<List<Mutation>> res = new ArrayList<>();
+		for (Mutation mutation : mutations)
+		{
+			List<Mutation> full = batcher.add(mutation);
+			if (full != null)
+				res.add(full);
+		}
+		res.add(batcher.drain());
 		return res;
 	}
 
@@ -227,10 +707,23 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 			String ddl = formatDDLStatement(sql);
 			return executeDDL(ddl);
 		}
-		Mutations mutations = createMutations(sql);
+		Mutations mutations = bindMutations();
 		return (int) writeMutations(mutations);
 	}
 
+	/**
+	 * Creates the mutations for the current parameter values of this
+	 * statement and records the time that this took as the bind time of the
+	 * statement.
+	 */
+	private Mutations bindMutations() throws SQLException
+	{
+		long start = System.nanoTime();
+		Mutations res = createMutations(sql);
+		getConnection().getMetrics().recordBindTime(System.nanoTime() - start);
+		return res;
+	}
+
 	private Mutations createMutations(String sql) throws SQLException
 	{
 		return createMutations(sql, false);
@@ -248,7 +741,14 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 			{
 				throw new SQLException("Cannot create mutation for DDL statement. Expected INSERT, UPDATE or DELETE");
 			}
-			Statement statement = CCJSqlParserUtil.parse(sanitizeSQL(sql));
+			ParsedStatement parsedStatement = parseStatement(sql);
+			if (sql.equals(this.sql))
+			{
+				MutationTemplate template = getMutationTemplate(parsedStatement);
+				if (template != null && !hasNullKeyParameter(parsedStatement))
+					return new Mutations(template.createMutation(getParameterStore()));
+			}
+			Statement statement = parsedStatement.getStatement();
 			if (statement instanceof Insert)
 			{
 				Insert insertStatement = (Insert) statement;
@@ -266,9 +766,9 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 					throw new SQLException(
 							"UPDATE statement using multiple tables is not supported. Try to re-write the statement as an INSERT INTO ... SELECT A, B, C FROM TABLE WHERE ... ON DUPLICATE KEY UPDATE");
 
-				if (isSingleRowWhereClause(
+				if (isSingleRowWhereClause(parsedStatement,
 						getConnection().getTable(unquoteIdentifier(updateStatement.getTables().get(0).getName())),
-						updateStatement.getWhere()))
+						updateStatement.getWhere()) && !hasNullKeyParameter(parsedStatement))
 					return new Mutations(createUpdateMutation(updateStatement));
 				// Translate into an 'INSERT ... SELECT ... ON DUPLICATE KEY
 				// UPDATE'-statement
@@ -278,9 +778,9 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 			else if (statement instanceof Delete)
 			{
 				Delete deleteStatement = (Delete) statement;
-				if (deleteStatement.getWhere() == null || isSingleRowWhereClause(
+				if (deleteStatement.getWhere() == null || (isSingleRowWhereClause(parsedStatement,
 						getConnection().getTable(unquoteIdentifier(deleteStatement.getTable().getName())),
-						deleteStatement.getWhere()))
+						deleteStatement.getWhere()) && !hasNullKeyParameter(parsedStatement)))
 					return new Mutations(createDeleteMutation(deleteStatement));
 				return new Mutations(createDeleteWorker(deleteStatement));
 			}
@@ -290,12 +790,126 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 						"Unrecognized or unsupported SQL-statment: Expected one of INSERT, UPDATE or DELETE. Please note that batching of prepared statements is not supported for SELECT-statements.");
 			}
 		}
-		catch (JSQLParserException | IllegalArgumentException | TokenMgrError e)
+		catch (IllegalArgumentException e)
 		{
 			throw new SQLException(PARSE_ERROR + sql + ": " + e.getLocalizedMessage(), e);
 		}
 	}
 
+	/**
+	 * Returns the precompiled mutation template for the sql statement of this
+	 * prepared statement. The template is compiled the first time it is
+	 * requested.
+	 */
+	private MutationTemplate getMutationTemplate(ParsedStatement parsedStatement) throws SQLException
+	{
+		long generation = getConnection().getMetaDataGeneration();
+		if (!mutationTemplateCompiled || mutationTemplateGeneration != generation)
+		{
+			mutationTemplate = compileMutationTemplate(parsedStatement);
+			mutationTemplateGeneration = generation;
+			mutationTemplateCompiled = true;
+		}
+		return mutationTemplate;
+	}
+
+	/**
+	 * Compiles a mutation template for simple INSERT-, UPDATE- and
+	 * DELETE-statements that operate on a single row.
+	 * 
+	 * @return The compiled template, or <code>null</code> if the statement
+	 *         cannot be compiled into a template. These statements are
+	 *         translated into mutations by traversing the parsed statement on
+	 *         each execution.
+	 */
+	private MutationTemplate compileMutationTemplate(ParsedStatement parsedStatement) throws SQLException
+	{
+		Statement statement = parsedStatement.getStatement();
+		if (statement instanceof Insert)
+		{
+			Insert insert = (Insert) statement;
+			if (insert.getSelect() != null || !(insert.getItemsList() instanceof ExpressionList)
+					|| insert.getColumns() == null || insert.getColumns().isEmpty())
+				return null;
+			List<Expression> expressions = ((ExpressionList) insert.getItemsList()).getExpressions();
+			if (expressions.size() != insert.getColumns().size())
+				return null;
+			Op operation = Op.INSERT;
+			if (insert.isUseDuplicate())
+				operation = forceUpdate ? Op.UPDATE : Op.INSERT_OR_UPDATE;
+			return MutationTemplate.createWriteTemplate(operation,
+					unquoteIdentifier(insert.getTable().getFullyQualifiedName()), getColumnNames(insert.getColumns()),
+					expressions.toArray(new Expression[expressions.size()]));
+		}
+		else if (statement instanceof Update)
+		{
+			Update update = (Update) statement;
+			if (update.getSelect() != null || update.getTables().size() != 1 || !isSingleRowWhereClause(
+					parsedStatement, getConnection().getTable(unquoteIdentifier(update.getTables().get(0).getName())),
+					update.getWhere()))
+				return null;
+			List<String> columns = new ArrayList<>();
+			List<Expression> expressions = new ArrayList<>(update.getExpressions());
+			for (Column col : update.getColumns())
+				columns.add(unquoteIdentifier(col.getFullyQualifiedName()));
+			DMLWhereClauseVisitor whereClauseVisitor = new DMLWhereClauseVisitor(getParameterStore())
+			{
+				@Override
+				protected void visitExpression(Column col, Expression expression)
+				{
+					columns.add(unquoteIdentifier(col.getFullyQualifiedName()));
+					expressions.add(expression);
+				}
+			};
+			update.getWhere().accept(whereClauseVisitor);
+			if (columns.size() != expressions.size())
+				return null;
+			return MutationTemplate.createWriteTemplate(Op.UPDATE,
+					unquoteIdentifier(update.getTables().get(0).getFullyQualifiedName()),
+					columns.toArray(new String[columns.size()]),
+					expressions.toArray(new Expression[expressions.size()]));
+		}
+		else if (statement instanceof Delete)
+		{
+			Delete delete = (Delete) statement;
+			String table = unquoteIdentifier(delete.getTable().getFullyQualifiedName());
+			if (delete.getWhere() == null)
+				return MutationTemplate.createDeleteAllTemplate(table);
+			if (!isSingleRowWhereClause(parsedStatement,
+					getConnection().getTable(unquoteIdentifier(delete.getTable().getName())), delete.getWhere()))
+				return null;
+			Map<String, Expression> keyValues = new HashMap<>();
+			DMLWhereClauseVisitor whereClauseVisitor = new DMLWhereClauseVisitor(getParameterStore())
+			{
+				@Override
+				protected void visitExpression(Column col, Expression expression)
+				{
+					keyValues.put(unquoteIdentifier(col.getFullyQualifiedName()).toUpperCase(), expression);
+				}
+			};
+			delete.getWhere().accept(whereClauseVisitor);
+			List<String> keyColumns = getConnection().getTable(table).getKeyColumns();
+			Expression[] expressions = new Expression[keyColumns.size()];
+			for (int index = 0; index < keyColumns.size(); index++)
+				expressions[index] = keyValues.get(keyColumns.get(index));
+			return MutationTemplate.createDeleteTemplate(table, keyColumns.toArray(new String[keyColumns.size()]),
+					expressions);
+		}
+		return null;
+	}
+
+	private static String[] getColumnNames(List<Column> columns)
+	{
+		String[] res = new String[columns.size()];
+		int index = 0;
+		for (Column col : columns)
+		{
+			res[index] = unquoteIdentifier(col.getFullyQualifiedName());
+			index++;
+		}
+		return res;
+	}
+
 	/**
 	 * Does some formatting to DDL statements that might have been generated by
 	 * standard SQL generators to make it compatible with Google Cloud Spanner.
@@ -441,11 +1055,52 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 		}
 	}
 
-	private boolean isSingleRowWhereClause(TableKeyMetaData table, Expression where)
+	/**
+	 * Checks whether the given WHERE-clause specifies all key columns with a
+	 * constant or a parameter. The outcome does not depend on the parameter
+	 * values of the statement and is therefore stored with the cached parsed
+	 * statement, for the current generation of the meta data. Use {@link #hasNullKeyParameter(ParsedStatement)} to check
+	 * whether the statement actually specifies one row for the current
+	 * parameter values.
+	 */
+	private boolean isSingleRowWhereClause(ParsedStatement parsedStatement, TableKeyMetaData table, Expression where)
+			throws SQLException
 	{
-		if (where != null)
+		long generation = getConnection().getMetaDataGeneration();
+		Boolean res = parsedStatement.getSingleRowWhereClause(generation);
+		if (res == null)
 		{
 			SingleRowWhereClauseValidator validator = new SingleRowWhereClauseValidator(table);
+			res = isSingleRowWhereClause(validator, where);
+			parsedStatement.setSingleRowWhereClause(generation, res,
+					res ? validator.getKeyParameterIndices() : new int[0]);
+		}
+		return res;
+	}
+
+	/**
+	 * A key column that is compared with <code>null</code> does not match any
+	 * row. Statements with a <code>null</code> key parameter must therefore
+	 * not be executed as a mutation on a single row.
+	 */
+	private boolean hasNullKeyParameter(ParsedStatement parsedStatement)
+	{
+		int[] indices = parsedStatement.getKeyParameterIndices();
+		if (indices != null)
+		{
+			for (int index : indices)
+			{
+				if (getParameterStore().getParameter(index) == null)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isSingleRowWhereClause(SingleRowWhereClauseValidator validator, Expression where)
+	{
+		if (where != null)
+		{
 			DMLWhereClauseVisitor whereClauseVisitor = new DMLWhereClauseVisitor(getParameterStore())
 			{
 
@@ -507,20 +1162,8 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 	@Override
 	public boolean execute() throws SQLException
 	{
-		Statement statement = null;
 		boolean ddl = isDDLStatement(sql);
-		if (!ddl)
-		{
-			try
-			{
-				statement = CCJSqlParserUtil.parse(sanitizeSQL(sql));
-			}
-			catch (JSQLParserException | TokenMgrError e)
-			{
-				throw new SQLException(PARSE_ERROR + sql + ": " + e.getLocalizedMessage(), e);
-			}
-		}
-		if (!ddl && statement instanceof Select)
+		if (!ddl && parseStatement(sql).getType() == StatementType.SELECT)
 		{
 			lastResultSet = executeQuery();
 			lastUpdateCount = -1;
@@ -538,29 +1181,23 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 	public CloudSpannerParameterMetaData getParameterMetaData() throws SQLException
 	{
 		// parse the SQL statement without executing it
-		try
+		if (isDDLStatement(sql))
 		{
-			if (isDDLStatement(sql))
-			{
-				throw new SQLException("Cannot get parameter meta data for DDL statement");
-			}
-			Statement statement = CCJSqlParserUtil.parse(sanitizeSQL(sql));
-			if (statement instanceof Insert || statement instanceof Update || statement instanceof Delete)
-			{
-				// Create mutation, but don't do anything with it. This
-				// initializes column names of the parameter store.
-				createMutations(sql);
-			}
-			else if (statement instanceof Select)
-			{
-				// Create select builder, but don't do anything with it. This
-				// initializes column names of the parameter store.
-				createSelectBuilder(statement);
-			}
+			throw new SQLException("Cannot get parameter meta data for DDL statement");
 		}
-		catch (JSQLParserException | TokenMgrError e)
+		ParsedStatement parsedStatement = parseStatement(sql);
+		StatementType type = parsedStatement.getType();
+		if (type == StatementType.INSERT || type == StatementType.UPDATE || type == StatementType.DELETE)
 		{
-			throw new SQLException(PARSE_ERROR + sql + ": " + e.getLocalizedMessage(), e);
+			// Create mutation, but don't do anything with it. This
+			// initializes column names of the parameter store.
+			createMutations(sql);
+		}
+		else if (type == StatementType.SELECT)
+		{
+			// Create select builder, but don't do anything with it. This
+			// initializes column names of the parameter store.
+			createSelectBuilder(parsedStatement);
 		}
 		return new CloudSpannerParameterMetaData(this);
 	}
@@ -592,6 +1229,17 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 		return new DeleteWorker(getConnection(), delete, getConnection().isAllowExtendedMode());
 	}
 
+	/**
+	 *
+	 * @return <code>true</code> if this statement is a query that is executed
+	 *         as a read of the rows with a key
+	 */
+	boolean isKeyRead() throws SQLException
+	{
+		ParsedStatement parsedStatement = parseStatement(sql);
+		return parsedStatement.getType() == StatementType.SELECT && getKeyReadTemplate(parsedStatement) != null;
+	}
+
 	boolean isForceUpdate()
 	{
 		return forceUpdate;
@@ -600,6 +1248,8 @@ public class CloudSpannerPreparedStatement extends AbstractCloudSpannerPreparedS
 	void setForceUpdate(boolean forceUpdate)
 	{
 		this.forceUpdate = forceUpdate;
+		// The operation of the mutation template depends on this flag
+		this.mutationTemplateCompiled = false;
 	}
 
 }
@@ -8,13 +8,8 @@ import java.sql.SQLFeatureNotSupportedException;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ReadContext;
 
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.parser.TokenMgrError;
-import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.select.Select;
 import nl.topicus.jdbc.CloudSpannerConnection;
-import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
+import nl.topicus.jdbc.statement.ParsedStatement.StatementType;
 
 /**
  * 
@@ -35,10 +30,13 @@ public class CloudSpannerStatement extends AbstractCloudSpannerStatement
 	@Override
 	public ResultSet executeQuery(String sql) throws SQLException
 	{
+		com.google.cloud.spanner.ResultSet partitioned = executePartitionedQuery(sql, null);
+		if (partitioned != null)
+			return createResultSet(partitioned);
 		try (ReadContext context = getReadContext())
 		{
-			com.google.cloud.spanner.ResultSet rs = context.executeQuery(com.google.cloud.spanner.Statement.of(sql));
-			return new CloudSpannerResultSet(this, rs);
+			com.google.cloud.spanner.ResultSet rs = executeQuery(context, com.google.cloud.spanner.Statement.of(sql));
+			return createResultSet(rs);
 		}
 	}
 
@@ -52,20 +50,8 @@ public class CloudSpannerStatement extends AbstractCloudSpannerStatement
 	@Override
 	public boolean execute(String sql) throws SQLException
 	{
-		Statement statement = null;
 		boolean ddl = isDDLStatement(sql);
-		if (!ddl)
-		{
-			try
-			{
-				statement = CCJSqlParserUtil.parse(sanitizeSQL(sql));
-			}
-			catch (JSQLParserException | TokenMgrError e)
-			{
-				throw new SQLException("Error while parsing sql statement " + sql + ": " + e.getLocalizedMessage(), e);
-			}
-		}
-		if (!ddl && statement instanceof Select)
+		if (!ddl && parseStatement(sql).getType() == StatementType.SELECT)
 		{
 			lastResultSet = executeQuery(sql);
 			lastUpdateCount = -1;
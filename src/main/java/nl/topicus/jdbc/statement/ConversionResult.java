@@ -1,5 +1,8 @@
 package nl.topicus.jdbc.statement;
 
+import java.util.Collections;
+import java.util.List;
+
 public class ConversionResult
 {
 	private final long recordCount;
@@ -12,13 +15,25 @@ public class ConversionResult
 
 	private final Exception exception;
 
+	private final String partition;
+
+	private final List<ConversionResult> partitionResults;
+
 	ConversionResult(long recordCount, long byteCount, long startTime, long endTime, Exception exception)
+	{
+		this(recordCount, byteCount, startTime, endTime, exception, null, Collections.emptyList());
+	}
+
+	ConversionResult(long recordCount, long byteCount, long startTime, long endTime, Exception exception,
+			String partition, List<ConversionResult> partitionResults)
 	{
 		this.recordCount = recordCount;
 		this.byteCount = byteCount;
 		this.startTime = startTime;
 		this.endTime = endTime;
 		this.exception = exception;
+		this.partition = partition;
+		this.partitionResults = Collections.unmodifiableList(partitionResults);
 	}
 
 	public long getRecordCount()
@@ -46,13 +61,40 @@ public class ConversionResult
 		return exception;
 	}
 
+	/**
+	 * 
+	 * @return A description of the key range that was converted if this is
+	 *         the result of one partition of a partitioned conversion, and
+	 *         otherwise <code>null</code>
+	 */
+	public String getPartition()
+	{
+		return partition;
+	}
+
+	/**
+	 * 
+	 * @return The results of the individual partitions if the conversion was
+	 *         executed in parallel partitions, and otherwise an empty list
+	 */
+	public List<ConversionResult> getPartitionResults()
+	{
+		return partitionResults;
+	}
+
 	@Override
 	public String toString()
 	{
 		StringBuilder res = new StringBuilder();
+		if (partition != null)
+			res.append("Partition: ").append(partition).append(", ");
 		res.append("Records: ").append(recordCount).append(", ");
 		res.append("Bytes: ").append(byteCount).append(", ");
 		res.append("Time: ").append((endTime - startTime)).append("ms");
+		if (!partitionResults.isEmpty())
+		{
+			res.append(", Partitions: ").append(partitionResults.size());
+		}
 		if (exception != null)
 		{
 			res.append(", Exception: ").append(exception.getMessage());
@@ -7,10 +7,58 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
+import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDriver;
+import nl.topicus.jdbc.MetaDataStore.ColumnMetaData;
+import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
 
 public class ConverterUtils
 {
+	/**
+	 * The maximum number of bytes that should be written in one batch whose
+	 * size is estimated from the column definitions of the table. The estimate
+	 * can be far off, so this limit is kept well below
+	 * {@link #MAX_COMMIT_SIZE_BYTES}. It is used to determine the number of
+	 * rows per batch, and whether a bulk operation should use extended mode.
+	 */
+	public static final int BATCH_SIZE_BYTES = 1500000;
+
+	/**
+	 * The maximum number of bytes that Cloud Spanner accepts in one commit
+	 */
+	public static final int MAX_COMMIT_SIZE_BYTES = 100 * 1024 * 1024;
+
+	/**
+	 * The maximum number of bytes that should be written in one batch whose
+	 * size is measured from the actual values of its mutations, see
+	 * {@link MutationBatcher}. This is the commit limit minus a safety margin
+	 * of 20% for the parts of a commit that are not measured, such as the
+	 * entries of secondary indices and the encoding of the mutations.
+	 */
+	public static final int MEASURED_BATCH_SIZE_BYTES = MAX_COMMIT_SIZE_BYTES / 5 * 4;
+
+	/**
+	 * The maximum number of mutations per commit. Each column value that is
+	 * written, and each index entry that is updated, counts as one mutation.
+	 */
+	public static final int MAX_MUTATIONS_PER_COMMIT = 20000;
+
+	/**
+	 * The minimum number of rows in a batch, regardless of the row size and
+	 * number of columns
+	 */
+	public static final int MIN_BATCH_SIZE = 100;
+
+	/**
+	 * The estimated length of a STRING(MAX) or BYTES(MAX) column
+	 */
+	static final int MAX_LENGTH_COLUMN_SIZE = 256;
+
+	/**
+	 * The estimated number of elements in an ARRAY column
+	 */
+	static final int ARRAY_COLUMN_ELEMENTS = 8;
+
 	private ConverterUtils()
 	{
 	}
@@ -18,13 +66,13 @@ public class ConverterUtils
 	public static int calculateActualBatchSize(int numberOfCols, Connection destination, String catalog, String schema,
 			String table) throws SQLException
 	{
-		int batchSize = 1500000;
 		// Calculate number of rows in a batch based on the row size
 		// Batch size is given as MiB when the destination is CloudSpanner
 		// The maximum number of mutations per commit is 20,000
 		int rowSize = getRowSize(destination, catalog, schema, table);
 		int indices = getNumberOfIndices(destination, catalog, schema, table);
-		int actualBatchSize = Math.max(Math.min(batchSize / rowSize, 20000 / (numberOfCols + indices)), 100);
+		int actualBatchSize = Math.max(
+				Math.min(BATCH_SIZE_BYTES / rowSize, MAX_MUTATIONS_PER_COMMIT / (numberOfCols + indices)), MIN_BATCH_SIZE);
 		return actualBatchSize;
 	}
 
@@ -34,9 +82,26 @@ public class ConverterUtils
 		return getEstimatedRowSizeInCloudSpanner(destination, catalog, schema, table, null);
 	}
 
+	/**
+	 * 
+	 * @return The cached meta data of the table if the connection is a Cloud
+	 *         Spanner connection and the table is not qualified by a catalog or
+	 *         schema, and otherwise <code>null</code>
+	 */
+	private static TableKeyMetaData getCachedTable(Connection connection, String catalog, String schema,
+			String table) throws SQLException
+	{
+		if (connection instanceof CloudSpannerConnection && catalog == null && schema == null && table != null)
+			return ((CloudSpannerConnection) connection).getTable(table);
+		return null;
+	}
+
 	public static int getNumberOfIndices(Connection destination, String catalog, String schema, String table)
 			throws SQLException
 	{
+		TableKeyMetaData cached = getCachedTable(destination, catalog, schema, table);
+		if (cached != null)
+			return cached.getIndexCount();
 		int count = 0;
 		try (ResultSet indices = destination.getMetaData().getIndexInfo(catalog, schema, table, false, false))
 		{
@@ -50,6 +115,13 @@ public class ConverterUtils
 			throws SQLException
 	{
 		List<String> res = new ArrayList<>();
+		TableKeyMetaData cached = getCachedTable(destination, catalog, schema, table);
+		if (cached != null)
+		{
+			for (ColumnMetaData column : cached.getColumns())
+				res.add(CloudSpannerDriver.quoteIdentifier(column.getName()));
+			return res;
+		}
 		try (ResultSet cols = destination.getMetaData().getColumns(catalog, schema, table, null))
 		{
 			while (cols.next())
@@ -79,42 +151,58 @@ public class ConverterUtils
 	{
 		// There's an 8 bytes storage overhead for each column
 		int totalSize = 8;
+		TableKeyMetaData cached = columnNamePattern == null
+				? getCachedTable(connection, catalog, schemaPattern, tableNamePattern) : null;
+		if (cached != null)
+		{
+			for (ColumnMetaData column : cached.getColumns())
+				totalSize += getEstimatedColumnSize(column.getDataType(), column.getColumnSize());
+			return totalSize;
+		}
 		try (ResultSet rs = connection.getMetaData().getColumns(catalog, schemaPattern, tableNamePattern,
 				columnNamePattern))
 		{
 			while (rs.next())
 			{
-				long colLength = rs.getLong("COLUMN_SIZE");
-				int colType = rs.getInt("DATA_TYPE");
-				switch (colType)
-				{
-				case Types.ARRAY:
-					break;
-				case Types.BOOLEAN:
-					totalSize += 1;
-					break;
-				case Types.BINARY:
-					totalSize += colLength;
-					break;
-				case Types.DATE:
-					totalSize += 4;
-					break;
-				case Types.DOUBLE:
-					totalSize += 8;
-					break;
-				case Types.BIGINT:
-					totalSize += 8;
-					break;
-				case Types.NVARCHAR:
-					totalSize += colLength * 2;
-					break;
-				case Types.TIMESTAMP:
-					totalSize += 12;
-					break;
-				}
+				totalSize += getEstimatedColumnSize(rs.getInt("DATA_TYPE"), rs.getLong("COLUMN_SIZE"));
 			}
 		}
 		return totalSize;
 	}
 
+	/**
+	 * Estimates the size of a column value. Columns with a maximum length of
+	 * MAX are reported with a column size of 0, and are estimated at
+	 * {@link #MAX_LENGTH_COLUMN_SIZE} characters or bytes. ARRAY columns report
+	 * the length of the element type as column size, and are estimated at
+	 * {@link #ARRAY_COLUMN_ELEMENTS} elements. The actual size of the values
+	 * that are written is measured by {@link MutationBatcher}.
+	 */
+	static int getEstimatedColumnSize(int colType, long colLength)
+	{
+		switch (colType)
+		{
+		case Types.ARRAY:
+			// Fixed size element types and STRING(MAX) / BYTES(MAX) elements
+			// both report 0, assume a fixed size of 8 bytes for those
+			return ARRAY_COLUMN_ELEMENTS * (int) (colLength == 0 ? 8 : colLength * 2);
+		case Types.BOOLEAN:
+			return 1;
+		case Types.BINARY:
+			return (int) (colLength == 0 ? MAX_LENGTH_COLUMN_SIZE : colLength);
+		case Types.DATE:
+			return 4;
+		case Types.DOUBLE:
+			return 8;
+		case Types.BIGINT:
+			return 8;
+		case Types.NVARCHAR:
+			return (int) ((colLength == 0 ? MAX_LENGTH_COLUMN_SIZE : colLength) * 2);
+		case Types.TIMESTAMP:
+			return 12;
+		default:
+			return 0;
+		}
+	}
+
 }
@@ -53,21 +53,11 @@ public class DeleteWorker extends AbstractTablePartWorker
 	}
 
 	@Override
-	protected String createSQL() throws SQLException
+	protected StructMutationBuilder createMutationBuilder() throws SQLException
 	{
-		TableKeyMetaData table = connection.getTable(CloudSpannerDriver.unquoteIdentifier(getTable().getName()));
-		List<String> keyCols = table.getKeyColumns().stream().map(x -> CloudSpannerDriver.quoteIdentifier(x))
-				.collect(Collectors.toList());
-		String sql = "DELETE FROM " + CloudSpannerDriver.quoteIdentifier(delete.getTable().getName()) + " WHERE ";
-		boolean first = true;
-		for (String key : keyCols)
-		{
-			if (!first)
-				sql = sql + " AND ";
-			sql = sql + key + "=?";
-			first = false;
-		}
-		return sql;
+		String unquotedTableName = CloudSpannerDriver.unquoteIdentifier(getTable().getName());
+		TableKeyMetaData table = connection.getTable(unquotedTableName);
+		return new StructMutationBuilder(DMLOperation.Delete, unquotedTableName, table.getKeyColumns());
 	}
 
 	@Override
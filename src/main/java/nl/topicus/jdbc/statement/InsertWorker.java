@@ -1,7 +1,6 @@
 package nl.topicus.jdbc.statement;
 
 import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -40,22 +39,10 @@ public class InsertWorker extends AbstractTablePartWorker
 	}
 
 	@Override
-	protected String createSQL() throws SQLException
+	protected StructMutationBuilder createMutationBuilder() throws SQLException
 	{
-		List<String> columnNamesList = getColumnNames();
-		String columnNames = String.join(", ", columnNamesList);
-		String[] params = new String[columnNamesList.size()];
-		Arrays.fill(params, "?");
-		String parameterNames = String.join(", ", params);
-
-		String sql = "INSERT INTO " + CloudSpannerDriver.quoteIdentifier(insert.getTable().getName()) + " ("
-				+ columnNames + ") VALUES \n";
-		sql = sql + "(" + parameterNames + ")";
-		if (operation == DMLOperation.OnDuplicateKeyUpdate || operation == DMLOperation.Update)
-		{
-			sql = sql + " ON DUPLICATE KEY UPDATE";
-		}
-		return sql;
+		return new StructMutationBuilder(operation, CloudSpannerDriver.unquoteIdentifier(insert.getTable().getName()),
+				getColumnNames());
 	}
 
 	@Override
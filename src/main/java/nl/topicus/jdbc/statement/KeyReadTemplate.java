@@ -0,0 +1,192 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeyRange;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Options;
+import com.google.cloud.spanner.ReadContext;
+import com.google.cloud.spanner.ResultSet;
+
+import net.sf.jsqlparser.expression.Expression;
+import nl.topicus.jdbc.statement.MutationTemplate.ValueCapturer;
+import nl.topicus.jdbc.util.CloudSpannerConversionUtil;
+
+/**
+ * Precompiled version of a simple SELECT-statement on one table whose WHERE
+ * clause specifies the value of each column of the primary key, or of each
+ * column of a secondary index. Such a statement is executed as a read of the
+ * rows with the given key instead of as a query, which saves Cloud Spanner
+ * from compiling the statement. The template contains the columns to read
+ * and for each key column either the index of the parameter or the constant
+ * value that should be used.
+ *
+ * @author loite
+ *
+ */
+class KeyReadTemplate
+{
+	private final String table;
+
+	/**
+	 * The secondary index to read from, or <code>null</code> if the rows are
+	 * read by their primary key
+	 */
+	private final String index;
+
+	private final List<String> columns;
+
+	/**
+	 * The {@link Types} of each key column
+	 */
+	private final int[] keyTypes;
+
+	/**
+	 * The parameter index of each key column, or 0 if the key column has a
+	 * constant value
+	 */
+	private final int[] parameterIndices;
+
+	private final Object[] constants;
+
+	private KeyReadTemplate(String table, String index, String[] columns, int[] keyTypes)
+	{
+		this.table = table;
+		this.index = index;
+		this.columns = Arrays.asList(columns);
+		this.keyTypes = keyTypes;
+		this.parameterIndices = new int[keyTypes.length];
+		this.constants = new Object[keyTypes.length];
+	}
+
+	/**
+	 * Creates a template for reading rows by key.
+	 *
+	 * @param table
+	 *            The table to read from
+	 * @param index
+	 *            The secondary index to read from, or <code>null</code> to
+	 *            read by primary key
+	 * @param columns
+	 *            The columns to read
+	 * @param keyTypes
+	 *            The {@link Types} of the key columns in the order of the key
+	 * @param expressions
+	 *            The value of each key column
+	 * @return the template or <code>null</code> if one or more of the
+	 *         expressions is not a simple parameter or constant value
+	 */
+	static KeyReadTemplate createKeyReadTemplate(String table, String index, String[] columns, int[] keyTypes,
+			Expression[] expressions)
+	{
+		KeyReadTemplate res = new KeyReadTemplate(table, index, columns, keyTypes);
+		for (int part = 0; part < keyTypes.length; part++)
+		{
+			ValueCapturer capturer = new ValueCapturer();
+			expressions[part].accept(capturer);
+			if (capturer.count != 1)
+				return null;
+			res.parameterIndices[part] = capturer.parameterIndex;
+			res.constants[part] = capturer.constant;
+		}
+		return res;
+	}
+
+	String getTable()
+	{
+		return table;
+	}
+
+	String getIndex()
+	{
+		return index;
+	}
+
+	List<String> getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Creates the key of the rows to read from the current parameter values of
+	 * the statement.
+	 *
+	 * @return The key, or <code>null</code> if one of the values is
+	 *         <code>null</code> or does not have the type of its key column.
+	 *         The statement should then be executed as a query, as a
+	 *         comparison with <code>null</code> is never true and a query
+	 *         converts the values to the type of the column.
+	 */
+	Key createKey(ParameterStore parameterStore)
+	{
+		Key.Builder builder = Key.newBuilder();
+		for (int part = 0; part < keyTypes.length; part++)
+		{
+			int parameterIndex = parameterIndices[part];
+			Object value = parameterIndex == 0 ? constants[part] : parameterStore.getParameter(parameterIndex);
+			Object keyPart = toKeyPart(value, keyTypes[part]);
+			if (keyPart == null)
+				return null;
+			builder.appendObject(keyPart);
+		}
+		return builder.build();
+	}
+
+	private static Object toKeyPart(Object value, int type)
+	{
+		switch (type)
+		{
+		case Types.BIGINT:
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+				return ((Number) value).longValue();
+			return null;
+		case Types.DOUBLE:
+			if (value instanceof Number)
+				return ((Number) value).doubleValue();
+			return null;
+		case Types.NVARCHAR:
+			return value instanceof String ? value : null;
+		case Types.BOOLEAN:
+			return value instanceof Boolean ? value : null;
+		case Types.BINARY:
+			return value instanceof byte[] ? ByteArray.copyFrom((byte[]) value) : null;
+		case Types.DATE:
+			return value instanceof Date ? CloudSpannerConversionUtil.toCloudSpannerDate((Date) value) : null;
+		case Types.TIMESTAMP:
+			return value instanceof Timestamp ? CloudSpannerConversionUtil.toCloudSpannerTimestamp((Timestamp) value)
+					: null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the rows with the given key
+	 *
+	 * @param context
+	 *            The context to read from
+	 * @param key
+	 *            The key created by {@link #createKey(ParameterStore)}
+	 * @param maxRows
+	 *            The maximum number of rows to read, or 0 for no limit
+	 * @return The rows with the given key
+	 */
+	ResultSet read(ReadContext context, Key key, int maxRows)
+	{
+		if (index == null)
+			return context.read(table, KeySet.singleKey(key), columns);
+		// The key of a secondary index also contains the primary key of the
+		// table, the values of the index columns are a prefix of that key
+		KeySet keys = KeySet.range(KeyRange.prefix(key));
+		if (maxRows > 0)
+			return context.readUsingIndex(table, index, keys, columns, Options.limit(maxRows));
+		return context.readUsingIndex(table, index, keys, columns);
+	}
+
+}
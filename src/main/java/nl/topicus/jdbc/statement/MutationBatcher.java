@@ -0,0 +1,212 @@
+package nl.topicus.jdbc.statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
+import com.google.cloud.spanner.Value;
+import com.google.common.base.Utf8;
+import com.google.common.collect.Iterables;
+
+/**
+ * Collects mutations into batches that stay within the limits of one commit.
+ * The size of each mutation is calculated from the actual values in the
+ * mutation, instead of estimated from the column definitions of the table. A
+ * batch is full when adding the next mutation would exceed either the maximum
+ * number of bytes or the maximum number of mutations per commit. As the sizes
+ * are measured, the byte limit is close to the actual commit limit of Cloud
+ * Spanner, see {@link ConverterUtils#MEASURED_BATCH_SIZE_BYTES}. Each written
+ * column value counts as one mutation, and each row also counts once for each
+ * index on the table.
+ *
+ * @author loite
+ *
+ */
+class MutationBatcher
+{
+	/**
+	 * The storage overhead of each column value
+	 */
+	private static final int COLUMN_OVERHEAD = 8;
+
+	private final int numberOfIndices;
+
+	private final long maxBytes;
+
+	private final int maxMutations;
+
+	private List<Mutation> batch = new ArrayList<>();
+
+	private long bytes;
+
+	private int mutations;
+
+	MutationBatcher(int numberOfIndices)
+	{
+		this(numberOfIndices, ConverterUtils.MEASURED_BATCH_SIZE_BYTES, ConverterUtils.MAX_MUTATIONS_PER_COMMIT);
+	}
+
+	MutationBatcher(int numberOfIndices, long maxBytes, int maxMutations)
+	{
+		this.numberOfIndices = numberOfIndices;
+		this.maxBytes = maxBytes;
+		this.maxMutations = maxMutations;
+	}
+
+	/**
+	 * Adds a mutation to the current batch. If the mutation does not fit in
+	 * the current batch, the current batch is returned and a new batch is
+	 * started with the given mutation. An empty batch always accepts a
+	 * mutation, also if the mutation on its own exceeds the limits.
+	 *
+	 * @return The batch that is full and should be written, or
+	 *         <code>null</code> if the mutation was added to the current batch
+	 */
+	List<Mutation> add(Mutation mutation)
+	{
+		long mutationBytes = getSize(mutation);
+		int mutationCount = getMutationCount(mutation);
+		List<Mutation> full = null;
+		if (!batch.isEmpty()
+				&& (bytes + mutationBytes > maxBytes || mutations + mutationCount > maxMutations))
+			full = drain();
+		batch.add(mutation);
+		bytes += mutationBytes;
+		mutations += mutationCount;
+		return full;
+	}
+
+	boolean isEmpty()
+	{
+		return batch.isEmpty();
+	}
+
+	long getBytes()
+	{
+		return bytes;
+	}
+
+	int getMutationCount()
+	{
+		return mutations;
+	}
+
+	/**
+	 * Returns the mutations in the current batch and starts a new batch
+	 */
+	List<Mutation> drain()
+	{
+		List<Mutation> res = batch;
+		batch = new ArrayList<>(res.size());
+		bytes = 0L;
+		mutations = 0;
+		return res;
+	}
+
+	private int getMutationCount(Mutation mutation)
+	{
+		if (mutation.getOperation() == Op.DELETE)
+			return 1 + numberOfIndices;
+		return Iterables.size(mutation.getColumns()) + numberOfIndices;
+	}
+
+	static long getSize(Mutation mutation)
+	{
+		long size = mutation.getTable().length();
+		if (mutation.getOperation() == Op.DELETE)
+		{
+			for (Key key : mutation.getKeySet().getKeys())
+			{
+				for (Object part : key.getParts())
+					size += COLUMN_OVERHEAD + getKeyPartSize(part);
+			}
+			return size;
+		}
+		for (String column : mutation.getColumns())
+			size += column.length();
+		for (Value value : mutation.getValues())
+			size += COLUMN_OVERHEAD + getSize(value);
+		return size;
+	}
+
+	private static long getSize(Value value)
+	{
+		if (value.isNull())
+			return 0L;
+		switch (value.getType().getCode())
+		{
+		case BOOL:
+			return 1L;
+		case INT64:
+		case FLOAT64:
+			return 8L;
+		case DATE:
+			return 4L;
+		case TIMESTAMP:
+			return 12L;
+		case STRING:
+			return getSize(value.getString());
+		case BYTES:
+			return value.getBytes().length();
+		case ARRAY:
+			return getArraySize(value);
+		default:
+			return 0L;
+		}
+	}
+
+	private static long getArraySize(Value value)
+	{
+		switch (value.getType().getArrayElementType().getCode())
+		{
+		case BOOL:
+			return value.getBoolArray().size();
+		case INT64:
+			return 8L * value.getInt64Array().size();
+		case FLOAT64:
+			return 8L * value.getFloat64Array().size();
+		case DATE:
+			return 4L * value.getDateArray().size();
+		case TIMESTAMP:
+			return 12L * value.getTimestampArray().size();
+		case STRING:
+			long size = 0L;
+			for (String s : value.getStringArray())
+				size += getSize(s);
+			return size;
+		case BYTES:
+			size = 0L;
+			for (ByteArray b : value.getBytesArray())
+				size += b == null ? 0L : b.length();
+			return size;
+		default:
+			return 0L;
+		}
+	}
+
+	private static long getKeyPartSize(Object keyPart)
+	{
+		if (keyPart == null)
+			return 0L;
+		if (keyPart instanceof Boolean)
+			return 1L;
+		if (keyPart instanceof String)
+			return getSize((String) keyPart);
+		if (keyPart instanceof ByteArray)
+			return ((ByteArray) keyPart).length();
+		if (keyPart instanceof com.google.cloud.Date)
+			return 4L;
+		if (keyPart instanceof com.google.cloud.Timestamp)
+			return 12L;
+		return 8L;
+	}
+
+	private static long getSize(String value)
+	{
+		return value == null ? 0L : Utf8.encodedLength(value);
+	}
+
+}
@@ -0,0 +1,204 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.SQLException;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
+import com.google.cloud.spanner.Mutation.WriteBuilder;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcParameter;
+
+/**
+ * Precompiled version of a simple INSERT-, UPDATE- or DELETE-statement. The
+ * template contains the column names of the statement and for each column
+ * either the index of the parameter or the constant value that should be
+ * used. Creating a mutation from a template only copies the values from the
+ * {@link ParameterStore} into a new {@link Mutation}, without traversing the
+ * parsed statement again.
+ *
+ * @author loite
+ *
+ */
+class MutationTemplate
+{
+	/**
+	 * Captures the parameter index or constant value of an expression. The
+	 * expression can be captured if it consists of exactly one parameter or
+	 * one constant value. Also used by {@link KeyReadTemplate}.
+	 */
+	static class ValueCapturer extends AbstractSpannerExpressionVisitorAdapter
+	{
+		int parameterIndex;
+
+		Object constant;
+
+		int count;
+
+		ValueCapturer()
+		{
+			super(null);
+		}
+
+		@Override
+		protected void setValue(Object value)
+		{
+			constant = value;
+			count++;
+		}
+
+		@Override
+		public void visit(JdbcParameter parameter)
+		{
+			parameterIndex = parameter.getIndex();
+			count++;
+		}
+	}
+
+	private final Op operation;
+
+	private final String table;
+
+	private final String[] columns;
+
+	/**
+	 * The parameter index of each column, or 0 if the column has a constant
+	 * value
+	 */
+	private final int[] parameterIndices;
+
+	private final Object[] constants;
+
+	private final boolean registerParameterColumns;
+
+	private MutationTemplate(Op operation, String table, int numberOfColumns, boolean registerParameterColumns)
+	{
+		this.operation = operation;
+		this.table = table;
+		this.columns = new String[numberOfColumns];
+		this.parameterIndices = new int[numberOfColumns];
+		this.constants = new Object[numberOfColumns];
+		this.registerParameterColumns = registerParameterColumns;
+	}
+
+	/**
+	 * Creates a template for a write operation (INSERT, INSERT_OR_UPDATE or
+	 * UPDATE).
+	 *
+	 * @return the template or <code>null</code> if one or more of the
+	 *         expressions is not a simple parameter or constant value
+	 */
+	static MutationTemplate createWriteTemplate(Op operation, String table, String[] columns,
+			Expression[] expressions)
+	{
+		MutationTemplate res = new MutationTemplate(operation, table, columns.length, true);
+		return res.capture(columns, expressions) ? res : null;
+	}
+
+	/**
+	 * Creates a template for deleting one row.
+	 *
+	 * @param keyColumns
+	 *            The key columns of the table in the order of the primary key
+	 * @param expressions
+	 *            The value of each key column
+	 * @return the template or <code>null</code> if one or more of the
+	 *         expressions is not a simple parameter or constant value
+	 */
+	static MutationTemplate createDeleteTemplate(String table, String[] keyColumns, Expression[] expressions)
+	{
+		MutationTemplate res = new MutationTemplate(Op.DELETE, table, keyColumns.length, false);
+		return res.capture(keyColumns, expressions) ? res : null;
+	}
+
+	/**
+	 * Creates a template for deleting all rows of a table.
+	 */
+	static MutationTemplate createDeleteAllTemplate(String table)
+	{
+		return new MutationTemplate(Op.DELETE, table, 0, false);
+	}
+
+	private boolean capture(String[] columns, Expression[] expressions)
+	{
+		for (int index = 0; index < columns.length; index++)
+		{
+			if (expressions[index] == null)
+				return false;
+			ValueCapturer capturer = new ValueCapturer();
+			expressions[index].accept(capturer);
+			if (capturer.count != 1)
+				return false;
+			this.columns[index] = columns[index];
+			this.parameterIndices[index] = capturer.parameterIndex;
+			this.constants[index] = capturer.constant;
+		}
+		return true;
+	}
+
+	Op getOperation()
+	{
+		return operation;
+	}
+
+	String getTable()
+	{
+		return table;
+	}
+
+	private Object getValue(int index, ParameterStore parameterStore)
+	{
+		int parameterIndex = parameterIndices[index];
+		if (parameterIndex == 0)
+			return constants[index];
+		if (registerParameterColumns)
+			parameterStore.setColumn(parameterIndex, columns[index]);
+		return parameterStore.getParameter(parameterIndex);
+	}
+
+	Mutation createMutation(ParameterStore parameterStore) throws SQLException
+	{
+		parameterStore.setTable(table);
+		if (operation == Op.DELETE)
+		{
+			if (columns.length == 0)
+				return Mutation.delete(table, KeySet.all());
+			Key.Builder builder = Key.newBuilder();
+			for (int index = 0; index < columns.length; index++)
+			{
+				Object value = getValue(index, parameterStore);
+				if (value == null)
+				{
+					throw new SQLException("No value supplied for key column " + columns[index]
+							+ ". All key columns must be specified in the WHERE-clause of a DELETE-statement.");
+				}
+				builder.appendObject(value);
+			}
+			return Mutation.delete(table, builder.build());
+		}
+		WriteBuilder builder;
+		switch (operation)
+		{
+		case INSERT:
+			builder = Mutation.newInsertBuilder(table);
+			break;
+		case INSERT_OR_UPDATE:
+			builder = Mutation.newInsertOrUpdateBuilder(table);
+			break;
+		case UPDATE:
+			builder = Mutation.newUpdateBuilder(table);
+			break;
+		default:
+			throw new SQLException("Unsupported operation for mutation template: " + operation);
+		}
+		for (int index = 0; index < columns.length; index++)
+		{
+			ValueBinderExpressionVisitorAdapter.setValue(builder.set(columns[index]),
+					getValue(index, parameterStore));
+		}
+		return builder.build();
+	}
+
+}
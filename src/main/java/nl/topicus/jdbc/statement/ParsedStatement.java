@@ -0,0 +1,221 @@
+package nl.topicus.jdbc.statement;
+
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.update.Update;
+import nl.topicus.jdbc.CloudSpannerDriver;
+
+/**
+ * A parsed SQL statement together with the facts that are derived from it
+ * during execution. Instances are cached by {@link ParsedStatementCache} and
+ * can be shared by multiple statements of the same connection, which means
+ * that the parsed {@link Statement} must be treated as read-only.
+ *
+ * @author loite
+ *
+ */
+class ParsedStatement
+{
+	enum StatementType
+	{
+		SELECT, INSERT, UPDATE, DELETE, OTHER;
+	}
+
+	private final String sql;
+
+	private final Statement statement;
+
+	private final StatementType type;
+
+	private final String table;
+
+	private volatile String namedParameterSql;
+
+	/**
+	 * The facts about the WHERE-clause of an UPDATE- or DELETE-statement that
+	 * depend on the primary key of the table. These are determined lazily, and
+	 * are only valid for the generation of the meta data that they were
+	 * derived from, as a DDL statement may change the primary key of the
+	 * table.
+	 */
+	private volatile KeyFacts keyFacts;
+
+	private static final class KeyFacts
+	{
+		private final long generation;
+
+		/**
+		 * Indicates whether the WHERE-clause specifies exactly one row
+		 */
+		private final boolean singleRowWhereClause;
+
+		/**
+		 * The indices of the parameters that specify key values in a single
+		 * row WHERE-clause
+		 */
+		private final int[] keyParameterIndices;
+
+		private KeyFacts(long generation, boolean singleRowWhereClause, int[] keyParameterIndices)
+		{
+			this.generation = generation;
+			this.singleRowWhereClause = singleRowWhereClause;
+			this.keyParameterIndices = keyParameterIndices;
+		}
+	}
+
+	ParsedStatement(String sql, Statement statement)
+	{
+		this.sql = sql;
+		this.statement = statement;
+		this.type = determineType(statement);
+		this.table = determineTable(statement);
+	}
+
+	private static StatementType determineType(Statement statement)
+	{
+		if (statement instanceof Select)
+			return StatementType.SELECT;
+		if (statement instanceof Insert)
+			return StatementType.INSERT;
+		if (statement instanceof Update)
+			return StatementType.UPDATE;
+		if (statement instanceof Delete)
+			return StatementType.DELETE;
+		return StatementType.OTHER;
+	}
+
+	private static String determineTable(Statement statement)
+	{
+		Table table = null;
+		if (statement instanceof Insert)
+		{
+			table = ((Insert) statement).getTable();
+		}
+		else if (statement instanceof Update)
+		{
+			Update update = (Update) statement;
+			if (update.getTables() != null && update.getTables().size() == 1)
+				table = update.getTables().get(0);
+		}
+		else if (statement instanceof Delete)
+		{
+			table = ((Delete) statement).getTable();
+		}
+		else if (statement instanceof Select && ((Select) statement).getSelectBody() instanceof PlainSelect)
+		{
+			PlainSelect select = (PlainSelect) ((Select) statement).getSelectBody();
+			if (select.getFromItem() instanceof Table && (select.getJoins() == null || select.getJoins().isEmpty()))
+				table = (Table) select.getFromItem();
+		}
+		return table == null ? null : CloudSpannerDriver.unquoteIdentifier(table.getFullyQualifiedName());
+	}
+
+	/**
+	 * Replaces all JDBC parameters (?) outside string literals with named
+	 * parameters in the form @p1, @p2, ...
+	 *
+	 * @param sql
+	 *            The sql statement to convert
+	 * @return The converted sql statement
+	 */
+	static String convertPositionalParametersToNamedParameters(String sql)
+	{
+		boolean inString = false;
+		StringBuilder res = new StringBuilder(sql);
+		int i = 0;
+		int parIndex = 1;
+		while (i < res.length())
+		{
+			char c = res.charAt(i);
+			if (c == '\'')
+			{
+				inString = !inString;
+			}
+			else if (c == '?' && !inString)
+			{
+				res.replace(i, i + 1, "@p" + parIndex);
+				parIndex++;
+			}
+			i++;
+		}
+
+		return res.toString();
+	}
+
+	String getSql()
+	{
+		return sql;
+	}
+
+	Statement getStatement()
+	{
+		return statement;
+	}
+
+	StatementType getType()
+	{
+		return type;
+	}
+
+	/**
+	 *
+	 * @return The unquoted name of the table of an INSERT-, UPDATE- or
+	 *         DELETE-statement, or of a SELECT-statement that selects from
+	 *         exactly one table. Returns <code>null</code> for all other
+	 *         statements.
+	 */
+	String getTable()
+	{
+		return table;
+	}
+
+	/**
+	 *
+	 * @return The sql of this statement with all positional parameters
+	 *         replaced by named parameters
+	 */
+	String getNamedParameterSql()
+	{
+		if (namedParameterSql == null)
+			namedParameterSql = convertPositionalParametersToNamedParameters(sql);
+		return namedParameterSql;
+	}
+
+	/**
+	 *
+	 * @param generation
+	 *            The current generation of the meta data of the database
+	 * @return Whether the WHERE-clause specifies exactly one row, or
+	 *         <code>null</code> if this has not yet been determined for the
+	 *         given generation of the meta data
+	 */
+	Boolean getSingleRowWhereClause(long generation)
+	{
+		KeyFacts facts = keyFacts;
+		if (facts == null || facts.generation != generation)
+			return null;
+		return facts.singleRowWhereClause;
+	}
+
+	/**
+	 *
+	 * @return The indices of the parameters that specify key values in the
+	 *         WHERE-clause, as last determined by
+	 *         {@link #setSingleRowWhereClause(long, boolean, int[])}
+	 */
+	int[] getKeyParameterIndices()
+	{
+		KeyFacts facts = keyFacts;
+		return facts == null ? null : facts.keyParameterIndices;
+	}
+
+	void setSingleRowWhereClause(long generation, boolean singleRowWhereClause, int[] keyParameterIndices)
+	{
+		this.keyFacts = new KeyFacts(generation, singleRowWhereClause, keyParameterIndices);
+	}
+
+}
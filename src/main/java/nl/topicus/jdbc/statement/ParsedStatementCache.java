@@ -0,0 +1,115 @@
+package nl.topicus.jdbc.statement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of parsed SQL statements. Each connection has its own
+ * cache, so that a prepared statement that is executed many times (or
+ * prepared many times with the same sql, as ORMs tend to do) is parsed only
+ * once.
+ *
+ * @author loite
+ *
+ */
+public class ParsedStatementCache
+{
+	public static final int DEFAULT_MAX_SIZE = 500;
+
+	private final int maxSize;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final Map<String, ParsedStatement> statements;
+
+	public ParsedStatementCache()
+	{
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public ParsedStatementCache(int maxSize)
+	{
+		if (maxSize < 0)
+			throw new IllegalArgumentException("maxSize may not be negative");
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<String, ParsedStatement>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ParsedStatement> eldest)
+			{
+				if (size() > ParsedStatementCache.this.maxSize)
+				{
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	synchronized ParsedStatement get(String sql)
+	{
+		ParsedStatement res = statements.get(sql);
+		if (res == null)
+			missCount.incrementAndGet();
+		else
+			hitCount.incrementAndGet();
+		return res;
+	}
+
+	synchronized ParsedStatement put(String sql, ParsedStatement statement)
+	{
+		if (maxSize > 0)
+			statements.put(sql, statement);
+		return statement;
+	}
+
+	public synchronized void clear()
+	{
+		statements.clear();
+	}
+
+	public synchronized int size()
+	{
+		return statements.size();
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder res = new StringBuilder();
+		res.append("Size: ").append(size()).append(", ");
+		res.append("Hits: ").append(getHitCount()).append(", ");
+		res.append("Misses: ").append(getMissCount()).append(", ");
+		res.append("Evictions: ").append(getEvictionCount());
+		return res.toString();
+	}
+
+}
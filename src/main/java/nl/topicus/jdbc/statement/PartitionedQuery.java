@@ -0,0 +1,371 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.Type.StructField;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.CloudSpannerDriver;
+import nl.topicus.jdbc.resultset.PartitionedResultSet;
+
+/**
+ * A SELECT statement on a single table that is executed as a number of
+ * partitions that are read in parallel. The statement is split into ranges of
+ * the first primary key column of the table by the {@link SelectPartitioner}.
+ * The boundaries of the ranges and the partitions are all read at the same
+ * timestamp, so that the merged result of the partitions is equal to the
+ * result of the statement at that timestamp. The rows of the partitions are
+ * merged by a {@link PartitionedResultSet}, in the order of the ORDER BY
+ * clause of the statement if it has one.
+ *
+ * Partitioned queries are enabled for all queries of a connection by
+ * {@link CloudSpannerConnection#setPartitionedQueryParallelism(int)}, or for
+ * one statement by the hint <code>/*@PARALLELISM=n*&#47;</code> at the start
+ * of the statement. The rows of a statement are counted before it is
+ * partitioned. Without a hint, statements that return less rows than
+ * {@link CloudSpannerConnection#getPartitionedQueryMinRowCount()} are executed
+ * as normal queries, so that small queries only pay for the extra round trip
+ * of the count. Statements that cannot be partitioned, and all statements in
+ * read/write transactions, are executed as normal queries.
+ *
+ * @author loite
+ *
+ */
+final class PartitionedQuery
+{
+	private static final Pattern PARALLELISM_HINT = Pattern
+			.compile("(?is)^\\s*/\\*@\\s*PARALLELISM\\s*=\\s*(\\d{1,9})\\s*\\*/");
+
+	private final List<Callable<com.google.cloud.spanner.ResultSet>> partitions;
+
+	private final Comparator<Struct> order;
+
+	private PartitionedQuery(List<Callable<com.google.cloud.spanner.ResultSet>> partitions, Comparator<Struct> order)
+	{
+		this.partitions = partitions;
+		this.order = order;
+	}
+
+	/**
+	 *
+	 * @return The parallelism that is requested by the hint at the start of
+	 *         the given statement, or -1 if the statement has no hint
+	 */
+	static int getParallelismHint(String sql)
+	{
+		if (sql.indexOf("/*@") == -1)
+			return -1;
+		Matcher matcher = PARALLELISM_HINT.matcher(sql);
+		if (matcher.find())
+			return Integer.parseInt(matcher.group(1));
+		return -1;
+	}
+
+	static String removeParallelismHint(String sql)
+	{
+		if (sql.indexOf("/*@") == -1)
+			return sql;
+		return PARALLELISM_HINT.matcher(sql).replaceFirst("");
+	}
+
+	/**
+	 * Splits a SELECT statement into partitions.
+	 *
+	 * @param statement
+	 *            The statement that executes the query
+	 * @param select
+	 *            The query to split
+	 * @param parameters
+	 *            The values of the parameters of the query, or
+	 *            <code>null</code> if it has no parameters
+	 * @param parallelism
+	 *            The maximum number of partitions
+	 * @param minRowCount
+	 *            The minimum number of rows that the query must return to be
+	 *            partitioned
+	 * @return The partitioned query, or <code>null</code> if the query should
+	 *         be executed as a normal query
+	 * @throws SQLException
+	 *             If a database error occurs while determining the partitions
+	 */
+	static PartitionedQuery create(AbstractCloudSpannerStatement statement, Select select, ParameterStore parameters,
+			int parallelism, long minRowCount) throws SQLException
+	{
+		CloudSpannerConnection connection = statement.getConnection();
+		// The partitions cannot see the changes of a read/write transaction
+		if (!connection.getAutoCommit() && !connection.isReadOnly())
+			return null;
+		if (!SelectPartitioner.isPartitionable(select))
+			return null;
+		PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+		Comparator<Struct> order = null;
+		if (plainSelect.getOrderByElements() != null && !plainSelect.getOrderByElements().isEmpty())
+		{
+			order = createOrder(plainSelect);
+			if (order == null)
+				return null;
+		}
+		long recordCount = countRows(connection, plainSelect, parameters);
+		if (recordCount < minRowCount)
+			return null;
+		TimestampBound bound = TimestampBound.ofReadTimestamp(getReadTimestamp(connection));
+		List<SelectPartitioner.Partition> list = SelectPartitioner.createPartitions(connection, select, parallelism,
+				recordCount, bound, parameters);
+		if (list.size() < 2)
+			return null;
+		List<Callable<com.google.cloud.spanner.ResultSet>> partitions = new ArrayList<>(list.size());
+		for (SelectPartitioner.Partition partition : list)
+		{
+			partitions.add(() -> partition.executeQuery(connection, bound, parameters));
+		}
+		return new PartitionedQuery(partitions, order);
+	}
+
+	/**
+	 * Counts the rows that the query returns. A partitionable statement
+	 * returns one row for each row of its table that satisfies its WHERE
+	 * clause. In autocommit mode the rows are counted with the timestamp bound
+	 * of the connection, in a read-only transaction they are counted in the
+	 * transaction, which also starts the transaction.
+	 */
+	private static long countRows(CloudSpannerConnection connection, PlainSelect select, ParameterStore parameters)
+			throws SQLException
+	{
+		StringBuilder sql = new StringBuilder("SELECT COUNT(*) AS C");
+		sql.append("\nFROM ").append(select.getFromItem().toString());
+		if (select.getWhere() != null)
+			sql.append("\nWHERE ").append(select.getWhere().toString());
+		CloudSpannerPreparedStatement statement;
+		if (connection.getAutoCommit())
+			statement = SelectPartitioner.prepareSingleUseStatement(connection, sql.toString(),
+					connection.getReadTimestampBound(), parameters);
+		else
+			statement = SelectPartitioner.prepareStatement(connection, sql.toString(), parameters);
+		try (ResultSet count = statement.executeQuery())
+		{
+			return count.next() ? count.getLong(1) : 0L;
+		}
+	}
+
+	/**
+	 * Determines the timestamp that the partitions read the data at. In
+	 * autocommit mode this is a timestamp that satisfies the timestamp bound
+	 * of the connection, in a read-only transaction it is the read timestamp
+	 * of the transaction, which has been started by
+	 * {@link #countRows(CloudSpannerConnection, PlainSelect, ParameterStore)}.
+	 */
+	private static Timestamp getReadTimestamp(CloudSpannerConnection connection) throws SQLException
+	{
+		if (connection.getAutoCommit())
+			return connection.getReadTimestamp(connection.getReadTimestampBound());
+		return connection.getTransaction().getReadTimestamp();
+	}
+
+	/**
+	 * Creates the order of the rows of the query. Only ORDER BY clauses that
+	 * refer to columns of the result, by name or by position, are supported.
+	 *
+	 * @return The order of the rows, or <code>null</code> if the order cannot
+	 *         be determined from the rows of the result
+	 */
+	private static Comparator<Struct> createOrder(PlainSelect select)
+	{
+		List<OrderByElement> elements = select.getOrderByElements();
+		int[] positions = new int[elements.size()];
+		String[] names = new String[elements.size()];
+		boolean[] ascending = new boolean[elements.size()];
+		for (int i = 0; i < elements.size(); i++)
+		{
+			OrderByElement element = elements.get(i);
+			if (element.getNullOrdering() != null)
+				return null;
+			Expression expression = element.getExpression();
+			positions[i] = -1;
+			if (expression instanceof LongValue && ((LongValue) expression).getValue() > 0L)
+				positions[i] = (int) ((LongValue) expression).getValue() - 1;
+			else if (expression instanceof Column && isSelected((Column) expression, select))
+				names[i] = CloudSpannerDriver.unquoteIdentifier(((Column) expression).getColumnName());
+			else
+				return null;
+			ascending[i] = element.isAsc();
+		}
+		return new RowOrder(positions, names, ascending);
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the given column is returned by the query
+	 *         under its own name
+	 */
+	private static boolean isSelected(Column column, PlainSelect select)
+	{
+		String name = CloudSpannerDriver.unquoteIdentifier(column.getColumnName());
+		for (SelectItem item : select.getSelectItems())
+		{
+			if (item instanceof AllColumns || item instanceof AllTableColumns)
+				return true;
+			if (item instanceof SelectExpressionItem)
+			{
+				SelectExpressionItem expressionItem = (SelectExpressionItem) item;
+				if (expressionItem.getAlias() != null)
+				{
+					if (CloudSpannerDriver.unquoteIdentifier(expressionItem.getAlias().getName())
+							.equalsIgnoreCase(name))
+						return true;
+				}
+				else if (expressionItem.getExpression() instanceof Column && CloudSpannerDriver
+						.unquoteIdentifier(((Column) expressionItem.getExpression()).getColumnName())
+						.equalsIgnoreCase(name))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	com.google.cloud.spanner.ResultSet execute()
+	{
+		return new PartitionedResultSet(partitions, order);
+	}
+
+	/**
+	 * Compares rows by the values of the columns of an ORDER BY clause in the
+	 * way that Cloud Spanner orders them: NULL before all other values, and
+	 * strings and bytes by their (UTF-8) bytes. The columns that are referred
+	 * to by name are looked up in the first row that is compared.
+	 */
+	private static final class RowOrder implements Comparator<Struct>
+	{
+		private final int[] positions;
+
+		private final String[] names;
+
+		private final boolean[] ascending;
+
+		private int[] columns;
+
+		private RowOrder(int[] positions, String[] names, boolean[] ascending)
+		{
+			this.positions = positions;
+			this.names = names;
+			this.ascending = ascending;
+		}
+
+		@Override
+		public int compare(Struct row1, Struct row2)
+		{
+			if (columns == null)
+				columns = resolveColumns(row1);
+			for (int i = 0; i < columns.length; i++)
+			{
+				int res = compareValues(row1, row2, columns[i]);
+				if (res != 0)
+					return ascending[i] ? res : -res;
+			}
+			return 0;
+		}
+
+		private int[] resolveColumns(Struct row)
+		{
+			int[] res = new int[positions.length];
+			List<StructField> fields = row.getType().getStructFields();
+			for (int i = 0; i < res.length; i++)
+			{
+				res[i] = positions[i];
+				for (int field = 0; res[i] == -1 && field < fields.size(); field++)
+				{
+					if (fields.get(field).getName().equalsIgnoreCase(names[i]))
+						res[i] = field;
+				}
+				if (res[i] < 0 || res[i] >= fields.size())
+					throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+							"ORDER BY column not found in result: " + (names[i] == null ? positions[i] + 1 : names[i]));
+			}
+			return res;
+		}
+
+		private static int compareValues(Struct row1, Struct row2, int column)
+		{
+			if (row1.isNull(column))
+				return row2.isNull(column) ? 0 : -1;
+			if (row2.isNull(column))
+				return 1;
+			switch (row1.getColumnType(column).getCode())
+			{
+			case BOOL:
+				return Boolean.compare(row1.getBoolean(column), row2.getBoolean(column));
+			case BYTES:
+				return compareBytes(row1.getBytes(column).toByteArray(), row2.getBytes(column).toByteArray());
+			case DATE:
+				return row1.getDate(column).compareTo(row2.getDate(column));
+			case FLOAT64:
+				return Double.compare(row1.getDouble(column), row2.getDouble(column));
+			case INT64:
+				return Long.compare(row1.getLong(column), row2.getLong(column));
+			case STRING:
+				return compareStrings(row1.getString(column), row2.getString(column));
+			case TIMESTAMP:
+				return row1.getTimestamp(column).compareTo(row2.getTimestamp(column));
+			default:
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT,
+						"Values of type " + row1.getColumnType(column) + " cannot be ordered");
+			}
+		}
+
+		private static int compareBytes(byte[] b1, byte[] b2)
+		{
+			int length = Math.min(b1.length, b2.length);
+			for (int i = 0; i < length; i++)
+			{
+				int res = Integer.compare(b1[i] & 0xff, b2[i] & 0xff);
+				if (res != 0)
+					return res;
+			}
+			return Integer.compare(b1.length, b2.length);
+		}
+
+		/**
+		 * Compares strings by their code points, which is the same as
+		 * comparing their UTF-8 bytes
+		 */
+		private static int compareStrings(String s1, String s2)
+		{
+			int i1 = 0;
+			int i2 = 0;
+			while (i1 < s1.length() && i2 < s2.length())
+			{
+				int c1 = s1.codePointAt(i1);
+				int c2 = s2.codePointAt(i2);
+				if (c1 != c2)
+					return Integer.compare(c1, c2);
+				i1 += Character.charCount(c1);
+				i2 += Character.charCount(c2);
+			}
+			return Integer.compare(s1.length() - i1, s2.length() - i2);
+		}
+	}
+
+}
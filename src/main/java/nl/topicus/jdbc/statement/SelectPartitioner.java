@@ -0,0 +1,344 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.cloud.spanner.TimestampBound;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.CloudSpannerDriver;
+import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+
+/**
+ * Splits a SELECT statement on a single table into a number of statements
+ * that each select a range of the first primary key column of the table. The
+ * boundaries of the ranges are determined by one scan of the key values of the
+ * result of the original statement in key order, taking the values at evenly
+ * spaced positions, so that each range contains approximately the same number
+ * of records. The boundaries and the partitions can be read at a fixed
+ * timestamp, so that the partitions together return the same records as the
+ * original statement.
+ *
+ * @author loite
+ *
+ */
+class SelectPartitioner
+{
+	/**
+	 * A range of the first key column of a table. The lower bound is
+	 * inclusive, the upper bound is exclusive. A <code>null</code> value means
+	 * that the range is unbounded at that side. The first range also includes
+	 * the records with a <code>NULL</code> key value.
+	 */
+	static final class Partition
+	{
+		private final String sql;
+
+		private final Object lowerBound;
+
+		private final Object upperBound;
+
+		private Partition(String sql, Object lowerBound, Object upperBound)
+		{
+			this.sql = sql;
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+		}
+
+		String getSql()
+		{
+			return sql;
+		}
+
+		Object getLowerBound()
+		{
+			return lowerBound;
+		}
+
+		Object getUpperBound()
+		{
+			return upperBound;
+		}
+
+		/**
+		 * Executes the query of this partition in a single use read context
+		 * with the given timestamp bound, so that partitions can be read
+		 * concurrently, independently of any transaction on the connection.
+		 *
+		 * @param connection
+		 *            The connection to execute the query on
+		 * @param bound
+		 *            The timestamp bound of the read, or <code>null</code> for
+		 *            a strong read
+		 * @param parameters
+		 *            The values of the parameters of the original statement,
+		 *            or <code>null</code> if it has no parameters
+		 */
+		com.google.cloud.spanner.ResultSet executeQuery(CloudSpannerConnection connection, TimestampBound bound,
+				ParameterStore parameters) throws SQLException
+		{
+			CloudSpannerPreparedStatement statement = prepareSingleUseStatement(connection, sql, bound, parameters);
+			int index = parameters == null ? 1 : parameters.getHighestIndex() + 1;
+			if (lowerBound != null)
+				statement.setObject(index++, lowerBound);
+			if (upperBound != null)
+				statement.setObject(index, upperBound);
+			return statement.executeSpannerQuery();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "[" + (lowerBound == null ? "" : lowerBound) + ", " + (upperBound == null ? "" : upperBound) + ")";
+		}
+	}
+
+	private SelectPartitioner()
+	{
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the given statement selects from exactly
+	 *         one table and can be split into key ranges without changing the
+	 *         records that it returns. The parameters of the statement must
+	 *         all be in its WHERE clause, as the parameters of the key ranges
+	 *         are appended to the WHERE clause and numbered after them.
+	 */
+	static boolean isPartitionable(Select select)
+	{
+		if (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty())
+			return false;
+		if (!(select.getSelectBody() instanceof PlainSelect))
+			return false;
+		PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+		if (!(plainSelect.getFromItem() instanceof Table))
+			return false;
+		if (plainSelect.getJoins() != null && !plainSelect.getJoins().isEmpty())
+			return false;
+		if (plainSelect.getDistinct() != null || plainSelect.getGroupByColumnReferences() != null
+				|| plainSelect.getHaving() != null || plainSelect.getLimit() != null
+				|| plainSelect.getOffset() != null || plainSelect.getTop() != null
+				|| plainSelect.getFetch() != null)
+			return false;
+		for (SelectItem item : plainSelect.getSelectItems())
+		{
+			// Aggregate functions cannot be computed per partition
+			if (item instanceof SelectExpressionItem
+					&& (((SelectExpressionItem) item).getExpression() instanceof Function
+							|| containsParameter(((SelectExpressionItem) item).getExpression())))
+				return false;
+		}
+		if (plainSelect.getOrderByElements() != null)
+		{
+			for (OrderByElement element : plainSelect.getOrderByElements())
+			{
+				if (containsParameter(element.getExpression()))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the given expression contains a parameter
+	 *         or a sub query, which may contain parameters
+	 */
+	private static boolean containsParameter(Expression expression)
+	{
+		AtomicBoolean res = new AtomicBoolean();
+		expression.accept(new ExpressionVisitorAdapter()
+		{
+			@Override
+			public void visit(JdbcParameter parameter)
+			{
+				res.set(true);
+			}
+
+			@Override
+			public void visit(SubSelect subSelect)
+			{
+				res.set(true);
+			}
+		});
+		return res.get();
+	}
+
+	/**
+	 * Splits the given statement into the given number of partitions.
+	 *
+	 * @param connection
+	 *            The connection to use to determine the boundaries of the
+	 *            partitions
+	 * @param select
+	 *            The statement to split. The statement must be partitionable.
+	 * @param numberOfPartitions
+	 *            The requested number of partitions
+	 * @param recordCount
+	 *            The (estimated) number of records returned by the statement
+	 * @return The partitions of the statement. The result contains less
+	 *         partitions than requested if there are not enough distinct key
+	 *         values, and is empty if the statement cannot be partitioned
+	 * @throws SQLException
+	 *             If a database error occurs while determining the boundaries
+	 */
+	static List<Partition> createPartitions(CloudSpannerConnection connection, Select select, int numberOfPartitions,
+			long recordCount) throws SQLException
+	{
+		return createPartitions(connection, select, numberOfPartitions, recordCount, null, null);
+	}
+
+	/**
+	 * Splits the given statement into the given number of partitions, see
+	 * {@link #createPartitions(CloudSpannerConnection, Select, int, long)}.
+	 * The boundaries are read with the given timestamp bound, and the values
+	 * of the parameters of the statement are taken from the given parameter
+	 * store.
+	 */
+	static List<Partition> createPartitions(CloudSpannerConnection connection, Select select, int numberOfPartitions,
+			long recordCount, TimestampBound bound, ParameterStore parameters) throws SQLException
+	{
+		if (numberOfPartitions < 2 || recordCount < numberOfPartitions)
+			return Collections.emptyList();
+		PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+		Table table = (Table) plainSelect.getFromItem();
+		TableKeyMetaData metaData = connection.getTable(CloudSpannerDriver.unquoteIdentifier(table.getName()));
+		if (metaData == null || metaData.getKeyColumns().isEmpty())
+			return Collections.emptyList();
+		String keyColumn = getTableReference(table) + "."
+				+ CloudSpannerDriver.quoteIdentifier(metaData.getKeyColumns().get(0));
+
+		List<Object> boundaries = getBoundaries(connection, plainSelect, keyColumn, numberOfPartitions, recordCount,
+				bound, parameters);
+		if (boundaries.isEmpty())
+			return Collections.emptyList();
+
+		List<Partition> res = new ArrayList<>(boundaries.size() + 1);
+		res.add(createPartition(select, keyColumn + " IS NULL OR " + keyColumn + " < ?", null, boundaries.get(0)));
+		for (int i = 1; i < boundaries.size(); i++)
+		{
+			res.add(createPartition(select, keyColumn + " >= ? AND " + keyColumn + " < ?", boundaries.get(i - 1),
+					boundaries.get(i)));
+		}
+		res.add(createPartition(select, keyColumn + " >= ?", boundaries.get(boundaries.size() - 1), null));
+		return res;
+	}
+
+	private static String getTableReference(Table table)
+	{
+		if (table.getAlias() != null)
+			return table.getAlias().getName();
+		return CloudSpannerDriver.quoteIdentifier(table.getName());
+	}
+
+	/**
+	 * Prepares a statement that is executed in a single use read context with
+	 * the given timestamp bound, and copies the given parameter values to it.
+	 */
+	static CloudSpannerPreparedStatement prepareSingleUseStatement(CloudSpannerConnection connection, String sql,
+			TimestampBound bound, ParameterStore parameters) throws SQLException
+	{
+		CloudSpannerPreparedStatement statement = prepareStatement(connection, sql, parameters);
+		statement.setForceSingleUseReadContext(true, bound);
+		return statement;
+	}
+
+	/**
+	 * Prepares a statement and copies the given parameter values to it
+	 */
+	static CloudSpannerPreparedStatement prepareStatement(CloudSpannerConnection connection, String sql,
+			ParameterStore parameters) throws SQLException
+	{
+		CloudSpannerPreparedStatement statement = connection.prepareStatement(sql);
+		if (parameters != null)
+		{
+			for (int index = 1; index <= parameters.getHighestIndex(); index++)
+			{
+				statement.getParameterStore().setParameter(index, parameters.getParameter(index),
+						parameters.getType(index), parameters.getScaleOrLength(index));
+			}
+		}
+		return statement;
+	}
+
+	/**
+	 * Scans the key values of the result of the statement in key order, and
+	 * returns the distinct non-NULL values at the positions
+	 * <code>i * recordCount / numberOfPartitions</code>. The scan stops at the
+	 * last of these positions.
+	 */
+	private static List<Object> getBoundaries(CloudSpannerConnection connection, PlainSelect select,
+			String keyColumn, int numberOfPartitions, long recordCount, TimestampBound bound,
+			ParameterStore parameters) throws SQLException
+	{
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT ").append(keyColumn);
+		sql.append("\nFROM ").append(select.getFromItem().toString());
+		if (select.getWhere() != null)
+			sql.append("\nWHERE ").append(select.getWhere().toString());
+		sql.append("\nORDER BY ").append(keyColumn);
+		List<Object> res = new ArrayList<>(numberOfPartitions - 1);
+		int partition = 1;
+		long position = 0L;
+		try (CloudSpannerPreparedStatement statement = prepareSingleUseStatement(connection, sql.toString(), bound,
+				parameters); ResultSet rs = statement.executeQuery())
+		{
+			while (partition < numberOfPartitions && rs.next())
+			{
+				if (position == partition * recordCount / numberOfPartitions)
+				{
+					Object boundary = rs.getObject(1);
+					// NULL values are included in the first partition, and
+					// duplicate boundaries would create empty partitions
+					if (boundary != null && (res.isEmpty() || !Objects.deepEquals(boundary, res.get(res.size() - 1))))
+						res.add(boundary);
+					partition++;
+				}
+				position++;
+			}
+		}
+		return res;
+	}
+
+	private static Partition createPartition(Select select, String range, Object lowerBound, Object upperBound)
+			throws SQLException
+	{
+		try
+		{
+			// Parse a new copy of the statement for each partition
+			Select copy = (Select) CCJSqlParserUtil.parse(select.toString());
+			PlainSelect plainSelect = (PlainSelect) copy.getSelectBody();
+			Expression rangeExpression = new Parenthesis(CCJSqlParserUtil.parseCondExpression(range));
+			if (plainSelect.getWhere() == null)
+				plainSelect.setWhere(rangeExpression);
+			else
+				plainSelect.setWhere(new AndExpression(new Parenthesis(plainSelect.getWhere()), rangeExpression));
+			return new Partition(copy.toString(), lowerBound, upperBound);
+		}
+		catch (JSQLParserException e)
+		{
+			throw new SQLException("Could not create partition of SELECT statement: " + select, e);
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package nl.topicus.jdbc.statement;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.sf.jsqlparser.expression.JdbcParameter;
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
 
 public class SingleRowWhereClauseValidator
@@ -44,4 +45,15 @@ public class SingleRowWhereClauseValidator
 		return true;
 	}
 
+	/**
+	 * 
+	 * @return The indices of the parameters that specify the values of key
+	 *         columns
+	 */
+	public int[] getKeyParameterIndices()
+	{
+		return table.getKeyColumns().stream().map(keyValues::get).filter(JdbcParameter.class::isInstance)
+				.mapToInt(value -> ((JdbcParameter) value).getIndex()).toArray();
+	}
+
 }
@@ -1,5 +1,7 @@
 package nl.topicus.jdbc.statement;
 
+import net.sf.jsqlparser.expression.JdbcParameter;
+
 class SingleRowWhereClauseValidatorExpressionVisitorAdapter extends AbstractSpannerExpressionVisitorAdapter
 {
 	private SingleRowWhereClauseValidator validator;
@@ -17,4 +19,17 @@ class SingleRowWhereClauseValidatorExpressionVisitorAdapter extends AbstractSpan
 		validator.to(value);
 	}
 
+	/**
+	 * A parameter always specifies a value, regardless of the value that is
+	 * currently bound to it. This makes the outcome of the validation
+	 * independent of the parameter values, so that it can be cached. Whether
+	 * a key parameter is bound to <code>null</code> must be checked on each
+	 * execution, see {@link SingleRowWhereClauseValidator#getKeyParameterIndices()}.
+	 */
+	@Override
+	public void visit(JdbcParameter parameter)
+	{
+		validator.to(parameter);
+	}
+
 }
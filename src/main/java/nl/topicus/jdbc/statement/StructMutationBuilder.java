@@ -0,0 +1,231 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
+import com.google.cloud.spanner.Mutation.WriteBuilder;
+import com.google.cloud.spanner.StructReader;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.ValueBinder;
+
+import nl.topicus.jdbc.CloudSpannerDriver;
+import nl.topicus.jdbc.statement.AbstractTablePartWorker.DMLOperation;
+
+/**
+ * Creates mutations directly from the rows of a Cloud Spanner result set. The
+ * values of each row are copied into the mutation using the typed getters of
+ * the row, without converting them to JDBC parameters and without parsing a
+ * DML statement for each row. The columns of the result set are mapped by
+ * position to the columns of the mutation, or to the key columns of the table
+ * for DELETE operations.
+ *
+ * @author loite
+ *
+ */
+class StructMutationBuilder
+{
+	private final Op operation;
+
+	private final String table;
+
+	private final String[] columns;
+
+	/**
+	 *
+	 * @param operation
+	 *            The DML operation of the worker
+	 * @param table
+	 *            The (unquoted) name of the table
+	 * @param columns
+	 *            The names of the columns that correspond with the columns of
+	 *            the result set. For DELETE operations these must be the key
+	 *            columns of the table in key order. The names may be quoted.
+	 */
+	StructMutationBuilder(DMLOperation operation, String table, List<String> columns)
+	{
+		this.operation = toMutationOperation(operation);
+		this.table = table;
+		this.columns = new String[columns.size()];
+		for (int index = 0; index < this.columns.length; index++)
+			this.columns[index] = CloudSpannerDriver.unquoteIdentifier(columns.get(index));
+	}
+
+	private static Op toMutationOperation(DMLOperation operation)
+	{
+		switch (operation)
+		{
+		case Insert:
+			return Op.INSERT;
+		case OnDuplicateKeyUpdate:
+			return Op.INSERT_OR_UPDATE;
+		case Update:
+			return Op.UPDATE;
+		case Delete:
+			return Op.DELETE;
+		default:
+			throw new IllegalArgumentException("Unknown DML operation: " + operation);
+		}
+	}
+
+	Op getOperation()
+	{
+		return operation;
+	}
+
+	String getTable()
+	{
+		return table;
+	}
+
+	/**
+	 * Creates a mutation for the current row of the given result set or for
+	 * the given struct.
+	 */
+	Mutation createMutation(StructReader row) throws SQLException
+	{
+		if (row.getColumnCount() != columns.length)
+			throw new SQLException("The number of columns of the SELECT statement (" + row.getColumnCount()
+					+ ") does not match the number of columns of table " + table + " to write (" + columns.length
+					+ ")");
+		if (operation == Op.DELETE)
+		{
+			Key.Builder builder = Key.newBuilder();
+			for (int index = 0; index < columns.length; index++)
+				appendKey(builder, row, index);
+			return Mutation.delete(table, builder.build());
+		}
+		WriteBuilder builder;
+		switch (operation)
+		{
+		case INSERT:
+			builder = Mutation.newInsertBuilder(table);
+			break;
+		case INSERT_OR_UPDATE:
+			builder = Mutation.newInsertOrUpdateBuilder(table);
+			break;
+		default:
+			builder = Mutation.newUpdateBuilder(table);
+			break;
+		}
+		for (int index = 0; index < columns.length; index++)
+			setValue(builder.set(columns[index]), row, index);
+		return builder.build();
+	}
+
+	private static void appendKey(Key.Builder builder, StructReader row, int index) throws SQLException
+	{
+		Type type = row.getColumnType(index);
+		boolean isNull = row.isNull(index);
+		switch (type.getCode())
+		{
+		case BOOL:
+			builder.append(isNull ? null : row.getBoolean(index));
+			break;
+		case INT64:
+			if (isNull)
+				builder.append((Long) null);
+			else
+				builder.append(row.getLong(index));
+			break;
+		case FLOAT64:
+			if (isNull)
+				builder.append((Double) null);
+			else
+				builder.append(row.getDouble(index));
+			break;
+		case STRING:
+			builder.append(isNull ? null : row.getString(index));
+			break;
+		case BYTES:
+			builder.append(isNull ? null : row.getBytes(index));
+			break;
+		case TIMESTAMP:
+			builder.append(isNull ? null : row.getTimestamp(index));
+			break;
+		case DATE:
+			builder.append(isNull ? null : row.getDate(index));
+			break;
+		default:
+			throw new SQLException("Unsupported type for key column: " + type);
+		}
+	}
+
+	private static void setValue(ValueBinder<WriteBuilder> binder, StructReader row, int index) throws SQLException
+	{
+		Type type = row.getColumnType(index);
+		boolean isNull = row.isNull(index);
+		switch (type.getCode())
+		{
+		case BOOL:
+			if (isNull)
+				binder.to((Boolean) null);
+			else
+				binder.to(row.getBoolean(index));
+			break;
+		case INT64:
+			if (isNull)
+				binder.to((Long) null);
+			else
+				binder.to(row.getLong(index));
+			break;
+		case FLOAT64:
+			if (isNull)
+				binder.to((Double) null);
+			else
+				binder.to(row.getDouble(index));
+			break;
+		case STRING:
+			binder.to(isNull ? null : row.getString(index));
+			break;
+		case BYTES:
+			binder.to(isNull ? null : row.getBytes(index));
+			break;
+		case TIMESTAMP:
+			binder.to(isNull ? null : row.getTimestamp(index));
+			break;
+		case DATE:
+			binder.to(isNull ? null : row.getDate(index));
+			break;
+		case ARRAY:
+			setArrayValue(binder, row, index, type.getArrayElementType(), isNull);
+			break;
+		default:
+			throw new SQLException("Unsupported type for column: " + type);
+		}
+	}
+
+	private static void setArrayValue(ValueBinder<WriteBuilder> binder, StructReader row, int index, Type elementType,
+			boolean isNull) throws SQLException
+	{
+		switch (elementType.getCode())
+		{
+		case BOOL:
+			binder.toBoolArray(isNull ? null : row.getBooleanList(index));
+			break;
+		case INT64:
+			binder.toInt64Array(isNull ? null : row.getLongList(index));
+			break;
+		case FLOAT64:
+			binder.toFloat64Array(isNull ? null : row.getDoubleList(index));
+			break;
+		case STRING:
+			binder.toStringArray(isNull ? null : row.getStringList(index));
+			break;
+		case BYTES:
+			binder.toBytesArray(isNull ? null : row.getBytesList(index));
+			break;
+		case TIMESTAMP:
+			binder.toTimestampArray(isNull ? null : row.getTimestampList(index));
+			break;
+		case DATE:
+			binder.toDateArray(isNull ? null : row.getDateList(index));
+			break;
+		default:
+			throw new SQLException("Unsupported array element type for column: " + elementType);
+		}
+	}
+
+}
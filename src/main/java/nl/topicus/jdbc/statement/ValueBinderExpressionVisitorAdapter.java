@@ -30,18 +30,36 @@ class ValueBinderExpressionVisitorAdapter<R> extends AbstractSpannerExpressionVi
 	@Override
 	protected void setValue(Object value)
 	{
-		R res = setSingleValue(value);
+		setValue(binder, value);
+	}
+
+	/**
+	 * Binds the given value to the given binder using the Cloud Spanner type
+	 * that corresponds with the Java type of the value.
+	 * 
+	 * @param binder
+	 *            The binder to bind the value to
+	 * @param value
+	 *            The value to bind
+	 * @return The result of the binder
+	 * @throws IllegalArgumentException
+	 *             if the type of the value is not supported
+	 */
+	static <R> R setValue(ValueBinder<R> binder, Object value)
+	{
+		R res = setSingleValue(binder, value);
 		if (res == null && value != null)
-			res = setArrayValue(value);
+			res = setArrayValue(binder, value);
 
 		if (res == null && value != null)
 		{
 			throw new IllegalArgumentException(
 					"Unsupported parameter type: " + value.getClass().getName() + " - " + value.toString());
 		}
+		return res;
 	}
 
-	private R setSingleValue(Object value)
+	private static <R> R setSingleValue(ValueBinder<R> binder, Object value)
 	{
 		if (value == null)
 		{
@@ -109,7 +127,7 @@ class ValueBinderExpressionVisitorAdapter<R> extends AbstractSpannerExpressionVi
 		{
 			try
 			{
-				return setArrayValue(((Array) value).getArray());
+				return setArrayValue(binder, ((Array) value).getArray());
 			}
 			catch (SQLException e)
 			{
@@ -120,7 +138,7 @@ class ValueBinderExpressionVisitorAdapter<R> extends AbstractSpannerExpressionVi
 		return null;
 	}
 
-	private R setArrayValue(Object value)
+	private static <R> R setArrayValue(ValueBinder<R> binder, Object value)
 	{
 		if (Boolean[].class.isAssignableFrom(value.getClass()))
 		{
@@ -4,6 +4,7 @@ import java.sql.SQLException;
 
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Key;
 import com.google.cloud.spanner.KeySet;
 import com.google.cloud.spanner.Mutation;
@@ -11,8 +12,11 @@ import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.Options.ReadOption;
 import com.google.cloud.spanner.ReadOnlyTransaction;
 import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.Statement;
 import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.TimestampBound.Mode;
 import com.google.cloud.spanner.TransactionContext;
 
 import nl.topicus.jdbc.CloudSpannerConnection;
@@ -35,7 +39,7 @@ public class CloudSpannerTransaction implements TransactionContext
 		}
 	}
 
-	private TransactionThread transactionThread;
+	private volatile TransactionWorker transactionWorker;
 
 	private ReadOnlyTransaction readOnlyTransaction;
 
@@ -51,7 +55,19 @@ public class CloudSpannerTransaction implements TransactionContext
 
 	public boolean isRunning()
 	{
-		return readOnlyTransaction != null || transactionThread != null;
+		return readOnlyTransaction != null || transactionWorker != null;
+	}
+
+	/**
+	 *
+	 * @return The timestamp at which the current read-only transaction reads
+	 *         the data, or <code>null</code> if no read-only transaction is
+	 *         running. The timestamp is only known after the transaction has
+	 *         executed its first query or read.
+	 */
+	public Timestamp getReadTimestamp()
+	{
+		return readOnlyTransaction == null ? null : readOnlyTransaction.getReadTimestamp();
 	}
 
 	public void begin() throws SQLException
@@ -60,15 +76,27 @@ public class CloudSpannerTransaction implements TransactionContext
 		{
 			if (readOnlyTransaction == null)
 			{
-				readOnlyTransaction = dbClient.readOnlyTransaction();
+				TimestampBound bound = connection.getReadTimestampBound();
+				if (bound.getMode() == Mode.STRONG)
+					readOnlyTransaction = dbClient.readOnlyTransaction();
+				else if (bound.getMode() == Mode.MAX_STALENESS || bound.getMode() == Mode.MIN_READ_TIMESTAMP)
+					throw new SQLException("Read-only transactions cannot use the timestamp bound " + bound
+							+ ", use exact staleness or a read timestamp instead");
+				else
+					readOnlyTransaction = dbClient.readOnlyTransaction(bound);
 			}
 		}
 		else
 		{
-			if (transactionThread == null)
+			if (transactionWorker == null)
 			{
-				transactionThread = new TransactionThread(dbClient);
-				transactionThread.start();
+				TransactionExecutor executor = TransactionExecutor.getDefault();
+				MutationCoalescer coalescer = connection.isCoalesceMutations() ? new MutationCoalescer(connection)
+						: null;
+				TransactionWorker worker = new TransactionWorker(dbClient, connection.getKeepAlivePolicy(),
+						executor, connection.getMetrics(), coalescer);
+				executor.execute(worker);
+				transactionWorker = worker;
 			}
 		}
 	}
@@ -87,15 +115,17 @@ public class CloudSpannerTransaction implements TransactionContext
 			}
 			else
 			{
-				if (transactionThread != null)
+				if (transactionWorker != null)
 				{
-					res = transactionThread.commit();
+					long start = System.nanoTime();
+					res = transactionWorker.commit();
+					connection.getMetrics().recordCommitTime(System.nanoTime() - start);
 				}
 			}
 		}
 		finally
 		{
-			transactionThread = null;
+			transactionWorker = null;
 			readOnlyTransaction = null;
 		}
 		return res;
@@ -114,15 +144,15 @@ public class CloudSpannerTransaction implements TransactionContext
 			}
 			else
 			{
-				if (transactionThread != null)
+				if (transactionWorker != null)
 				{
-					transactionThread.rollback();
+					transactionWorker.rollback();
 				}
 			}
 		}
 		finally
 		{
-			transactionThread = null;
+			transactionWorker = null;
 			readOnlyTransaction = null;
 		}
 
@@ -130,7 +160,7 @@ public class CloudSpannerTransaction implements TransactionContext
 
 	private void checkTransaction()
 	{
-		if (transactionThread == null && readOnlyTransaction == null)
+		if (transactionWorker == null && readOnlyTransaction == null)
 		{
 			try
 			{
@@ -147,18 +177,18 @@ public class CloudSpannerTransaction implements TransactionContext
 	public void buffer(Mutation mutation)
 	{
 		checkTransaction();
-		if (transactionThread == null)
+		if (transactionWorker == null)
 			throw new IllegalStateException("Mutations are not allowed in read-only mode");
-		transactionThread.buffer(mutation);
+		transactionWorker.buffer(mutation);
 	}
 
 	@Override
 	public void buffer(Iterable<Mutation> mutations)
 	{
 		checkTransaction();
-		if (transactionThread == null)
+		if (transactionWorker == null)
 			throw new IllegalStateException("Mutations are not allowed in read-only mode");
-		transactionThread.buffer(mutations);
+		transactionWorker.buffer(mutations);
 	}
 
 	@Override
@@ -167,41 +197,101 @@ public class CloudSpannerTransaction implements TransactionContext
 		checkTransaction();
 		if (readOnlyTransaction != null)
 			return readOnlyTransaction.executeQuery(statement, options);
-		else if (transactionThread != null)
-			return transactionThread.executeQuery(statement);
+		else if (transactionWorker != null)
+			return transactionWorker.executeQuery(statement);
 
 		throw new IllegalStateException("No transaction found (this should not happen)");
 	}
 
+	/**
+	 * Stops waiting for the query or read that is currently being executed on
+	 * this transaction, if any. The call to
+	 * {@link #executeQuery(Statement, QueryOption...)} or one of the read
+	 * methods that is waiting for the result throws the given exception, and
+	 * the worker of the transaction closes the result when it is ready. This
+	 * method may be called from any thread, and is used to cancel queries and
+	 * to enforce query timeouts.
+	 *
+	 * @param reason
+	 *            The exception to throw
+	 */
+	public void cancelQuery(RuntimeException reason)
+	{
+		TransactionWorker worker = transactionWorker;
+		if (worker != null)
+			worker.cancelQuery(reason);
+	}
+
 	@Override
 	public ResultSet read(String table, KeySet keys, Iterable<String> columns, ReadOption... options)
 	{
-		return null;
+		checkTransaction();
+		if (readOnlyTransaction != null)
+			return readOnlyTransaction.read(table, keys, columns, options);
+		else if (transactionWorker != null)
+			return transactionWorker.read(table, keys, columns, options);
+
+		throw new IllegalStateException("No transaction found (this should not happen)");
 	}
 
 	@Override
 	public ResultSet readUsingIndex(String table, String index, KeySet keys, Iterable<String> columns,
 			ReadOption... options)
 	{
-		return null;
+		checkTransaction();
+		if (readOnlyTransaction != null)
+			return readOnlyTransaction.readUsingIndex(table, index, keys, columns, options);
+		else if (transactionWorker != null)
+			return transactionWorker.readUsingIndex(table, index, keys, columns, options);
+
+		throw new IllegalStateException("No transaction found (this should not happen)");
 	}
 
 	@Override
 	public Struct readRow(String table, Key key, Iterable<String> columns)
 	{
-		return null;
+		return consumeSingleRow(read(table, KeySet.singleKey(key), columns));
 	}
 
 	@Override
 	public Struct readRowUsingIndex(String table, String index, Key key, Iterable<String> columns)
 	{
-		return null;
+		return consumeSingleRow(readUsingIndex(table, index, KeySet.singleKey(key), columns));
+	}
+
+	/**
+	 * Reads the only row of the given result set and closes it
+	 * 
+	 * @return The row, or <code>null</code> if the result set is empty
+	 */
+	private static Struct consumeSingleRow(ResultSet rs)
+	{
+		try
+		{
+			if (!rs.next())
+				return null;
+			Struct row = rs.getCurrentRowAsStruct();
+			if (rs.next())
+				throw SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION,
+						"Multiple rows returned for single key");
+			return row;
+		}
+		finally
+		{
+			rs.close();
+		}
 	}
 
 	@Override
 	public ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode)
 	{
-		return null;
+		checkTransaction();
+		if (readOnlyTransaction != null)
+			return readOnlyTransaction.analyzeQuery(statement, queryMode);
+		else if (transactionWorker != null)
+			return transactionWorker.analyzeQuery(statement, queryMode);
+
+		throw new IllegalStateException("No transaction found (this should not happen)");
 	}
 
 	/**
@@ -0,0 +1,112 @@
+package nl.topicus.jdbc.transaction;
+
+/**
+ * Determines when an idle read/write transaction should be kept alive by
+ * sending a <code>SELECT 1</code> statement, and when it should be rolled back
+ * automatically. Cloud Spanner aborts read/write transactions that have been
+ * idle for approximately 10 seconds. A keep-alive is only sent for
+ * transactions that have executed at least one query, as a transaction that
+ * has only buffered mutations does not hold any locks, and can safely be
+ * retried at commit if it has been aborted. Transactions that are shorter
+ * than the keep-alive interval never send a keep-alive.
+ *
+ * @author loite
+ *
+ */
+public final class KeepAlivePolicy
+{
+	/**
+	 * Default interval between keep-alives of an idle transaction in
+	 * milliseconds
+	 */
+	public static final long DEFAULT_KEEP_ALIVE_INTERVAL = 5000L;
+
+	/**
+	 * Default maximum idle time of a transaction in milliseconds. 0 means that
+	 * idle transactions are never rolled back automatically.
+	 */
+	public static final long DEFAULT_MAX_IDLE_TIME = 0L;
+
+	public static final KeepAlivePolicy DEFAULT = new KeepAlivePolicy(DEFAULT_KEEP_ALIVE_INTERVAL,
+			DEFAULT_MAX_IDLE_TIME);
+
+	private final long keepAliveInterval;
+
+	private final long maxIdleTime;
+
+	/**
+	 *
+	 * @param keepAliveInterval
+	 *            The time in milliseconds that a transaction may be idle
+	 *            before a keep-alive is sent. 0 disables keep-alives.
+	 * @param maxIdleTime
+	 *            The time in milliseconds that a transaction may be idle
+	 *            before it is rolled back automatically. 0 means that
+	 *            transactions are never rolled back automatically.
+	 */
+	public KeepAlivePolicy(long keepAliveInterval, long maxIdleTime)
+	{
+		if (keepAliveInterval < 0)
+			throw new IllegalArgumentException("keepAliveInterval may not be negative");
+		if (maxIdleTime < 0)
+			throw new IllegalArgumentException("maxIdleTime may not be negative");
+		this.keepAliveInterval = keepAliveInterval;
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public long getKeepAliveInterval()
+	{
+		return keepAliveInterval;
+	}
+
+	public long getMaxIdleTime()
+	{
+		return maxIdleTime;
+	}
+
+	public boolean isKeepAliveEnabled()
+	{
+		return keepAliveInterval > 0;
+	}
+
+	/**
+	 *
+	 * @param idleTime
+	 *            The time in milliseconds since the last statement of the
+	 *            transaction
+	 * @param timeSinceKeepAlive
+	 *            The time in milliseconds since the last statement or
+	 *            keep-alive of the transaction
+	 * @param keepAliveNeeded
+	 *            Indicates whether the transaction needs keep-alives
+	 * @return The time in milliseconds to wait for the next statement before
+	 *         the policy should be checked again, or {@link Long#MAX_VALUE} if
+	 *         there is no need to check the policy again
+	 */
+	long getWaitTime(long idleTime, long timeSinceKeepAlive, boolean keepAliveNeeded)
+	{
+		long res = Long.MAX_VALUE;
+		if (keepAliveNeeded && isKeepAliveEnabled())
+			res = Math.max(keepAliveInterval - timeSinceKeepAlive, 0L);
+		if (maxIdleTime > 0)
+			res = Math.min(res, Math.max(maxIdleTime - idleTime, 0L));
+		return res;
+	}
+
+	boolean isKeepAliveRequired(long timeSinceKeepAlive, boolean keepAliveNeeded)
+	{
+		return keepAliveNeeded && isKeepAliveEnabled() && timeSinceKeepAlive >= keepAliveInterval;
+	}
+
+	boolean isMaxIdleTimeExceeded(long idleTime)
+	{
+		return maxIdleTime > 0 && idleTime >= maxIdleTime;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "KeepAliveInterval: " + keepAliveInterval + ", MaxIdleTime: " + maxIdleTime;
+	}
+
+}
@@ -0,0 +1,365 @@
+package nl.topicus.jdbc.transaction;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
+import com.google.cloud.spanner.Mutation.WriteBuilder;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.spanner.ValueBinder;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+
+/**
+ * Coalesces the mutations of a read/write transaction that write the same row
+ * before they are sent to Cloud Spanner. A row is identified by its table and
+ * the values of the primary key columns of the table, see
+ * {@link TableKeyMetaData}. The mutations keep the order in which they were
+ * buffered, and the following mutations are coalesced:
+ * <ul>
+ * <li>An update or insert-or-update of a row is merged column by column into
+ * the previous insert, update or insert-or-update of the row. The merged
+ * mutation keeps the operation of the previous mutation, and the values of the
+ * later mutation for the columns that are written by both.</li>
+ * <li>A write of a row that is followed by a delete of only that row is
+ * dropped, if all mutations in between are on the same table.</li>
+ * </ul>
+ * Deletes and replaces can also remove rows of interleaved tables. They are
+ * therefore never merged into, and rows that were written before them are not
+ * coalesced with later mutations. The same applies to mutations of which the
+ * row cannot be determined, for example because the key columns of the table
+ * are unknown. Note that a write that is dropped because of a later delete of
+ * the row can no longer make the transaction fail, for example an insert of a
+ * row that already exists.
+ *
+ * @author loite
+ *
+ */
+class MutationCoalescer
+{
+	/**
+	 * Returned as the key part of a value that cannot be part of a key
+	 */
+	private static final Object NO_KEY_PART = new Object();
+
+	private final CloudSpannerConnection connection;
+
+	/**
+	 * The buffered mutations. Dropped mutations are set to <code>null</code>.
+	 */
+	private final List<Mutation> mutations = new ArrayList<>(40);
+
+	/**
+	 * The index of the last write of each row per table that may still be
+	 * coalesced with a later mutation
+	 */
+	private final Map<String, Map<Key, Integer>> rows = new HashMap<>();
+
+	private final Map<String, List<String>> keyColumns = new HashMap<>();
+
+	/**
+	 * The table of the last buffered mutation, and the index of the first
+	 * mutation of the uninterrupted sequence of mutations on that table
+	 */
+	private String lastTable;
+
+	private int lastTableStart;
+
+	private int coalescedCount;
+
+	MutationCoalescer(CloudSpannerConnection connection)
+	{
+		this.connection = connection;
+	}
+
+	void add(Mutation mutation)
+	{
+		if (mutation.getOperation() == Op.DELETE)
+			addDelete(mutation);
+		else
+			addWrite(mutation);
+	}
+
+	private void addWrite(Mutation mutation)
+	{
+		Key key = mutation.getOperation() == Op.REPLACE ? null : getKey(mutation);
+		if (key == null)
+		{
+			append(mutation);
+			rows.clear();
+			return;
+		}
+		Map<Key, Integer> tableRows = rows.computeIfAbsent(mutation.getTable().toUpperCase(), t -> new HashMap<>());
+		Integer index = tableRows.get(key);
+		// An insert of a row that has already been written fails, and is
+		// therefore not merged
+		if (index != null && mutation.getOperation() != Op.INSERT)
+		{
+			mutations.set(index, merge(mutations.get(index), mutation));
+			coalescedCount++;
+		}
+		else
+		{
+			tableRows.put(key, mutations.size());
+			append(mutation);
+		}
+	}
+
+	private void addDelete(Mutation mutation)
+	{
+		String table = mutation.getTable().toUpperCase();
+		Key key = getSingleKey(mutation.getKeySet());
+		Map<Key, Integer> tableRows = rows.get(table);
+		if (key != null && tableRows != null && table.equals(lastTable))
+		{
+			Integer index = tableRows.get(key);
+			if (index != null && index >= lastTableStart)
+			{
+				mutations.set(index, null);
+				coalescedCount++;
+			}
+		}
+		append(mutation);
+		rows.clear();
+	}
+
+	private void append(Mutation mutation)
+	{
+		String table = mutation.getTable().toUpperCase();
+		if (!table.equals(lastTable))
+		{
+			lastTable = table;
+			lastTableStart = mutations.size();
+		}
+		mutations.add(mutation);
+	}
+
+	/**
+	 *
+	 * @return The mutations that should be sent to Cloud Spanner, in the order
+	 *         in which they should be applied
+	 */
+	List<Mutation> getMutations()
+	{
+		List<Mutation> res = new ArrayList<>(mutations.size());
+		for (Mutation mutation : mutations)
+		{
+			if (mutation != null)
+				res.add(mutation);
+		}
+		return res;
+	}
+
+	/**
+	 *
+	 * @return The number of buffered mutations that were merged into another
+	 *         mutation or dropped
+	 */
+	int getCoalescedCount()
+	{
+		return coalescedCount;
+	}
+
+	private static Key getSingleKey(KeySet keys)
+	{
+		if (keys.isAll() || keys.getRanges().iterator().hasNext())
+			return null;
+		Iterator<Key> it = keys.getKeys().iterator();
+		if (!it.hasNext())
+			return null;
+		Key res = it.next();
+		return it.hasNext() ? null : res;
+	}
+
+	/**
+	 *
+	 * @return The primary key of the row that is written by the mutation, or
+	 *         <code>null</code> if the key cannot be determined
+	 */
+	private Key getKey(Mutation mutation)
+	{
+		List<String> columns = getKeyColumns(mutation.getTable());
+		if (columns == null || columns.isEmpty())
+			return null;
+		Map<String, Value> values = getValues(mutation);
+		Object[] parts = new Object[columns.size()];
+		for (int i = 0; i < parts.length; i++)
+		{
+			Value value = values.get(columns.get(i));
+			if (value == null)
+				return null;
+			parts[i] = getKeyPart(value);
+			if (parts[i] == NO_KEY_PART)
+				return null;
+		}
+		return Key.of(parts);
+	}
+
+	private List<String> getKeyColumns(String table)
+	{
+		String name = table.toUpperCase();
+		if (!keyColumns.containsKey(name))
+		{
+			List<String> columns = null;
+			try
+			{
+				TableKeyMetaData metaData = connection.getTable(table);
+				if (metaData != null)
+					columns = metaData.getKeyColumns();
+			}
+			catch (SQLException e)
+			{
+				// The rows of the table cannot be identified, its mutations
+				// are not coalesced
+			}
+			keyColumns.put(name, columns);
+		}
+		return keyColumns.get(name);
+	}
+
+	private static Object getKeyPart(Value value)
+	{
+		if (value.isNull())
+			return null;
+		switch (value.getType().getCode())
+		{
+		case BOOL:
+			return value.getBool();
+		case INT64:
+			return value.getInt64();
+		case FLOAT64:
+			return value.getFloat64();
+		case STRING:
+			return value.getString();
+		case BYTES:
+			return value.getBytes();
+		case TIMESTAMP:
+			return value.getTimestamp();
+		case DATE:
+			return value.getDate();
+		default:
+			return NO_KEY_PART;
+		}
+	}
+
+	/**
+	 *
+	 * @return The values of the mutation by column name, ignoring the case of
+	 *         the column names
+	 */
+	private static Map<String, Value> getValues(Mutation mutation)
+	{
+		Map<String, Value> res = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Iterator<String> columns = mutation.getColumns().iterator();
+		Iterator<Value> values = mutation.getValues().iterator();
+		while (columns.hasNext() && values.hasNext())
+			res.put(columns.next(), values.next());
+		return res;
+	}
+
+	private static Mutation merge(Mutation first, Mutation second)
+	{
+		Map<String, Value> values = getValues(first);
+		values.putAll(getValues(second));
+		WriteBuilder builder = createBuilder(first.getOperation(), first.getTable());
+		for (Entry<String, Value> entry : values.entrySet())
+			bind(builder.set(entry.getKey()), entry.getValue());
+		return builder.build();
+	}
+
+	private static WriteBuilder createBuilder(Op operation, String table)
+	{
+		switch (operation)
+		{
+		case INSERT:
+			return Mutation.newInsertBuilder(table);
+		case UPDATE:
+			return Mutation.newUpdateBuilder(table);
+		case INSERT_OR_UPDATE:
+			return Mutation.newInsertOrUpdateBuilder(table);
+		case REPLACE:
+			return Mutation.newReplaceBuilder(table);
+		default:
+			throw new IllegalArgumentException("Not a write operation: " + operation);
+		}
+	}
+
+	private static void bind(ValueBinder<WriteBuilder> binder, Value value)
+	{
+		boolean isNull = value.isNull();
+		Type type = value.getType();
+		switch (type.getCode())
+		{
+		case BOOL:
+			binder.to(isNull ? null : value.getBool());
+			break;
+		case INT64:
+			binder.to(isNull ? null : value.getInt64());
+			break;
+		case FLOAT64:
+			binder.to(isNull ? null : value.getFloat64());
+			break;
+		case STRING:
+			binder.to(isNull ? null : value.getString());
+			break;
+		case BYTES:
+			binder.to(isNull ? null : value.getBytes());
+			break;
+		case TIMESTAMP:
+			binder.to(isNull ? null : value.getTimestamp());
+			break;
+		case DATE:
+			binder.to(isNull ? null : value.getDate());
+			break;
+		case ARRAY:
+			bindArray(binder, value);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported mutation value type: " + type);
+		}
+	}
+
+	private static void bindArray(ValueBinder<WriteBuilder> binder, Value value)
+	{
+		boolean isNull = value.isNull();
+		Type type = value.getType().getArrayElementType();
+		switch (type.getCode())
+		{
+		case BOOL:
+			binder.toBoolArray(isNull ? null : value.getBoolArray());
+			break;
+		case INT64:
+			binder.toInt64Array(isNull ? null : value.getInt64Array());
+			break;
+		case FLOAT64:
+			binder.toFloat64Array(isNull ? null : value.getFloat64Array());
+			break;
+		case STRING:
+			binder.toStringArray(isNull ? null : value.getStringArray());
+			break;
+		case BYTES:
+			binder.toBytesArray(isNull ? null : value.getBytesArray());
+			break;
+		case TIMESTAMP:
+			binder.toTimestampArray(isNull ? null : value.getTimestampArray());
+			break;
+		case DATE:
+			binder.toDateArray(isNull ? null : value.getDateArray());
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported mutation value type: " + value.getType());
+		}
+	}
+
+}
@@ -0,0 +1,255 @@
+package nl.topicus.jdbc.transaction;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.topicus.jdbc.util.VirtualThreads;
+
+/**
+ * Executor that runs the read/write transactions of all connections of the
+ * driver. A read/write transaction occupies a thread for as long as the
+ * transaction is open, as the Cloud Spanner client library requires all
+ * statements of a transaction to be executed within one callback. Threads are
+ * reused for subsequent transactions and the number of concurrently running
+ * transactions is bounded by {@link #getMaxTransactions()}.
+ *
+ * On JVMs that support virtual threads, the executor can be instructed to use
+ * virtual threads instead of platform threads by calling
+ * {@link #setUseVirtualThreads(boolean)}.
+ *
+ * @author loite
+ *
+ */
+public class TransactionExecutor
+{
+	public static final int DEFAULT_MAX_TRANSACTIONS = 500;
+
+	private static final long KEEP_ALIVE_SECONDS = 60L;
+
+	private static final TransactionExecutor DEFAULT_EXECUTOR = new TransactionExecutor(DEFAULT_MAX_TRANSACTIONS,
+			false);
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final AtomicInteger activeTransactions = new AtomicInteger();
+
+	private final AtomicLong keepAliveCount = new AtomicLong();
+
+	private final AtomicLong idleRollbackCount = new AtomicLong();
+
+	private volatile int maxTransactions;
+
+	private boolean useVirtualThreads;
+
+	private ExecutorService executor;
+
+	TransactionExecutor(int maxTransactions, boolean useVirtualThreads)
+	{
+		setMaxTransactions(maxTransactions);
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	/**
+	 *
+	 * @return The executor that is used by all connections of the driver
+	 */
+	public static TransactionExecutor getDefault()
+	{
+		return DEFAULT_EXECUTOR;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the current JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported()
+	{
+		return VirtualThreads.isSupported();
+	}
+
+	private synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = createExecutor();
+		}
+		return executor;
+	}
+
+	private ExecutorService createExecutor()
+	{
+		if (useVirtualThreads)
+		{
+			ExecutorService res = VirtualThreads.newVirtualThreadPerTaskExecutor();
+			// Fall back to platform threads if virtual threads are not
+			// supported
+			if (res != null)
+				return res;
+		}
+		// No queue is needed, as the number of transactions is bounded by
+		// maxTransactions. Idle threads are reused by new transactions.
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "CloudSpanner-Transaction-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Starts the given transaction on a thread of this executor.
+	 *
+	 * @param transaction
+	 *            The transaction to run
+	 * @throws SQLException
+	 *             if the maximum number of concurrent transactions has been
+	 *             reached
+	 */
+	void execute(Runnable transaction) throws SQLException
+	{
+		if (activeTransactions.incrementAndGet() > maxTransactions)
+		{
+			activeTransactions.decrementAndGet();
+			throw new SQLException("The maximum number of concurrent read/write transactions (" + maxTransactions
+					+ ") has been reached");
+		}
+		try
+		{
+			getExecutor().execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						transaction.run();
+					}
+					finally
+					{
+						activeTransactions.decrementAndGet();
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			activeTransactions.decrementAndGet();
+			throw new SQLException("Could not start read/write transaction: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of read/write transactions that are currently
+	 *         running on this executor
+	 */
+	public int getActiveTransactions()
+	{
+		return activeTransactions.get();
+	}
+
+	/**
+	 *
+	 * @return The number of threads in the pool, both active and idle. Returns
+	 *         -1 if the executor uses virtual threads, or if no transaction has
+	 *         been started yet.
+	 */
+	public synchronized int getPoolSize()
+	{
+		if (executor instanceof ThreadPoolExecutor)
+			return ((ThreadPoolExecutor) executor).getPoolSize();
+		return -1;
+	}
+
+	void recordKeepAlive()
+	{
+		keepAliveCount.incrementAndGet();
+	}
+
+	/**
+	 *
+	 * @return The total number of keep-alive statements that have been sent
+	 *         by transactions on this executor
+	 */
+	public long getKeepAliveCount()
+	{
+		return keepAliveCount.get();
+	}
+
+	void recordIdleRollback()
+	{
+		idleRollbackCount.incrementAndGet();
+	}
+
+	/**
+	 *
+	 * @return The total number of transactions on this executor that have
+	 *         been rolled back automatically because they exceeded the
+	 *         maximum idle time of their {@link KeepAlivePolicy}
+	 */
+	public long getIdleRollbackCount()
+	{
+		return idleRollbackCount.get();
+	}
+
+	public int getMaxTransactions()
+	{
+		return maxTransactions;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent read/write transactions. Trying to
+	 * start a transaction when this maximum has been reached will cause an
+	 * {@link SQLException}. Transactions that are already running are not
+	 * affected.
+	 *
+	 * @param maxTransactions
+	 *            The maximum number of concurrent transactions
+	 */
+	public void setMaxTransactions(int maxTransactions)
+	{
+		if (maxTransactions <= 0)
+			throw new IllegalArgumentException("maxTransactions must be positive");
+		this.maxTransactions = maxTransactions;
+	}
+
+	public synchronized boolean isUseVirtualThreads()
+	{
+		return useVirtualThreads;
+	}
+
+	/**
+	 * Instructs the executor to run transactions on virtual threads instead
+	 * of platform threads. This setting is ignored on JVMs that do not support
+	 * virtual threads. Transactions that are already running are not
+	 * affected.
+	 *
+	 * @param useVirtualThreads
+	 *            <code>true</code> if virtual threads should be used
+	 */
+	public synchronized void setUseVirtualThreads(boolean useVirtualThreads)
+	{
+		if (this.useVirtualThreads != useVirtualThreads)
+		{
+			this.useVirtualThreads = useVirtualThreads;
+			if (executor != null)
+			{
+				executor.shutdown();
+				executor = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,399 @@
+package nl.topicus.jdbc.transaction;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Options.ReadOption;
+import com.google.cloud.spanner.ReadContext;
+import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.TransactionContext;
+import com.google.cloud.spanner.TransactionRunner;
+import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
+
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
+
+/**
+ * Runs a read/write transaction on a thread of a {@link TransactionExecutor}.
+ * The Cloud Spanner client library requires all statements of a read/write
+ * transaction to be executed within one callback. The worker keeps this
+ * callback open and executes the statements that are handed to it by the
+ * connection until the transaction is committed or rolled back.
+ *
+ * @author loite
+ *
+ */
+class TransactionWorker implements Runnable
+{
+	public static class QueryException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private QueryException(String message, Throwable cause)
+		{
+			super(message, cause);
+		}
+	}
+
+	private enum RequestType
+	{
+		QUERY, COMMIT, ROLLBACK;
+	}
+
+	/**
+	 * A request from the connection to the transaction. The result of the
+	 * request is handed back through a future, so that the worker can
+	 * complete the request directly without a second queue. Queries and reads
+	 * are both executed as a query request with an operation that is applied
+	 * to the transaction.
+	 */
+	private static final class Request
+	{
+		private final RequestType type;
+
+		private final Function<ReadContext, ResultSet> operation;
+
+		private final CompletableFuture<ResultSet> result = new CompletableFuture<>();
+
+		private Request(RequestType type, Function<ReadContext, ResultSet> operation)
+		{
+			this.type = type;
+			this.operation = operation;
+		}
+	}
+
+	private final DatabaseClient dbClient;
+
+	private final KeepAlivePolicy keepAlivePolicy;
+
+	private final TransactionExecutor executor;
+
+	private final CloudSpannerMetrics metrics;
+
+	private final List<Mutation> mutations = new ArrayList<>(40);
+
+	/**
+	 * Coalesces the buffered mutations if coalescing is enabled, otherwise
+	 * the mutations are buffered as they are in {@link #mutations}
+	 */
+	private final MutationCoalescer coalescer;
+
+	private final BlockingQueue<Request> requests = new LinkedTransferQueue<>();
+
+	/**
+	 * Completed with the commit timestamp when the transaction has finished
+	 */
+	private final CompletableFuture<Timestamp> done = new CompletableFuture<>();
+
+	/**
+	 * Set by the worker when it receives a commit or rollback request
+	 */
+	private RequestType finishType;
+
+	private volatile boolean idleRollback;
+
+	/**
+	 * The time at which the connection last buffered a mutation. Buffering
+	 * mutations keeps the transaction active, but does not reach Cloud
+	 * Spanner, and therefore does not replace a keep-alive.
+	 */
+	private volatile long lastBuffer;
+
+	/**
+	 * The query request that the connection is currently waiting for
+	 */
+	private volatile Request pendingQuery;
+
+	TransactionWorker(DatabaseClient dbClient, KeepAlivePolicy keepAlivePolicy, TransactionExecutor executor,
+			CloudSpannerMetrics metrics)
+	{
+		this(dbClient, keepAlivePolicy, executor, metrics, null);
+	}
+
+	TransactionWorker(DatabaseClient dbClient, KeepAlivePolicy keepAlivePolicy, TransactionExecutor executor,
+			CloudSpannerMetrics metrics, MutationCoalescer coalescer)
+	{
+		this.dbClient = dbClient;
+		this.keepAlivePolicy = keepAlivePolicy;
+		this.executor = executor;
+		this.metrics = metrics;
+		this.coalescer = coalescer;
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			TransactionRunner runner = dbClient.readWriteTransaction();
+			runner.run(new TransactionCallable<Void>()
+			{
+				private boolean retry;
+
+				@Override
+				public Void run(TransactionContext transaction) throws Exception
+				{
+					if (retry)
+						metrics.recordTransactionRetry();
+					retry = true;
+					long lastStatement = System.currentTimeMillis();
+					long lastKeepAlive = lastStatement;
+					boolean keepAliveNeeded = false;
+					// The callable is executed again if the transaction is
+					// aborted by Cloud Spanner. A commit or rollback that
+					// has already been requested should then be retried
+					// directly.
+					while (finishType == null)
+					{
+						long now = System.currentTimeMillis();
+						long waitTime = keepAlivePolicy.getWaitTime(now - Math.max(lastStatement, lastBuffer),
+								now - lastKeepAlive, keepAliveNeeded);
+						Request request = waitTime == Long.MAX_VALUE ? requests.take()
+								: requests.poll(waitTime, TimeUnit.MILLISECONDS);
+						now = System.currentTimeMillis();
+						if (request == null)
+						{
+							if (keepAlivePolicy.isMaxIdleTimeExceeded(now - Math.max(lastStatement, lastBuffer)))
+							{
+								idleRollback = true;
+								executor.recordIdleRollback();
+								finishType = RequestType.ROLLBACK;
+							}
+							else if (keepAlivePolicy.isKeepAliveRequired(now - lastKeepAlive, keepAliveNeeded))
+							{
+								try (ResultSet rs = transaction.executeQuery(Statement.of("SELECT 1")))
+								{
+									rs.next();
+								}
+								executor.recordKeepAlive();
+								metrics.recordKeepAlivePing();
+								lastKeepAlive = now;
+							}
+						}
+						else if (request.type == RequestType.QUERY)
+						{
+							lastStatement = now;
+							lastKeepAlive = now;
+							keepAliveNeeded = true;
+							try
+							{
+								ResultSet rs = request.operation.apply(transaction);
+								// The request may have been cancelled in the
+								// meantime, the result is then not used
+								if (!request.result.complete(rs))
+									rs.close();
+							}
+							catch (RuntimeException e)
+							{
+								request.result.completeExceptionally(e);
+								throw e;
+							}
+						}
+						else
+						{
+							finishType = request.type;
+						}
+					}
+					if (finishType == RequestType.COMMIT)
+					{
+						transaction.buffer(coalescer == null ? mutations : coalescer.getMutations());
+					}
+					return null;
+				}
+			});
+			if (idleRollback)
+				done.completeExceptionally(new SQLException(getIdleRollbackMessage()));
+			else
+			{
+				if (coalescer != null && finishType == RequestType.COMMIT)
+					metrics.recordMutationsCoalesced(coalescer.getCoalescedCount());
+				done.complete(runner.getCommitTimestamp());
+			}
+		}
+		catch (Exception e)
+		{
+			done.completeExceptionally(e);
+		}
+		finally
+		{
+			failPendingRequests();
+		}
+	}
+
+	private String getIdleRollbackMessage()
+	{
+		return "Transaction was rolled back because it was idle for more than " + keepAlivePolicy.getMaxIdleTime()
+				+ " milliseconds";
+	}
+
+	private IllegalStateException createFinishedException()
+	{
+		return new IllegalStateException(
+				idleRollback ? getIdleRollbackMessage() : "Transaction has already finished");
+	}
+
+	private void failPendingRequests()
+	{
+		Request request;
+		while ((request = requests.poll()) != null)
+		{
+			request.result.completeExceptionally(createFinishedException());
+		}
+	}
+
+	private Request submit(RequestType type, Function<ReadContext, ResultSet> operation)
+	{
+		return submit(new Request(type, operation));
+	}
+
+	private Request submit(Request request)
+	{
+		requests.add(request);
+		// If the transaction finished while the request was being added, the
+		// worker will not pick it up anymore
+		if (done.isDone() && requests.remove(request))
+		{
+			request.result.completeExceptionally(createFinishedException());
+		}
+		return request;
+	}
+
+	ResultSet executeQuery(Statement statement)
+	{
+		return execute(context -> context.executeQuery(statement));
+	}
+
+	ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode)
+	{
+		return execute(context -> context.analyzeQuery(statement, queryMode));
+	}
+
+	ResultSet read(String table, KeySet keys, Iterable<String> columns, ReadOption... options)
+	{
+		return execute(context -> context.read(table, keys, columns, options));
+	}
+
+	ResultSet readUsingIndex(String table, String index, KeySet keys, Iterable<String> columns,
+			ReadOption... options)
+	{
+		return execute(context -> context.readUsingIndex(table, index, keys, columns, options));
+	}
+
+	/**
+	 * Executes the given query or read on the transaction and waits for the
+	 * result
+	 */
+	private ResultSet execute(Function<ReadContext, ResultSet> operation)
+	{
+		Request request = new Request(RequestType.QUERY, operation);
+		pendingQuery = request;
+		submit(request);
+		try
+		{
+			return request.result.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new QueryException("Query execution interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new QueryException("Query execution failed: " + e.getCause().getLocalizedMessage(), e.getCause());
+		}
+		finally
+		{
+			pendingQuery = null;
+		}
+	}
+
+	/**
+	 * Stops waiting for the query or read that is currently being executed on
+	 * this transaction. The call to {@link #executeQuery(Statement)} or one of
+	 * the read methods that is waiting for the result throws the given
+	 * exception. This method may be
+	 * called from any thread.
+	 *
+	 * @param reason
+	 *            The exception to throw
+	 */
+	void cancelQuery(RuntimeException reason)
+	{
+		Request request = pendingQuery;
+		if (request != null)
+			request.result.completeExceptionally(reason);
+	}
+
+	void buffer(Mutation mutation)
+	{
+		if (mutation == null)
+			throw new NullPointerException("Mutation is null");
+		// Mutations that are buffered after the transaction has finished,
+		// for example because it was rolled back as idle, would be lost
+		if (idleRollback || done.isDone())
+			throw createFinishedException();
+		if (coalescer == null)
+			mutations.add(mutation);
+		else
+			coalescer.add(mutation);
+		lastBuffer = System.currentTimeMillis();
+	}
+
+	void buffer(Iterable<Mutation> mutations)
+	{
+		Iterator<Mutation> it = mutations.iterator();
+		while (it.hasNext())
+			buffer(it.next());
+	}
+
+	Timestamp commit() throws SQLException
+	{
+		return stopTransaction(true);
+	}
+
+	void rollback() throws SQLException
+	{
+		stopTransaction(false);
+	}
+
+	private Timestamp stopTransaction(boolean commit) throws SQLException
+	{
+		boolean finished = done.isDone();
+		if (!finished)
+			submit(commit ? RequestType.COMMIT : RequestType.ROLLBACK, null);
+		try
+		{
+			return done.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException((commit ? "Commit failed: " : "Rollback failed: ") + e.getLocalizedMessage(), e);
+		}
+		catch (ExecutionException e)
+		{
+			// Rolling back a transaction that has already failed is a no-op
+			if (finished && !commit)
+				return null;
+			Throwable cause = e.getCause();
+			throw new SQLException((commit ? "Commit failed: " : "Rollback failed: ") + cause.getLocalizedMessage(),
+					cause);
+		}
+	}
+
+}
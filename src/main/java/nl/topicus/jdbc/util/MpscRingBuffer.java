@@ -0,0 +1,118 @@
+package nl.topicus.jdbc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer for multiple producers and a single
+ * consumer. Producers claim a slot with a compare-and-set on the tail of the
+ * buffer and never block: {@link #offer(Object)} returns <code>false</code>
+ * if the buffer is full. {@link #poll()} may only be called by one thread at
+ * a time.
+ *
+ * @author loite
+ *
+ * @param <E>
+ *            The type of the elements in the buffer
+ */
+public final class MpscRingBuffer<E>
+{
+	private final AtomicReferenceArray<E> slots;
+
+	private final int mask;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Only written by the consumer
+	 */
+	private volatile long head;
+
+	/**
+	 *
+	 * @param capacity
+	 *            The maximum number of elements in the buffer, which is
+	 *            rounded up to the next power of two
+	 */
+	public MpscRingBuffer(int capacity)
+	{
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Adds an element to the buffer. This method may be called by any number
+	 * of threads concurrently.
+	 *
+	 * @return <code>true</code> if the element was added, <code>false</code>
+	 *         if the buffer is full
+	 */
+	public boolean offer(E element)
+	{
+		if (element == null)
+			throw new NullPointerException("element may not be null");
+		long claimed;
+		do
+		{
+			claimed = tail.get();
+			if (claimed - head >= slots.length())
+				return false;
+		}
+		while (!tail.compareAndSet(claimed, claimed + 1L));
+		// The consumer treats an empty slot as not yet published, so the
+		// element becomes visible in the order in which slots were claimed
+		slots.lazySet((int) (claimed & mask), element);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element from the buffer. This method may only be
+	 * called by one thread at a time.
+	 *
+	 * @return The oldest element, or <code>null</code> if the buffer is empty
+	 *         or the oldest element has been claimed but not yet published by
+	 *         its producer
+	 */
+	public E poll()
+	{
+		long current = head;
+		int index = (int) (current & mask);
+		E element = slots.get(index);
+		if (element == null)
+			return null;
+		slots.lazySet(index, null);
+		head = current + 1L;
+		return element;
+	}
+
+	/**
+	 *
+	 * @return The total number of elements that have been added to the
+	 *         buffer
+	 */
+	public long getOfferedCount()
+	{
+		return tail.get();
+	}
+
+	/**
+	 *
+	 * @return The total number of elements that have been removed from the
+	 *         buffer
+	 */
+	public long getPolledCount()
+	{
+		return head;
+	}
+
+	public int capacity()
+	{
+		return slots.length();
+	}
+
+}
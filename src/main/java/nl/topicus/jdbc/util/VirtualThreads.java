@@ -0,0 +1,63 @@
+package nl.topicus.jdbc.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads on JVMs that support them. The driver is compiled
+ * for Java 8, so virtual threads are created through reflection.
+ *
+ * @author loite
+ *
+ */
+public class VirtualThreads
+{
+	private VirtualThreads()
+	{
+	}
+
+	private static Method getVirtualThreadExecutorFactory()
+	{
+		try
+		{
+			return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException | SecurityException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if the current JVM supports virtual threads
+	 */
+	public static boolean isSupported()
+	{
+		return getVirtualThreadExecutorFactory() != null;
+	}
+
+	/**
+	 *
+	 * @return An executor that starts a new virtual thread for each task, or
+	 *         <code>null</code> if the current JVM does not support virtual
+	 *         threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor()
+	{
+		Method factory = getVirtualThreadExecutorFactory();
+		if (factory != null)
+		{
+			try
+			{
+				return (ExecutorService) factory.invoke(null);
+			}
+			catch (ReflectiveOperationException | RuntimeException e)
+			{
+				// not available
+			}
+		}
+		return null;
+	}
+
+}
@@ -45,6 +45,8 @@ public class AbstractCloudSpannerFetcherTest
 	{
 		subject.setFetchSize(100);
 		Assert.assertEquals(100, subject.getFetchSize());
+		thrown.expect(SQLException.class);
+		subject.setFetchSize(-1);
 	}
 
 	@Test
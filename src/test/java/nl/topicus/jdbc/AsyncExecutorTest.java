@@ -0,0 +1,65 @@
+package nl.topicus.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class AsyncExecutorTest
+{
+
+	@Test
+	public void testExecuteConcurrently() throws InterruptedException
+	{
+		AsyncExecutor executor = new AsyncExecutor(1, false);
+		CountDownLatch blocker = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		executor.execute(() -> {
+			blocked.countDown();
+			awaitQuietly(blocker);
+		});
+		assertTrue(blocked.await(5L, TimeUnit.SECONDS));
+
+		// The operations wait for each other, and can only finish if they all
+		// run at the same time, even though the only thread of the pool is
+		// busy
+		int count = 4;
+		CountDownLatch started = new CountDownLatch(count);
+		CountDownLatch finished = new CountDownLatch(count);
+		List<Runnable> operations = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			operations.add(() -> {
+				started.countDown();
+				awaitQuietly(started);
+				finished.countDown();
+			});
+		}
+		executor.executeConcurrently(operations);
+		assertTrue(finished.await(5L, TimeUnit.SECONDS));
+		blocker.countDown();
+		assertEquals(1, executor.getMaxThreads());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(10L, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package nl.topicus.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class CloudSpannerAsyncConnectionTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=async-connection-test;InMemoryDatabase=true";
+
+	private Connection connection;
+
+	private ICloudSpannerAsyncConnection async;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		connection = DriverManager.getConnection(URL);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+		}
+		assertTrue(connection.isWrapperFor(ICloudSpannerAsyncConnection.class));
+		async = connection.unwrap(ICloudSpannerAsyncConnection.class);
+	}
+
+	@After
+	public void teardown() throws SQLException
+	{
+		connection.close();
+		InMemoryDatabase
+				.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "async-connection-test"));
+	}
+
+	@Test
+	public void testUnwrapToUnsupportedInterface() throws SQLException
+	{
+		assertFalse(connection.isWrapperFor(DataSource.class));
+		try
+		{
+			connection.unwrap(DataSource.class);
+			fail("Expected an exception");
+		}
+		catch (SQLException e)
+		{
+			assertTrue(e.getMessage().startsWith("Cannot unwrap"));
+		}
+	}
+
+	@Test
+	public void testAutoCommitOperations() throws InterruptedException, ExecutionException, SQLException
+	{
+		List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+		for (long id = 1L; id <= 20L; id++)
+			inserts.add(async.executeUpdateAsync("INSERT INTO FOO (ID, NAME) VALUES (?, ?)", id, "name " + id));
+		CompletableFuture.allOf(inserts.toArray(new CompletableFuture<?>[inserts.size()])).get();
+		for (CompletableFuture<Integer> insert : inserts)
+			assertEquals(Integer.valueOf(1), insert.get());
+
+		try (ResultSet rs = async.executeQueryAsync("SELECT ID, NAME FROM FOO WHERE ID>? ORDER BY ID", 18L).get())
+		{
+			assertTrue(rs.next());
+			assertEquals(19L, rs.getLong(1));
+			assertEquals("name 19", rs.getString("NAME"));
+			assertTrue(rs.next());
+			assertEquals(20L, rs.getLong(1));
+			assertFalse(rs.next());
+		}
+		try (ResultSet rs = async.executeQueryAsync("SELECT ID FROM FOO WHERE ID>?", 100L).get())
+		{
+			assertFalse(rs.next());
+		}
+	}
+
+	/**
+	 * The result of an asynchronous query is read into memory, and a query
+	 * that returns more rows than the limit of the connection must fail
+	 */
+	@Test
+	public void testQueryExceedsMaxRows() throws InterruptedException, ExecutionException, SQLException
+	{
+		for (long id = 1L; id <= 3L; id++)
+			async.executeUpdateAsync("INSERT INTO FOO (ID, NAME) VALUES (?, ?)", id, "name " + id).get();
+		connection.unwrap(CloudSpannerConnection.class).setAsyncQueryMaxRows(2);
+		try (ResultSet rs = async.executeQueryAsync("SELECT ID FROM FOO WHERE ID>?", 1L).get())
+		{
+			assertTrue(rs.next());
+			assertTrue(rs.next());
+			assertFalse(rs.next());
+		}
+		try
+		{
+			async.executeQueryAsync("SELECT ID FROM FOO").get();
+			fail("Expected an exception");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof SQLException);
+			assertTrue(e.getCause().getMessage().contains("more than the maximum of 2 rows"));
+		}
+	}
+
+	/**
+	 * Updates in autocommit mode are executed as bulk operations that
+	 * temporarily switch off autocommit on the connection, and may therefore
+	 * not run concurrently
+	 */
+	@Test
+	public void testConcurrentAutoCommitUpdates() throws InterruptedException, ExecutionException, SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE BAR (ID INT64 NOT NULL, GRP INT64, NAME STRING(100)) PRIMARY KEY (ID)");
+		}
+		List<Object[]> rows = new ArrayList<>();
+		for (long id = 1L; id <= 40L; id++)
+			rows.add(new Object[] { id, id % 8L, "x" });
+		async.executeBatchAsync("INSERT INTO BAR (ID, GRP, NAME) VALUES (?, ?, ?)", rows).get();
+		List<CompletableFuture<Integer>> updates = new ArrayList<>();
+		List<CompletableFuture<ResultSet>> queries = new ArrayList<>();
+		for (long group = 0L; group < 8L; group++)
+		{
+			updates.add(async.executeUpdateAsync("UPDATE BAR SET NAME='y' WHERE GRP=" + group));
+			queries.add(async.executeQueryAsync("SELECT COUNT(*) FROM BAR WHERE NAME='y'"));
+		}
+		for (CompletableFuture<Integer> update : updates)
+			assertEquals(Integer.valueOf(5), update.get());
+		for (int i = 0; i < queries.size(); i++)
+		{
+			try (ResultSet rs = queries.get(i).get())
+			{
+				assertTrue(rs.next());
+				// Each query sees all updates that were submitted before it
+				assertEquals(5L * (i + 1), rs.getLong(1));
+			}
+		}
+		assertTrue(connection.getAutoCommit());
+		try (ResultSet rs = async.executeQueryAsync("SELECT COUNT(*) FROM BAR WHERE NAME='y'").get())
+		{
+			assertTrue(rs.next());
+			assertEquals(40L, rs.getLong(1));
+		}
+	}
+
+	@Test
+	public void testTransaction() throws InterruptedException, ExecutionException, SQLException
+	{
+		connection.setAutoCommit(false);
+		CompletableFuture<int[]> batch = async.executeBatchAsync("INSERT INTO FOO (ID, NAME) VALUES (?, ?)",
+				Arrays.asList(new Object[] { 1L, "one" }, new Object[] { 2L, "two" }));
+		CompletableFuture<Integer> update = async.executeUpdateAsync("UPDATE FOO SET NAME=? WHERE ID=?", "TWO", 2L);
+		CompletableFuture<Timestamp> commit = async.commitAsync();
+		assertNotNull(commit.get());
+		assertArrayEquals(new int[] { 1, 1 }, batch.get());
+		assertEquals(Integer.valueOf(1), update.get());
+		try (ResultSet rs = async.executeQueryAsync("SELECT NAME FROM FOO ORDER BY ID").get())
+		{
+			assertTrue(rs.next());
+			assertEquals("one", rs.getString(1));
+			assertTrue(rs.next());
+			assertEquals("TWO", rs.getString(1));
+			assertFalse(rs.next());
+		}
+		connection.commit();
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException
+	{
+		try
+		{
+			async.executeQueryAsync("SELECT * FROM BAR").get();
+			fail("Expected an exception");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+	}
+
+	@Test
+	public void testClosedConnection() throws SQLException, InterruptedException
+	{
+		Connection other = DriverManager.getConnection(URL);
+		ICloudSpannerAsyncConnection otherAsync = other.unwrap(ICloudSpannerAsyncConnection.class);
+		assertSame(other, otherAsync);
+		other.close();
+		try
+		{
+			otherAsync.executeUpdateAsync("DELETE FROM FOO WHERE ID=1").get();
+			fail("Expected an exception");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+	}
+
+}
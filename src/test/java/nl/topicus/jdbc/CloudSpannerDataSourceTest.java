@@ -26,6 +26,9 @@ public class CloudSpannerDataSourceTest
 		subject.setOauthAccessToken("TEST");
 		subject.setSimulateProductName("PostgreSQL");
 		subject.setAllowExtendedMode(true);
+		subject.setKeepAliveInterval(2000L);
+		subject.setMaxIdleTime(60000L);
+		subject.setMetaDataCacheTTL(10000L);
 		subject.setLoginTimeout(10);
 		subject.setLogWriter(new PrintWriter(System.out));
 		Connection con = subject.getConnection();
@@ -39,6 +42,9 @@ public class CloudSpannerDataSourceTest
 		Assert.assertEquals("test", connection.getSuppliedProperties().getProperty("Database"));
 		Assert.assertEquals("TEST", connection.getSuppliedProperties().getProperty("OAuthAccessToken"));
 		Assert.assertTrue(connection.isAllowExtendedMode());
+		Assert.assertEquals(2000L, connection.getKeepAlivePolicy().getKeepAliveInterval());
+		Assert.assertEquals(60000L, connection.getKeepAlivePolicy().getMaxIdleTime());
+		Assert.assertEquals(10000L, connection.getMetaDataCacheTTL());
 	}
 
 }
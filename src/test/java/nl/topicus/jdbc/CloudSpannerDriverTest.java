@@ -1,6 +1,7 @@
 package nl.topicus.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -9,12 +10,16 @@ import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.TimestampBound;
+
 import nl.topicus.jdbc.CloudSpannerDriver.ConnectionProperties;
 import nl.topicus.jdbc.test.category.UnitTest;
 
@@ -62,6 +67,138 @@ public class CloudSpannerDriverTest
 			assertNull(properties.oauthToken);
 		}
 
+		@Test
+		public void parseKeepAliveProperties() throws Exception
+		{
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;KeepAliveInterval=2000;MaxIdleTime=60000");
+			assertEquals(2000L, properties.keepAliveInterval);
+			assertEquals(60000L, properties.maxIdleTime);
+			Properties info = new Properties();
+			info.setProperty("KeepAliveInterval", "0");
+			properties.setAdditionalConnectionProperties(info);
+			assertEquals(0L, properties.keepAliveInterval);
+			assertEquals(60000L, properties.maxIdleTime);
+		}
+
+		@Test
+		public void parseSessionPoolProperties() throws Exception
+		{
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;NumChannels=8;MinSessions=10;MaxSessions=200");
+			assertEquals(8, properties.numChannels);
+			assertEquals(10, properties.minSessions);
+			assertEquals(200, properties.maxSessions);
+		}
+
+		@Test
+		public void parseMetaDataProperties() throws Exception
+		{
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;MetaDataCacheTTL=0;PreloadMetaData=true");
+			assertEquals(0L, properties.metaDataCacheTTL);
+			assertTrue(properties.preloadMetaData);
+		}
+
+		@Test
+		public void parseExtendedModeParallelism() throws Exception
+		{
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;ExtendedModeParallelism=16");
+			assertEquals(16, properties.extendedModeParallelism);
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidExtendedModeParallelism() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;ExtendedModeParallelism=0");
+		}
+
+		@Test
+		public void parsePartitionedQueryParallelism() throws Exception
+		{
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;PartitionedQueryParallelism=8");
+			assertEquals(8, properties.partitionedQueryParallelism);
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidPartitionedQueryParallelism() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;PartitionedQueryParallelism=0");
+		}
+
+		@Test
+		public void parsePartitionedQueryMinRowCount() throws Exception
+		{
+			assertEquals(CloudSpannerConnection.DEFAULT_PARTITIONED_QUERY_MIN_ROW_COUNT,
+					ConnectionProperties.parse("jdbc:cloudspanner://localhost").partitionedQueryMinRowCount);
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;PartitionedQueryMinRowCount=0");
+			assertEquals(0, properties.partitionedQueryMinRowCount);
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidPartitionedQueryMinRowCount() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;PartitionedQueryMinRowCount=-1");
+		}
+
+		@Test
+		public void parseAsyncQueryMaxRows() throws Exception
+		{
+			assertEquals(CloudSpannerConnection.DEFAULT_ASYNC_QUERY_MAX_ROWS,
+					ConnectionProperties.parse("jdbc:cloudspanner://localhost").asyncQueryMaxRows);
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;AsyncQueryMaxRows=0");
+			assertEquals(0, properties.asyncQueryMaxRows);
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidAsyncQueryMaxRows() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;AsyncQueryMaxRows=-1");
+		}
+
+		@Test
+		public void parseCoalesceMutations() throws Exception
+		{
+			assertFalse(ConnectionProperties.parse("jdbc:cloudspanner://localhost").coalesceMutations);
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;CoalesceMutations=true");
+			assertTrue(properties.coalesceMutations);
+		}
+
+		@Test
+		public void parseReadTimestampBound() throws Exception
+		{
+			assertEquals(TimestampBound.strong(), ConnectionProperties.parseReadTimestampBound(null));
+			assertEquals(TimestampBound.strong(), ConnectionProperties.parseReadTimestampBound("strong"));
+			assertEquals(TimestampBound.ofExactStaleness(15000L, TimeUnit.MILLISECONDS),
+					ConnectionProperties.parseReadTimestampBound("ExactStaleness:15000"));
+			assertEquals(TimestampBound.ofMaxStaleness(10L, TimeUnit.MILLISECONDS),
+					ConnectionProperties.parseReadTimestampBound("MaxStaleness:10"));
+			assertEquals(TimestampBound.ofReadTimestamp(Timestamp.parseTimestamp("2018-01-02T10:00:00Z")),
+					ConnectionProperties.parseReadTimestampBound("ReadTimestamp:2018-01-02T10:00:00Z"));
+			assertEquals(TimestampBound.ofMinReadTimestamp(Timestamp.parseTimestamp("2018-01-02T10:00:00Z")),
+					ConnectionProperties.parseReadTimestampBound("MinReadTimestamp:2018-01-02T10:00:00Z"));
+			ConnectionProperties properties = ConnectionProperties
+					.parse("jdbc:cloudspanner://localhost;ReadTimestampBound=ExactStaleness:5000");
+			assertEquals("ExactStaleness:5000", properties.readTimestampBound);
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidReadTimestampBound() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;ReadTimestampBound=ReadTimestamp:yesterday");
+		}
+
+		@Test(expected = SQLException.class)
+		public void parseInvalidKeepAliveInterval() throws Exception
+		{
+			ConnectionProperties.parse("jdbc:cloudspanner://localhost;KeepAliveInterval=-1");
+		}
+
 		@Test
 		public void parseURLAndProperties() throws Exception
 		{
@@ -106,11 +243,27 @@ public class CloudSpannerDriverTest
 		{
 			Driver driver = getDriver();
 			DriverPropertyInfo[] properties = driver.getPropertyInfo("jdbc:cloudspanner://localhost", null);
-			assertEquals(7, properties.length);
+			assertEquals(22, properties.length);
 			for (DriverPropertyInfo property : properties)
 			{
-				if (property.name.equals("AllowExtendedMode"))
+				if (property.name.equals("AllowExtendedMode") || property.name.equals("PreloadMetaData")
+						|| property.name.equals("InMemoryDatabase") || property.name.equals("CoalesceMutations"))
 					assertEquals("false", property.value);
+				else if (property.name.equals("MetaDataCacheTTL"))
+					assertEquals("300000", property.value);
+				else if (property.name.equals("PartitionedQueryMinRowCount"))
+					assertEquals("10000", property.value);
+				else if (property.name.equals("AsyncQueryMaxRows"))
+					assertEquals("100000", property.value);
+				else if (property.name.equals("ExtendedModeParallelism")
+						|| property.name.equals("PartitionedQueryParallelism"))
+					assertEquals("1", property.value);
+				else if (property.name.equals("KeepAliveInterval"))
+					assertEquals("5000", property.value);
+				else if (property.name.equals("MaxIdleTime") || property.name.equals("NumChannels")
+						|| property.name.equals("MinSessions") || property.name.equals("MaxSessions")
+						|| property.name.equals("InMemoryLatency"))
+					assertEquals("0", property.value);
 				else
 					assertNull(property.value);
 			}
@@ -123,7 +276,7 @@ public class CloudSpannerDriverTest
 			DriverPropertyInfo[] properties = driver.getPropertyInfo(
 					"jdbc:cloudspanner://localhost;Project=adroit-hall-xxx;Instance=test-instance;Database=testdb;PvtKeyPath=C:\\Users\\MyUserName\\Documents\\CloudSpannerKeys\\cloudspanner3.json;SimulateProductName=PostgreSQL",
 					null);
-			assertEquals(7, properties.length);
+			assertEquals(22, properties.length);
 			assertEquals("adroit-hall-xxx", properties[0].value);
 			assertEquals("test-instance", properties[1].value);
 			assertEquals("testdb", properties[2].value);
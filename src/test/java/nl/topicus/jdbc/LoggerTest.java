@@ -0,0 +1,161 @@
+package nl.topicus.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class LoggerTest
+{
+	private PrintWriter originalWriter;
+
+	private StringWriter output;
+
+	@Before
+	public void setup()
+	{
+		originalWriter = DriverManager.getLogWriter();
+		output = new StringWriter();
+		DriverManager.setLogWriter(new PrintWriter(output));
+	}
+
+	@After
+	public void teardown()
+	{
+		Logger.flush();
+		DriverManager.setLogWriter(originalWriter);
+	}
+
+	@Test
+	public void testLogLevels()
+	{
+		Logger logger = new Logger(42);
+		logger.setLogLevel(CloudSpannerDriver.INFO);
+		assertTrue(logger.logInfo());
+		assertFalse(logger.logDebug());
+		logger.info("info message");
+		logger.debug("debug message");
+		logger.log("error message", new IllegalStateException("test"));
+		Logger.flush();
+		String log = output.toString();
+		assertTrue(log.contains("(42) info message"));
+		assertFalse(log.contains("debug message"));
+		assertTrue(log.contains("(42) error message"));
+		assertTrue(log.contains("IllegalStateException: test"));
+	}
+
+	@Test
+	public void testWriteWakesIdleWriter() throws InterruptedException
+	{
+		Logger logger = new Logger(7);
+		logger.setLogLevel(CloudSpannerDriver.INFO);
+		Logger.flush();
+		// Give the background thread time to park on an empty buffer
+		Thread.sleep(50L);
+		logger.info("wake up");
+		long end = System.currentTimeMillis() + 10000L;
+		while (!output.toString().contains("(7) wake up") && System.currentTimeMillis() < end)
+			Thread.sleep(5L);
+		assertTrue(output.toString().contains("(7) wake up"));
+	}
+
+	@Test
+	public void testSupplierIsOnlyCalledWhenEnabled()
+	{
+		Logger logger = new Logger();
+		logger.setLogLevel(CloudSpannerDriver.OFF);
+		AtomicBoolean called = new AtomicBoolean();
+		logger.debug(() -> {
+			called.set(true);
+			return "debug message";
+		});
+		assertFalse(called.get());
+		logger.setLogLevel(CloudSpannerDriver.DEBUG);
+		logger.debug(() -> {
+			called.set(true);
+			return "debug message";
+		});
+		assertTrue(called.get());
+		Logger.flush();
+		assertTrue(output.toString().contains("(driver) debug message"));
+	}
+
+	@Test
+	public void testJavaUtilLogging() throws SQLException
+	{
+		final List<LogRecord> records = new ArrayList<>();
+		Handler handler = new Handler()
+		{
+			@Override
+			public void publish(LogRecord record)
+			{
+				synchronized (records)
+				{
+					records.add(record);
+				}
+			}
+
+			@Override
+			public void flush()
+			{
+				// nothing to flush
+			}
+
+			@Override
+			public void close()
+			{
+				// nothing to close
+			}
+		};
+		java.util.logging.Logger parent = new CloudSpannerDriver().getParentLogger();
+		assertNotNull(parent);
+		assertEquals(Logger.PARENT_LOGGER_NAME, parent.getName());
+		Level originalLevel = parent.getLevel();
+		parent.addHandler(handler);
+		parent.setLevel(Level.FINE);
+		Logger.setJavaUtilLoggingEnabled(true);
+		try
+		{
+			Logger logger = new Logger(1);
+			logger.setLogLevel(CloudSpannerDriver.OFF);
+			assertTrue(logger.logDebug());
+			logger.debug(() -> "bridged message");
+			Logger.flush();
+			synchronized (records)
+			{
+				assertEquals(1, records.size());
+				assertEquals(Level.FINE, records.get(0).getLevel());
+				assertEquals("(1) bridged message", records.get(0).getMessage());
+			}
+			// The level of the driver is OFF, so nothing is written to the
+			// log writer of the DriverManager
+			assertFalse(output.toString().contains("bridged message"));
+		}
+		finally
+		{
+			Logger.setJavaUtilLoggingEnabled(false);
+			parent.setLevel(originalLevel);
+			parent.removeHandler(handler);
+		}
+	}
+
+}
@@ -2,36 +2,212 @@ package nl.topicus.jdbc;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
 
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.MetaDataStore.IndexMetaData;
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
 import nl.topicus.jdbc.test.category.UnitTest;
 import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
 
 @Category(UnitTest.class)
 public class MetaDataStoreTest
 {
+	private static final String IN_MEMORY_URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=meta-data-store-test;InMemoryDatabase=true";
+
 	@Test
 	public void testGetTable() throws SQLException
 	{
-		MetaDataStore subject = new MetaDataStore(CloudSpannerTestObjects.createConnection());
-		assertNull(subject.getTable(null));
-		TableKeyMetaData fooUpperCase = subject.getTable("FOO");
-		TableKeyMetaData fooLowerCase = subject.getTable("foo");
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		MetaDataStore subject = new MetaDataStore();
+		assertNull(subject.getTable(connection, null, 0L));
+		TableKeyMetaData fooUpperCase = subject.getTable(connection, "FOO", 0L);
+		TableKeyMetaData fooLowerCase = subject.getTable(connection, "foo", 0L);
 		assertNotNull(fooLowerCase);
 		assertNotNull(fooUpperCase);
 		assertEquals(fooLowerCase, fooUpperCase);
 		assertArrayEquals(new String[] { "ID" }, fooUpperCase.getKeyColumns().toArray());
-		assertArrayEquals(new String[] { "ID1", "ID2" }, subject.getTable("BAR").getKeyColumns().toArray());
+		assertArrayEquals(new String[] { "ID1", "ID2" },
+				subject.getTable(connection, "BAR", 0L).getKeyColumns().toArray());
+	}
+
+	@Test
+	public void testColumnsAndIndices() throws SQLException
+	{
+		MetaDataStore subject = new MetaDataStore();
+		TableKeyMetaData foo = subject.getTable(CloudSpannerTestObjects.createConnection(), "FOO", 0L);
+		assertEquals(3, foo.getColumns().size());
+		assertEquals("COL1", foo.getColumns().get(1).getName());
+		assertEquals(Types.NVARCHAR, foo.getColumns().get(1).getDataType());
+		assertEquals(50, foo.getColumns().get(1).getColumnSize());
+		assertEquals(1, foo.getIndexCount());
+	}
+
+	@Test
+	public void testTTL() throws SQLException, InterruptedException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		MetaDataStore subject = new MetaDataStore();
+		TableKeyMetaData foo = subject.getTable(connection, "FOO", 0L);
+		Thread.sleep(5L);
+		assertSame(foo, subject.getTable(connection, "FOO", 0L));
+		assertSame(foo, subject.getTable(connection, "FOO", 60000L));
+		TableKeyMetaData reloaded = subject.getTable(connection, "FOO", 1L);
+		assertNotSame(foo, reloaded);
+		assertEquals(foo, reloaded);
+	}
+
+	@Test
+	public void testPreload() throws SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		CloudSpannerDatabaseMetaData metadata = connection.getMetaData();
+		ResultSet tables = createTableNameResultSet("FOO", "BAR");
+		Mockito.when(metadata.getTables(null, null, null, null)).thenReturn(tables);
+		ResultSet keys = createTableNameResultSet("BAR", "BAR", "FOO");
+		Mockito.when(keys.getString("COLUMN_NAME")).thenReturn("ID1", "ID2", "ID");
+		Mockito.when(metadata.getPrimaryKeys(null, null, null)).thenReturn(keys);
+		ResultSet columns = createTableNameResultSet("FOO", "FOO");
+		Mockito.when(columns.getString("COLUMN_NAME")).thenReturn("ID", "COL1");
+		Mockito.when(metadata.getColumns(null, null, null, null)).thenReturn(columns);
+		ResultSet indices = createTableNameResultSet("FOO", "BAR", "BAR", "BAR", "BAR");
+		Mockito.when(indices.getString("INDEX_NAME")).thenReturn("PRIMARY_KEY", "PRIMARY_KEY", "PRIMARY_KEY",
+				"IDX_BAR_COL1", "IDX_BAR_COL1");
+		Mockito.when(indices.getString("COLUMN_NAME")).thenReturn("COL2", "COL1");
+		Mockito.when(indices.getBoolean("NON_UNIQUE")).thenReturn(true);
+		Mockito.when(indices.wasNull()).thenReturn(true, false);
+		Mockito.when(metadata.getIndexInfo(null, null, null, false, false)).thenReturn(indices);
+
+		MetaDataStore subject = new MetaDataStore();
+		subject.preload(connection, 0L);
+		// A second call should not load the meta data again
+		subject.preload(connection, 0L);
+		Mockito.verify(metadata, Mockito.times(1)).getTables(null, null, null, null);
+		Mockito.verify(metadata, Mockito.never()).getPrimaryKeys(null, null, "FOO");
+
+		TableKeyMetaData foo = subject.getTable(connection, "foo", 0L);
+		assertArrayEquals(new String[] { "ID" }, foo.getKeyColumns().toArray());
+		assertEquals(2, foo.getColumns().size());
+		assertEquals(1, foo.getIndexCount());
+		TableKeyMetaData bar = subject.getTable(connection, "Bar", 0L);
+		assertArrayEquals(new String[] { "ID1", "ID2" }, bar.getKeyColumns().toArray());
+		assertEquals(0, bar.getColumns().size());
+		assertEquals(4, bar.getIndexCount());
+		assertEquals(1, bar.getIndices().size());
+		IndexMetaData index = bar.getIndices().iterator().next();
+		assertEquals("IDX_BAR_COL1", index.getName());
+		assertFalse(index.isUnique());
+		assertArrayEquals(new String[] { "COL1" }, index.getKeyColumns().toArray());
+		assertArrayEquals(new String[] { "COL2" }, index.getStoringColumns().toArray());
+		assertTrue(foo.getIndices().isEmpty());
+		Mockito.verify(metadata, Mockito.never()).getPrimaryKeys(null, null, "FOO");
+		Mockito.verify(metadata, Mockito.never()).getPrimaryKeys(null, null, "Bar");
+	}
+
+	private static ResultSet createTableNameResultSet(String first, String... others) throws SQLException
+	{
+		CloudSpannerResultSet rs = Mockito.mock(CloudSpannerResultSet.class);
+		Boolean[] next = new Boolean[others.length + 1];
+		for (int i = 0; i < others.length; i++)
+			next[i] = Boolean.TRUE;
+		next[others.length] = Boolean.FALSE;
+		Mockito.when(rs.next()).thenReturn(true, next);
+		Mockito.when(rs.getString("TABLE_NAME")).thenReturn(first, others);
+		return rs;
+	}
+
+	@Test
+	public void testStoreIsSharedPerDatabase() throws SQLException
+	{
+		CloudSpannerDriver driver = (CloudSpannerDriver) DriverManager.getDriver("jdbc:cloudspanner://localhost");
+		String name = DatabaseId.of("test-project", "test-instance", "test-db").getName();
+		String other = DatabaseId.of("test-project", "test-instance", "other-db").getName();
+		MetaDataStore store = driver.acquireMetaDataStore(name);
+		assertSame(store, driver.acquireMetaDataStore(name));
+		MetaDataStore otherStore = driver.acquireMetaDataStore(other);
+		assertNotSame(store, otherStore);
+		driver.releaseMetaDataStore(other);
+		driver.releaseMetaDataStore(name);
+		assertSame(store, driver.acquireMetaDataStore(name));
+		driver.releaseMetaDataStore(name);
+		driver.releaseMetaDataStore(name);
+		// The store is removed when it is no longer used
+		MetaDataStore newStore = driver.acquireMetaDataStore(name);
+		assertNotSame(store, newStore);
+		driver.releaseMetaDataStore(name);
+	}
+
+	@Test
+	public void testStoreOfDroppedInMemoryDatabase() throws SQLException
+	{
+		DatabaseId id = DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "meta-data-store-test");
+		try (CloudSpannerConnection first = (CloudSpannerConnection) DriverManager.getConnection(IN_MEMORY_URL);
+				Statement statement = first.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL) PRIMARY KEY (ID)");
+			assertEquals("ID", first.getTable("FOO").getKeyColumns().get(0));
+			// Drop and create the database without the driver
+			InMemoryDatabase.drop(id);
+			InMemoryDatabase.get(id).executeDdl("CREATE TABLE FOO (NAME STRING(100) NOT NULL) PRIMARY KEY (NAME)");
+			try (CloudSpannerConnection second = (CloudSpannerConnection) DriverManager
+					.getConnection(IN_MEMORY_URL))
+			{
+				assertEquals("NAME", second.getTable("FOO").getKeyColumns().get(0));
+			}
+		}
+		finally
+		{
+			InMemoryDatabase.drop(id);
+		}
+	}
+
+	@Test
+	public void testDdlClearsChangedTable() throws SQLException
+	{
+		DatabaseId id = DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "meta-data-store-test");
+		try (CloudSpannerConnection connection = (CloudSpannerConnection) DriverManager.getConnection(IN_MEMORY_URL);
+				Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+			statement.execute("CREATE TABLE BAR (ID INT64 NOT NULL) PRIMARY KEY (ID)");
+			TableKeyMetaData foo = connection.getTable("FOO");
+			TableKeyMetaData bar = connection.getTable("BAR");
+			statement.execute("CREATE INDEX IDX_FOO_NAME ON FOO (NAME)");
+			assertNotSame(foo, connection.getTable("FOO"));
+			assertEquals(foo.getIndexCount() + 1, connection.getTable("FOO").getIndexCount());
+			assertSame(bar, connection.getTable("BAR"));
+			// The table of a DROP INDEX statement is not known
+			foo = connection.getTable("FOO");
+			statement.execute("DROP INDEX IDX_FOO_NAME");
+			assertNotSame(foo, connection.getTable("FOO"));
+			assertNotSame(bar, connection.getTable("BAR"));
+		}
+		finally
+		{
+			InMemoryDatabase.drop(id);
+		}
 	}
 
 	@Test
@@ -40,10 +216,11 @@ public class MetaDataStoreTest
 	{
 		for (int i = 0; i < 2; i++)
 		{
-			MetaDataStore subject = new MetaDataStore(CloudSpannerTestObjects.createConnection());
-			TableKeyMetaData fooUpperCase = subject.getTable("FOO");
-			TableKeyMetaData fooLowerCase = subject.getTable("foo");
-			TableKeyMetaData bar = subject.getTable("Bar");
+			CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+			MetaDataStore subject = new MetaDataStore();
+			TableKeyMetaData fooUpperCase = subject.getTable(connection, "FOO", 0L);
+			TableKeyMetaData fooLowerCase = subject.getTable(connection, "foo", 0L);
+			TableKeyMetaData bar = subject.getTable(connection, "Bar", 0L);
 			assertNotNull(fooLowerCase);
 			assertNotNull(fooUpperCase);
 			assertNotNull(bar);
@@ -7,7 +7,10 @@ import java.sql.SQLException;
 
 import org.mockito.Mockito;
 
+import com.google.cloud.spanner.TimestampBound;
+
 import nl.topicus.jdbc.CloudSpannerDriver.ConnectionProperties;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 
 public class MockCloudSpannerConnection
 {
@@ -18,6 +21,8 @@ public class MockCloudSpannerConnection
 		CloudSpannerConnection connection = mock(CloudSpannerConnection.class);
 		when(connection.getUrl()).thenReturn(url);
 		when(connection.getProductName()).thenReturn(properties.productName);
+		when(connection.getMetrics()).thenReturn(CloudSpannerMetrics.createConnectionMetrics());
+		when(connection.getReadTimestampBound()).thenReturn(TimestampBound.strong());
 		return connection;
 	}
 
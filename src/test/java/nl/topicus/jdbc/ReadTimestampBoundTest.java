@@ -0,0 +1,132 @@
+package nl.topicus.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.TimestampBound;
+
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+/**
+ * Tests reading with a timestamp bound against an in-memory database
+ *
+ * @author loite
+ *
+ */
+@Category(UnitTest.class)
+public class ReadTimestampBoundTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=read-timestamp-bound-test;InMemoryDatabase=true";
+
+	@After
+	public void teardown()
+	{
+		InMemoryDatabase.drop(
+				DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "read-timestamp-bound-test"));
+	}
+
+	private static void createTable(Connection connection) throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME) VALUES (1, 'one')");
+		}
+	}
+
+	private static void assertCount(Connection connection, long expected) throws SQLException
+	{
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM FOO"))
+		{
+			assertTrue(rs.next());
+			assertEquals(expected, rs.getLong(1));
+		}
+	}
+
+	@Test
+	public void testDefaultIsStrong() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL))
+		{
+			ICloudSpannerConnection cs = connection.unwrap(ICloudSpannerConnection.class);
+			assertEquals(TimestampBound.strong(), cs.getReadTimestampBound());
+		}
+	}
+
+	@Test
+	public void testReadTimestampBoundFromURL() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL + ";ReadTimestampBound=ExactStaleness:10"))
+		{
+			ICloudSpannerConnection cs = connection.unwrap(ICloudSpannerConnection.class);
+			assertEquals(TimestampBound.ofExactStaleness(10L, TimeUnit.MILLISECONDS), cs.getReadTimestampBound());
+			createTable(connection);
+			assertCount(connection, 1L);
+		}
+	}
+
+	@Test
+	public void testStaleReadsInAutocommit() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL))
+		{
+			ICloudSpannerConnection cs = connection.unwrap(ICloudSpannerConnection.class);
+			createTable(connection);
+			cs.setReadTimestampBound(TimestampBound.ofMaxStaleness(15L, TimeUnit.SECONDS));
+			assertCount(connection, 1L);
+			cs.setReadTimestampBound(TimestampBound.ofExactStaleness(15L, TimeUnit.SECONDS));
+			assertCount(connection, 1L);
+		}
+	}
+
+	@Test
+	public void testReadOnlyTransactionWithExactStaleness() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL))
+		{
+			ICloudSpannerConnection cs = connection.unwrap(ICloudSpannerConnection.class);
+			createTable(connection);
+			cs.setReadTimestampBound(TimestampBound.ofExactStaleness(15L, TimeUnit.SECONDS));
+			connection.setAutoCommit(false);
+			connection.setReadOnly(true);
+			assertCount(connection, 1L);
+			connection.commit();
+		}
+	}
+
+	@Test
+	public void testReadOnlyTransactionWithMaxStaleness() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL))
+		{
+			ICloudSpannerConnection cs = connection.unwrap(ICloudSpannerConnection.class);
+			createTable(connection);
+			cs.setReadTimestampBound(TimestampBound.ofMaxStaleness(15L, TimeUnit.SECONDS));
+			connection.setAutoCommit(false);
+			connection.setReadOnly(true);
+			assertCount(connection, 1L);
+			fail("Expected an exception for a read-only transaction with a max staleness");
+		}
+		catch (SQLException e)
+		{
+			assertTrue(e.getMessage().contains("Read-only transactions cannot use the timestamp bound"));
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package nl.topicus.jdbc;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class SpannerPoolTest
+{
+
+	private static CloudSpannerConnection createConnection(String database, int numChannels) throws SQLException
+	{
+		Properties properties = new Properties();
+		properties.setProperty("Project", "test-project-id");
+		properties.setProperty("Instance", "test-instance-id");
+		properties.setProperty("Database", database);
+		properties.setProperty("NumChannels", String.valueOf(numChannels));
+		return (CloudSpannerConnection) DriverManager.getConnection("jdbc:cloudspanner://localhost", properties);
+	}
+
+	@Test
+	public void testConnectionsShareSpanner() throws SQLException
+	{
+		CloudSpannerConnection connection1 = createConnection("test-database-1", 2);
+		CloudSpannerConnection connection2 = createConnection("test-database-2", 2);
+		CloudSpannerConnection connection3 = createConnection("test-database-1", 3);
+		SpannerPool pool = ((CloudSpannerDriver) DriverManager.getDriver("jdbc:cloudspanner://localhost"))
+				.getSpannerPool();
+
+		Assert.assertSame(connection1.getSpanner(), connection2.getSpanner());
+		Assert.assertNotSame(connection1.getSpanner(), connection3.getSpanner());
+		Assert.assertEquals(2, pool.getReferenceCount(connection1.getSpannerKey()));
+		Assert.assertEquals(1, pool.getReferenceCount(connection3.getSpannerKey()));
+
+		connection1.close();
+		Assert.assertEquals(1, pool.getReferenceCount(connection2.getSpannerKey()));
+		// Closing a connection twice should not release the Spanner instance
+		// twice
+		connection1.close();
+		Assert.assertEquals(1, pool.getReferenceCount(connection2.getSpannerKey()));
+		connection2.close();
+		Assert.assertEquals(0, pool.getReferenceCount(connection2.getSpannerKey()));
+		connection3.close();
+		Assert.assertEquals(0, pool.getReferenceCount(connection3.getSpannerKey()));
+	}
+
+}
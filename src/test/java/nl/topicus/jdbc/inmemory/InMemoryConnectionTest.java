@@ -0,0 +1,129 @@
+package nl.topicus.jdbc.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class InMemoryConnectionTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=in-memory-connection-test;InMemoryDatabase=true";
+
+	private Connection connection;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		connection = DriverManager.getConnection(URL);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+		}
+	}
+
+	@After
+	public void teardown() throws SQLException
+	{
+		connection.close();
+		InMemoryDatabase
+				.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "in-memory-connection-test"));
+	}
+
+	private int count(String sql) throws SQLException
+	{
+		try (ResultSet rs = connection.createStatement().executeQuery(sql))
+		{
+			assertTrue(rs.next());
+			return rs.getInt(1);
+		}
+	}
+
+	@Test
+	public void testStatements() throws SQLException
+	{
+		try (PreparedStatement ps = connection.prepareStatement("INSERT INTO FOO (ID, NAME) VALUES (?, ?)"))
+		{
+			for (long id = 1L; id <= 3L; id++)
+			{
+				ps.setLong(1, id);
+				ps.setString(2, "name " + id);
+				assertEquals(1, ps.executeUpdate());
+			}
+		}
+		assertEquals(3, count("SELECT COUNT(*) FROM FOO"));
+		try (Statement statement = connection.createStatement())
+		{
+			assertEquals(1, statement.executeUpdate("UPDATE FOO SET NAME='two' WHERE ID=2"));
+			assertEquals(1, statement.executeUpdate("DELETE FROM FOO WHERE ID=3"));
+		}
+		try (ResultSet rs = connection.createStatement().executeQuery("SELECT ID, NAME FROM FOO ORDER BY ID"))
+		{
+			assertTrue(rs.next());
+			assertEquals("name 1", rs.getString("NAME"));
+			assertTrue(rs.next());
+			assertEquals("two", rs.getString("NAME"));
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test
+	public void testTransaction() throws SQLException
+	{
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME) VALUES (1, 'one')");
+			connection.rollback();
+			assertEquals(0, count("SELECT COUNT(*) FROM FOO"));
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME) VALUES (1, 'one')");
+			connection.commit();
+		}
+		assertEquals(1, count("SELECT COUNT(*) FROM FOO"));
+	}
+
+	@Test
+	public void testMetaData() throws SQLException
+	{
+		try (ResultSet rs = connection.getMetaData().getTables(null, null, "F%", null))
+		{
+			assertTrue(rs.next());
+			assertEquals("FOO", rs.getString("TABLE_NAME"));
+			assertFalse(rs.next());
+		}
+		try (ResultSet rs = connection.getMetaData().getColumns(null, null, "FOO", null))
+		{
+			assertTrue(rs.next());
+			assertEquals("ID", rs.getString("COLUMN_NAME"));
+			assertEquals(Types.BIGINT, rs.getInt("DATA_TYPE"));
+			assertEquals("NO", rs.getString("IS_NULLABLE"));
+			assertTrue(rs.next());
+			assertEquals("NAME", rs.getString("COLUMN_NAME"));
+			assertEquals(100, rs.getInt("COLUMN_SIZE"));
+			assertFalse(rs.next());
+		}
+		try (ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, "FOO"))
+		{
+			assertTrue(rs.next());
+			assertEquals("ID", rs.getString("COLUMN_NAME"));
+			assertFalse(rs.next());
+		}
+	}
+
+}
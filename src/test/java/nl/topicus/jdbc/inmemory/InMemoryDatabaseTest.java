@@ -0,0 +1,212 @@
+package nl.topicus.jdbc.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeyRange;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class InMemoryDatabaseTest
+{
+	private static final DatabaseId ID = DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance",
+			"in-memory-database-test");
+
+	private InMemoryDatabase database;
+
+	private DatabaseClient client;
+
+	@Before
+	public void setup()
+	{
+		InMemorySpanner spanner = new InMemorySpanner(null, 0L);
+		database = spanner.getDatabase(ID);
+		database.executeDdl(
+				"CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100), AMOUNT FLOAT64) PRIMARY KEY (ID)");
+		client = spanner.getDatabaseClient(ID);
+		client.write(Arrays.asList(
+				Mutation.newInsertBuilder("FOO").set("ID").to(1L).set("NAME").to("one").set("AMOUNT").to(1.5d)
+						.build(),
+				Mutation.newInsertBuilder("FOO").set("ID").to(2L).set("NAME").to("two").build(),
+				Mutation.newInsertBuilder("FOO").set("ID").to(3L).set("NAME").to("three").set("AMOUNT").to(3d)
+						.build()));
+	}
+
+	@After
+	public void teardown()
+	{
+		InMemoryDatabase.drop(ID);
+	}
+
+	@Test
+	public void testDrop()
+	{
+		assertSame(database, InMemoryDatabase.get(ID));
+		InMemoryDatabase.drop(ID);
+		InMemoryDatabase dropped = database;
+		database = InMemoryDatabase.get(ID);
+		assertNotSame(dropped, database);
+		assertTrue(database.getTables().isEmpty());
+		database.executeDdl("CREATE TABLE BAR (ID INT64 NOT NULL) PRIMARY KEY (ID)");
+		InMemoryDatabase.dropAll();
+		assertTrue(InMemoryDatabase.get(ID).getTables().isEmpty());
+	}
+
+	@Test
+	public void testDdl()
+	{
+		database.executeDdl("CREATE TABLE BAR (ID INT64 NOT NULL, FOO_ID INT64 NOT NULL, DESCRIPTION STRING(MAX)) "
+				+ "PRIMARY KEY (ID, FOO_ID DESC), INTERLEAVE IN PARENT FOO ON DELETE CASCADE");
+		database.executeDdl("CREATE UNIQUE INDEX IDX_BAR_DESCRIPTION ON BAR (DESCRIPTION) STORING (FOO_ID)");
+		InMemoryTable bar = database.getTable("bar");
+		assertEquals("FOO", bar.getParentTable());
+		assertEquals(2, bar.getKeyColumns().size());
+		assertTrue(bar.isDescending(1));
+		assertEquals(1, database.getIndices().size());
+		try
+		{
+			database.executeDdl("DROP TABLE BAR");
+			fail("Expected an exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.FAILED_PRECONDITION, e.getErrorCode());
+		}
+		database.executeDdl("DROP INDEX IDX_BAR_DESCRIPTION");
+		database.executeDdl("DROP TABLE BAR");
+		assertEquals(1, database.getTables().size());
+	}
+
+	@Test
+	public void testRead()
+	{
+		Struct row = client.singleUse().readRow("FOO", Key.of(2L), Arrays.asList("ID", "NAME", "AMOUNT"));
+		assertEquals("two", row.getString("NAME"));
+		assertTrue(row.isNull("AMOUNT"));
+		assertNull(client.singleUse().readRow("FOO", Key.of(4L), Arrays.asList("ID")));
+
+		KeySet keys = KeySet.newBuilder().addKey(Key.of(3L)).addRange(KeyRange.closedOpen(Key.of(1L), Key.of(2L)))
+				.build();
+		try (ResultSet rs = client.singleUse().read("FOO", keys, Arrays.asList("ID")))
+		{
+			assertTrue(rs.next());
+			assertEquals(1L, rs.getLong(0));
+			assertTrue(rs.next());
+			assertEquals(3L, rs.getLong(0));
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test
+	public void testReadUsingIndex()
+	{
+		database.executeDdl("CREATE INDEX IDX_FOO_NAME ON FOO (NAME DESC) STORING (AMOUNT)");
+		client.write(Arrays.asList(Mutation.newInsertBuilder("FOO").set("ID").to(4L).set("NAME").to("two").build()));
+		Struct row = client.singleUse().readRowUsingIndex("FOO", "IDX_FOO_NAME", Key.of("one"),
+				Arrays.asList("ID", "AMOUNT"));
+		assertEquals(1L, row.getLong("ID"));
+		assertEquals(1.5d, row.getDouble("AMOUNT"), 0d);
+		try (ResultSet rs = client.singleUse().readUsingIndex("FOO", "IDX_FOO_NAME",
+				KeySet.range(KeyRange.prefix(Key.of("two"))), Arrays.asList("ID", "NAME")))
+		{
+			assertTrue(rs.next());
+			assertEquals(2L, rs.getLong(0));
+			assertTrue(rs.next());
+			assertEquals(4L, rs.getLong(0));
+			assertFalse(rs.next());
+		}
+		try (ResultSet rs = client.singleUse().readUsingIndex("FOO", "IDX_FOO_NAME", KeySet.all(),
+				Arrays.asList("NAME")))
+		{
+			// The index is in descending order
+			assertTrue(rs.next());
+			assertEquals("two", rs.getString(0));
+		}
+		try
+		{
+			client.singleUse().readUsingIndex("FOO", "IDX_FOO_NAME", KeySet.all(), Arrays.asList("ID", "OTHER"));
+			fail("Expected an exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.INVALID_ARGUMENT, e.getErrorCode());
+		}
+	}
+
+	@Test
+	public void testQuery()
+	{
+		Statement statement = Statement
+				.newBuilder("SELECT NAME, AMOUNT FROM FOO WHERE ID>=@id AND NAME LIKE '%o' ORDER BY ID DESC LIMIT @limit")
+				.bind("id").to(1L).bind("limit").to(1L).build();
+		try (ResultSet rs = client.singleUse().executeQuery(statement))
+		{
+			assertTrue(rs.next());
+			assertEquals("two", rs.getString("NAME"));
+			assertFalse(rs.next());
+		}
+		try (ResultSet rs = client.singleUse()
+				.executeQuery(Statement.of("SELECT COUNT(*) AS C, SUM(AMOUNT) FROM FOO WHERE AMOUNT IS NOT NULL")))
+		{
+			assertTrue(rs.next());
+			assertEquals(2L, rs.getLong("C"));
+			assertEquals(4.5d, rs.getDouble(1), 0d);
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test
+	public void testFailedCommitIsRolledBack()
+	{
+		try
+		{
+			client.write(Arrays.asList(Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("NAME").to("ONE").build(),
+					Mutation.newInsertBuilder("FOO").set("ID").to(2L).build()));
+			fail("Expected an exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.ALREADY_EXISTS, e.getErrorCode());
+		}
+		assertEquals("one", client.singleUse().readRow("FOO", Key.of(1L), Arrays.asList("NAME")).getString(0));
+		assertEquals(3, database.getTable("FOO").getRowCount());
+	}
+
+	@Test
+	public void testTransaction()
+	{
+		client.readWriteTransaction().run(transaction -> {
+			Struct row = transaction.readRow("FOO", Key.of(1L), Arrays.asList("AMOUNT"));
+			transaction.buffer(Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("AMOUNT")
+					.to(row.getDouble(0) * 2).build());
+			transaction.buffer(Mutation.delete("FOO", Key.of(3L)));
+			return null;
+		});
+		assertEquals(3d, client.singleUse().readRow("FOO", Key.of(1L), Arrays.asList("AMOUNT")).getDouble(0), 0d);
+		assertEquals(2, database.getTable("FOO").getRowCount());
+	}
+
+}
@@ -0,0 +1,94 @@
+package nl.topicus.jdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class CloudSpannerMetricsTest
+{
+
+	@Test
+	public void testConnectionMetrics() throws SQLException
+	{
+		String url = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=metrics-test;InMemoryDatabase=true";
+		try (CloudSpannerConnection connection = (CloudSpannerConnection) DriverManager.getConnection(url))
+		{
+			try (Statement statement = connection.createStatement())
+			{
+				statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+			}
+			try (PreparedStatement ps = connection.prepareStatement("INSERT INTO FOO (ID, NAME) VALUES (?, ?)"))
+			{
+				for (long id = 1L; id <= 3L; id++)
+				{
+					ps.setLong(1, id);
+					ps.setString(2, "name " + id);
+					ps.executeUpdate();
+				}
+			}
+			try (ResultSet rs = connection.createStatement().executeQuery("SELECT * FROM FOO"))
+			{
+				while (rs.next())
+				{
+					// Read all rows
+				}
+			}
+			MetricsRegistry registry = connection.getMetrics().getRegistry();
+			assertEquals(3L, registry.counter(CloudSpannerMetrics.MUTATIONS_BUFFERED).getCount());
+			assertEquals(3L, registry.counter(CloudSpannerMetrics.ROWS_RETURNED).getCount());
+			assertEquals(3L, registry.histogram(CloudSpannerMetrics.COMMIT_TIME).getSnapshot().getCount());
+			assertEquals(3L, registry.histogram(CloudSpannerMetrics.BIND_TIME).getSnapshot().getCount());
+			assertEquals(1L, registry.histogram(CloudSpannerMetrics.QUERY_TIME).getSnapshot().getCount());
+			assertTrue(registry.histogram(CloudSpannerMetrics.PARSE_TIME).getSnapshot().getCount() >= 1L);
+			assertTrue(CloudSpannerMetrics.getDriverRegistry().counter(CloudSpannerMetrics.ROWS_RETURNED)
+					.getCount() >= 3L);
+		}
+		finally
+		{
+			InMemoryDatabase.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "metrics-test"));
+		}
+	}
+
+	@Test
+	public void testRegisterMBean() throws JMException
+	{
+		DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+		registry.counter("test.counter").add(5L);
+		registry.histogram("test.histogram").record(100L);
+		ObjectName name = registry.registerMBean("CloudSpannerMetricsTest");
+		try
+		{
+			MetricsRegistryMXBean proxy = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), name,
+					MetricsRegistryMXBean.class);
+			assertEquals(Long.valueOf(5L), proxy.getCounters().get("test.counter"));
+			assertEquals(1L, proxy.getHistograms().get("test.histogram").getCount());
+			assertEquals(100L, proxy.getHistograms().get("test.histogram").getMax());
+		}
+		finally
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package nl.topicus.jdbc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class LogLinearHistogramTest
+{
+
+	@Test
+	public void testBuckets()
+	{
+		long[] values = { 0L, 1L, 31L, 32L, 63L, 64L, 65L, 1000L, 123456789L, Long.MAX_VALUE };
+		for (long value : values)
+		{
+			int index = LogLinearHistogram.bucketIndex(value);
+			assertTrue(LogLinearHistogram.bucketLowerBound(index) <= value);
+			assertTrue(LogLinearHistogram.bucketUpperBound(index) >= value);
+		}
+		// The buckets must be contiguous
+		for (int index = 0; index < LogLinearHistogram.bucketIndex(Long.MAX_VALUE); index++)
+			assertEquals(LogLinearHistogram.bucketUpperBound(index) + 1L,
+					LogLinearHistogram.bucketLowerBound(index + 1));
+	}
+
+	@Test
+	public void testSnapshot()
+	{
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		assertEquals(0L, histogram.getSnapshot().getCount());
+		for (long value = 1L; value <= 1000L; value++)
+			histogram.record(value * 1000L);
+		HistogramSnapshot snapshot = histogram.getSnapshot();
+		assertEquals(1000L, snapshot.getCount());
+		assertEquals(1000L, snapshot.getMin());
+		assertEquals(1000000L, snapshot.getMax());
+		assertEquals(500500d, snapshot.getMean(), 0d);
+		assertEquals(500000d, snapshot.getP50(), 500000d * 0.04d);
+		assertEquals(990000d, snapshot.getP99(), 990000d * 0.04d);
+		assertTrue(snapshot.getP999() <= snapshot.getMax());
+	}
+
+}
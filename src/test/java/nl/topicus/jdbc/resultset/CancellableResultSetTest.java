@@ -0,0 +1,102 @@
+package nl.topicus.jdbc.resultset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class CancellableResultSetTest
+{
+
+	@Test
+	public void testFinishedWhenExhausted()
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenReturn(true, false);
+		AtomicInteger finished = new AtomicInteger();
+		CancellableResultSet rs = new CancellableResultSet(delegate, finished::incrementAndGet);
+		assertTrue(rs.next());
+		assertEquals(0, finished.get());
+		assertFalse(rs.next());
+		assertEquals(1, finished.get());
+		rs.close();
+		rs.close();
+		assertEquals(1, finished.get());
+		verify(delegate, times(1)).close();
+	}
+
+	@Test
+	public void testCancelWhileWaitingForNext() throws InterruptedException
+	{
+		// The delegate blocks in next() until it is closed, like a stream from
+		// Cloud Spanner that is cancelled
+		CountDownLatch closed = new CountDownLatch(1);
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenAnswer(invocation -> {
+			closed.await();
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.CANCELLED, "stream closed");
+		});
+		doAnswer(invocation -> {
+			closed.countDown();
+			return null;
+		}).when(delegate).close();
+		AtomicInteger finished = new AtomicInteger();
+		CancellableResultSet rs = new CancellableResultSet(delegate, finished::incrementAndGet);
+		SpannerException reason = SpannerExceptionFactory.newSpannerException(ErrorCode.DEADLINE_EXCEEDED,
+				"timeout");
+		Thread canceller = new Thread(() -> {
+			try
+			{
+				Thread.sleep(50L);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			rs.cancel(reason);
+		});
+		canceller.start();
+		try
+		{
+			rs.next();
+			fail("Expected an exception");
+		}
+		catch (SpannerException e)
+		{
+			assertSame(reason, e);
+		}
+		canceller.join();
+		assertTrue(rs.isCancelled());
+		assertEquals(1, finished.get());
+		try
+		{
+			rs.next();
+			fail("Expected an exception");
+		}
+		catch (SpannerException e)
+		{
+			assertSame(reason, e);
+		}
+	}
+
+}
@@ -8,9 +8,12 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.sql.Time;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.TimeZone;
 
@@ -96,84 +99,52 @@ public class CloudSpannerResultSetTest
 
 	private CloudSpannerResultSet subject;
 
+	/**
+	 * Creates a mock result set with the values of the columns by index, and
+	 * the names of the columns in its type.
+	 */
 	static ResultSet getMockResultSet()
 	{
 		ResultSet res = mock(ResultSet.class);
-		when(res.getString(STRING_COL_NULL)).thenReturn(null);
-		when(res.isNull(STRING_COL_NULL)).thenReturn(true);
-		when(res.getString(STRING_COL_NOT_NULL)).thenReturn("FOO");
-		when(res.isNull(STRING_COL_NOT_NULL)).thenReturn(false);
 		when(res.getString(STRING_COLINDEX_NULL - 1)).thenReturn(null);
 		when(res.isNull(STRING_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getString(STRING_COLINDEX_NOTNULL - 1)).thenReturn("BAR");
 		when(res.isNull(STRING_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(STRING_COL_NULL)).thenReturn(Type.string());
-		when(res.getColumnType(STRING_COL_NOT_NULL)).thenReturn(Type.string());
 		when(res.getColumnType(STRING_COLINDEX_NULL - 1)).thenReturn(Type.string());
 		when(res.getColumnType(STRING_COLINDEX_NOTNULL - 1)).thenReturn(Type.string());
 
-		when(res.getBoolean(BOOLEAN_COL_NULL)).thenReturn(false);
-		when(res.isNull(BOOLEAN_COL_NULL)).thenReturn(true);
-		when(res.getBoolean(BOOLEAN_COL_NOT_NULL)).thenReturn(true);
-		when(res.isNull(BOOLEAN_COL_NOT_NULL)).thenReturn(false);
 		when(res.getBoolean(BOOLEAN_COLINDEX_NULL - 1)).thenReturn(false);
 		when(res.isNull(BOOLEAN_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getBoolean(BOOLEAN_COLINDEX_NOTNULL - 1)).thenReturn(false);
 		when(res.isNull(BOOLEAN_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(BOOLEAN_COL_NULL)).thenReturn(Type.bool());
-		when(res.getColumnType(BOOLEAN_COL_NOT_NULL)).thenReturn(Type.bool());
 		when(res.getColumnType(BOOLEAN_COLINDEX_NULL - 1)).thenReturn(Type.bool());
 		when(res.getColumnType(BOOLEAN_COLINDEX_NOTNULL - 1)).thenReturn(Type.bool());
 
-		when(res.getDouble(DOUBLE_COL_NULL)).thenReturn(0d);
-		when(res.isNull(DOUBLE_COL_NULL)).thenReturn(true);
-		when(res.getDouble(DOUBLE_COL_NOT_NULL)).thenReturn(1.123456789d);
-		when(res.isNull(DOUBLE_COL_NOT_NULL)).thenReturn(false);
 		when(res.getDouble(DOUBLE_COLINDEX_NULL - 1)).thenReturn(0d);
 		when(res.isNull(DOUBLE_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getDouble(DOUBLE_COLINDEX_NOTNULL - 1)).thenReturn(2.123456789d);
 		when(res.isNull(DOUBLE_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(DOUBLE_COL_NULL)).thenReturn(Type.float64());
-		when(res.getColumnType(DOUBLE_COL_NOT_NULL)).thenReturn(Type.float64());
 		when(res.getColumnType(DOUBLE_COLINDEX_NULL - 1)).thenReturn(Type.float64());
 		when(res.getColumnType(DOUBLE_COLINDEX_NOTNULL - 1)).thenReturn(Type.float64());
 
-		when(res.getString(BYTES_COL_NULL)).thenReturn(null);
-		when(res.isNull(BYTES_COL_NULL)).thenReturn(true);
-		when(res.getBytes(BYTES_COL_NOT_NULL)).thenReturn(ByteArray.copyFrom("FOO"));
-		when(res.isNull(BYTES_COL_NOT_NULL)).thenReturn(false);
 		when(res.getBytes(BYTES_COLINDEX_NULL - 1)).thenReturn(null);
 		when(res.isNull(BYTES_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getBytes(BYTES_COLINDEX_NOTNULL - 1)).thenReturn(ByteArray.copyFrom("BAR"));
 		when(res.isNull(BYTES_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(BYTES_COL_NULL)).thenReturn(Type.bytes());
-		when(res.getColumnType(BYTES_COL_NOT_NULL)).thenReturn(Type.bytes());
 		when(res.getColumnType(BYTES_COLINDEX_NULL - 1)).thenReturn(Type.bytes());
 		when(res.getColumnType(BYTES_COLINDEX_NOTNULL - 1)).thenReturn(Type.bytes());
 
-		when(res.getLong(LONG_COL_NULL)).thenReturn(0l);
-		when(res.isNull(LONG_COL_NULL)).thenReturn(true);
-		when(res.getLong(LONG_COL_NOT_NULL)).thenReturn(1l);
-		when(res.isNull(LONG_COL_NOT_NULL)).thenReturn(false);
 		when(res.getLong(LONG_COLINDEX_NULL - 1)).thenReturn(0l);
 		when(res.isNull(LONG_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getLong(LONG_COLINDEX_NOTNULL - 1)).thenReturn(2l);
 		when(res.isNull(LONG_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(LONG_COL_NULL)).thenReturn(Type.int64());
-		when(res.getColumnType(LONG_COL_NOT_NULL)).thenReturn(Type.int64());
 		when(res.getColumnType(LONG_COLINDEX_NULL - 1)).thenReturn(Type.int64());
 		when(res.getColumnType(LONG_COLINDEX_NOTNULL - 1)).thenReturn(Type.int64());
 
-		when(res.getDate(DATE_COL_NULL)).thenReturn(null);
-		when(res.isNull(DATE_COL_NULL)).thenReturn(true);
-		when(res.getDate(DATE_COL_NOT_NULL)).thenReturn(Date.fromYearMonthDay(2017, 9, 10));
-		when(res.isNull(DATE_COL_NOT_NULL)).thenReturn(false);
 		when(res.getDate(DATE_COLINDEX_NULL - 1)).thenReturn(null);
 		when(res.isNull(DATE_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getDate(DATE_COLINDEX_NOTNULL - 1)).thenReturn(Date.fromYearMonthDay(2017, 9, 11));
 		when(res.isNull(DATE_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(DATE_COL_NULL)).thenReturn(Type.date());
-		when(res.getColumnType(DATE_COL_NOT_NULL)).thenReturn(Type.date());
 		when(res.getColumnType(DATE_COLINDEX_NULL - 1)).thenReturn(Type.date());
 		when(res.getColumnType(DATE_COLINDEX_NOTNULL - 1)).thenReturn(Type.date());
 
@@ -183,16 +154,10 @@ public class CloudSpannerResultSetTest
 		Calendar cal2 = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 		cal2.clear();
 		cal2.set(2017, 8, 11, 8, 15, 59);
-		when(res.getTimestamp(TIMESTAMP_COL_NULL)).thenReturn(null);
-		when(res.isNull(TIMESTAMP_COL_NULL)).thenReturn(true);
-		when(res.getTimestamp(TIMESTAMP_COL_NOT_NULL)).thenReturn(Timestamp.of(cal1.getTime()));
-		when(res.isNull(TIMESTAMP_COL_NOT_NULL)).thenReturn(false);
 		when(res.getTimestamp(TIMESTAMP_COLINDEX_NULL - 1)).thenReturn(null);
 		when(res.isNull(TIMESTAMP_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getTimestamp(TIMESTAMP_COLINDEX_NOTNULL - 1)).thenReturn(Timestamp.of(cal2.getTime()));
 		when(res.isNull(TIMESTAMP_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(TIMESTAMP_COL_NULL)).thenReturn(Type.timestamp());
-		when(res.getColumnType(TIMESTAMP_COL_NOT_NULL)).thenReturn(Type.timestamp());
 		when(res.getColumnType(TIMESTAMP_COLINDEX_NULL - 1)).thenReturn(Type.timestamp());
 		when(res.getColumnType(TIMESTAMP_COLINDEX_NOTNULL - 1)).thenReturn(Type.timestamp());
 
@@ -202,20 +167,13 @@ public class CloudSpannerResultSetTest
 		Calendar cal4 = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 		cal4.clear();
 		cal4.set(1970, 0, 1, 14, 6, 15);
-		when(res.getTimestamp(TIME_COL_NULL)).thenReturn(null);
-		when(res.isNull(TIME_COL_NULL)).thenReturn(true);
-		when(res.getTimestamp(TIME_COL_NOT_NULL)).thenReturn(Timestamp.of(cal3.getTime()));
-		when(res.isNull(TIME_COL_NOT_NULL)).thenReturn(false);
 		when(res.getTimestamp(TIME_COLINDEX_NULL - 1)).thenReturn(null);
 		when(res.isNull(TIME_COLINDEX_NULL - 1)).thenReturn(true);
 		when(res.getTimestamp(TIME_COLINDEX_NOTNULL - 1)).thenReturn(Timestamp.of(cal4.getTime()));
 		when(res.isNull(TIME_COLINDEX_NOTNULL - 1)).thenReturn(false);
-		when(res.getColumnType(TIME_COL_NULL)).thenReturn(Type.timestamp());
-		when(res.getColumnType(TIME_COL_NOT_NULL)).thenReturn(Type.timestamp());
 		when(res.getColumnType(TIME_COLINDEX_NULL - 1)).thenReturn(Type.timestamp());
 		when(res.getColumnType(TIME_COLINDEX_NOTNULL - 1)).thenReturn(Type.timestamp());
 
-		when(res.getColumnIndex(STRING_COL_NOT_NULL)).thenReturn(1);
 
 		when(res.getType()).thenReturn(Type.struct(StructField.of(STRING_COL_NULL, Type.string()),
 				StructField.of(STRING_COL_NOT_NULL, Type.string()), StructField.of(BOOLEAN_COL_NULL, Type.bool()),
@@ -400,7 +358,7 @@ public class CloudSpannerResultSetTest
 	public void testGetStringLabel() throws SQLException
 	{
 		assertNotNull(subject.getString(STRING_COL_NOT_NULL));
-		assertEquals("FOO", subject.getString(STRING_COL_NOT_NULL));
+		assertEquals("BAR", subject.getString(STRING_COL_NOT_NULL));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getString(STRING_COL_NULL));
 		assertTrue(subject.wasNull());
@@ -419,7 +377,7 @@ public class CloudSpannerResultSetTest
 	public void testGetLongLabel() throws SQLException
 	{
 		assertNotNull(subject.getLong(LONG_COL_NOT_NULL));
-		assertEquals(1l, subject.getLong(LONG_COL_NOT_NULL));
+		assertEquals(2l, subject.getLong(LONG_COL_NOT_NULL));
 		assertEquals(false, subject.wasNull());
 		assertEquals(0l, subject.getLong(LONG_COL_NULL));
 		assertTrue(subject.wasNull());
@@ -429,7 +387,7 @@ public class CloudSpannerResultSetTest
 	public void testGetDoubleLabel() throws SQLException
 	{
 		assertNotNull(subject.getDouble(DOUBLE_COL_NOT_NULL));
-		assertEquals(1.123456789d, subject.getDouble(DOUBLE_COL_NOT_NULL), 0d);
+		assertEquals(2.123456789d, subject.getDouble(DOUBLE_COL_NOT_NULL), 0d);
 		assertEquals(false, subject.wasNull());
 		assertEquals(0d, subject.getDouble(DOUBLE_COL_NULL), 0d);
 		assertTrue(subject.wasNull());
@@ -439,7 +397,7 @@ public class CloudSpannerResultSetTest
 	public void testGetBigDecimalLabelAndScale() throws SQLException
 	{
 		assertNotNull(subject.getBigDecimal(DOUBLE_COL_NOT_NULL, 2));
-		assertEquals(BigDecimal.valueOf(1.12d), subject.getBigDecimal(DOUBLE_COL_NOT_NULL, 2));
+		assertEquals(BigDecimal.valueOf(2.12d), subject.getBigDecimal(DOUBLE_COL_NOT_NULL, 2));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getBigDecimal(DOUBLE_COL_NULL, 2));
 		assertTrue(subject.wasNull());
@@ -449,7 +407,7 @@ public class CloudSpannerResultSetTest
 	public void testGetBytesLabel() throws SQLException
 	{
 		assertNotNull(subject.getBytes(BYTES_COL_NOT_NULL));
-		assertArrayEquals(ByteArray.copyFrom("FOO").toByteArray(), subject.getBytes(BYTES_COL_NOT_NULL));
+		assertArrayEquals(ByteArray.copyFrom("BAR").toByteArray(), subject.getBytes(BYTES_COL_NOT_NULL));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getBytes(BYTES_COL_NULL));
 		assertTrue(subject.wasNull());
@@ -460,7 +418,7 @@ public class CloudSpannerResultSetTest
 	public void testGetDateLabel() throws SQLException
 	{
 		assertNotNull(subject.getDate(DATE_COL_NOT_NULL));
-		assertEquals(new java.sql.Date(2017 - 1900, 8, 10), subject.getDate(DATE_COL_NOT_NULL));
+		assertEquals(new java.sql.Date(2017 - 1900, 8, 11), subject.getDate(DATE_COL_NOT_NULL));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getDate(DATE_COL_NULL));
 		assertTrue(subject.wasNull());
@@ -485,7 +443,7 @@ public class CloudSpannerResultSetTest
 	{
 		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 		cal.clear();
-		cal.set(2017, 8, 10, 8, 15, 59);
+		cal.set(2017, 8, 11, 8, 15, 59);
 
 		assertNotNull(subject.getTime(TIMESTAMP_COL_NOT_NULL));
 		assertEquals(new java.sql.Timestamp(cal.getTimeInMillis()), subject.getTimestamp(TIMESTAMP_COL_NOT_NULL));
@@ -521,7 +479,7 @@ public class CloudSpannerResultSetTest
 	public void testGetBigDecimalLabel() throws SQLException
 	{
 		assertNotNull(subject.getBigDecimal(DOUBLE_COL_NOT_NULL));
-		assertEquals(BigDecimal.valueOf(1.123456789d), subject.getBigDecimal(DOUBLE_COL_NOT_NULL));
+		assertEquals(BigDecimal.valueOf(2.123456789d), subject.getBigDecimal(DOUBLE_COL_NOT_NULL));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getBigDecimal(DOUBLE_COL_NULL));
 		assertTrue(subject.wasNull());
@@ -557,14 +515,14 @@ public class CloudSpannerResultSetTest
 	{
 		Calendar cal = Calendar.getInstance();
 		assertNotNull(subject.getDate(DATE_COL_NOT_NULL, cal));
-		assertEquals(new java.sql.Date(2017 - 1900, 8, 10), subject.getDate(DATE_COL_NOT_NULL, cal));
+		assertEquals(new java.sql.Date(2017 - 1900, 8, 11), subject.getDate(DATE_COL_NOT_NULL, cal));
 		assertEquals(false, subject.wasNull());
 		assertNull(subject.getDate(DATE_COL_NULL, cal));
 		assertTrue(subject.wasNull());
 
 		Calendar calGMT = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 		Calendar expected = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-		expected.set(2017, 8, 10, 0, 0, 0);
+		expected.set(2017, 8, 11, 0, 0, 0);
 		expected.clear(Calendar.MILLISECOND);
 		assertEquals(new java.sql.Date(expected.getTimeInMillis()), subject.getDate(DATE_COL_NOT_NULL, calGMT));
 	}
@@ -864,4 +822,72 @@ public class CloudSpannerResultSetTest
 	// return getCharacterStream(columnLabel);
 	// }
 
+	@Test
+	public void testFindColumnCaseInsensitive() throws SQLException
+	{
+		assertEquals(STRING_COLINDEX_NOTNULL, subject.findColumn(STRING_COL_NOT_NULL));
+		// Labels are case-insensitive
+		assertEquals(STRING_COLINDEX_NOTNULL, subject.findColumn(STRING_COL_NOT_NULL.toLowerCase()));
+		assertEquals(TIME_COLINDEX_NOTNULL, subject.findColumn("time_col_not_null"));
+		assertEquals("BAR", subject.getString("string_col_not_null"));
+	}
+
+	@Test(expected = SQLException.class)
+	public void testFindUnknownColumn() throws SQLException
+	{
+		subject.findColumn("UNKNOWN_COL");
+	}
+
+	@Test
+	public void testGetObjectByColumnType() throws SQLException
+	{
+		assertEquals("BAR", subject.getObject(STRING_COLINDEX_NOTNULL));
+		assertEquals(Boolean.FALSE, subject.getObject(BOOLEAN_COLINDEX_NOTNULL));
+		assertEquals(Double.valueOf(2.123456789d), subject.getObject(DOUBLE_COLINDEX_NOTNULL));
+		assertArrayEquals("BAR".getBytes(), (byte[]) subject.getObject(BYTES_COLINDEX_NOTNULL));
+		assertEquals(Long.valueOf(2L), subject.getObject(LONG_COLINDEX_NOTNULL));
+		assertEquals(java.sql.Date.class, subject.getObject(DATE_COLINDEX_NOTNULL).getClass());
+		assertEquals(java.sql.Timestamp.class, subject.getObject(TIMESTAMP_COLINDEX_NOTNULL).getClass());
+		assertNull(subject.getObject(LONG_COLINDEX_NULL));
+		assertTrue(subject.wasNull());
+	}
+
+	@Test
+	public void testGetBinaryStream() throws SQLException, IOException
+	{
+		try (InputStream is = subject.getBinaryStream(BYTES_COLINDEX_NOTNULL))
+		{
+			byte[] buffer = new byte[10];
+			assertEquals(3, is.read(buffer));
+			assertArrayEquals("BAR".getBytes(), Arrays.copyOf(buffer, 3));
+		}
+		assertNull(subject.getBinaryStream(BYTES_COLINDEX_NULL));
+		assertTrue(subject.wasNull());
+	}
+
+	@Test(expected = SQLException.class)
+	public void testGetBinaryStreamFromNonBinaryColumn() throws SQLException
+	{
+		subject.getBinaryStream(LONG_COLINDEX_NOTNULL);
+	}
+
+	@Test
+	public void testGetBigDecimalFromLong() throws SQLException
+	{
+		assertEquals(BigDecimal.valueOf(2L), subject.getBigDecimal(LONG_COLINDEX_NOTNULL));
+		assertEquals(BigDecimal.valueOf(200L, 2), subject.getBigDecimal(LONG_COLINDEX_NOTNULL, 2));
+	}
+
+	@Test(expected = SQLException.class)
+	public void testGetBigDecimalFromInvalidString() throws SQLException
+	{
+		subject.getBigDecimal(STRING_COLINDEX_NOTNULL);
+	}
+
+	@Test(expected = SQLException.class)
+	public void testGetObjectInvalidColumnIndex() throws SQLException
+	{
+		subject.getObject(17);
+	}
+
 }
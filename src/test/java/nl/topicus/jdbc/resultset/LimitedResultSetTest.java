@@ -0,0 +1,53 @@
+package nl.topicus.jdbc.resultset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.ResultSet;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class LimitedResultSetTest
+{
+
+	@Test
+	public void testLimit()
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenReturn(true);
+		when(delegate.getLong(0)).thenReturn(1L, 2L, 3L);
+		LimitedResultSet rs = new LimitedResultSet(delegate, 2L);
+		assertTrue(rs.next());
+		assertEquals(1L, rs.getLong(0));
+		assertTrue(rs.next());
+		assertEquals(2L, rs.getLong(0));
+		assertFalse(rs.next());
+		assertFalse(rs.next());
+		verify(delegate, times(2)).next();
+		// The remaining stream should be cancelled only once
+		rs.close();
+		verify(delegate, times(1)).close();
+	}
+
+	@Test
+	public void testLessRowsThanLimit()
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenReturn(true, false);
+		LimitedResultSet rs = new LimitedResultSet(delegate, 10L);
+		assertTrue(rs.next());
+		assertFalse(rs.next());
+		rs.close();
+		verify(delegate).close();
+	}
+
+}
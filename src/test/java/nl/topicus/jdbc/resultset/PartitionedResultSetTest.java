@@ -0,0 +1,146 @@
+package nl.topicus.jdbc.resultset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class PartitionedResultSetTest
+{
+	private static final Type TYPE = Type.struct(StructField.of("ID", Type.int64()),
+			StructField.of("NAME", Type.string()));
+
+	private static final Comparator<Struct> BY_ID = (r1, r2) -> Long.compare(r1.getLong(0), r2.getLong(0));
+
+	/**
+	 * Creates a partition that returns the rows with the ids from start to
+	 * end (exclusive) with the given step
+	 */
+	private static Callable<ResultSet> createPartition(int start, int end, int step)
+	{
+		return () -> {
+			List<Struct> list = new ArrayList<>();
+			for (int i = start; i < end; i += step)
+				list.add(Struct.newBuilder().set("ID").to((long) i).set("NAME").to("Row " + i).build());
+			return ResultSets.forRows(TYPE, list);
+		};
+	}
+
+	@Test
+	public void testUnordered()
+	{
+		try (PartitionedResultSet rs = new PartitionedResultSet(Arrays.asList(createPartition(0, 1000, 1),
+				createPartition(1000, 1500, 1), createPartition(1500, 1500, 1), createPartition(1500, 3000, 1)), null))
+		{
+			Set<Long> ids = new HashSet<>();
+			while (rs.next())
+			{
+				assertTrue(ids.add(rs.getLong(0)));
+				assertEquals("Row " + rs.getLong("ID"), rs.getString("NAME"));
+				assertTrue(rs.getBufferedRowCount() <= 4 * PartitionedResultSet.BUFFER_SIZE_PER_PARTITION);
+			}
+			assertEquals(3000, ids.size());
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test
+	public void testOrdered()
+	{
+		// The partitions overlap, so the rows must be merged
+		try (PartitionedResultSet rs = new PartitionedResultSet(
+				Arrays.asList(createPartition(0, 3000, 3), createPartition(1, 3000, 3), createPartition(2, 1000, 3)),
+				BY_ID))
+		{
+			List<Long> ids = new ArrayList<>();
+			while (rs.next())
+				ids.add(rs.getLong(0));
+			List<Long> expected = new ArrayList<>(ids);
+			Collections.sort(expected);
+			assertEquals(expected, ids);
+			assertEquals(2333, ids.size());
+		}
+	}
+
+	@Test
+	public void testPartitionFails()
+	{
+		Callable<ResultSet> failing = () -> {
+			throw SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "Invalid partition");
+		};
+		try (PartitionedResultSet rs = new PartitionedResultSet(
+				Arrays.asList(createPartition(0, 10, 1), failing, createPartition(10, 20, 1)), BY_ID))
+		{
+			while (rs.next())
+			{
+				// Read until the failed partition is needed
+			}
+			fail("Expected exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.INVALID_ARGUMENT, e.getErrorCode());
+		}
+	}
+
+	@Test
+	public void testCheckedExceptionOfPartition()
+	{
+		Callable<ResultSet> failing = () -> {
+			throw new Exception("Could not execute partition");
+		};
+		try (PartitionedResultSet rs = new PartitionedResultSet(Arrays.asList(failing), null))
+		{
+			rs.next();
+			fail("Expected exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.UNKNOWN, e.getErrorCode());
+			assertEquals("Could not execute partition", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testCloseBeforeEnd()
+	{
+		PartitionedResultSet rs = new PartitionedResultSet(
+				Arrays.asList(createPartition(0, 100000, 1), createPartition(100000, 200000, 1)), null);
+		assertTrue(rs.next());
+		rs.close();
+		try
+		{
+			rs.next();
+			fail("Expected exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.FAILED_PRECONDITION, e.getErrorCode());
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package nl.topicus.jdbc.resultset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class PrefetchingResultSetTest
+{
+	private static final Type TYPE = Type.struct(StructField.of("ID", Type.int64()),
+			StructField.of("NAME", Type.string()));
+
+	private static ResultSet createResultSet(int rows)
+	{
+		List<Struct> list = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++)
+			list.add(Struct.newBuilder().set("ID").to((long) i).set("NAME").to("Row " + i).build());
+		return ResultSets.forRows(TYPE, list);
+	}
+
+	@Test
+	public void testReadAllRows()
+	{
+		try (PrefetchingResultSet rs = new PrefetchingResultSet(createResultSet(1000), 10))
+		{
+			long count = 0;
+			while (rs.next())
+			{
+				assertEquals(count, rs.getLong(0));
+				assertEquals("Row " + count, rs.getString("NAME"));
+				assertTrue(rs.getBufferedRowCount() <= 10);
+				count++;
+			}
+			assertEquals(1000L, count);
+			assertFalse(rs.next());
+		}
+	}
+
+	@Test
+	public void testBufferIsBounded() throws InterruptedException
+	{
+		try (PrefetchingResultSet rs = new PrefetchingResultSet(createResultSet(100), 5))
+		{
+			// Wait for the background thread to fill the buffer
+			for (int i = 0; i < 100 && rs.getBufferedRowCount() < 5; i++)
+				Thread.sleep(10L);
+			assertEquals(5, rs.getBufferedRowCount());
+			assertTrue(rs.next());
+			assertEquals(0L, rs.getLong("ID"));
+		}
+	}
+
+	@Test
+	public void testTypeOfEmptyResultSet()
+	{
+		try (PrefetchingResultSet rs = new PrefetchingResultSet(createResultSet(0), 10))
+		{
+			assertFalse(rs.next());
+			assertTypeOfRows(rs);
+		}
+	}
+
+	@Test
+	public void testTypeAfterLastRow()
+	{
+		try (PrefetchingResultSet rs = new PrefetchingResultSet(createResultSet(2), 10))
+		{
+			assertTrue(rs.next());
+			assertTypeOfRows(rs);
+			assertTrue(rs.next());
+			assertFalse(rs.next());
+			assertTypeOfRows(rs);
+		}
+	}
+
+	private static void assertTypeOfRows(ResultSet rs)
+	{
+		assertEquals(TYPE, rs.getType());
+		assertEquals(2, rs.getColumnCount());
+		assertEquals(1, rs.getColumnIndex("NAME"));
+		assertEquals(Type.int64(), rs.getColumnType(0));
+		assertEquals(Type.string(), rs.getColumnType("NAME"));
+	}
+
+	@Test
+	public void testException()
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenReturn(true)
+				.thenThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.ABORTED, "Aborted"));
+		when(delegate.getCurrentRowAsStruct())
+				.thenReturn(Struct.newBuilder().set("ID").to(1L).set("NAME").to("One").build());
+		try (PrefetchingResultSet rs = new PrefetchingResultSet(delegate, 10))
+		{
+			assertTrue(rs.next());
+			assertEquals("One", rs.getString(1));
+			try
+			{
+				rs.next();
+				fail("Expected exception");
+			}
+			catch (SpannerException e)
+			{
+				assertEquals(ErrorCode.ABORTED, e.getErrorCode());
+			}
+		}
+	}
+
+	@Test
+	public void testClose()
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		PrefetchingResultSet rs = new PrefetchingResultSet(delegate, 10);
+		rs.close();
+		verify(delegate, timeout(10000L)).close();
+		try
+		{
+			rs.next();
+			fail("Expected exception");
+		}
+		catch (SpannerException e)
+		{
+			assertEquals(ErrorCode.FAILED_PRECONDITION, e.getErrorCode());
+		}
+	}
+
+	/**
+	 * The underlying result set is not thread-safe, and must therefore only be
+	 * closed by the background thread that reads from it, also when that
+	 * thread is waiting for space in the buffer
+	 */
+	@Test
+	public void testCloseWhileBufferIsFull() throws InterruptedException
+	{
+		ResultSet delegate = mock(ResultSet.class);
+		when(delegate.next()).thenReturn(true);
+		when(delegate.getCurrentRowAsStruct())
+				.thenReturn(Struct.newBuilder().set("ID").to(1L).set("NAME").to("One").build());
+		AtomicReference<Thread> closingThread = new AtomicReference<>();
+		doAnswer(invocation -> {
+			closingThread.set(Thread.currentThread());
+			return null;
+		}).when(delegate).close();
+		PrefetchingResultSet rs = new PrefetchingResultSet(delegate, 2);
+		for (int i = 0; i < 100 && rs.getBufferedRowCount() < 2; i++)
+			Thread.sleep(10L);
+		rs.close();
+		verify(delegate, timeout(10000L)).close();
+		assertNotSame(Thread.currentThread(), closingThread.get());
+	}
+
+}
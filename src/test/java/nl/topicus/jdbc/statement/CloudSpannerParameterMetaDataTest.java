@@ -18,6 +18,7 @@ import com.google.cloud.spanner.Type;
 
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDatabaseMetaData;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
 import nl.topicus.jdbc.test.category.UnitTest;
 
@@ -30,6 +31,8 @@ public class CloudSpannerParameterMetaDataTest
 	{
 		String sql = "SELECT COL1, COL2, COL3 FROM FOO WHERE COL1<? AND COL4=?";
 		CloudSpannerConnection connection = mock(CloudSpannerConnection.class);
+		when(connection.getParsedStatementCache()).thenReturn(new ParsedStatementCache());
+		when(connection.getMetrics()).thenReturn(CloudSpannerMetrics.createConnectionMetrics());
 		return new CloudSpannerPreparedStatement(sql, connection, null);
 	}
 
@@ -37,6 +40,8 @@ public class CloudSpannerParameterMetaDataTest
 	{
 		String sql = "INSERT INTO FOO (COL1, COL2, COL3) VALUES (?, ?, ?)";
 		CloudSpannerConnection connection = mock(CloudSpannerConnection.class);
+		when(connection.getParsedStatementCache()).thenReturn(new ParsedStatementCache());
+		when(connection.getMetrics()).thenReturn(CloudSpannerMetrics.createConnectionMetrics());
 		CloudSpannerDatabaseMetaData metadata = mock(CloudSpannerDatabaseMetaData.class);
 		CloudSpannerResultSet columns = mock(CloudSpannerResultSet.class);
 		when(connection.getMetaData()).thenReturn(metadata);
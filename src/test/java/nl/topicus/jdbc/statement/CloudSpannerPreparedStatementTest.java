@@ -8,6 +8,7 @@ import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Date;
@@ -24,6 +25,7 @@ import java.sql.Types;
 import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -34,19 +36,32 @@ import org.junit.experimental.categories.Category;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.google.api.client.util.Lists;
 import com.google.cloud.ByteArray;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Key;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Mutation.Op;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TransactionContext;
+import com.google.cloud.spanner.TransactionRunner;
+import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
 import com.google.cloud.spanner.Value;
+import com.google.common.collect.Iterables;
 
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.create.table.CreateTable;
 import nl.topicus.jdbc.CloudSpannerArray;
+import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.test.category.UnitTest;
 import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
 
@@ -525,6 +540,113 @@ public class CloudSpannerPreparedStatementTest
 			Assert.assertEquals(0, batchMutations.size());
 		}
 
+		@SuppressWarnings("unchecked")
+		@Test
+		public void testBatchIsBufferedInOneCall() throws SQLException
+		{
+			String sql = "INSERT INTO FOO (ID, COL1, COL2) VALUES (?, ?, ?)";
+			CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+			for (int i = 1; i <= 3; i++)
+			{
+				ps.setLong(1, i);
+				ps.setString(2, String.valueOf(i));
+				ps.setString(3, String.valueOf(i));
+				ps.addBatch();
+			}
+			Assert.assertArrayEquals(new int[] { 1, 1, 1 }, ps.executeBatch());
+			ArgumentCaptor<Iterable<Mutation>> captor = ArgumentCaptor.forClass(Iterable.class);
+			Mockito.verify(ps.getConnection().getTransaction(), Mockito.times(1)).buffer(captor.capture());
+			Assert.assertEquals(3, Iterables.size(captor.getValue()));
+		}
+
+		/**
+		 * Creates a statement on a connection in autocommit mode that commits
+		 * its transactions with the given context. The commit with the given
+		 * number fails, or no commit fails if the number is 0.
+		 */
+		private static CloudSpannerPreparedStatement createAutocommitStatement(String sql, TransactionContext context,
+				int failingCommit) throws SQLException
+		{
+			CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+			connection.setAutoCommit(true);
+			DatabaseClient dbClient = Mockito.mock(DatabaseClient.class);
+			TransactionRunner runner = Mockito.mock(TransactionRunner.class);
+			Mockito.when(dbClient.readWriteTransaction()).thenReturn(runner);
+			AtomicInteger commits = new AtomicInteger();
+			Mockito.when(runner.run(Mockito.any())).thenAnswer(new Answer<Object>()
+			{
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable
+				{
+					if (commits.incrementAndGet() == failingCommit)
+						throw SpannerExceptionFactory.newSpannerException(ErrorCode.ALREADY_EXISTS, "Row exists");
+					TransactionCallable<?> callable = invocation.getArgument(0);
+					return callable.run(context);
+				}
+			});
+			return new CloudSpannerPreparedStatement(sql, connection, dbClient);
+		}
+
+		private static void addRows(CloudSpannerPreparedStatement ps, int rows) throws SQLException
+		{
+			for (int i = 1; i <= rows; i++)
+			{
+				ps.setLong(1, i);
+				ps.setString(2, String.valueOf(i));
+				ps.setString(3, String.valueOf(i));
+				ps.addBatch();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		public void testBatchInAutocommitModeIsChunked() throws SQLException
+		{
+			String sql = "INSERT INTO FOO (ID, COL1, COL2) VALUES (?, ?, ?)";
+			TransactionContext context = Mockito.mock(TransactionContext.class);
+			CloudSpannerPreparedStatement ps = createAutocommitStatement(sql, context, 0);
+			// The measured size of the rows is far below the byte limit of a
+			// commit, the number of rows per commit is therefore limited by the
+			// number of mutations: 20,000 / (3 columns + 1 index) = 5,000 rows
+			int rows = 12000;
+			addRows(ps, rows);
+			int[] res = ps.executeBatch();
+			Assert.assertEquals(rows, res.length);
+			ArgumentCaptor<Iterable<Mutation>> captor = ArgumentCaptor.forClass(Iterable.class);
+			Mockito.verify(context, Mockito.times(3)).buffer(captor.capture());
+			Assert.assertEquals(5000, Iterables.size(captor.getAllValues().get(0)));
+			Assert.assertEquals(5000, Iterables.size(captor.getAllValues().get(1)));
+			Assert.assertEquals(2000, Iterables.size(captor.getAllValues().get(2)));
+		}
+
+		/**
+		 * A large batch in autocommit mode is not atomic. When one of its
+		 * commits fails, the update counts of the statements that were
+		 * committed are returned, and the batch is cleared so that a retry
+		 * does not apply these statements again.
+		 */
+		@Test
+		public void testFailedCommitOfBatchInAutocommitMode() throws SQLException
+		{
+			String sql = "INSERT INTO FOO (ID, COL1, COL2) VALUES (?, ?, ?)";
+			TransactionContext context = Mockito.mock(TransactionContext.class);
+			CloudSpannerPreparedStatement ps = createAutocommitStatement(sql, context, 2);
+			addRows(ps, 12000);
+			try
+			{
+				ps.executeBatch();
+				Assert.fail("missing expected exception");
+			}
+			catch (BatchUpdateException e)
+			{
+				Assert.assertEquals(5000, e.getUpdateCounts().length);
+				Assert.assertEquals(1, e.getUpdateCounts()[0]);
+				Assert.assertEquals(ErrorCode.ALREADY_EXISTS, ((SpannerException) e.getCause()).getErrorCode());
+			}
+			Mockito.verify(context, Mockito.times(1)).buffer(Mockito.anyIterable());
+			Assert.assertArrayEquals(new int[0], ps.executeBatch());
+		}
+
 		@Test
 		public void testClearBatch() throws SQLException, NoSuchFieldException, SecurityException,
 				IllegalArgumentException, IllegalAccessException
@@ -801,6 +923,38 @@ public class CloudSpannerPreparedStatementTest
 			}
 		}
 
+		@Test
+		public void testSelectWithMaxRows() throws SQLException, MalformedURLException
+		{
+			String sql = "SELECT * FROM FOO WHERE ID>? -- comment";
+			CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+			ps.setLong(1, 1000L);
+			ps.setMaxRows(10);
+			ResultSet rs = ps.executeQuery();
+			ArgumentCaptor<com.google.cloud.spanner.Statement> captor = ArgumentCaptor
+					.forClass(com.google.cloud.spanner.Statement.class);
+			Mockito.verify(ps.getConnection().getTransaction()).executeQuery(captor.capture());
+			Assert.assertEquals("SELECT * FROM FOO WHERE ID>@p1 -- comment\nLIMIT 10", captor.getValue().getSql());
+			// Closing the statement should close the result set
+			ps.close();
+			Assert.assertTrue(rs.isClosed());
+		}
+
+		@Test
+		public void testSelectWithMaxRowsAndLimit() throws SQLException, MalformedURLException
+		{
+			String sql = "SELECT * FROM FOO LIMIT 100";
+			CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+			ps.setMaxRows(10);
+			try (ResultSet rs = ps.executeQuery())
+			{
+			}
+			ArgumentCaptor<com.google.cloud.spanner.Statement> captor = ArgumentCaptor
+					.forClass(com.google.cloud.spanner.Statement.class);
+			Mockito.verify(ps.getConnection().getTransaction()).executeQuery(captor.capture());
+			Assert.assertEquals(sql, captor.getValue().getSql());
+		}
+
 		@Test
 		public void testSelectWithLimitAndOffset() throws SQLException, MalformedURLException
 		{
@@ -815,14 +969,13 @@ public class CloudSpannerPreparedStatementTest
 			com.google.cloud.spanner.Statement.Builder res = null;
 			try
 			{
-				Statement statement = CCJSqlParserUtil.parse(ps.sanitizeSQL(sql));
+				ParsedStatement statement = ps.parseStatement(sql);
 				Method createSelectBuilder = CloudSpannerPreparedStatement.class
-						.getDeclaredMethod("createSelectBuilder", Statement.class);
+						.getDeclaredMethod("createSelectBuilder", ParsedStatement.class);
 				createSelectBuilder.setAccessible(true);
 				res = (com.google.cloud.spanner.Statement.Builder) createSelectBuilder.invoke(ps, statement);
 			}
-			catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException
-					| JSQLParserException e)
+			catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException e)
 			{
 				throw new RuntimeException(e);
 			}
@@ -1,6 +1,8 @@
 package nl.topicus.jdbc.statement;
 
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -22,4 +24,20 @@ public class ConversionResultTest
 		Assert.assertTrue(str.contains("Exception"));
 	}
 
+	@Test
+	public void testPartitions()
+	{
+		long now = System.currentTimeMillis();
+		ConversionResult first = new ConversionResult(100l, 0l, now, now + 10l, null, "[, 100)",
+				Collections.emptyList());
+		ConversionResult second = new ConversionResult(50l, 0l, now, now + 20l, null, "[100, )",
+				Collections.emptyList());
+		ConversionResult res = new ConversionResult(150l, 0l, now, now + 20l, null, null,
+				Arrays.asList(first, second));
+		Assert.assertEquals(2, res.getPartitionResults().size());
+		Assert.assertTrue(res.toString().contains("Partitions: 2"));
+		Assert.assertEquals("[100, )", res.getPartitionResults().get(1).getPartition());
+		Assert.assertTrue(second.toString().startsWith("Partition: [100, )"));
+	}
+
 }
@@ -0,0 +1,58 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class ConverterUtilsTest
+{
+
+	@Test
+	public void testCachedTableMetaData() throws SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		Assert.assertEquals(316, ConverterUtils.getRowSize(connection, null, null, "FOO"));
+		Assert.assertEquals(1, ConverterUtils.getNumberOfIndices(connection, null, null, "FOO"));
+		Assert.assertEquals(Arrays.asList("`ID`", "`COL1`", "`COL2`"),
+				ConverterUtils.getQuotedColumnNames(connection, null, null, "FOO"));
+		Assert.assertEquals(4746, ConverterUtils.calculateActualBatchSize(3, connection, null, null, "FOO"));
+		// All values should come from the cached table meta data
+		Mockito.verify(connection, Mockito.never()).getMetaData();
+	}
+
+	@Test
+	public void testUncachedTableMetaData() throws SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		// Specifying a column name pattern bypasses the cache
+		Assert.assertEquals(316,
+				ConverterUtils.getEstimatedRowSizeInCloudSpanner(connection, null, null, "FOO", "%"));
+		Mockito.verify(connection).getMetaData();
+	}
+
+	@Test
+	public void testEstimatedColumnSize()
+	{
+		Assert.assertEquals(100, ConverterUtils.getEstimatedColumnSize(Types.NVARCHAR, 50L));
+		// STRING(MAX) and BYTES(MAX) are reported with a column size of 0
+		Assert.assertEquals(2 * ConverterUtils.MAX_LENGTH_COLUMN_SIZE,
+				ConverterUtils.getEstimatedColumnSize(Types.NVARCHAR, 0L));
+		Assert.assertEquals(ConverterUtils.MAX_LENGTH_COLUMN_SIZE,
+				ConverterUtils.getEstimatedColumnSize(Types.BINARY, 0L));
+		Assert.assertEquals(ConverterUtils.ARRAY_COLUMN_ELEMENTS * 8,
+				ConverterUtils.getEstimatedColumnSize(Types.ARRAY, 0L));
+		Assert.assertEquals(ConverterUtils.ARRAY_COLUMN_ELEMENTS * 20,
+				ConverterUtils.getEstimatedColumnSize(Types.ARRAY, 10L));
+	}
+
+}
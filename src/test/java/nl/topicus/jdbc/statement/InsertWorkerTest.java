@@ -4,35 +4,52 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
-import org.mockito.internal.stubbing.answers.Returns;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.Type;
+
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
-import nl.topicus.jdbc.resultset.CloudSpannerResultSetMetaData;
 import nl.topicus.jdbc.test.category.UnitTest;
 import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
 
 @Category(UnitTest.class)
 public class InsertWorkerTest
 {
 	private static final boolean WITH_EXCEPTION = true;
 
-	private void createMocks(CloudSpannerConnection connection, String selectSQL, long count, String updateSQL)
-			throws SQLException
+	private void createMocks(CloudSpannerConnection connection, String selectSQL, long count) throws SQLException
 	{
-		createMocks(connection, selectSQL, count, updateSQL, false);
+		createMocks(connection, selectSQL, count, false);
 	}
 
-	private void createMocks(CloudSpannerConnection connection, String selectSQL, long count, String updateSQL,
+	private void createMocks(CloudSpannerConnection connection, String selectSQL, long count,
 			boolean throwExceptionOnUpdate) throws SQLException
 	{
 		when(connection.createCopyConnection()).thenAnswer(new Answer<CloudSpannerConnection>()
@@ -41,7 +58,7 @@ public class InsertWorkerTest
 			public CloudSpannerConnection answer(InvocationOnMock invocation) throws Throwable
 			{
 				CloudSpannerConnection copy = CloudSpannerTestObjects.createConnection();
-				createMocks(copy, selectSQL, count, updateSQL);
+				createMocks(copy, selectSQL, count);
 				return copy;
 			}
 		});
@@ -53,10 +70,22 @@ public class InsertWorkerTest
 		when(connection.prepareStatement("SELECT COUNT(*) AS C FROM (" + selectSQL + ") Q")).thenReturn(countStatement);
 
 		CloudSpannerPreparedStatement selectStatement = mock(CloudSpannerPreparedStatement.class);
-		CloudSpannerResultSet selectResultSet = mock(CloudSpannerResultSet.class);
-		CloudSpannerResultSetMetaData metadata = mock(CloudSpannerResultSetMetaData.class);
-		when(metadata.getColumnCount()).thenReturn(3);
-		when(selectResultSet.next()).then(new Answer<Boolean>()
+		ResultSet selectResultSet = createSelectResultSet(count);
+		when(selectStatement.executeSpannerQuery()).thenReturn(selectResultSet);
+		when(connection.prepareStatement(selectSQL)).thenReturn(selectStatement);
+
+		if (throwExceptionOnUpdate)
+		{
+			CloudSpannerTransaction transaction = connection.getTransaction();
+			doThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.FAILED_PRECONDITION, "Buffer failed"))
+					.when(transaction).buffer(anyIterable());
+		}
+	}
+
+	private static ResultSet createSelectResultSet(long count)
+	{
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.next()).then(new Answer<Boolean>()
 		{
 			private long called = 0;
 
@@ -69,19 +98,14 @@ public class InsertWorkerTest
 				return false;
 			}
 		});
-		when(selectResultSet.getObject(1)).then(new Returns(1L));
-		when(selectResultSet.getObject(2)).then(new Returns("TWO"));
-		when(selectResultSet.getObject(3)).then(new Returns("TO"));
-		when(selectResultSet.getMetaData()).thenReturn(metadata);
-		when(selectStatement.executeQuery()).thenReturn(selectResultSet);
-		when(connection.prepareStatement(selectSQL)).thenReturn(selectStatement);
-
-		CloudSpannerPreparedStatement updateStatement = mock(CloudSpannerPreparedStatement.class);
-		if (throwExceptionOnUpdate)
-			when(updateStatement.executeUpdate()).thenThrow(SQLException.class);
-		else
-			when(updateStatement.executeUpdate()).thenReturn(1);
-		when(connection.prepareStatement(updateSQL)).thenReturn(updateStatement);
+		when(rs.getColumnCount()).thenReturn(3);
+		when(rs.getColumnType(0)).thenReturn(Type.int64());
+		when(rs.getColumnType(1)).thenReturn(Type.string());
+		when(rs.getColumnType(2)).thenReturn(Type.string());
+		when(rs.getLong(0)).thenReturn(1L);
+		when(rs.getString(1)).thenReturn("TWO");
+		when(rs.getString(2)).thenReturn("TO");
+		return rs;
 	}
 
 	private CloudSpannerPreparedStatement prepareSimpleInsert() throws SQLException
@@ -93,8 +117,7 @@ public class InsertWorkerTest
 	{
 		String sql = "INSERT INTO FOO (ID, COL1, COL2) SELECT 1, 'TWO', 'TO'";
 		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
-		String updateSQL = "INSERT INTO `FOO` (`ID`, `COL1`, `COL2`) VALUES \n(?, ?, ?)";
-		createMocks(statement.getConnection(), "SELECT 1, 'TWO', 'TO'", 1l, updateSQL, exception);
+		createMocks(statement.getConnection(), "SELECT 1, 'TWO', 'TO'", 1l, exception);
 
 		return statement;
 	}
@@ -102,8 +125,11 @@ public class InsertWorkerTest
 	@Test
 	public void testSimpleInsertStatement() throws SQLException
 	{
-		int updates = prepareSimpleInsert().executeUpdate();
+		CloudSpannerPreparedStatement statement = prepareSimpleInsert();
+		int updates = statement.executeUpdate();
 		assertEquals(1, updates);
+		verify(statement.getConnection().getTransaction()).buffer(Arrays.asList(Mutation.newInsertBuilder("FOO")
+				.set("ID").to(1L).set("COL1").to("TWO").set("COL2").to("TO").build()));
 	}
 
 	@Test
@@ -111,9 +137,7 @@ public class InsertWorkerTest
 	{
 		String sql = "UPDATE FOO SET COL1='THREE', COL2='TRE' WHERE ID<100";
 		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
-		String updateSQL = "INSERT INTO `FOO` (`ID`, `COL1`, `COL2`) VALUES \n(?, ?, ?) ON DUPLICATE KEY UPDATE";
-		createMocks(statement.getConnection(), "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 100", 100l,
-				updateSQL);
+		createMocks(statement.getConnection(), "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 100", 100l);
 		int updates = statement.executeUpdate();
 		assertEquals(100, updates);
 	}
@@ -123,8 +147,7 @@ public class InsertWorkerTest
 	{
 		String sql = "INSERT INTO FOO (ID, COL1, COL2) SELECT COL4, COL5, COL6 FROM BAR";
 		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
-		String updateSQL = "INSERT INTO `FOO` (`ID`, `COL1`, `COL2`) VALUES \n(?, ?, ?)";
-		createMocks(statement.getConnection(), "SELECT COL4, COL5, COL6 FROM BAR", 6000l, updateSQL);
+		createMocks(statement.getConnection(), "SELECT COL4, COL5, COL6 FROM BAR", 6000l);
 		int updates = statement.executeUpdate();
 		assertEquals(6000, updates);
 	}
@@ -134,11 +157,87 @@ public class InsertWorkerTest
 	{
 		String sql = "UPDATE FOO SET COL1='THREE', COL2='TRE' WHERE ID<6000";
 		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
-		String updateSQL = "INSERT INTO `FOO` (`ID`, `COL1`, `COL2`) VALUES \n(?, ?, ?) ON DUPLICATE KEY UPDATE";
-		createMocks(statement.getConnection(), "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 6000", 6000l,
-				updateSQL);
+		createMocks(statement.getConnection(), "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 6000", 6000l);
+		int updates = statement.executeUpdate();
+		assertEquals(6000, updates);
+	}
+
+	@Test
+	public void testExtendedUpdateStatementReadsStrongly() throws SQLException
+	{
+		String sql = "UPDATE FOO SET COL1='THREE', COL2='TRE' WHERE ID<6000";
+		String select = "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 6000";
+		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
+		CloudSpannerConnection connection = statement.getConnection();
+		createMocks(connection, select, 6000l);
+		connection.setAutoCommit(true);
+		when(connection.getReadTimestampBound()).thenReturn(TimestampBound.ofExactStaleness(10L, TimeUnit.SECONDS));
 		int updates = statement.executeUpdate();
 		assertEquals(6000, updates);
+		verify(connection.prepareStatement("SELECT COUNT(*) AS C FROM (" + select + ") Q"))
+				.setForceSingleUseReadContext(true);
+		verify(connection.prepareStatement(select)).setForceSingleUseReadContext(true);
+	}
+
+	@Test
+	public void testSimpleInsertStatementReadsInTransaction() throws SQLException
+	{
+		CloudSpannerPreparedStatement statement = prepareAutoCommitSimpleInsert();
+		CloudSpannerConnection connection = statement.getConnection();
+		assertEquals(1, statement.executeUpdate());
+		verify(connection.prepareStatement("SELECT 1, 'TWO', 'TO'"), never()).setForceSingleUseReadContext(true);
+	}
+
+	@Test
+	public void testPartitionedUpdateStatement() throws SQLException
+	{
+		String sql = "UPDATE FOO SET COL1='THREE', COL2='TRE' WHERE ID<40000";
+		CloudSpannerPreparedStatement statement = CloudSpannerTestObjects.createPreparedStatement(sql);
+		CloudSpannerConnection connection = statement.getConnection();
+		when(connection.getExtendedModeParallelism()).thenReturn(4);
+		Timestamp readTimestamp = Timestamp.ofTimeMicroseconds(1000L);
+		when(connection.getReadTimestamp(TimestampBound.strong())).thenReturn(readTimestamp);
+		TimestampBound bound = TimestampBound.ofReadTimestamp(readTimestamp);
+		createMocks(connection, "SELECT `FOO`.`ID`, 'THREE', 'TRE' FROM `FOO` WHERE ID < 40000", 40000l);
+
+		CloudSpannerPreparedStatement boundaryStatement = mock(CloudSpannerPreparedStatement.class);
+		CloudSpannerResultSet boundaries = mock(CloudSpannerResultSet.class);
+		when(boundaries.next()).thenReturn(true);
+		when(boundaries.getObject(1)).thenReturn(10000L, 20000L, 30000L);
+		when(boundaryStatement.executeQuery()).thenReturn(boundaries);
+		when(connection.prepareStatement(startsWith("SELECT `FOO`.`ID`\nFROM `FOO`\nWHERE ID < 40000\nORDER BY")))
+				.thenReturn(boundaryStatement);
+		List<CloudSpannerPreparedStatement> partitionStatements = new CopyOnWriteArrayList<>();
+		List<String> partitionThreads = new CopyOnWriteArrayList<>();
+		Answer<CloudSpannerPreparedStatement> partition = new Answer<CloudSpannerPreparedStatement>()
+		{
+			@Override
+			public CloudSpannerPreparedStatement answer(InvocationOnMock invocation) throws Throwable
+			{
+				CloudSpannerPreparedStatement partitionStatement = mock(CloudSpannerPreparedStatement.class);
+				ResultSet partitionResultSet = createSelectResultSet(10000L);
+				when(partitionStatement.executeSpannerQuery()).thenReturn(partitionResultSet);
+				partitionStatements.add(partitionStatement);
+				partitionThreads.add(Thread.currentThread().getName());
+				return partitionStatement;
+			}
+		};
+		when(connection.prepareStatement(contains("`FOO`.`ID` IS NULL OR `FOO`.`ID` < ?"))).then(partition);
+		when(connection.prepareStatement(contains("`FOO`.`ID` >= ?"))).then(partition);
+
+		int updates = statement.executeUpdate();
+		assertEquals(40000, updates);
+		verify(connection, times(4)).createCopyConnection();
+		// The boundaries are determined by one scan, and all partitions read
+		// the same snapshot
+		verify(boundaryStatement).executeQuery();
+		verify(boundaryStatement).setForceSingleUseReadContext(true, bound);
+		assertEquals(4, partitionStatements.size());
+		for (CloudSpannerPreparedStatement partitionStatement : partitionStatements)
+			verify(partitionStatement).setForceSingleUseReadContext(true, bound);
+		// The partitions run on the shared executor of the driver
+		for (String thread : partitionThreads)
+			assertTrue(thread, thread.startsWith("CloudSpanner-Async-"));
 	}
 
 	private CloudSpannerPreparedStatement prepareAutoCommitSimpleInsert() throws SQLException
@@ -0,0 +1,199 @@
+package nl.topicus.jdbc.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+/**
+ * Tests executing queries that select rows by key as reads against an
+ * in-memory database
+ *
+ * @author loite
+ *
+ */
+@Category(UnitTest.class)
+public class KeyReadTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=key-read-test;InMemoryDatabase=true";
+
+	private Connection connection;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		connection = DriverManager.getConnection(URL);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute(
+					"CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100), CODE STRING(10), AMOUNT FLOAT64) PRIMARY KEY (ID)");
+			statement.execute("CREATE UNIQUE INDEX IDX_FOO_CODE ON FOO (CODE) STORING (NAME)");
+			statement.execute(
+					"CREATE TABLE BAR (ID1 INT64 NOT NULL, ID2 STRING(10) NOT NULL, VALUE STRING(100)) PRIMARY KEY (ID1, ID2)");
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME, CODE, AMOUNT) VALUES (1, 'one', 'A', 1.5)");
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME, CODE, AMOUNT) VALUES (2, 'two', 'B', 2.5)");
+			statement.executeUpdate("INSERT INTO BAR (ID1, ID2, VALUE) VALUES (1, 'a', 'one-a')");
+			statement.executeUpdate("INSERT INTO BAR (ID1, ID2, VALUE) VALUES (1, 'b', 'one-b')");
+		}
+	}
+
+	@After
+	public void teardown() throws SQLException
+	{
+		connection.close();
+		InMemoryDatabase.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "key-read-test"));
+	}
+
+	private CloudSpannerPreparedStatement prepare(String sql) throws SQLException
+	{
+		return connection.prepareStatement(sql).unwrap(CloudSpannerPreparedStatement.class);
+	}
+
+	@Test
+	public void testReadByPrimaryKey() throws SQLException
+	{
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT ID, NAME FROM FOO WHERE ID=?"))
+		{
+			assertTrue(ps.isKeyRead());
+			ps.setLong(1, 2L);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals(2L, rs.getLong("ID"));
+				assertEquals("two", rs.getString("NAME"));
+				assertFalse(rs.next());
+			}
+			ps.setLong(1, 3L);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertFalse(rs.next());
+			}
+			// A comparison with null is executed as a query
+			ps.setNull(1, Types.BIGINT);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertFalse(rs.next());
+			}
+		}
+	}
+
+	@Test
+	public void testReadByCompositeKey() throws SQLException
+	{
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT * FROM BAR WHERE (ID2=? AND ID1=1)"))
+		{
+			assertTrue(ps.isKeyRead());
+			ps.setString(1, "b");
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals(1L, rs.getLong("ID1"));
+				assertEquals("b", rs.getString("ID2"));
+				assertEquals("one-b", rs.getString("VALUE"));
+				assertFalse(rs.next());
+			}
+		}
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT f.ID, f.NAME FROM FOO f WHERE f.ID=1"))
+		{
+			assertTrue(ps.isKeyRead());
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals("one", rs.getString("NAME"));
+			}
+		}
+	}
+
+	@Test
+	public void testReadBySecondaryIndex() throws SQLException
+	{
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT ID, NAME FROM FOO WHERE CODE=?"))
+		{
+			assertTrue(ps.isKeyRead());
+			ps.setString(1, "B");
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals(2L, rs.getLong("ID"));
+				assertEquals("two", rs.getString("NAME"));
+				assertFalse(rs.next());
+			}
+		}
+		// AMOUNT is not stored in the index
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT ID, AMOUNT FROM FOO WHERE CODE=?"))
+		{
+			assertFalse(ps.isKeyRead());
+			ps.setString(1, "B");
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals(2.5d, rs.getDouble("AMOUNT"), 0d);
+				assertFalse(rs.next());
+			}
+		}
+	}
+
+	@Test
+	public void testQueriesThatAreNotKeyReads() throws SQLException
+	{
+		String[] queries = new String[] { "SELECT ID FROM FOO WHERE ID=? AND NAME='one'",
+				"SELECT ID FROM FOO WHERE ID=? OR ID=2", "SELECT ID FROM FOO WHERE NOT ID=?",
+				"SELECT COUNT(*) FROM FOO WHERE ID=?", "SELECT ID AS X FROM FOO WHERE ID=?",
+				"SELECT ID FROM FOO WHERE ID>?", "SELECT ID1 FROM BAR WHERE ID1=?",
+				"SELECT F.ID FROM FOO F INNER JOIN BAR B ON F.ID=B.ID1 WHERE F.ID=?",
+				"SELECT ID FROM FOO WHERE ID=? ORDER BY NAME", "SELECT ID FROM FOO WHERE ID=? LIMIT 1",
+				"SELECT ID FROM FOO WHERE ID=ABS(?)", "SELECT ID, ID FROM FOO WHERE ID=?" };
+		for (String sql : queries)
+		{
+			try (CloudSpannerPreparedStatement ps = prepare(sql))
+			{
+				assertFalse(sql, ps.isKeyRead());
+			}
+		}
+	}
+
+	@Test
+	public void testReadInTransaction() throws SQLException
+	{
+		connection.setAutoCommit(false);
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT NAME FROM FOO WHERE ID=?"))
+		{
+			ps.setLong(1, 1L);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals("one", rs.getString(1));
+			}
+		}
+		connection.commit();
+		connection.setReadOnly(true);
+		try (CloudSpannerPreparedStatement ps = prepare("SELECT NAME FROM FOO WHERE CODE=?"))
+		{
+			ps.setString(1, "A");
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertTrue(rs.next());
+				assertEquals("one", rs.getString(1));
+			}
+		}
+		connection.commit();
+	}
+
+}
@@ -0,0 +1,84 @@
+package nl.topicus.jdbc.statement;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class MutationBatcherTest
+{
+
+	private static Mutation createInsert(long id, String value)
+	{
+		return Mutation.newInsertBuilder("FOO").set("ID").to(id).set("COL1").to(value).build();
+	}
+
+	@Test
+	public void testGetSize()
+	{
+		// Table name + column names + 2 * overhead + 8 bytes for the id + 3
+		// bytes for the string
+		Assert.assertEquals(3 + 6 + 16 + 8 + 3, MutationBatcher.getSize(createInsert(1L, "ONE")));
+		// Multi byte characters are counted by their UTF-8 length
+		Assert.assertEquals(3 + 6 + 16 + 8 + 4, MutationBatcher.getSize(createInsert(1L, "\u00e9\u00e9")));
+		Assert.assertEquals(3 + 6 + 16 + 8, MutationBatcher.getSize(createInsert(1L, null)));
+		Assert.assertEquals(3 + 8 + 8, MutationBatcher.getSize(Mutation.delete("FOO", Key.of(1L))));
+		Assert.assertEquals(3 + 4 + 8 + 24, MutationBatcher.getSize(
+				Mutation.newInsertBuilder("FOO").set("VALS").toInt64Array(Arrays.asList(1L, 2L, 3L)).build()));
+	}
+
+	@Test
+	public void testMutationLimit()
+	{
+		// Each insert counts as 2 columns + 1 index = 3 mutations
+		MutationBatcher batcher = new MutationBatcher(1, Long.MAX_VALUE, 10);
+		Assert.assertNull(batcher.add(createInsert(1L, "ONE")));
+		Assert.assertNull(batcher.add(createInsert(2L, "TWO")));
+		Assert.assertNull(batcher.add(createInsert(3L, "THREE")));
+		Assert.assertEquals(9, batcher.getMutationCount());
+		List<Mutation> full = batcher.add(createInsert(4L, "FOUR"));
+		Assert.assertEquals(3, full.size());
+		Assert.assertEquals(3, batcher.getMutationCount());
+		Assert.assertEquals(1, batcher.drain().size());
+		Assert.assertTrue(batcher.isEmpty());
+	}
+
+	@Test
+	public void testByteLimit()
+	{
+		MutationBatcher batcher = new MutationBatcher(0, 100L, Integer.MAX_VALUE);
+		Assert.assertNull(batcher.add(createInsert(1L, "ONE")));
+		Assert.assertNull(batcher.add(createInsert(2L, "TWO")));
+		Assert.assertEquals(72L, batcher.getBytes());
+		Assert.assertEquals(2, batcher.add(createInsert(3L, "THREE")).size());
+		// A mutation that exceeds the limit on its own is still accepted in
+		// an empty batch
+		batcher.drain();
+		char[] large = new char[200];
+		Arrays.fill(large, 'A');
+		Assert.assertNull(batcher.add(createInsert(4L, new String(large))));
+		Assert.assertEquals(1, batcher.add(createInsert(5L, "FIVE")).size());
+	}
+
+	@Test
+	public void testDefaultByteLimit()
+	{
+		// The measured size is not limited by the estimate based batch size
+		char[] large = new char[ConverterUtils.BATCH_SIZE_BYTES];
+		Arrays.fill(large, 'A');
+		MutationBatcher batcher = new MutationBatcher(0);
+		Assert.assertNull(batcher.add(createInsert(1L, new String(large))));
+		Assert.assertNull(batcher.add(createInsert(2L, new String(large))));
+		Assert.assertTrue(batcher.getBytes() > ConverterUtils.BATCH_SIZE_BYTES);
+		Assert.assertTrue(batcher.getBytes() < ConverterUtils.MEASURED_BATCH_SIZE_BYTES);
+	}
+
+}
@@ -0,0 +1,142 @@
+package nl.topicus.jdbc.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.api.client.util.Lists;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Mutation.Op;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class MutationTemplateTest
+{
+
+	private static Mutations createMutations(CloudSpannerPreparedStatement ps, String sql) throws SQLException
+	{
+		try
+		{
+			Method createMutations = ps.getClass().getDeclaredMethod("createMutations", String.class);
+			createMutations.setAccessible(true);
+			return (Mutations) createMutations.invoke(ps, sql);
+		}
+		catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (InvocationTargetException e)
+		{
+			if (e.getTargetException() instanceof SQLException)
+				throw (SQLException) e.getTargetException();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static MutationTemplate getTemplate(CloudSpannerPreparedStatement ps)
+			throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException
+	{
+		Field field = CloudSpannerPreparedStatement.class.getDeclaredField("mutationTemplate");
+		field.setAccessible(true);
+		return (MutationTemplate) field.get(ps);
+	}
+
+	@Test
+	public void testInsertTemplate() throws Exception
+	{
+		String sql = "INSERT INTO FOO (ID, COL1, COL2) VALUES (?, 'test', ?)";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		for (long id = 1; id <= 3; id++)
+		{
+			ps.setLong(1, id);
+			ps.setString(2, "value" + id);
+			Mutation mutation = createMutations(ps, sql).getMutations().get(0);
+			assertEquals(Op.INSERT, mutation.getOperation());
+			assertEquals("FOO", mutation.getTable());
+			assertEquals(id, mutation.asMap().get("ID").getInt64());
+			assertEquals("test", mutation.asMap().get("COL1").getString());
+			assertEquals("value" + id, mutation.asMap().get("COL2").getString());
+		}
+		assertNotNull(getTemplate(ps));
+		assertEquals("COL2", ps.getParameterStore().getColumn(2));
+		assertEquals("FOO", ps.getParameterStore().getTable());
+	}
+
+	@Test
+	public void testInsertOnDuplicateKeyTemplate() throws Exception
+	{
+		String sql = "INSERT INTO FOO (ID, COL1) VALUES (?, ?) ON DUPLICATE KEY UPDATE";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		ps.setLong(1, 1L);
+		ps.setString(2, "one");
+		assertEquals(Op.INSERT_OR_UPDATE, createMutations(ps, sql).getMutations().get(0).getOperation());
+		ps.setForceUpdate(true);
+		assertEquals(Op.UPDATE, createMutations(ps, sql).getMutations().get(0).getOperation());
+	}
+
+	@Test
+	public void testUpdateTemplate() throws Exception
+	{
+		String sql = "UPDATE FOO SET COL1=? WHERE ID=?";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		ps.setString(1, "one");
+		ps.setLong(2, 1L);
+		Mutation mutation = createMutations(ps, sql).getMutations().get(0);
+		assertEquals(Op.UPDATE, mutation.getOperation());
+		assertEquals("one", mutation.asMap().get("COL1").getString());
+		assertEquals(1L, mutation.asMap().get("ID").getInt64());
+		assertNotNull(getTemplate(ps));
+	}
+
+	@Test
+	public void testDeleteTemplate() throws Exception
+	{
+		String sql = "DELETE FROM BAR WHERE ID2=? AND ID1=?";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		ps.setLong(1, 2L);
+		ps.setLong(2, 1L);
+		Mutation mutation = createMutations(ps, sql).getMutations().get(0);
+		assertEquals(Op.DELETE, mutation.getOperation());
+		List<Key> keys = Lists.newArrayList(mutation.getKeySet().getKeys());
+		assertEquals(1, keys.size());
+		assertEquals(Key.of(1L, 2L), keys.get(0));
+
+		// A null key value matches no row, the statement is then executed as
+		// a query instead of as a mutation of the row with the null key
+		ps.setNull(1, java.sql.Types.BIGINT);
+		assertTrue(createMutations(ps, sql).isWorker());
+	}
+
+	@Test
+	public void testDeleteAllTemplate() throws Exception
+	{
+		String sql = "DELETE FROM FOO";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		Mutation mutation = createMutations(ps, sql).getMutations().get(0);
+		assertTrue(mutation.getKeySet().isAll());
+		assertNotNull(getTemplate(ps));
+	}
+
+	@Test
+	public void testNoTemplateForComplexExpressions() throws Exception
+	{
+		String sql = "DELETE FROM FOO WHERE ID IN (1,2)";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		assertTrue(createMutations(ps, sql).isWorker());
+		assertNull(getTemplate(ps));
+	}
+
+}
@@ -0,0 +1,210 @@
+package nl.topicus.jdbc.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.Mutation;
+
+import net.sf.jsqlparser.statement.select.Select;
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.statement.ParsedStatement.StatementType;
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class ParsedStatementCacheTest
+{
+	private static final String IN_MEMORY_URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=parsed-statement-cache-test;InMemoryDatabase=true";
+
+	@Test
+	public void testHitsAndMisses() throws SQLException
+	{
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects
+				.createPreparedStatement("SELECT * FROM FOO WHERE ID=?");
+		ParsedStatementCache cache = ps.getConnection().getParsedStatementCache();
+		ParsedStatement first = ps.parseStatement("SELECT * FROM FOO WHERE ID=?");
+		ParsedStatement second = ps.parseStatement("SELECT * FROM FOO WHERE ID=?");
+		assertSame(first, second);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDerivedFacts() throws SQLException
+	{
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement("SELECT 1");
+		ParsedStatement select = ps.parseStatement("SELECT * FROM `FOO` WHERE ID=? AND COL1='?'");
+		assertEquals(StatementType.SELECT, select.getType());
+		assertEquals("FOO", select.getTable());
+		assertEquals("SELECT * FROM `FOO` WHERE ID=@p1 AND COL1='?'", select.getNamedParameterSql());
+		assertEquals(Select.class, select.getStatement().getClass());
+
+		ParsedStatement join = ps.parseStatement("SELECT * FROM FOO INNER JOIN BAR ON FOO.ID=BAR.ID1");
+		assertNull(join.getTable());
+
+		ParsedStatement insert = ps.parseStatement("INSERT INTO BAR (ID1, ID2) VALUES (?, ?)");
+		assertEquals(StatementType.INSERT, insert.getType());
+		assertEquals("BAR", insert.getTable());
+		assertNull(insert.getSingleRowWhereClause(0L));
+
+		assertEquals(StatementType.UPDATE, ps.parseStatement("UPDATE FOO SET COL1=1 WHERE ID=2").getType());
+		assertEquals(StatementType.DELETE, ps.parseStatement("DELETE FROM FOO").getType());
+	}
+
+	@Test
+	public void testEviction()
+	{
+		ParsedStatementCache cache = new ParsedStatementCache(2);
+		cache.put("A", new ParsedStatement("A", null));
+		cache.put("B", new ParsedStatement("B", null));
+		// Access A so that B becomes the least recently used statement
+		assertNotNull(cache.get("A"));
+		cache.put("C", new ParsedStatement("C", null));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get("B"));
+		assertNotNull(cache.get("A"));
+		assertNotNull(cache.get("C"));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testDisabledCache()
+	{
+		ParsedStatementCache cache = new ParsedStatementCache(0);
+		cache.put("A", new ParsedStatement("A", null));
+		assertEquals(0, cache.size());
+		assertNull(cache.get("A"));
+	}
+
+	@Test
+	public void testRepeatedExecutionWithSignedValue() throws SQLException
+	{
+		String sql = "INSERT INTO FOO (ID, COL1) VALUES (-1, ?)";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		for (int i = 0; i < 2; i++)
+		{
+			ps.setString(1, "test");
+			Mutation mutation = createMutations(ps, sql).getMutations().get(0);
+			assertEquals(-1L, mutation.asMap().get("ID").getInt64());
+		}
+		assertEquals(1, ps.getConnection().getParsedStatementCache().getHitCount());
+	}
+
+	private static Mutations createMutations(CloudSpannerPreparedStatement ps, String sql) throws SQLException
+	{
+		try
+		{
+			Method createMutations = ps.getClass().getDeclaredMethod("createMutations", String.class);
+			createMutations.setAccessible(true);
+			return (Mutations) createMutations.invoke(ps, sql);
+		}
+		catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	public void testSingleRowWhereClauseIsCached() throws SQLException
+	{
+		String sql = "DELETE FROM FOO WHERE ID=?";
+		CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+		ps.setLong(1, 1L);
+		ps.getParameterMetaData();
+		ParsedStatement parsed = ps.parseStatement(sql);
+		assertEquals(Boolean.TRUE, parsed.getSingleRowWhereClause(0L));
+	}
+
+	/**
+	 * A key column that is compared with a null parameter does not match any
+	 * row, and the statement must therefore not be executed as a mutation of
+	 * the row with a null key
+	 */
+	@Test
+	public void testNullKeyParameter() throws SQLException
+	{
+		for (String sql : new String[] { "DELETE FROM FOO WHERE ID=?", "UPDATE FOO SET COL1=? WHERE ID=?" })
+		{
+			CloudSpannerPreparedStatement ps = CloudSpannerTestObjects.createPreparedStatement(sql);
+			int keyIndex = sql.startsWith("DELETE") ? 1 : 2;
+			ps.setString(1, "test");
+			ps.setLong(keyIndex, 1L);
+			assertFalse(createMutations(ps, sql).isWorker());
+			ps.setNull(keyIndex, Types.BIGINT);
+			assertTrue(createMutations(ps, sql).isWorker());
+			ps.setLong(keyIndex, 2L);
+			Mutations mutations = createMutations(ps, sql);
+			assertFalse(mutations.isWorker());
+			assertEquals(1, mutations.getMutations().size());
+			assertEquals(Boolean.TRUE, ps.parseStatement(sql).getSingleRowWhereClause(0L));
+		}
+	}
+
+
+	/**
+	 * A DDL statement can change the primary key of a table. The facts about
+	 * the key that are stored with a cached statement must then be derived
+	 * again, both for a statement that was already prepared and for a new
+	 * statement with the same sql.
+	 */
+	@Test
+	public void testDdlInvalidatesKeyFacts() throws SQLException
+	{
+		String sql = "UPDATE FOO SET NAME='ONE' WHERE ID=1";
+		try (Connection connection = DriverManager.getConnection(IN_MEMORY_URL);
+				Statement statement = connection.createStatement();
+				PreparedStatement prepared = connection.prepareStatement(sql))
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+			statement.executeUpdate("INSERT INTO FOO (ID, NAME) VALUES (1, 'one')");
+			assertEquals(1, prepared.executeUpdate());
+
+			statement.execute("DROP TABLE FOO");
+			statement.execute(
+					"CREATE TABLE FOO (ID INT64 NOT NULL, SUB INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID, SUB)");
+			statement.executeUpdate("INSERT INTO FOO (ID, SUB, NAME) VALUES (1, 1, 'one')");
+			statement.executeUpdate("INSERT INTO FOO (ID, SUB, NAME) VALUES (1, 2, 'two')");
+			// The WHERE-clause no longer specifies a single row
+			assertEquals(2, prepared.executeUpdate());
+			statement.executeUpdate("UPDATE FOO SET NAME='two' WHERE ID=1 AND SUB=2");
+			try (PreparedStatement ps = connection.prepareStatement(sql))
+			{
+				assertEquals(2, ps.executeUpdate());
+			}
+			try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM FOO WHERE NAME='ONE'"))
+			{
+				assertTrue(rs.next());
+				assertEquals(2L, rs.getLong(1));
+			}
+		}
+		finally
+		{
+			InMemoryDatabase.drop(
+					DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "parsed-statement-cache-test"));
+		}
+	}
+
+}
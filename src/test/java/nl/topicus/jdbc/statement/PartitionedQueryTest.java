@@ -0,0 +1,283 @@
+package nl.topicus.jdbc.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+/**
+ * Tests partitioned queries against an in-memory database
+ *
+ * @author loite
+ *
+ */
+@Category(UnitTest.class)
+public class PartitionedQueryTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=partitioned-query-test;InMemoryDatabase=true";
+
+	private static final int ROWS = 100;
+
+	private CloudSpannerConnection connection;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		connection = (CloudSpannerConnection) DriverManager
+				.getConnection(URL + ";PartitionedQueryParallelism=4;PartitionedQueryMinRowCount=10");
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute(
+					"CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100), AMOUNT FLOAT64) PRIMARY KEY (ID)");
+		}
+		connection.setAutoCommit(false);
+		try (PreparedStatement ps = connection.prepareStatement("INSERT INTO FOO (ID, NAME, AMOUNT) VALUES (?, ?, ?)"))
+		{
+			for (int i = 1; i <= ROWS; i++)
+			{
+				ps.setLong(1, i);
+				ps.setString(2, i % 10 == 0 ? null : "Row " + i);
+				ps.setDouble(3, (i * 37) % ROWS);
+				ps.executeUpdate();
+			}
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	@After
+	public void teardown() throws SQLException
+	{
+		connection.close();
+		InMemoryDatabase.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "partitioned-query-test"));
+	}
+
+	private static long getPartitionedQueries(Connection connection) throws SQLException
+	{
+		return ((CloudSpannerConnection) connection).getMetrics().getRegistry()
+				.counter(CloudSpannerMetrics.PARTITIONED_QUERIES).getCount();
+	}
+
+	private static Set<Long> readIds(ResultSet rs) throws SQLException
+	{
+		Set<Long> ids = new HashSet<>();
+		while (rs.next())
+			assertTrue(ids.add(rs.getLong("ID")));
+		return ids;
+	}
+
+	@Test
+	public void testParallelismHint()
+	{
+		assertEquals(4, PartitionedQuery.getParallelismHint("/*@PARALLELISM=4*/ SELECT * FROM FOO"));
+		assertEquals(16, PartitionedQuery.getParallelismHint(" /*@ parallelism = 16 */\nSELECT * FROM FOO"));
+		assertEquals(-1, PartitionedQuery.getParallelismHint("SELECT * FROM FOO"));
+		assertEquals(-1, PartitionedQuery.getParallelismHint("SELECT * FROM FOO /*@PARALLELISM=4*/"));
+		assertEquals(-1, PartitionedQuery.getParallelismHint("/* PARALLELISM=4 */ SELECT * FROM FOO"));
+		assertEquals(" SELECT * FROM FOO",
+				PartitionedQuery.removeParallelismHint("/*@PARALLELISM=4*/ SELECT * FROM FOO"));
+	}
+
+	@Test
+	public void testUnordered() throws SQLException
+	{
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+		{
+			Set<Long> ids = readIds(rs);
+			assertEquals(ROWS, ids.size());
+		}
+		assertEquals(1L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testOrdered() throws SQLException
+	{
+		try (PreparedStatement ps = connection.prepareStatement("SELECT ID, AMOUNT FROM FOO ORDER BY AMOUNT DESC"))
+		{
+			try (ResultSet rs = ps.executeQuery())
+			{
+				double previous = Double.MAX_VALUE;
+				int count = 0;
+				while (rs.next())
+				{
+					assertTrue(rs.getDouble("AMOUNT") <= previous);
+					previous = rs.getDouble("AMOUNT");
+					count++;
+				}
+				assertEquals(ROWS, count);
+			}
+		}
+		try (PreparedStatement ps = connection.prepareStatement("SELECT NAME, ID FROM FOO ORDER BY 1, 2 DESC"))
+		{
+			try (ResultSet rs = ps.executeQuery())
+			{
+				// NULL values come first
+				for (long id = ROWS; id > 0; id -= 10)
+				{
+					assertTrue(rs.next());
+					assertEquals(null, rs.getString(1));
+					assertEquals(id, rs.getLong(2));
+				}
+				String previous = "";
+				while (rs.next())
+				{
+					assertTrue(rs.getString(1).compareTo(previous) > 0);
+					previous = rs.getString(1);
+				}
+			}
+		}
+		assertEquals(2L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testParameters() throws SQLException
+	{
+		try (PreparedStatement ps = connection.prepareStatement("SELECT ID FROM FOO WHERE ID > ? AND AMOUNT < ?"))
+		{
+			ps.setLong(1, 20L);
+			ps.setDouble(2, 50D);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				Set<Long> ids = readIds(rs);
+				for (long id = 1; id <= ROWS; id++)
+					assertEquals(id > 20L && (id * 37) % ROWS < 50, ids.contains(id));
+			}
+		}
+		assertEquals(1L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testHint() throws SQLException
+	{
+		connection.setPartitionedQueryParallelism(1);
+		try (Statement statement = connection.createStatement())
+		{
+			try (ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+			{
+				assertEquals(ROWS, readIds(rs).size());
+			}
+			assertEquals(0L, getPartitionedQueries(connection));
+			try (ResultSet rs = statement.executeQuery("/*@PARALLELISM=3*/ SELECT * FROM FOO"))
+			{
+				assertEquals(ROWS, readIds(rs).size());
+			}
+			assertEquals(1L, getPartitionedQueries(connection));
+		}
+		// The hint can also disable partitioning
+		connection.setPartitionedQueryParallelism(4);
+		try (PreparedStatement ps = connection.prepareStatement("/*@PARALLELISM=1*/ SELECT * FROM FOO"))
+		{
+			try (ResultSet rs = ps.executeQuery())
+			{
+				assertEquals(ROWS, readIds(rs).size());
+			}
+		}
+		assertEquals(1L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testMinRowCount() throws SQLException
+	{
+		connection.setPartitionedQueryMinRowCount(ROWS + 1);
+		try (Statement statement = connection.createStatement())
+		{
+			try (ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+			{
+				assertEquals(ROWS, readIds(rs).size());
+			}
+			assertEquals(0L, getPartitionedQueries(connection));
+			// A hint partitions the statement regardless of its number of rows
+			try (ResultSet rs = statement.executeQuery("/*@PARALLELISM=4*/ SELECT * FROM FOO"))
+			{
+				assertEquals(ROWS, readIds(rs).size());
+			}
+			assertEquals(1L, getPartitionedQueries(connection));
+		}
+		connection.setPartitionedQueryMinRowCount(ROWS);
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+		{
+			assertEquals(ROWS, readIds(rs).size());
+		}
+		assertEquals(2L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testReadOnlyTransaction() throws SQLException
+	{
+		connection.setReadOnly(true);
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+		{
+			assertEquals(ROWS, readIds(rs).size());
+		}
+		connection.commit();
+		assertEquals(1L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testNotPartitioned() throws SQLException
+	{
+		String[] queries = { "SELECT COUNT(*) AS ID FROM FOO", "SELECT * FROM FOO LIMIT 200",
+				"SELECT ID FROM FOO ORDER BY AMOUNT", "SELECT ID AS X, NAME FROM FOO ORDER BY ID",
+				"SELECT * FROM FOO WHERE ID > 98" };
+		try (Statement statement = connection.createStatement())
+		{
+			for (String sql : queries)
+			{
+				try (ResultSet rs = statement.executeQuery(sql))
+				{
+					assertTrue(rs.next());
+				}
+			}
+		}
+		// Queries in read/write transactions are not partitioned
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+		{
+			assertEquals(ROWS, readIds(rs).size());
+		}
+		connection.commit();
+		assertEquals(0L, getPartitionedQueries(connection));
+	}
+
+	@Test
+	public void testMaxRows() throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.setMaxRows(10);
+			try (ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+			{
+				assertEquals(10, readIds(rs).size());
+				assertFalse(rs.next());
+			}
+		}
+		assertEquals(1L, getPartitionedQueries(connection));
+	}
+
+}
@@ -0,0 +1,148 @@
+package nl.topicus.jdbc.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.DatabaseId;
+
+import nl.topicus.jdbc.inmemory.InMemoryDatabase;
+import nl.topicus.jdbc.inmemory.InMemorySpanner;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+/**
+ * Tests query timeouts and cancelling statements against an in-memory
+ * database with a simulated latency that is longer than the query timeout
+ *
+ * @author loite
+ *
+ */
+@Category(UnitTest.class)
+public class QueryTimeoutTest
+{
+	private static final String URL = "jdbc:cloudspanner://localhost;Instance=test-instance;Database=query-timeout-test;InMemoryDatabase=true;InMemoryLatency=2000";
+
+	private Connection connection;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		connection = DriverManager.getConnection(URL);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE FOO (ID INT64 NOT NULL, NAME STRING(100)) PRIMARY KEY (ID)");
+		}
+	}
+
+	@After
+	public void teardown() throws SQLException
+	{
+		connection.close();
+		InMemoryDatabase.drop(DatabaseId.of(InMemorySpanner.DEFAULT_PROJECT_ID, "test-instance", "query-timeout-test"));
+	}
+
+	@Test
+	public void testQueryTimeout() throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.setQueryTimeout(1);
+			assertEquals(1, statement.getQueryTimeout());
+			statement.executeQuery("SELECT * FROM FOO");
+			fail("Expected a timeout");
+		}
+		catch (SQLTimeoutException e)
+		{
+			assertTrue(e.getMessage().contains("Query timeout of 1 seconds exceeded"));
+		}
+	}
+
+	@Test
+	public void testQueryTimeoutInTransaction() throws SQLException
+	{
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement())
+		{
+			statement.setQueryTimeout(1);
+			long start = System.currentTimeMillis();
+			try
+			{
+				statement.executeQuery("SELECT * FROM FOO");
+				fail("Expected a timeout");
+			}
+			catch (SQLTimeoutException e)
+			{
+				// The connection should not wait for the worker of the
+				// transaction to finish the query
+				assertTrue(System.currentTimeMillis() - start < 1900L);
+			}
+		}
+		connection.rollback();
+	}
+
+	@Test
+	public void testCancel() throws SQLException, InterruptedException
+	{
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement())
+		{
+			Thread canceller = new Thread(() -> {
+				try
+				{
+					Thread.sleep(200L);
+					statement.cancel();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				catch (SQLException e)
+				{
+					throw new IllegalStateException(e);
+				}
+			});
+			canceller.start();
+			try
+			{
+				statement.executeQuery("SELECT * FROM FOO");
+				fail("Expected an exception");
+			}
+			catch (SQLException e)
+			{
+				assertFalse(e instanceof SQLTimeoutException);
+				assertTrue(e.getMessage().contains("Statement was cancelled"));
+			}
+			canceller.join();
+		}
+		connection.rollback();
+	}
+
+	@Test
+	public void testNoTimeout() throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.setQueryTimeout(3);
+			try (ResultSet rs = statement.executeQuery("SELECT * FROM FOO"))
+			{
+				assertFalse(rs.next());
+			}
+			// Cancelling a statement without a running query is a no-op
+			statement.cancel();
+		}
+	}
+
+}
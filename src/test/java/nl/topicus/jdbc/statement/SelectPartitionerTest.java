@@ -0,0 +1,98 @@
+package nl.topicus.jdbc.statement;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentMatchers;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.Select;
+import nl.topicus.jdbc.CloudSpannerConnection;
+import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class SelectPartitionerTest
+{
+
+	private static Select parse(String sql) throws JSQLParserException
+	{
+		return (Select) CCJSqlParserUtil.parse(sql);
+	}
+
+	@Test
+	public void testIsPartitionable() throws JSQLParserException
+	{
+		Assert.assertTrue(SelectPartitioner.isPartitionable(parse("SELECT * FROM FOO")));
+		Assert.assertTrue(SelectPartitioner.isPartitionable(parse("SELECT ID, COL1 FROM FOO WHERE COL1='test'")));
+		Assert.assertTrue(SelectPartitioner.isPartitionable(parse("SELECT F.ID FROM FOO F ORDER BY F.COL1")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT 1, 'TWO', 'TO'")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT * FROM FOO INNER JOIN BAR ON FOO.ID=BAR.ID1")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT DISTINCT COL1 FROM FOO")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT COL1, COUNT(*) FROM FOO GROUP BY COL1")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT MAX(ID) FROM FOO")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT * FROM FOO LIMIT 10")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT * FROM (SELECT * FROM FOO) F")));
+		// The parameters of the key ranges are numbered after the parameters
+		// of the statement, which must therefore all be in the WHERE clause
+		Assert.assertTrue(SelectPartitioner.isPartitionable(parse("SELECT * FROM FOO WHERE COL1=? AND COL2=?")));
+		Assert.assertFalse(
+				SelectPartitioner.isPartitionable(parse("SELECT * FROM FOO WHERE COL1=? ORDER BY COL2 || ?")));
+		Assert.assertFalse(SelectPartitioner.isPartitionable(parse("SELECT ID, COL1 || ? FROM FOO")));
+		Assert.assertFalse(SelectPartitioner
+				.isPartitionable(parse("SELECT ID, (SELECT COL1 FROM BAR WHERE ID1=?) FROM FOO")));
+	}
+
+	@Test
+	public void testCreatePartitions() throws JSQLParserException, SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		CloudSpannerPreparedStatement boundaryStatement = mock(CloudSpannerPreparedStatement.class);
+		CloudSpannerResultSet boundaries = mock(CloudSpannerResultSet.class);
+		when(boundaries.next()).thenReturn(true);
+		// A NULL boundary and a duplicate boundary should be skipped
+		when(boundaries.getObject(1)).thenReturn(null, 100L, 100L, 200L);
+		when(boundaryStatement.executeQuery()).thenReturn(boundaries);
+		when(connection.prepareStatement(ArgumentMatchers.startsWith("SELECT `FOO`.`ID`\nFROM FOO")))
+				.thenReturn(boundaryStatement);
+
+		List<SelectPartitioner.Partition> partitions = SelectPartitioner.createPartitions(connection,
+				parse("SELECT * FROM FOO WHERE COL1 = 'test'"), 5, 500L);
+		Assert.assertEquals(3, partitions.size());
+		// The boundaries are read by one scan of the key values
+		verify(connection).prepareStatement("SELECT `FOO`.`ID`\nFROM FOO\nWHERE COL1 = 'test'\nORDER BY `FOO`.`ID`");
+		verify(boundaryStatement).executeQuery();
+		verify(boundaries, times(401)).next();
+		Assert.assertEquals("SELECT * FROM FOO WHERE (COL1 = 'test') AND (`FOO`.`ID` IS NULL OR `FOO`.`ID` < ?)",
+				partitions.get(0).getSql());
+		Assert.assertNull(partitions.get(0).getLowerBound());
+		Assert.assertEquals(100L, partitions.get(0).getUpperBound());
+		Assert.assertEquals("SELECT * FROM FOO WHERE (COL1 = 'test') AND (`FOO`.`ID` >= ? AND `FOO`.`ID` < ?)",
+				partitions.get(1).getSql());
+		Assert.assertEquals("SELECT * FROM FOO WHERE (COL1 = 'test') AND (`FOO`.`ID` >= ?)",
+				partitions.get(2).getSql());
+		Assert.assertEquals(200L, partitions.get(2).getLowerBound());
+		Assert.assertNull(partitions.get(2).getUpperBound());
+		Assert.assertEquals("[100, 200)", partitions.get(1).toString());
+	}
+
+	@Test
+	public void testTooFewRecords() throws JSQLParserException, SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		Assert.assertTrue(SelectPartitioner.createPartitions(connection, parse("SELECT * FROM FOO"), 4, 3L).isEmpty());
+		Assert.assertTrue(
+				SelectPartitioner.createPartitions(connection, parse("SELECT * FROM FOO"), 1, 1000L).isEmpty());
+	}
+
+}
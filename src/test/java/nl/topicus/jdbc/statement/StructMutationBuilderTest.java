@@ -0,0 +1,71 @@
+package nl.topicus.jdbc.statement;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Struct;
+
+import nl.topicus.jdbc.statement.AbstractTablePartWorker.DMLOperation;
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class StructMutationBuilderTest
+{
+
+	@Test
+	public void testInsert() throws SQLException
+	{
+		StructMutationBuilder builder = new StructMutationBuilder(DMLOperation.Insert, "FOO",
+				Arrays.asList("`ID`", "`COL1`", "`COL2`"));
+		Struct row = Struct.newBuilder().set("C1").to(1L).set("C2").to("TWO").set("C3").to((String) null).build();
+		Assert.assertEquals(
+				Mutation.newInsertBuilder("FOO").set("ID").to(1L).set("COL1").to("TWO").set("COL2").to((String) null)
+						.build(),
+				builder.createMutation(row));
+	}
+
+	@Test
+	public void testInsertOrUpdateWithArray() throws SQLException
+	{
+		StructMutationBuilder builder = new StructMutationBuilder(DMLOperation.OnDuplicateKeyUpdate, "FOO",
+				Arrays.asList("ID", "VALS"));
+		Struct row = Struct.newBuilder().set("C1").to(1L).set("C2").toInt64Array(Arrays.asList(1L, 2L)).build();
+		Assert.assertEquals(Mutation.newInsertOrUpdateBuilder("FOO").set("ID").to(1L).set("VALS")
+				.toInt64Array(Arrays.asList(1L, 2L)).build(), builder.createMutation(row));
+	}
+
+	@Test
+	public void testUpdate() throws SQLException
+	{
+		StructMutationBuilder builder = new StructMutationBuilder(DMLOperation.Update, "FOO",
+				Arrays.asList("ID", "COL1"));
+		Struct row = Struct.newBuilder().set("C1").to(1L).set("C2").to(true).build();
+		Assert.assertEquals(Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL1").to(true).build(),
+				builder.createMutation(row));
+	}
+
+	@Test
+	public void testDelete() throws SQLException
+	{
+		StructMutationBuilder builder = new StructMutationBuilder(DMLOperation.Delete, "BAR",
+				Arrays.asList("ID1", "ID2"));
+		Struct row = Struct.newBuilder().set("ID1").to(1L).set("ID2").to((Long) null).build();
+		Assert.assertEquals(Mutation.delete("BAR", Key.newBuilder().append(1L).append((Long) null).build()),
+				builder.createMutation(row));
+	}
+
+	@Test(expected = SQLException.class)
+	public void testColumnCountMismatch() throws SQLException
+	{
+		StructMutationBuilder builder = new StructMutationBuilder(DMLOperation.Insert, "FOO",
+				Arrays.asList("ID", "COL1"));
+		builder.createMutation(Struct.newBuilder().set("C1").to(1L).build());
+	}
+
+}
@@ -1,6 +1,7 @@
 package nl.topicus.jdbc.statement;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -9,9 +10,12 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Type;
+
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
-import nl.topicus.jdbc.resultset.CloudSpannerResultSetMetaData;
 import nl.topicus.jdbc.statement.AbstractTablePartWorker.DMLOperation;
 import nl.topicus.jdbc.test.category.UnitTest;
 
@@ -60,6 +64,11 @@ public class UpdateModeTest
 			Assert.assertNotNull(res);
 			Assert.assertNull(res.getException());
 			Assert.assertEquals(2l, res.getRecordCount());
+			Mockito.verify(worker.connection.getTransaction()).buffer(Arrays.asList(
+					Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL1").to("One").set("COL2").to("En")
+							.build(),
+					Mutation.newUpdateBuilder("FOO").set("ID").to(2L).set("COL1").to("Two").set("COL2").to("To")
+							.build()));
 		}
 
 		@Test
@@ -85,26 +94,24 @@ public class UpdateModeTest
 
 	private static void mockConnection(CloudSpannerConnection connection) throws SQLException
 	{
-		CloudSpannerPreparedStatement insertStatement = Mockito.mock(CloudSpannerPreparedStatement.class);
 		CloudSpannerPreparedStatement selectStatement = Mockito.mock(CloudSpannerPreparedStatement.class);
 		CloudSpannerPreparedStatement countStatement = Mockito.mock(CloudSpannerPreparedStatement.class);
-		CloudSpannerResultSet selectResult = Mockito.mock(CloudSpannerResultSet.class);
+		ResultSet selectResult = Mockito.mock(ResultSet.class);
 		CloudSpannerResultSet countResult = Mockito.mock(CloudSpannerResultSet.class);
-		CloudSpannerResultSetMetaData selectMetadata = Mockito.mock(CloudSpannerResultSetMetaData.class);
-		Mockito.when(selectMetadata.getColumnCount()).thenReturn(3);
-		Mockito.when(connection.prepareStatement(Mockito.startsWith("INSERT"))).thenReturn(insertStatement);
 		Mockito.when(connection.prepareStatement(Mockito.startsWith("SELECT `FOO`"))).thenReturn(selectStatement);
 		Mockito.when(connection.prepareStatement(Mockito.startsWith("SELECT COUNT(*)"))).thenReturn(countStatement);
-		Mockito.when(selectStatement.executeQuery()).thenReturn(selectResult);
+		Mockito.when(selectStatement.executeSpannerQuery()).thenReturn(selectResult);
 		Mockito.when(selectResult.next()).thenReturn(true, true, false);
-		Mockito.when(selectResult.getObject(1)).thenReturn(1L, 2L);
-		Mockito.when(selectResult.getObject(2)).thenReturn("One", "Two");
-		Mockito.when(selectResult.getObject(3)).thenReturn("En", "To");
-		Mockito.when(selectResult.getMetaData()).thenReturn(selectMetadata);
+		Mockito.when(selectResult.getColumnCount()).thenReturn(3);
+		Mockito.when(selectResult.getColumnType(0)).thenReturn(Type.int64());
+		Mockito.when(selectResult.getColumnType(1)).thenReturn(Type.string());
+		Mockito.when(selectResult.getColumnType(2)).thenReturn(Type.string());
+		Mockito.when(selectResult.getLong(0)).thenReturn(1L, 2L);
+		Mockito.when(selectResult.getString(1)).thenReturn("One", "Two");
+		Mockito.when(selectResult.getString(2)).thenReturn("En", "To");
 		Mockito.when(countStatement.executeQuery()).thenReturn(countResult);
 		Mockito.when(countResult.next()).thenReturn(true, false);
 		Mockito.when(countResult.getLong(1)).thenReturn(2L);
-		Mockito.when(insertStatement.executeUpdate()).thenReturn(1, 1);
 	}
 
 }
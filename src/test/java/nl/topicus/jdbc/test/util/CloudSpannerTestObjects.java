@@ -5,6 +5,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.mockito.Mockito;
@@ -12,11 +13,16 @@ import org.mockito.internal.stubbing.answers.Returns;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.cloud.spanner.TimestampBound;
+
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.CloudSpannerDatabaseMetaData;
+import nl.topicus.jdbc.MetaDataStore.ColumnMetaData;
 import nl.topicus.jdbc.MetaDataStore.TableKeyMetaData;
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
 import nl.topicus.jdbc.resultset.CloudSpannerResultSet;
 import nl.topicus.jdbc.statement.CloudSpannerPreparedStatement;
+import nl.topicus.jdbc.statement.ParsedStatementCache;
 import nl.topicus.jdbc.transaction.CloudSpannerTransaction;
 
 public class CloudSpannerTestObjects
@@ -35,16 +41,29 @@ public class CloudSpannerTestObjects
 		CloudSpannerTransaction transaction = Mockito.mock(CloudSpannerTransaction.class);
 		Mockito.when(transaction.executeQuery(Mockito.any()))
 				.thenReturn(Mockito.mock(com.google.cloud.spanner.ResultSet.class));
+		Mockito.when(transaction.read(Mockito.any(), Mockito.any(), Mockito.any()))
+				.thenReturn(Mockito.mock(com.google.cloud.spanner.ResultSet.class));
 		Mockito.when(connection.getTransaction()).thenReturn(transaction);
+		Mockito.when(connection.getParsedStatementCache()).thenReturn(new ParsedStatementCache());
+		Mockito.when(connection.getMetrics()).thenReturn(CloudSpannerMetrics.createConnectionMetrics());
+		Mockito.when(connection.getReadTimestampBound()).thenReturn(TimestampBound.strong());
 
 		TableKeyMetaData tableFoo = Mockito.mock(TableKeyMetaData.class);
 		Mockito.when(tableFoo.getKeyColumns()).thenAnswer(new Returns(Arrays.asList("ID")));
+		List<ColumnMetaData> columnsFoo = Arrays.asList(createColumn("ID", Types.BIGINT, 8),
+				createColumn("COL1", Types.NVARCHAR, 50), createColumn("COL2", Types.NVARCHAR, 100));
+		Mockito.when(tableFoo.getColumns()).thenAnswer(new Returns(columnsFoo));
+		Mockito.when(tableFoo.getIndexCount()).thenReturn(1);
 		Mockito.when(connection
 				.getTable(Mockito.matches(Pattern.compile("FOO", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE))))
 				.thenAnswer(new Returns(tableFoo));
 
 		TableKeyMetaData tableBar = Mockito.mock(TableKeyMetaData.class);
 		Mockito.when(tableBar.getKeyColumns()).thenAnswer(new Returns(Arrays.asList("ID1", "ID2")));
+		List<ColumnMetaData> columnsBar = Arrays.asList(createColumn("ID1", Types.BIGINT, 8),
+				createColumn("ID2", Types.BIGINT, 8), createColumn("COL1", Types.NVARCHAR, 100));
+		Mockito.when(tableBar.getColumns()).thenAnswer(new Returns(columnsBar));
+		Mockito.when(tableBar.getIndexCount()).thenReturn(2);
 		Mockito.when(connection
 				.getTable(Mockito.matches(Pattern.compile("BAR", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE))))
 				.thenAnswer(new Returns(tableBar));
@@ -52,6 +71,15 @@ public class CloudSpannerTestObjects
 		return connection;
 	}
 
+	private static ColumnMetaData createColumn(String name, int dataType, int columnSize)
+	{
+		ColumnMetaData column = Mockito.mock(ColumnMetaData.class);
+		Mockito.when(column.getName()).thenReturn(name);
+		Mockito.when(column.getDataType()).thenReturn(dataType);
+		Mockito.when(column.getColumnSize()).thenReturn(columnSize);
+		return column;
+	}
+
 	private static CloudSpannerDatabaseMetaData createMetaData() throws SQLException
 	{
 		CloudSpannerDatabaseMetaData metadata = Mockito.mock(CloudSpannerDatabaseMetaData.class);
@@ -97,6 +125,7 @@ public class CloudSpannerTestObjects
 						Mockito.when(fooColumns.next()).thenReturn(true, true, true, false);
 						Mockito.when(fooColumns.getString("COLUMN_NAME")).thenReturn("ID", "COL1", "COL2");
 						Mockito.when(fooColumns.getInt("COLUMN_SIZE")).thenReturn(8, 50, 100);
+						Mockito.when(fooColumns.getLong("COLUMN_SIZE")).thenReturn(8L, 50L, 100L);
 						Mockito.when(fooColumns.getInt("DATA_TYPE")).thenReturn(Types.BIGINT, Types.NVARCHAR,
 								Types.NVARCHAR);
 						Mockito.when(fooColumns.getInt("NULLABLE")).thenReturn(ResultSetMetaData.columnNoNulls,
@@ -115,6 +144,45 @@ public class CloudSpannerTestObjects
 					{
 						CloudSpannerResultSet indices = Mockito.mock(CloudSpannerResultSet.class);
 						Mockito.when(indices.next()).thenReturn(true, false);
+						Mockito.when(indices.getString("INDEX_NAME")).thenReturn("PRIMARY_KEY");
+						Mockito.when(indices.getString("COLUMN_NAME")).thenReturn("ID");
+						return indices;
+					}
+				});
+
+		Mockito.when(metadata.getColumns(Mockito.any(), Mockito.any(),
+				Mockito.matches(Pattern.compile("BAR", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
+				Mockito.any())).thenAnswer(new Answer<ResultSet>()
+				{
+
+					@Override
+					public ResultSet answer(InvocationOnMock invocation) throws Throwable
+					{
+						CloudSpannerResultSet barColumns = Mockito.mock(CloudSpannerResultSet.class);
+						Mockito.when(barColumns.next()).thenReturn(true, true, true, false);
+						Mockito.when(barColumns.getString("COLUMN_NAME")).thenReturn("ID1", "ID2", "COL1");
+						Mockito.when(barColumns.getInt("COLUMN_SIZE")).thenReturn(8, 8, 100);
+						Mockito.when(barColumns.getLong("COLUMN_SIZE")).thenReturn(8L, 8L, 100L);
+						Mockito.when(barColumns.getInt("DATA_TYPE")).thenReturn(Types.BIGINT, Types.BIGINT,
+								Types.NVARCHAR);
+						Mockito.when(barColumns.getInt("NULLABLE")).thenReturn(ResultSetMetaData.columnNoNulls,
+								ResultSetMetaData.columnNoNulls, ResultSetMetaData.columnNullable);
+						return barColumns;
+					}
+				});
+
+		Mockito.when(metadata.getIndexInfo(Mockito.any(), Mockito.any(),
+				Mockito.matches(Pattern.compile("BAR", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
+				Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(new Answer<ResultSet>()
+				{
+
+					@Override
+					public ResultSet answer(InvocationOnMock invocation) throws Throwable
+					{
+						CloudSpannerResultSet indices = Mockito.mock(CloudSpannerResultSet.class);
+						Mockito.when(indices.next()).thenReturn(true, true, false);
+						Mockito.when(indices.getString("INDEX_NAME")).thenReturn("PRIMARY_KEY");
+						Mockito.when(indices.getString("COLUMN_NAME")).thenReturn("ID1", "ID2");
 						return indices;
 					}
 				});
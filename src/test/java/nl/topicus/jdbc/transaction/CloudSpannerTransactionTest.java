@@ -1,10 +1,22 @@
 package nl.topicus.jdbc.transaction;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
+import com.google.cloud.spanner.ReadOnlyTransaction;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
 
 import nl.topicus.jdbc.CloudSpannerConnection;
 import nl.topicus.jdbc.test.category.UnitTest;
@@ -13,24 +25,97 @@ import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
 @Category(UnitTest.class)
 public class CloudSpannerTransactionTest
 {
+	private static final Iterable<String> COLUMNS = Arrays.asList("ID", "NAME");
+
+	private static ResultSet createResultSet(Struct... rows)
+	{
+		ResultSet rs = Mockito.mock(ResultSet.class);
+		Boolean[] next = new Boolean[rows.length];
+		Arrays.fill(next, Boolean.TRUE);
+		if (rows.length > 0)
+			next[rows.length - 1] = Boolean.FALSE;
+		Mockito.when(rs.next()).thenReturn(rows.length > 0, next);
+		if (rows.length > 0)
+		{
+			Struct[] others = Arrays.copyOfRange(rows, 1, rows.length);
+			Mockito.when(rs.getCurrentRowAsStruct()).thenReturn(rows[0], others);
+		}
+		return rs;
+	}
+
+	private static Struct createRow(long id)
+	{
+		return Struct.newBuilder().add("ID", com.google.cloud.spanner.Value.int64(id)).build();
+	}
 
 	/**
-	 * Run some simple tests for methods that are needed for the interface, but
-	 * do not do anything
-	 * 
-	 * @throws SQLException
+	 * Reads in a read-only transaction are executed on the read-only
+	 * transaction of Cloud Spanner
 	 */
 	@Test
-	public void testInterfaceMethods() throws SQLException
+	public void testReadMethods() throws SQLException
 	{
 		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
-		try (CloudSpannerTransaction tx = new CloudSpannerTransaction(null, connection))
+		Mockito.when(connection.isReadOnly()).thenReturn(true);
+		DatabaseClient dbClient = Mockito.mock(DatabaseClient.class);
+		ReadOnlyTransaction readOnlyTransaction = Mockito.mock(ReadOnlyTransaction.class);
+		Mockito.when(dbClient.readOnlyTransaction()).thenReturn(readOnlyTransaction);
+		KeySet keys = KeySet.singleKey(Key.of(1L));
+		ResultSet rs = createResultSet(createRow(1L));
+		Mockito.when(readOnlyTransaction.read("FOO", keys, COLUMNS)).thenReturn(rs);
+		ResultSet indexRs = createResultSet(createRow(1L));
+		Mockito.when(readOnlyTransaction.readUsingIndex("FOO", "IDX_FOO", KeySet.singleKey(Key.of("one")), COLUMNS))
+				.thenReturn(indexRs);
+		ResultSet analyzeRs = Mockito.mock(ResultSet.class);
+		Statement statement = Statement.of("SELECT * FROM FOO");
+		Mockito.when(readOnlyTransaction.analyzeQuery(statement, QueryAnalyzeMode.PLAN)).thenReturn(analyzeRs);
+
+		try (CloudSpannerTransaction tx = new CloudSpannerTransaction(dbClient, connection))
+		{
+			Assert.assertSame(rs, tx.read("FOO", keys, COLUMNS));
+			Assert.assertSame(analyzeRs, tx.analyzeQuery(statement, QueryAnalyzeMode.PLAN));
+			Assert.assertEquals(createRow(1L), tx.readRow("FOO", Key.of(1L), COLUMNS));
+			Mockito.verify(rs).close();
+			Assert.assertEquals(createRow(1L), tx.readRowUsingIndex("FOO", "IDX_FOO", Key.of("one"), COLUMNS));
+			Mockito.verify(indexRs).close();
+			Mockito.verify(dbClient, Mockito.times(1)).readOnlyTransaction();
+		}
+	}
+
+	@Test
+	public void testReadRowNotFound() throws SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		Mockito.when(connection.isReadOnly()).thenReturn(true);
+		DatabaseClient dbClient = Mockito.mock(DatabaseClient.class);
+		ReadOnlyTransaction readOnlyTransaction = Mockito.mock(ReadOnlyTransaction.class);
+		Mockito.when(dbClient.readOnlyTransaction()).thenReturn(readOnlyTransaction);
+		ResultSet rs = createResultSet();
+		Mockito.when(readOnlyTransaction.read("FOO", KeySet.singleKey(Key.of(2L)), COLUMNS)).thenReturn(rs);
+
+		try (CloudSpannerTransaction tx = new CloudSpannerTransaction(dbClient, connection))
+		{
+			Assert.assertNull(tx.readRow("FOO", Key.of(2L), COLUMNS));
+			Mockito.verify(rs).close();
+		}
+	}
+
+	@Test(expected = SpannerException.class)
+	public void testReadRowUsingIndexMultipleRows() throws SQLException
+	{
+		CloudSpannerConnection connection = CloudSpannerTestObjects.createConnection();
+		Mockito.when(connection.isReadOnly()).thenReturn(true);
+		DatabaseClient dbClient = Mockito.mock(DatabaseClient.class);
+		ReadOnlyTransaction readOnlyTransaction = Mockito.mock(ReadOnlyTransaction.class);
+		Mockito.when(dbClient.readOnlyTransaction()).thenReturn(readOnlyTransaction);
+		ResultSet rs = createResultSet(createRow(1L), createRow(2L));
+		Mockito.when(
+				readOnlyTransaction.readUsingIndex("FOO", "IDX_FOO", KeySet.singleKey(Key.of("one")), COLUMNS))
+				.thenReturn(rs);
+
+		try (CloudSpannerTransaction tx = new CloudSpannerTransaction(dbClient, connection))
 		{
-			Assert.assertNull(tx.read(null, null, null));
-			Assert.assertNull(tx.readUsingIndex(null, null, null, null));
-			Assert.assertNull(tx.readRow(null, null, null));
-			Assert.assertNull(tx.readRowUsingIndex(null, null, null, null));
-			Assert.assertNull(tx.analyzeQuery(null, null));
+			tx.readRowUsingIndex("FOO", "IDX_FOO", Key.of("one"), COLUMNS);
 		}
 	}
 
@@ -0,0 +1,141 @@
+package nl.topicus.jdbc.transaction;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeyRange;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.Mutation;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class MutationCoalescerTest
+{
+	private MutationCoalescer coalescer;
+
+	@Before
+	public void setup() throws SQLException
+	{
+		coalescer = new MutationCoalescer(CloudSpannerTestObjects.createConnection());
+	}
+
+	@Test
+	public void testMergeUpdates()
+	{
+		coalescer.add(Mutation.newInsertBuilder("FOO").set("ID").to(1L).set("COL1").to("one").build());
+		coalescer.add(Mutation.newUpdateBuilder("FOO").set("ID").to(2L).set("COL1").to("two").build());
+		coalescer.add(Mutation.newUpdateBuilder("foo").set("id").to(1L).set("col1").to("ONE").set("COL2")
+				.to((String) null).build());
+		coalescer.add(Mutation.newInsertOrUpdateBuilder("FOO").set("ID").to(2L).set("COL2").to("TWO").build());
+
+		Assert.assertEquals(Arrays.asList(
+				Mutation.newInsertBuilder("FOO").set("COL1").to("ONE").set("COL2").to((String) null).set("ID")
+						.to(1L).build(),
+				Mutation.newUpdateBuilder("FOO").set("COL1").to("two").set("COL2").to("TWO").set("ID").to(2L)
+						.build()),
+				coalescer.getMutations());
+		Assert.assertEquals(2, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void testMergeCompositeKey()
+	{
+		coalescer.add(Mutation.newInsertBuilder("BAR").set("ID1").to(1L).set("ID2").to(1L).set("COL1").to("a")
+				.build());
+		coalescer.add(Mutation.newUpdateBuilder("BAR").set("ID1").to(1L).set("ID2").to(2L).set("COL1").to("b")
+				.build());
+		coalescer.add(Mutation.newUpdateBuilder("BAR").set("ID2").to(1L).set("ID1").to(1L).set("COL1").to("c")
+				.build());
+
+		Assert.assertEquals(2, coalescer.getMutations().size());
+		Assert.assertEquals(
+				Mutation.newInsertBuilder("BAR").set("COL1").to("c").set("ID1").to(1L).set("ID2").to(1L).build(),
+				coalescer.getMutations().get(0));
+	}
+
+	@Test
+	public void testInsertIsNotMerged()
+	{
+		Mutation first = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		Mutation second = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		coalescer.add(first);
+		coalescer.add(second);
+
+		Assert.assertEquals(Arrays.asList(first, second), coalescer.getMutations());
+		Assert.assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void testWriteFollowedByDelete()
+	{
+		Mutation other = Mutation.newUpdateBuilder("FOO").set("ID").to(2L).set("COL1").to("two").build();
+		Mutation delete = Mutation.delete("FOO", Key.of(1L));
+		coalescer.add(Mutation.newInsertBuilder("FOO").set("ID").to(1L).set("COL1").to("one").build());
+		coalescer.add(other);
+		coalescer.add(Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL2").to("one").build());
+		coalescer.add(delete);
+
+		Assert.assertEquals(Arrays.asList(other, delete), coalescer.getMutations());
+		Assert.assertEquals(2, coalescer.getCoalescedCount());
+	}
+
+	/**
+	 * A mutation on another table between a write and a delete of a row may
+	 * depend on the row, for example an insert of an interleaved row
+	 */
+	@Test
+	public void testDeleteAfterOtherTable()
+	{
+		Mutation insert = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		Mutation child = Mutation.newInsertBuilder("BAR").set("ID1").to(1L).set("ID2").to(1L).build();
+		Mutation delete = Mutation.delete("FOO", Key.of(1L));
+		coalescer.add(insert);
+		coalescer.add(child);
+		coalescer.add(delete);
+
+		Assert.assertEquals(Arrays.asList(insert, child, delete), coalescer.getMutations());
+		Assert.assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void testNoMergeAcrossDeleteAndReplace()
+	{
+		Mutation insert = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		Mutation rangeDelete = Mutation.delete("FOO", KeySet.range(KeyRange.closedClosed(Key.of(5L), Key.of(10L))));
+		Mutation update = Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL1").to("one").build();
+		Mutation replace = Mutation.newReplaceBuilder("FOO").set("ID").to(2L).build();
+		Mutation secondUpdate = Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL2").to("one").build();
+		coalescer.add(insert);
+		coalescer.add(rangeDelete);
+		coalescer.add(update);
+		coalescer.add(replace);
+		coalescer.add(secondUpdate);
+
+		Assert.assertEquals(Arrays.asList(insert, rangeDelete, update, replace, secondUpdate),
+				coalescer.getMutations());
+		Assert.assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void testUnknownTable()
+	{
+		Mutation insert = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		Mutation unknown = Mutation.newInsertBuilder("BAZ").set("ID").to(1L).build();
+		Mutation update = Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL1").to("one").build();
+		coalescer.add(insert);
+		coalescer.add(unknown);
+		coalescer.add(update);
+
+		Assert.assertEquals(Arrays.asList(insert, unknown, update), coalescer.getMutations());
+		Assert.assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+}
@@ -0,0 +1,256 @@
+package nl.topicus.jdbc.transaction;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.TransactionContext;
+import com.google.cloud.spanner.TransactionRunner;
+import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
+
+import nl.topicus.jdbc.metrics.CloudSpannerMetrics;
+import nl.topicus.jdbc.metrics.DefaultMetricsRegistry;
+import nl.topicus.jdbc.test.category.UnitTest;
+import nl.topicus.jdbc.test.util.CloudSpannerTestObjects;
+
+@Category(UnitTest.class)
+public class TransactionExecutorTest
+{
+	private static final Timestamp COMMIT_TIMESTAMP = Timestamp.ofTimeMicroseconds(1000L);
+
+	private TransactionContext context = Mockito.mock(TransactionContext.class);
+
+	private CloudSpannerMetrics metrics = new CloudSpannerMetrics(new DefaultMetricsRegistry(), null);
+
+	private DatabaseClient createDatabaseClient()
+	{
+		DatabaseClient dbClient = Mockito.mock(DatabaseClient.class);
+		Mockito.when(dbClient.readWriteTransaction()).thenAnswer(new Answer<TransactionRunner>()
+		{
+			@Override
+			public TransactionRunner answer(InvocationOnMock invocation) throws Throwable
+			{
+				TransactionRunner runner = Mockito.mock(TransactionRunner.class);
+				Mockito.when(runner.run(Mockito.any())).thenAnswer(new Answer<Object>()
+				{
+					@Override
+					public Object answer(InvocationOnMock invocation) throws Throwable
+					{
+						TransactionCallable<?> callable = invocation.getArgument(0);
+						return callable.run(context);
+					}
+				});
+				Mockito.when(runner.getCommitTimestamp()).thenReturn(COMMIT_TIMESTAMP);
+				return runner;
+			}
+		});
+		return dbClient;
+	}
+
+	private static void waitUntilIdle(TransactionExecutor executor) throws InterruptedException
+	{
+		while (executor.getActiveTransactions() > 0)
+			Thread.sleep(1L);
+	}
+
+	@Test
+	public void testQueryAndCommit() throws SQLException
+	{
+		ResultSet rs = Mockito.mock(ResultSet.class);
+		Statement statement = Statement.of("SELECT * FROM FOO");
+		Mockito.when(context.executeQuery(statement)).thenReturn(rs);
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), KeepAlivePolicy.DEFAULT, executor, metrics);
+		executor.execute(worker);
+		Assert.assertSame(rs, worker.executeQuery(statement));
+		Mutation mutation = Mutation.newInsertBuilder("FOO").set("ID").to(1L).build();
+		worker.buffer(mutation);
+		Assert.assertEquals(COMMIT_TIMESTAMP, worker.commit());
+		Mockito.verify(context).buffer(Arrays.asList(mutation));
+	}
+
+	@Test
+	public void testCommitCoalescedMutations() throws SQLException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), KeepAlivePolicy.DEFAULT, executor,
+				metrics, new MutationCoalescer(CloudSpannerTestObjects.createConnection()));
+		executor.execute(worker);
+		worker.buffer(Mutation.newInsertBuilder("FOO").set("ID").to(1L).build());
+		worker.buffer(Mutation.newUpdateBuilder("FOO").set("ID").to(1L).set("COL1").to("one").build());
+		Assert.assertEquals(COMMIT_TIMESTAMP, worker.commit());
+		Mockito.verify(context).buffer(
+				Arrays.asList(Mutation.newInsertBuilder("FOO").set("COL1").to("one").set("ID").to(1L).build()));
+		Assert.assertEquals(1L, metrics.getRegistry().counter(CloudSpannerMetrics.MUTATIONS_COALESCED).getCount());
+	}
+
+	@Test
+	public void testRollback() throws SQLException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), KeepAlivePolicy.DEFAULT, executor, metrics);
+		executor.execute(worker);
+		worker.buffer(Mutation.newInsertBuilder("FOO").set("ID").to(1L).build());
+		worker.rollback();
+		Mockito.verify(context, Mockito.never()).buffer(Mockito.anyListOf(Mutation.class));
+	}
+
+	@Test
+	public void testMaxTransactions() throws SQLException, InterruptedException
+	{
+		TransactionExecutor executor = new TransactionExecutor(1, false);
+		DatabaseClient dbClient = createDatabaseClient();
+		TransactionWorker first = new TransactionWorker(dbClient, KeepAlivePolicy.DEFAULT, executor, metrics);
+		executor.execute(first);
+		try
+		{
+			executor.execute(new TransactionWorker(dbClient, KeepAlivePolicy.DEFAULT, executor, metrics));
+			Assert.fail("Expected SQLException");
+		}
+		catch (SQLException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("maximum number of concurrent read/write transactions"));
+		}
+		first.commit();
+		waitUntilIdle(executor);
+		TransactionWorker second = new TransactionWorker(dbClient, KeepAlivePolicy.DEFAULT, executor, metrics);
+		executor.execute(second);
+		second.commit();
+	}
+
+	@Test
+	public void testThreadsAreReused() throws SQLException, InterruptedException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		DatabaseClient dbClient = createDatabaseClient();
+		for (int i = 0; i < 10; i++)
+		{
+			TransactionWorker worker = new TransactionWorker(dbClient, KeepAlivePolicy.DEFAULT, executor, metrics);
+			executor.execute(worker);
+			worker.commit();
+			waitUntilIdle(executor);
+		}
+		Assert.assertEquals(1, executor.getPoolSize());
+	}
+
+	@Test
+	public void testVirtualThreads() throws SQLException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		executor.setUseVirtualThreads(true);
+		Assert.assertTrue(executor.isUseVirtualThreads());
+		// Falls back to platform threads on JVMs without virtual threads
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), KeepAlivePolicy.DEFAULT, executor, metrics);
+		executor.execute(worker);
+		Assert.assertEquals(COMMIT_TIMESTAMP, worker.commit());
+		Assert.assertEquals(TransactionExecutor.isVirtualThreadsSupported(), executor.getPoolSize() == -1);
+	}
+
+	@Test
+	public void testKeepAlive() throws SQLException, InterruptedException
+	{
+		ResultSet rs = Mockito.mock(ResultSet.class);
+		Mockito.when(context.executeQuery(Mockito.any(Statement.class))).thenReturn(rs);
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		KeepAlivePolicy policy = new KeepAlivePolicy(10L, 0L);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), policy, executor, metrics);
+		executor.execute(worker);
+		// A transaction that has not executed any queries does not need
+		// keep-alives
+		Thread.sleep(50L);
+		Assert.assertEquals(0L, executor.getKeepAliveCount());
+		worker.executeQuery(Statement.of("SELECT * FROM FOO"));
+		while (executor.getKeepAliveCount() == 0L)
+			Thread.sleep(1L);
+		Mockito.verify(context, Mockito.atLeastOnce()).executeQuery(Statement.of("SELECT 1"));
+		worker.commit();
+		Assert.assertEquals(executor.getKeepAliveCount(),
+				metrics.getRegistry().counter(CloudSpannerMetrics.KEEP_ALIVE_PINGS).getCount());
+	}
+
+	@Test
+	public void testMaxIdleTime() throws SQLException, InterruptedException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		KeepAlivePolicy policy = new KeepAlivePolicy(0L, 20L);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), policy, executor, metrics);
+		executor.execute(worker);
+		worker.buffer(Mutation.newInsertBuilder("FOO").set("ID").to(1L).build());
+		waitUntilIdle(executor);
+		Assert.assertEquals(1L, executor.getIdleRollbackCount());
+		Mockito.verify(context, Mockito.never()).buffer(Mockito.anyListOf(Mutation.class));
+		try
+		{
+			worker.executeQuery(Statement.of("SELECT * FROM FOO"));
+			Assert.fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("idle for more than 20 milliseconds"));
+		}
+		try
+		{
+			worker.buffer(Mutation.newInsertBuilder("FOO").set("ID").to(2L).build());
+			Assert.fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("idle for more than 20 milliseconds"));
+		}
+		try
+		{
+			worker.commit();
+			Assert.fail("Expected SQLException");
+		}
+		catch (SQLException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("idle for more than 20 milliseconds"));
+		}
+		// Rolling back is allowed
+		worker.rollback();
+	}
+
+	/**
+	 * A transaction that only buffers mutations is not idle
+	 */
+	@Test
+	public void testBufferIsActivity() throws SQLException, InterruptedException
+	{
+		TransactionExecutor executor = new TransactionExecutor(10, false);
+		KeepAlivePolicy policy = new KeepAlivePolicy(0L, 300L);
+		TransactionWorker worker = new TransactionWorker(createDatabaseClient(), policy, executor, metrics);
+		executor.execute(worker);
+		for (long id = 1L; id <= 8L; id++)
+		{
+			worker.buffer(Mutation.newInsertBuilder("FOO").set("ID").to(id).build());
+			Thread.sleep(100L);
+		}
+		Assert.assertEquals(COMMIT_TIMESTAMP, worker.commit());
+		Assert.assertEquals(0L, executor.getIdleRollbackCount());
+	}
+
+	@Test
+	public void testPolicyWaitTime()
+	{
+		KeepAlivePolicy policy = new KeepAlivePolicy(5000L, 0L);
+		Assert.assertEquals(Long.MAX_VALUE, policy.getWaitTime(0L, 0L, false));
+		Assert.assertEquals(4000L, policy.getWaitTime(1000L, 1000L, true));
+		Assert.assertEquals(0L, policy.getWaitTime(6000L, 6000L, true));
+		policy = new KeepAlivePolicy(5000L, 3000L);
+		Assert.assertEquals(2000L, policy.getWaitTime(1000L, 1000L, false));
+		Assert.assertTrue(policy.isMaxIdleTimeExceeded(3000L));
+		Assert.assertFalse(new KeepAlivePolicy(0L, 0L).isKeepAliveRequired(10000L, true));
+	}
+
+}
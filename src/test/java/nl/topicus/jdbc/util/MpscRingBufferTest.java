@@ -0,0 +1,97 @@
+package nl.topicus.jdbc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import nl.topicus.jdbc.test.category.UnitTest;
+
+@Category(UnitTest.class)
+public class MpscRingBufferTest
+{
+
+	@Test
+	public void testOfferAndPoll()
+	{
+		MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+		assertEquals(4, buffer.capacity());
+		assertNull(buffer.poll());
+		for (int i = 0; i < 4; i++)
+			assertTrue(buffer.offer(i));
+		assertFalse(buffer.offer(4));
+		assertEquals(Integer.valueOf(0), buffer.poll());
+		assertTrue(buffer.offer(4));
+		for (int i = 1; i < 5; i++)
+			assertEquals(Integer.valueOf(i), buffer.poll());
+		assertNull(buffer.poll());
+		assertEquals(5L, buffer.getOfferedCount());
+		assertEquals(5L, buffer.getPolledCount());
+	}
+
+	@Test
+	public void testMultipleProducers() throws InterruptedException
+	{
+		final int producers = 4;
+		final int perProducer = 10000;
+		final MpscRingBuffer<int[]> buffer = new MpscRingBuffer<>(64);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++)
+		{
+			final int producer = p;
+			Thread thread = new Thread(() -> {
+				try
+				{
+					start.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				for (int i = 0; i < perProducer; i++)
+				{
+					int[] element = new int[] { producer, i };
+					while (!buffer.offer(element))
+						Thread.yield();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		int[] next = new int[producers];
+		int received = 0;
+		while (received < producers * perProducer)
+		{
+			int[] element = buffer.poll();
+			if (element == null)
+			{
+				Thread.yield();
+				continue;
+			}
+			// Elements of one producer must be received in the order in which
+			// they were offered
+			assertEquals(next[element[0]], element[1]);
+			next[element[0]]++;
+			received++;
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertNull(buffer.poll());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity()
+	{
+		new MpscRingBuffer<>(0);
+	}
+
+}